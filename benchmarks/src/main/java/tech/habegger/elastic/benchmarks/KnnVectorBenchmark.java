@@ -0,0 +1,76 @@
+package tech.habegger.elastic.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.habegger.elastic.search.ElasticKnnVector;
+import tech.habegger.elastic.search.ElasticRequestWriter;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static tech.habegger.elastic.search.ElasticKnn.knn;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KnnVectorBenchmark {
+    private static final int DIMENSIONS = 1536;
+
+    ObjectMapper mapper;
+    ElasticRequestWriter writer;
+    float[] vector;
+    ElasticKnnVector preEncoded;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        writer = new ElasticRequestWriter(mapper);
+        var random = new Random(42);
+        vector = new float[DIMENSIONS];
+        for(int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        preEncoded = ElasticKnnVector.floats(vector).encode();
+    }
+
+    @Benchmark
+    public byte[] floatArrayWithObjectMapper() throws IOException {
+        return mapper.writeValueAsBytes(Map.of("knn", Map.of("field", "embedding", "query_vector", vector, "k", 10, "num_candidates", 100)));
+    }
+
+    @Benchmark
+    public byte[] floatArray() throws IOException {
+        return writer.writeAsBytes(request(ElasticKnnVector.floats(vector)));
+    }
+
+    @Benchmark
+    public byte[] base64() throws IOException {
+        return writer.writeAsBytes(request(ElasticKnnVector.base64(vector)));
+    }
+
+    @Benchmark
+    public byte[] preEncodedFloatArray() throws IOException {
+        return writer.writeAsBytes(request(preEncoded));
+    }
+
+    private static ElasticSearchRequest request(ElasticKnnVector vector) {
+        return ElasticSearchRequest.requestBuilder()
+            .withKnn(knn("embedding", vector, 10, 100, null))
+            .build();
+    }
+}
@@ -0,0 +1,60 @@
+package tech.habegger.elastic.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.habegger.elastic.aggregation.ElasticLocalAggregator;
+import tech.habegger.elastic.response.ElasticMetricsAggregationResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static tech.habegger.elastic.aggregation.ElasticCardinalityAggregation.cardinality;
+import static tech.habegger.elastic.aggregation.ElasticExtendedStatsAggregation.extendedStats;
+import static tech.habegger.elastic.aggregation.ElasticPercentilesAggregation.percentiles;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalAggregationBenchmark {
+    List<Map<String, Object>> documents;
+    ElasticLocalAggregator aggregator;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        documents = new ArrayList<>();
+        for(int i = 0; i < 100_000; i++) {
+            documents.add(Map.of("user", "user-" + random.nextInt(20_000), "latency", random.nextGaussian() * 50 + 200));
+        }
+        aggregator = ElasticLocalAggregator.compile(Map.of(
+            "users", cardinality("user"),
+            "latency", percentiles("latency"),
+            "latency_stats", extendedStats("latency")
+        ));
+    }
+
+    @Benchmark
+    public Map<String, ElasticMetricsAggregationResponse> sequential() {
+        return aggregator.aggregate(documents);
+    }
+
+    @Benchmark
+    public Map<String, ElasticMetricsAggregationResponse> forkJoin() {
+        return aggregator.aggregate(documents, ForkJoinPool.commonPool());
+    }
+}
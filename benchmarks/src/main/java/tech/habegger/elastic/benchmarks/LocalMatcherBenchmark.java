@@ -0,0 +1,77 @@
+package tech.habegger.elastic.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.habegger.elastic.search.ElasticLocalMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticExistsClause.exists;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticTermsClause.terms;
+import static tech.habegger.elastic.search.ElasticWildcardClause.wildcard;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalMatcherBenchmark {
+    private static final String[] STATUSES = { "open", "pending", "shipped", "delivered", "cancelled" };
+
+    List<Map<String, Object>> documents;
+    ElasticLocalMatcher<Map<String, Object>> matcher;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        documents = new ArrayList<>();
+        for(int i = 0; i < 1024; i++) {
+            documents.add(Map.of(
+                "status", STATUSES[random.nextInt(STATUSES.length)],
+                "amount", random.nextInt(1000),
+                "created", "2024-%02d-%02dT10:00:00Z".formatted(1 + random.nextInt(12), 1 + random.nextInt(28)),
+                "tags", List.of("tag-" + random.nextInt(50), "tag-" + random.nextInt(50)),
+                "customer", Map.of("country", random.nextBoolean() ? "CH" : "FR", "name", "customer-" + i)
+            ));
+        }
+        matcher = ElasticLocalMatcher.compile(newBool()
+            .filter(terms("status", "shipped", "delivered"))
+            .filter(range("amount", 100, 800))
+            .filter(exists("customer.name"))
+            .mustNot(term("customer.country", "FR"))
+            .should(term("tags", "tag-7"))
+            .should(wildcard("customer.name", "customer-1*"))
+            .should(range("created", "2024-06-01", "2024-08-31"))
+            .minimumShouldMatch(1)
+            .build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public int matchDocuments() {
+        var matched = 0;
+        for(var document : documents) {
+            if(matcher.test(document)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
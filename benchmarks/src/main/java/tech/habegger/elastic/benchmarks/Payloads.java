@@ -0,0 +1,185 @@
+package tech.habegger.elastic.benchmarks;
+
+import tech.habegger.elastic.search.ElasticBooleanClause;
+import tech.habegger.elastic.search.ElasticBuilderPool;
+import tech.habegger.elastic.search.ElasticSearchClause;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.CalendarUnit;
+
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticCardinalityAggregation.cardinality;
+import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
+import static tech.habegger.elastic.aggregation.ElasticFilterAggregation.filter;
+import static tech.habegger.elastic.aggregation.ElasticMaxAggregation.max;
+import static tech.habegger.elastic.aggregation.ElasticStatsAggregation.stats;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticExistsClause.exists;
+import static tech.habegger.elastic.search.ElasticMatchClause.match;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticTermsClause.terms;
+
+final class Payloads {
+    private Payloads() {}
+
+    static ElasticSearchRequest request(String shape) {
+        return switch(shape) {
+            case "deepBool" -> deepBoolRequest();
+            case "largeTerms" -> largeTermsRequest();
+            case "nestedAggregations" -> nestedAggregationsRequest();
+            default -> throw new IllegalArgumentException("Unknown request shape " + shape);
+        };
+    }
+
+    static String response(String shape) {
+        return switch(shape) {
+            case "manyHits" -> manyHitsResponse(1_000);
+            case "manyBuckets" -> manyBucketsResponse(10_000);
+            case "nestedFilterAggregations" -> nestedFilterAggregationsResponse(20);
+            default -> throw new IllegalArgumentException("Unknown response shape " + shape);
+        };
+    }
+
+    static ElasticSearchRequest responseRequest(String shape) {
+        return switch(shape) {
+            case "manyBuckets" -> ElasticSearchRequest.requestBuilder()
+                .aggregation("genres", termsAgg("genre", 10_000)
+                    .aggregation("avg_price", avg("price"))
+                    .aggregation("price_stats", stats("price")))
+                .build();
+            case "nestedFilterAggregations" -> nestedAggregationsRequest();
+            default -> ElasticSearchRequest.query(match("title", "elastic"), 1_000);
+        };
+    }
+
+    static ElasticSearchRequest deepBoolRequest() {
+        return ElasticSearchRequest.query(deepBool(6), 50);
+    }
+
+    private static ElasticSearchClause deepBool(int depth) {
+        ElasticBooleanClause.Builder bool = newBool()
+            .filter(term("tenant", "tenant-" + depth))
+            .filter(range("ts", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)))
+            .should(match("title", "search engine " + depth))
+            .mustNot(exists("deleted"));
+        if(depth > 0) {
+            bool.must(deepBool(depth - 1));
+            bool.should(deepBool(depth - 1));
+        }
+        return bool.build();
+    }
+
+    // Deep bool built from the reused builders of a lease, other shapes are only serialized in its buffer
+    static ElasticSearchRequest pooledRequest(String shape, ElasticBuilderPool.Lease lease) {
+        if(!"deepBool".equals(shape)) {
+            return request(shape);
+        }
+        return lease.request().withQuery(deepBool(6, lease)).withSize(50).build();
+    }
+
+    private static ElasticSearchClause deepBool(int depth, ElasticBuilderPool.Lease lease) {
+        ElasticBooleanClause.Builder bool = lease.bool()
+            .filter(term("tenant", "tenant-" + depth))
+            .filter(range("ts", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)))
+            .should(match("title", "search engine " + depth))
+            .mustNot(exists("deleted"));
+        if(depth > 0) {
+            bool.must(deepBool(depth - 1, lease));
+            bool.should(deepBool(depth - 1, lease));
+        }
+        return bool.build();
+    }
+
+    static ElasticSearchRequest largeTermsRequest() {
+        var values = IntStream.range(0, 5_000).mapToObj(i -> "user-" + i).toArray(String[]::new);
+        return ElasticSearchRequest.query(
+            newBool()
+                .filter(terms("user.id", values))
+                .filter(term("status", "active"))
+                .build(),
+            100
+        );
+    }
+
+    static ElasticSearchRequest nestedAggregationsRequest() {
+        return ElasticSearchRequest.requestBuilder()
+            .withSize(0)
+            .withQuery(term("tenant", "acme"))
+            .aggregation("sales_over_time", dateHistogram("date", CalendarUnit.day)
+                .aggregation("revenue", sum("price"))
+                .aggregation("genres", termsAgg("genre", 20)
+                    .aggregation("avg_price", avg("price"))
+                    .aggregation("buyers", cardinality("buyer"))))
+            .aggregation("t_shirts", filter(term("type", "t-shirt"))
+                .aggregation("avg_price", avg("price"))
+                .aggregation("red", filter(term("color", "red"))
+                    .aggregation("max_price", max("price"))))
+            .build();
+    }
+
+    static String manyHitsResponse(int hitCount) {
+        var json = new StringBuilder(hitCount * 400);
+        json.append("""
+            {"took":12,"timed_out":false,"_shards":{"total":5,"successful":5,"skipped":0,"failed":0},
+            "hits":{"total":{"value":10000,"relation":"gte"},"max_score":1.0,"hits":[""");
+        for(int i = 0; i < hitCount; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append("""
+                {"_index":"products","_id":"%d","_score":%s,"_source":{"title":"Product number %d","description":"A rather long description of product %d used to make the document a bit wider than a toy document","price":%d.5,"tags":["alpha","beta","gamma"],"owner":{"id":%d,"name":"Owner %d"}}}"""
+                .formatted(i, 1.0 / (i + 1), i, i, i % 500, i % 97, i % 97));
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+
+    static String manyBucketsResponse(int bucketCount) {
+        var json = new StringBuilder(bucketCount * 200);
+        json.append("""
+            {"took":40,"timed_out":false,"hits":{"total":{"value":10000,"relation":"gte"},"max_score":null,"hits":[]},
+            "aggregations":{"genres":{"doc_count_error_upper_bound":0,"sum_other_doc_count":0,"buckets":[""");
+        for(int i = 0; i < bucketCount; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append("""
+                {"key":"genre-%d","doc_count":%d,"avg_price":{"value":%d.25},"price_stats":{"count":%d,"min":1.0,"max":%d.0,"avg":%d.25,"sum":%d.0}}"""
+                .formatted(i, bucketCount - i, i % 100, bucketCount - i, i % 100 + 1, i % 100, i * 3));
+        }
+        json.append("]}}}");
+        return json.toString();
+    }
+
+    static String nestedFilterAggregationsResponse(int dayCount) {
+        var json = new StringBuilder(dayCount * 2_000);
+        json.append("""
+            {"took":25,"timed_out":false,"hits":{"total":{"value":10000,"relation":"gte"},"max_score":null,"hits":[]},
+            "aggregations":{"t_shirts":{"doc_count":3,"avg_price":{"value":128.33},"red":{"doc_count":1,"max_price":{"value":175.0}}},
+            "sales_over_time":{"buckets":[""");
+        for(int day = 0; day < dayCount; day++) {
+            if(day > 0) {
+                json.append(',');
+            }
+            json.append("""
+                {"key_as_string":"2024-01-%02d","key":%d,"doc_count":%d,"revenue":{"value":%d.0},"genres":{"doc_count_error_upper_bound":0,"sum_other_doc_count":0,"buckets":["""
+                .formatted(day + 1, 1704067200000L + day * 86_400_000L, day * 20, day * 100));
+            for(int genre = 0; genre < 20; genre++) {
+                if(genre > 0) {
+                    json.append(',');
+                }
+                json.append("""
+                    {"key":"genre-%d","doc_count":%d,"avg_price":{"value":%d.5},"buyers":{"value":%d}}"""
+                    .formatted(genre, genre + 1, genre * 3, genre + 2));
+            }
+            json.append("]}}");
+        }
+        json.append("]}}}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package tech.habegger.elastic.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.habegger.elastic.search.ElasticBuilderPool;
+import tech.habegger.elastic.search.ElasticRequestWriter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestSerializationBenchmark {
+    @Param({"deepBool", "largeTerms", "nestedAggregations"})
+    String shape;
+
+    ObjectMapper mapper;
+    ElasticRequestWriter writer;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        writer = new ElasticRequestWriter(mapper);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeWithObjectMapper() throws IOException {
+        return mapper.writeValueAsBytes(Payloads.request(shape));
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeWithRequestWriter() throws IOException {
+        return writer.writeAsBytes(Payloads.request(shape));
+    }
+
+    @Benchmark
+    public int buildAndSerializeWithPooledBuilders() throws IOException {
+        try(var lease = ElasticBuilderPool.acquire()) {
+            return lease.write(writer, Payloads.pooledRequest(shape, lease)).size();
+        }
+    }
+}
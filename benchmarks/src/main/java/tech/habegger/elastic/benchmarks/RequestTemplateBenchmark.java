@@ -0,0 +1,66 @@
+package tech.habegger.elastic.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.habegger.elastic.search.ElasticRequestTemplate;
+import tech.habegger.elastic.search.ElasticRequestWriter;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticRequestTemplate.param;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestTemplateBenchmark {
+    ObjectMapper mapper;
+    ElasticRequestWriter writer;
+    ElasticRequestTemplate template;
+    Map<String, String> values;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new ObjectMapper();
+        writer = new ElasticRequestWriter(mapper);
+        template = ElasticRequestTemplate.compile(mapper, request(param("tenant"), param("from"), param("to")));
+        values = Map.of("tenant", "acme", "from", "2024-01-01", "to", "2024-12-31");
+    }
+
+    @Benchmark
+    public byte[] serializeWithRequestWriter() throws IOException {
+        return writer.writeAsBytes(request(values.get("tenant"), values.get("from"), values.get("to")));
+    }
+
+    @Benchmark
+    public byte[] renderTemplate() {
+        return template.render(values);
+    }
+
+    private static ElasticSearchRequest request(String tenant, String from, String to) {
+        return ElasticSearchRequest.query(
+            newBool()
+                .filter(term("tenant", tenant))
+                .filter(range("ts", from, to))
+                .build(),
+            20
+        );
+    }
+}
@@ -0,0 +1,104 @@
+package tech.habegger.elastic.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.habegger.elastic.client.ElasticContentType;
+import tech.habegger.elastic.response.ElasticProjectedHits;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.response.ElasticSearchResponseStream;
+import tech.habegger.elastic.response.ElasticSourceProjection;
+import tech.habegger.elastic.response.ElasticSourceSlice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmark {
+    @Param({"manyHits", "manyBuckets", "nestedFilterAggregations"})
+    String shape;
+
+    ObjectMapper mapper;
+    ObjectReader genericReader;
+    ObjectReader typedReader;
+    ElasticSourceProjection projection;
+    byte[] payload;
+    ObjectReader smileReader;
+    byte[] smilePayload;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        genericReader = mapper.readerFor(new TypeReference<ElasticSearchResponse<Map<String, Object>>>() {});
+        typedReader = ElasticSearchResponse.reader(mapper, Payloads.responseRequest(shape), new TypeReference<ElasticSearchResponse<Map<String, Object>>>() {});
+        projection = ElasticSourceProjection.builder()
+            .withDouble("price")
+            .withLong("owner.id")
+            .withString("tags[]")
+            .build();
+        payload = Payloads.response(shape).getBytes(StandardCharsets.UTF_8);
+        try {
+            var smileMapper = ElasticContentType.SMILE.mapper(mapper);
+            smileReader = ElasticSearchResponse.reader(smileMapper, Payloads.responseRequest(shape), new TypeReference<ElasticSearchResponse<Map<String, Object>>>() {});
+            smilePayload = smileMapper.writeValueAsBytes(mapper.readTree(payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public ElasticSearchResponse<Map<String, Object>> parseWithObjectMapper() throws IOException {
+        return genericReader.readValue(payload);
+    }
+
+    @Benchmark
+    public ElasticSearchResponse<Map<String, Object>> parseWithTypedBuckets() throws IOException {
+        return typedReader.readValue(payload);
+    }
+
+    @Benchmark
+    public ElasticSearchResponse<Map<String, Object>> parseSmileWithTypedBuckets() throws IOException {
+        return smileReader.readValue(smilePayload);
+    }
+
+    @Benchmark
+    public ElasticSearchResponse<Map<String, Object>> parseWithLazySource() throws IOException {
+        return ElasticSourceSlice.lazy(typedReader, payload).readValue(payload);
+    }
+
+    @Benchmark
+    public ElasticProjectedHits parseWithProjection() throws IOException {
+        return projection.read(mapper, payload);
+    }
+
+    @Benchmark
+    @SuppressWarnings("rawtypes")
+    public void parseAsStream(Blackhole blackhole) throws IOException {
+        try(var response = ElasticSearchResponseStream.open(mapper, payload, Map.class)) {
+            while(response.hasNext()) {
+                blackhole.consume(response.next());
+            }
+            blackhole.consume(response.getAggregations());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Pipeline aggregations work on the output of other aggregations, referenced through buckets_path
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public abstract class AbstractElasticPipelineAggregation extends ElasticAggregations {
+    // Sibling pipelines produce a value next to the multi-bucket aggregation they read, parent pipelines one per bucket
+    abstract boolean isSibling();
+}
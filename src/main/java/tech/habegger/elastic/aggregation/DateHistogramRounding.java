@@ -0,0 +1,87 @@
+package tech.habegger.elastic.aggregation;
+
+import tech.habegger.elastic.shared.CalendarUnit;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.regex.Pattern;
+
+// Aligns instants on the buckets of a date_histogram the way Elastic does: calendar intervals follow the calendar of
+// the time zone, fixed intervals are multiples of their length counted from the epoch in local time.
+final class DateHistogramRounding {
+    private static final Pattern FIXED_INTERVAL = Pattern.compile("(\\d+)(ms|s|m|h|d)");
+
+    private final CalendarUnit calendarUnit;
+    private final long fixedMillis;
+    private final ZoneId zone;
+
+    private DateHistogramRounding(CalendarUnit calendarUnit, long fixedMillis, ZoneId zone) {
+        this.calendarUnit = calendarUnit;
+        this.fixedMillis = fixedMillis;
+        this.zone = zone;
+    }
+
+    static DateHistogramRounding of(ElasticDateHistogramAggregation.DateHistogramBody body) {
+        var zone = body.timeZone() == null ? ZoneOffset.UTC : ZoneId.of(body.timeZone());
+        if(body.calendarInterval() != null) {
+            return new DateHistogramRounding(calendarUnit(body.calendarInterval()), 0, zone);
+        } else if(body.fixedInterval() != null) {
+            return new DateHistogramRounding(null, fixedMillis(body.fixedInterval()), zone);
+        }
+        throw new IllegalArgumentException("Date histogram on %s has no calendar_interval nor fixed_interval".formatted(body.field()));
+    }
+
+    Instant round(Instant instant) {
+        var local = LocalDateTime.ofInstant(instant, zone);
+        LocalDateTime rounded;
+        if(calendarUnit == null) {
+            var localMillis = local.toInstant(ZoneOffset.UTC).toEpochMilli();
+            rounded = LocalDateTime.ofInstant(Instant.ofEpochMilli(Math.floorDiv(localMillis, fixedMillis) * fixedMillis), ZoneOffset.UTC);
+        } else {
+            rounded = switch(calendarUnit) {
+                case minute -> local.truncatedTo(ChronoUnit.MINUTES);
+                case hour -> local.truncatedTo(ChronoUnit.HOURS);
+                case day -> local.truncatedTo(ChronoUnit.DAYS);
+                case week -> local.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case month -> local.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+                case quarter -> local.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1).withMonth((local.getMonthValue() - 1) / 3 * 3 + 1);
+                case year -> local.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+            };
+        }
+        return ZonedDateTime.ofLocal(rounded, zone, null).toInstant();
+    }
+
+    // Calendar intervals are either a unit name or a single unit quantity, e.g. month or 1M
+    private static CalendarUnit calendarUnit(String interval) {
+        for(var unit : CalendarUnit.values()) {
+            if(unit.name().equals(interval) || unit.quantity(1).equals(interval)) {
+                return unit;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported calendar interval " + interval);
+    }
+
+    private static long fixedMillis(String interval) {
+        var matcher = FIXED_INTERVAL.matcher(interval);
+        if(matcher.matches()) {
+            var amount = Long.parseLong(matcher.group(1));
+            var unit = switch(matcher.group(2)) {
+                case "ms" -> 1L;
+                case "s" -> 1_000L;
+                case "m" -> 60_000L;
+                case "h" -> 3_600_000L;
+                default -> 86_400_000L;
+            };
+            if(amount > 0) {
+                return amount * unit;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported fixed interval " + interval);
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Objects;
 @SuppressWarnings({"FieldCanBeLocal", "unused"})
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public abstract class ElasticAggregations {
+public abstract class ElasticAggregations implements Cloneable {
     Map<String, ElasticAggregations> aggregations = null;
 
     public ElasticAggregations aggregation(String name, ElasticAggregations aggregation) {
@@ -21,6 +21,21 @@ public abstract class ElasticAggregations {
         return this;
     }
 
+    public Map<String, ElasticAggregations> subAggregations() {
+        return aggregations;
+    }
+
+    // Shallow copy with other sub-aggregations, leaving this aggregation untouched
+    public ElasticAggregations withSubAggregations(Map<String, ElasticAggregations> aggregations) {
+        try {
+            var copy = (ElasticAggregations) clone();
+            copy.aggregations = aggregations == null ? null : new HashMap<>(aggregations);
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) return true;
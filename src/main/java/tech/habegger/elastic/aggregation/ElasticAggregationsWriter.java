@@ -0,0 +1,206 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import tech.habegger.elastic.search.ElasticRequestWriter;
+import tech.habegger.elastic.shared.BoundsSpec;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class ElasticAggregationsWriter {
+    private final ElasticRequestWriter requestWriter;
+
+    public ElasticAggregationsWriter(ElasticRequestWriter requestWriter) {
+        this.requestWriter = requestWriter;
+    }
+
+    public void write(Map<String, ElasticAggregations> aggregations, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        for(var entry : aggregations.entrySet()) {
+            generator.writeFieldName(entry.getKey());
+            write(entry.getValue(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    public void write(ElasticAggregations aggregation, JsonGenerator generator) throws IOException {
+        if(aggregation == null) {
+            generator.writeNull();
+            return;
+        }
+        if(aggregation instanceof ElasticTermsAggregation terms) {
+            writeStart(terms, generator);
+            writeTerms(terms.terms, generator);
+        } else if(aggregation instanceof ElasticDateHistogramAggregation dateHistogram) {
+            generator.writeStartObject();
+            writeDateHistogram(dateHistogram.dateHistogram, generator);
+            writeSubAggregations(dateHistogram, generator);
+        } else if(aggregation instanceof ElasticHistogramAggregation histogram) {
+            generator.writeStartObject();
+            writeHistogram(histogram.histogram, generator);
+            writeSubAggregations(histogram, generator);
+        } else if(aggregation instanceof ElasticCardinalityAggregation cardinality) {
+            writeStart(cardinality, generator);
+            writeCardinality(cardinality.cardinality, generator);
+        } else if(aggregation instanceof ElasticAvgAggregation avg) {
+            writeStart(avg, generator);
+            writeStats("avg", avg.avg, generator);
+        } else if(aggregation instanceof ElasticSumAggregation sum) {
+            writeStart(sum, generator);
+            writeStats("sum", sum.sum, generator);
+        } else if(aggregation instanceof ElasticMinAggregation min) {
+            writeStart(min, generator);
+            writeStats("min", min.min, generator);
+        } else if(aggregation instanceof ElasticMaxAggregation max) {
+            writeStart(max, generator);
+            writeStats("max", max.max, generator);
+        } else if(aggregation instanceof ElasticStatsAggregation stats) {
+            writeStart(stats, generator);
+            writeStats("stats", stats.stats, generator);
+        } else if(aggregation instanceof ElasticValueCountAggregation valueCount) {
+            writeStart(valueCount, generator);
+            writeStats("value_count", valueCount.valueCount, generator);
+        } else if(aggregation instanceof ElasticFilterAggregation filter) {
+            writeStart(filter, generator);
+            if(filter.filter != null) {
+                generator.writeFieldName("filter");
+                requestWriter.writeClause(filter.filter, generator);
+            }
+        } else {
+            requestWriter.writeObject(aggregation, generator);
+            return;
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeStart(ElasticAggregations aggregation, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeSubAggregations(aggregation, generator);
+    }
+
+    private void writeSubAggregations(ElasticAggregations aggregation, JsonGenerator generator) throws IOException {
+        if(aggregation.aggregations != null) {
+            generator.writeFieldName("aggregations");
+            write(aggregation.aggregations, generator);
+        }
+    }
+
+    private static void writeTerms(ElasticTermsAggregation.TermsBody body, JsonGenerator generator) throws IOException {
+        if(body == null) {
+            return;
+        }
+        generator.writeObjectFieldStart("terms");
+        writeStringField("field", body.field(), generator);
+        writeNumberField("size", body.size(), generator);
+        writeNumberField("shard_size", body.shardSize(), generator);
+        writeOrder(body.order(), generator);
+        if(body.include() != null) {
+            generator.writeObjectFieldStart("include");
+            generator.writeNumberField("partition", body.include().partition());
+            generator.writeNumberField("num_partitions", body.include().numPartitions());
+            generator.writeEndObject();
+        }
+        if(body.executionHint() != null) {
+            generator.writeStringField("execution_hint", body.executionHint().name());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeDateHistogram(ElasticDateHistogramAggregation.DateHistogramBody body, JsonGenerator generator) throws IOException {
+        if(body == null) {
+            return;
+        }
+        generator.writeObjectFieldStart("date_histogram");
+        writeStringField("field", body.field(), generator);
+        writeStringField("calendar_interval", body.calendarInterval(), generator);
+        writeStringField("fixed_interval", body.fixedInterval(), generator);
+        writeNumberField("buckets", body.buckets(), generator);
+        writeStringField("format", body.format(), generator);
+        writeStringField("time_zone", body.timeZone(), generator);
+        writeStringField("missing", body.missing(), generator);
+        generator.writeEndObject();
+    }
+
+    private static void writeHistogram(ElasticHistogramAggregation.HistogramBody body, JsonGenerator generator) throws IOException {
+        if(body == null) {
+            return;
+        }
+        generator.writeObjectFieldStart("histogram");
+        writeStringField("field", body.field(), generator);
+        writeNumberField("interval", body.interval(), generator);
+        writeNumberField("offset", body.offset(), generator);
+        writeNumberField("min_doc_count", body.minDocCount(), generator);
+        writeBounds("extended_bounds", body.extendedBounds(), generator);
+        writeBounds("hard_bounds", body.hardBounds(), generator);
+        writeOrder(body.order(), generator);
+        writeNumberField("missing", body.missing(), generator);
+        if(body.keyed() != null) {
+            generator.writeBooleanField("keyed", body.keyed());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeCardinality(ElasticCardinalityAggregation.CardinalityBody body, JsonGenerator generator) throws IOException {
+        if(body == null) {
+            return;
+        }
+        generator.writeObjectFieldStart("cardinality");
+        writeStringField("field", body.field(), generator);
+        writeNumberField("precision_threshold", body.precisionThreshold(), generator);
+        if(body.executionHint() != null) {
+            generator.writeStringField("execution_hint", body.executionHint().name());
+        }
+        writeStringField("missing", body.missing(), generator);
+        generator.writeEndObject();
+    }
+
+    private static void writeStats(String type, StatsBody body, JsonGenerator generator) throws IOException {
+        if(body == null) {
+            return;
+        }
+        generator.writeObjectFieldStart(type);
+        writeStringField("field", body.field(), generator);
+        writeNumberField("missing", body.missing(), generator);
+        generator.writeEndObject();
+    }
+
+    private static void writeOrder(Map<String, OrderDirection> order, JsonGenerator generator) throws IOException {
+        if(order == null) {
+            return;
+        }
+        generator.writeObjectFieldStart("order");
+        for(var entry : order.entrySet()) {
+            generator.writeStringField(entry.getKey(), entry.getValue() == null ? null : entry.getValue().name());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeBounds(String name, BoundsSpec bounds, JsonGenerator generator) throws IOException {
+        if(bounds == null) {
+            return;
+        }
+        generator.writeObjectFieldStart(name);
+        generator.writeNumberField("min", bounds.min());
+        generator.writeNumberField("max", bounds.max());
+        generator.writeEndObject();
+    }
+
+    private static void writeStringField(String name, String value, JsonGenerator generator) throws IOException {
+        if(value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private static void writeNumberField(String name, Integer value, JsonGenerator generator) throws IOException {
+        if(value != null) {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    private static void writeNumberField(String name, Double value, JsonGenerator generator) throws IOException {
+        if(value != null) {
+            generator.writeNumberField(name, value);
+        }
+    }
+}
@@ -9,7 +9,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class ElasticAvgAggregation extends ElasticAggregations {
 
     @JsonProperty("avg")
-    private final StatsBody avg;
+    final StatsBody avg;
 
     ElasticAvgAggregation(
         StatsBody avg
@@ -0,0 +1,44 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.GapPolicy;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticAvgBucketAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("avg_bucket")
+    final AvgBucketBody avgBucket;
+
+    ElasticAvgBucketAggregation(AvgBucketBody avgBucket) {
+        this.avgBucket = avgBucket;
+    }
+
+    public static ElasticAvgBucketAggregation avgBucket(String bucketsPath) {
+        return new ElasticAvgBucketAggregation(new AvgBucketBody(bucketsPath, null, null));
+    }
+
+    public ElasticAvgBucketAggregation withGapPolicy(GapPolicy gapPolicy) {
+        return new ElasticAvgBucketAggregation(new AvgBucketBody(avgBucket.bucketsPath, gapPolicy, avgBucket.format));
+    }
+
+    public ElasticAvgBucketAggregation withFormat(String format) {
+        return new ElasticAvgBucketAggregation(new AvgBucketBody(avgBucket.bucketsPath, avgBucket.gapPolicy, format));
+    }
+
+    @Override
+    boolean isSibling() {
+        return true;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record AvgBucketBody(
+        @JsonProperty("buckets_path")
+        String bucketsPath,
+        @JsonProperty("gap_policy")
+        GapPolicy gapPolicy,
+        @JsonProperty("format")
+        String format
+    ) { }
+}
@@ -0,0 +1,53 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.GapPolicy;
+import tech.habegger.elastic.shared.ScriptExpression;
+
+import java.util.Map;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticBucketScriptAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("bucket_script")
+    final BucketScriptBody bucketScript;
+
+    ElasticBucketScriptAggregation(BucketScriptBody bucketScript) {
+        this.bucketScript = bucketScript;
+    }
+
+    public static ElasticBucketScriptAggregation bucketScript(Map<String, String> bucketsPath, String script) {
+        return bucketScript(bucketsPath, ScriptExpression.scriptInline(script));
+    }
+
+    public static ElasticBucketScriptAggregation bucketScript(Map<String, String> bucketsPath, ScriptExpression script) {
+        return new ElasticBucketScriptAggregation(new BucketScriptBody(bucketsPath, script, null, null));
+    }
+
+    public ElasticBucketScriptAggregation withGapPolicy(GapPolicy gapPolicy) {
+        return new ElasticBucketScriptAggregation(new BucketScriptBody(bucketScript.bucketsPath, bucketScript.script, gapPolicy, bucketScript.format));
+    }
+
+    public ElasticBucketScriptAggregation withFormat(String format) {
+        return new ElasticBucketScriptAggregation(new BucketScriptBody(bucketScript.bucketsPath, bucketScript.script, bucketScript.gapPolicy, format));
+    }
+
+    @Override
+    boolean isSibling() {
+        return false;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record BucketScriptBody(
+        @JsonProperty("buckets_path")
+        Map<String, String> bucketsPath,
+        @JsonProperty("script")
+        ScriptExpression script,
+        @JsonProperty("gap_policy")
+        GapPolicy gapPolicy,
+        @JsonProperty("format")
+        String format
+    ) { }
+}
@@ -0,0 +1,47 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.GapPolicy;
+import tech.habegger.elastic.shared.ScriptExpression;
+
+import java.util.Map;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticBucketSelectorAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("bucket_selector")
+    final BucketSelectorBody bucketSelector;
+
+    ElasticBucketSelectorAggregation(BucketSelectorBody bucketSelector) {
+        this.bucketSelector = bucketSelector;
+    }
+
+    public static ElasticBucketSelectorAggregation bucketSelector(Map<String, String> bucketsPath, String script) {
+        return bucketSelector(bucketsPath, ScriptExpression.scriptInline(script));
+    }
+
+    public static ElasticBucketSelectorAggregation bucketSelector(Map<String, String> bucketsPath, ScriptExpression script) {
+        return new ElasticBucketSelectorAggregation(new BucketSelectorBody(bucketsPath, script, null));
+    }
+
+    public ElasticBucketSelectorAggregation withGapPolicy(GapPolicy gapPolicy) {
+        return new ElasticBucketSelectorAggregation(new BucketSelectorBody(bucketSelector.bucketsPath, bucketSelector.script, gapPolicy));
+    }
+
+    @Override
+    boolean isSibling() {
+        return false;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record BucketSelectorBody(
+        @JsonProperty("buckets_path")
+        Map<String, String> bucketsPath,
+        @JsonProperty("script")
+        ScriptExpression script,
+        @JsonProperty("gap_policy")
+        GapPolicy gapPolicy
+    ) { }
+}
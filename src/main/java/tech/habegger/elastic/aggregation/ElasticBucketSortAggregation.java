@@ -0,0 +1,55 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.GapPolicy;
+import tech.habegger.elastic.shared.OrderSpec;
+import tech.habegger.elastic.shared.SortSpec;
+
+import java.util.List;
+import java.util.Map;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticBucketSortAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("bucket_sort")
+    final BucketSortBody bucketSort;
+
+    ElasticBucketSortAggregation(BucketSortBody bucketSort) {
+        this.bucketSort = bucketSort;
+    }
+
+    public static ElasticBucketSortAggregation bucketSort(SortSpec... sort) {
+        return new ElasticBucketSortAggregation(new BucketSortBody(sort.length == 0 ? null : SortSpec.toOutput(sort), null, null, null));
+    }
+
+    public ElasticBucketSortAggregation withFrom(Integer from) {
+        return new ElasticBucketSortAggregation(new BucketSortBody(bucketSort.sort, from, bucketSort.size, bucketSort.gapPolicy));
+    }
+
+    public ElasticBucketSortAggregation withSize(Integer size) {
+        return new ElasticBucketSortAggregation(new BucketSortBody(bucketSort.sort, bucketSort.from, size, bucketSort.gapPolicy));
+    }
+
+    public ElasticBucketSortAggregation withGapPolicy(GapPolicy gapPolicy) {
+        return new ElasticBucketSortAggregation(new BucketSortBody(bucketSort.sort, bucketSort.from, bucketSort.size, gapPolicy));
+    }
+
+    @Override
+    boolean isSibling() {
+        return false;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record BucketSortBody(
+        @JsonProperty("sort")
+        List<Map<String, OrderSpec>> sort,
+        @JsonProperty("from")
+        Integer from,
+        @JsonProperty("size")
+        Integer size,
+        @JsonProperty("gap_policy")
+        GapPolicy gapPolicy
+    ) { }
+}
@@ -11,7 +11,7 @@ import java.util.function.Function;
 public final class ElasticCardinalityAggregation extends ElasticAggregations {
 
     @JsonProperty("cardinality")
-    private final CardinalityBody cardinality;
+    final CardinalityBody cardinality;
 
     ElasticCardinalityAggregation(
         CardinalityBody cardinality
@@ -22,6 +22,19 @@ public final class ElasticCardinalityAggregation extends ElasticAggregations {
         return new ElasticCardinalityAggregation(new CardinalityBody(field, null, null, null));
     }
 
+    public String field() {
+        return cardinality.field();
+    }
+
+    public ElasticCardinalityAggregation withField(String field) {
+        return withBody(original -> new CardinalityBody(
+            field,
+            original.precisionThreshold,
+            original.executionHint,
+            original.missing
+        ));
+    }
+
     public ElasticCardinalityAggregation withPrecisionThreshold(int precisionThreshold) {
         return withBody(original -> new CardinalityBody(
             original.field,
@@ -0,0 +1,184 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import tech.habegger.elastic.shared.CalendarUnit;
+import tech.habegger.elastic.shared.GeoRect;
+import tech.habegger.elastic.shared.OrderDirection;
+import tech.habegger.elastic.shared.TimeUnit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("unused")
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticCompositeAggregation extends ElasticAggregations {
+    @JsonProperty("composite")
+    final CompositeBody composite;
+
+    ElasticCompositeAggregation(
+        @JsonProperty("composite")
+        CompositeBody composite
+    ) {
+        this.composite = composite;
+    }
+
+    public static Builder newComposite() {
+        return new Builder();
+    }
+
+    // Same sources and sub-aggregations, resuming after the given key of a previous page
+    public ElasticCompositeAggregation withAfter(Map<String, Object> after) {
+        var next = new ElasticCompositeAggregation(new CompositeBody(composite.size, composite.sources, after));
+        next.aggregations = this.aggregations == null ? null : new HashMap<>(this.aggregations);
+        return next;
+    }
+
+    public Integer size() {
+        return composite.size;
+    }
+
+    public static class Builder {
+        private final List<CompositeSource> sources = new ArrayList<>();
+        private Integer size;
+        private Map<String, Object> after;
+
+        public Builder source(CompositeSource source) {
+            sources.add(source);
+            return this;
+        }
+
+        public Builder terms(String name, String field) {
+            return source(CompositeSource.termsSource(name, field));
+        }
+
+        public Builder histogram(String name, String field, double interval) {
+            return source(CompositeSource.histogramSource(name, field, interval));
+        }
+
+        public Builder dateHistogram(String name, String field, CalendarUnit unit) {
+            return source(CompositeSource.dateHistogramSource(name, field, unit));
+        }
+
+        public Builder dateHistogram(String name, String field, Integer amount, TimeUnit unit) {
+            return source(CompositeSource.dateHistogramSource(name, field, amount, unit));
+        }
+
+        public Builder geotileGrid(String name, String field, Integer precision) {
+            return source(CompositeSource.geotileGridSource(name, field, precision));
+        }
+
+        public Builder size(Integer size) {
+            this.size = size;
+            return this;
+        }
+
+        public Builder after(Map<String, Object> after) {
+            this.after = after;
+            return this;
+        }
+
+        public ElasticCompositeAggregation build() {
+            if(sources.isEmpty()) {
+                throw new IllegalStateException("A composite aggregation needs at least one source");
+            }
+            return new ElasticCompositeAggregation(new CompositeBody(size, List.copyOf(sources), after));
+        }
+    }
+
+    public record CompositeSource(String name, String type, SourceBody body) {
+        public static CompositeSource termsSource(String name, String field) {
+            return new CompositeSource(name, "terms", SourceBody.of(field));
+        }
+
+        public static CompositeSource histogramSource(String name, String field, double interval) {
+            return new CompositeSource(name, "histogram", new SourceBody(field, interval, null, null, null, null, null, null, null, null));
+        }
+
+        public static CompositeSource dateHistogramSource(String name, String field, CalendarUnit unit) {
+            return new CompositeSource(name, "date_histogram", new SourceBody(field, null, unit.name(), null, null, null, null, null, null, null));
+        }
+
+        public static CompositeSource dateHistogramSource(String name, String field, Integer amount, TimeUnit unit) {
+            return new CompositeSource(name, "date_histogram", new SourceBody(field, null, null, unit.quantity(amount), null, null, null, null, null, null));
+        }
+
+        public static CompositeSource geotileGridSource(String name, String field, Integer precision) {
+            return new CompositeSource(name, "geotile_grid", new SourceBody(field, null, null, null, null, null, precision, null, null, null));
+        }
+
+        public CompositeSource withOrder(OrderDirection order) {
+            return new CompositeSource(name, type, new SourceBody(body.field, body.interval, body.calendarInterval, body.fixedInterval,
+                body.format, body.timeZone, body.precision, body.bounds, order, body.missingBucket));
+        }
+
+        public CompositeSource withMissingBucket() {
+            return new CompositeSource(name, type, new SourceBody(body.field, body.interval, body.calendarInterval, body.fixedInterval,
+                body.format, body.timeZone, body.precision, body.bounds, body.order, true));
+        }
+
+        public CompositeSource withFormat(String format) {
+            return new CompositeSource(name, type, new SourceBody(body.field, body.interval, body.calendarInterval, body.fixedInterval,
+                format, body.timeZone, body.precision, body.bounds, body.order, body.missingBucket));
+        }
+
+        public CompositeSource withTimeZone(String timeZone) {
+            return new CompositeSource(name, type, new SourceBody(body.field, body.interval, body.calendarInterval, body.fixedInterval,
+                body.format, timeZone, body.precision, body.bounds, body.order, body.missingBucket));
+        }
+
+        public CompositeSource withBounds(GeoRect bounds) {
+            return new CompositeSource(name, type, new SourceBody(body.field, body.interval, body.calendarInterval, body.fixedInterval,
+                body.format, body.timeZone, body.precision, bounds, body.order, body.missingBucket));
+        }
+
+        // Sources are written as a list of single entry objects: [{ name: { type: { ... } } }]
+        @JsonValue
+        Map<String, Map<String, SourceBody>> toOutput() {
+            return Map.of(name, Map.of(type, body));
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record SourceBody(
+        @JsonProperty("field")
+        String field,
+        @JsonProperty("interval")
+        Double interval,
+        @JsonProperty("calendar_interval")
+        String calendarInterval,
+        @JsonProperty("fixed_interval")
+        String fixedInterval,
+        @JsonProperty("format")
+        String format,
+        @JsonProperty("time_zone")
+        String timeZone,
+        @JsonProperty("precision")
+        Integer precision,
+        @JsonProperty("bounds")
+        GeoRect bounds,
+        @JsonProperty("order")
+        OrderDirection order,
+        @JsonProperty("missing_bucket")
+        Boolean missingBucket
+    ) {
+        static SourceBody of(String field) {
+            return new SourceBody(field, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record CompositeBody(
+        @JsonProperty("size")
+        Integer size,
+        @JsonProperty("sources")
+        List<CompositeSource> sources,
+        @JsonProperty("after")
+        Map<String, Object> after
+    ) { }
+}
@@ -0,0 +1,37 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticCumulativeSumAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("cumulative_sum")
+    final CumulativeSumBody cumulativeSum;
+
+    ElasticCumulativeSumAggregation(CumulativeSumBody cumulativeSum) {
+        this.cumulativeSum = cumulativeSum;
+    }
+
+    public static ElasticCumulativeSumAggregation cumulativeSum(String bucketsPath) {
+        return new ElasticCumulativeSumAggregation(new CumulativeSumBody(bucketsPath, null));
+    }
+
+    public ElasticCumulativeSumAggregation withFormat(String format) {
+        return new ElasticCumulativeSumAggregation(new CumulativeSumBody(cumulativeSum.bucketsPath, format));
+    }
+
+    @Override
+    boolean isSibling() {
+        return false;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record CumulativeSumBody(
+        @JsonProperty("buckets_path")
+        String bucketsPath,
+        @JsonProperty("format")
+        String format
+    ) { }
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import tech.habegger.elastic.shared.CalendarUnit;
 import tech.habegger.elastic.shared.TimeUnit;
 
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.Map;
@@ -16,7 +17,7 @@ import java.util.function.Function;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public final class ElasticDateHistogramAggregation extends ElasticAggregations {
     @JsonProperty("date_histogram")
-    private final DateHistogramBody dateHistogram;
+    final DateHistogramBody dateHistogram;
 
     ElasticDateHistogramAggregation(
         @JsonProperty("date_histogram")
@@ -26,6 +27,15 @@ public final class ElasticDateHistogramAggregation extends ElasticAggregations {
         this.dateHistogram = dateHistogram;
     }
 
+    public String field() {
+        return dateHistogram.field();
+    }
+
+    // Start of the bucket the instant falls in, following the interval and time zone of the histogram
+    public Instant bucketStart(Instant instant) {
+        return DateHistogramRounding.of(dateHistogram).round(instant);
+    }
+
     public ElasticDateHistogramAggregation withBuckets(Integer buckets) {
         return withBody((original) ->
                 new DateHistogramBody(
@@ -53,7 +63,7 @@ public final class ElasticDateHistogramAggregation extends ElasticAggregations {
                 ));
     }
 
-    public ElasticAggregations withTimeZone(ZoneOffset zoneOffset) {
+    public ElasticDateHistogramAggregation withTimeZone(ZoneOffset zoneOffset) {
         return withBody((original) ->
                 new DateHistogramBody(
                         original.field,
@@ -65,7 +75,7 @@ public final class ElasticDateHistogramAggregation extends ElasticAggregations {
                         original.missing
                 ));
     }
-    public ElasticAggregations withTimeZone(ZoneId zoneId) {
+    public ElasticDateHistogramAggregation withTimeZone(ZoneId zoneId) {
         return withBody((original) ->
             new DateHistogramBody(
                 original.field,
@@ -111,7 +121,7 @@ public final class ElasticDateHistogramAggregation extends ElasticAggregations {
         return dateHistogram(field, null, unit.name());
     }
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record DateHistogramBody(
+    record DateHistogramBody(
             @JsonProperty("field")
             String field,
             @JsonProperty("calendar_interval")
@@ -0,0 +1,50 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.GapPolicy;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticDerivativeAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("derivative")
+    final DerivativeBody derivative;
+
+    ElasticDerivativeAggregation(DerivativeBody derivative) {
+        this.derivative = derivative;
+    }
+
+    public static ElasticDerivativeAggregation derivative(String bucketsPath) {
+        return new ElasticDerivativeAggregation(new DerivativeBody(bucketsPath, null, null, null));
+    }
+
+    public ElasticDerivativeAggregation withGapPolicy(GapPolicy gapPolicy) {
+        return new ElasticDerivativeAggregation(new DerivativeBody(derivative.bucketsPath, gapPolicy, derivative.format, derivative.unit));
+    }
+
+    public ElasticDerivativeAggregation withFormat(String format) {
+        return new ElasticDerivativeAggregation(new DerivativeBody(derivative.bucketsPath, derivative.gapPolicy, format, derivative.unit));
+    }
+
+    public ElasticDerivativeAggregation withUnit(String unit) {
+        return new ElasticDerivativeAggregation(new DerivativeBody(derivative.bucketsPath, derivative.gapPolicy, derivative.format, unit));
+    }
+
+    @Override
+    boolean isSibling() {
+        return false;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record DerivativeBody(
+        @JsonProperty("buckets_path")
+        String bucketsPath,
+        @JsonProperty("gap_policy")
+        GapPolicy gapPolicy,
+        @JsonProperty("format")
+        String format,
+        @JsonProperty("unit")
+        String unit
+    ) { }
+}
@@ -11,7 +11,7 @@ import java.util.function.Function;
 public final class ElasticExtendedStatsAggregation extends ElasticAggregations {
 
     @JsonProperty("extended_stats")
-    private final ExtendedStatsBody extendedStats;
+    final ExtendedStatsBody extendedStats;
 
     ElasticExtendedStatsAggregation(
         ExtendedStatsBody extendedStats
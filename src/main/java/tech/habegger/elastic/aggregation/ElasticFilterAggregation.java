@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import tech.habegger.elastic.search.ElasticSearchClause;
 
+import java.util.HashMap;
+
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 public final class ElasticFilterAggregation extends ElasticAggregations {
 
@@ -18,4 +20,14 @@ public final class ElasticFilterAggregation extends ElasticAggregations {
         return new ElasticFilterAggregation(filter);
     }
 
+    public ElasticSearchClause filter() {
+        return filter;
+    }
+
+    // Same sub-aggregations, filtering with the given clause instead
+    public ElasticFilterAggregation withFilter(ElasticSearchClause filter) {
+        var updated = new ElasticFilterAggregation(filter);
+        updated.aggregations = this.aggregations == null ? null : new HashMap<>(this.aggregations);
+        return updated;
+    }
 }
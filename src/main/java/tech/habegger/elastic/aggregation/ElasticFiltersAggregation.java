@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import tech.habegger.elastic.search.ElasticSearchClause;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -27,6 +28,22 @@ public final class ElasticFiltersAggregation extends ElasticAggregations {
         return new Builder();
     }
 
+    public Map<String, ElasticSearchClause> filters() {
+        return filters.filters();
+    }
+
+    // Same options and sub-aggregations, with the given filters instead
+    public ElasticFiltersAggregation withFilters(Map<String, ElasticSearchClause> filters) {
+        var updated = new ElasticFiltersAggregation(new FiltersBody(
+            new LinkedHashMap<>(filters),
+            this.filters.otherBucket(),
+            this.filters.otherBucketKey(),
+            this.filters.keyed()
+        ));
+        updated.aggregations = this.aggregations == null ? null : new HashMap<>(this.aggregations);
+        return updated;
+    }
+
     public static class Builder {
         private final Map<String, ElasticSearchClause> filters = new LinkedHashMap<>();
         private Boolean otherBucket;
@@ -13,7 +13,7 @@ import java.util.function.Function;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public final class ElasticHistogramAggregation extends ElasticAggregations {
     @JsonProperty("histogram")
-    private final HistogramBody histogram;
+    final HistogramBody histogram;
 
     ElasticHistogramAggregation(
         @JsonProperty("histogram")
@@ -136,7 +136,7 @@ public final class ElasticHistogramAggregation extends ElasticAggregations {
     }
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record HistogramBody(
+    record HistogramBody(
         @JsonProperty("field")
         String field,
         @JsonProperty("interval")
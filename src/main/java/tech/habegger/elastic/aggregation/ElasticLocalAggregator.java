@@ -0,0 +1,386 @@
+package tech.habegger.elastic.aggregation;
+
+import tech.habegger.elastic.response.ElasticMetricsAggregationResponse;
+import tech.habegger.elastic.shared.DocumentPath;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Computes the avg, sum, min, max, stats, extended_stats, value_count, cardinality and percentiles aggregations over
+// in-memory documents (maps as parsed from JSON, records or plain objects) into the same responses as the cluster.
+// Values are folded into primitive accumulators, cardinality is estimated with HyperLogLog++ and percentiles with a
+// t-digest. Large lists can be split over a fork/join pool, partial accumulators being merged back.
+public final class ElasticLocalAggregator {
+    private static final int SPLIT_THRESHOLD = 4096;
+    private static final List<Double> DEFAULT_PERCENTS = List.of(1.0, 5.0, 25.0, 50.0, 75.0, 95.0, 99.0);
+
+    private final List<Metric> metrics;
+
+    private ElasticLocalAggregator(List<Metric> metrics) {
+        this.metrics = metrics;
+    }
+
+    public static ElasticLocalAggregator compile(String name, ElasticAggregations aggregation) {
+        return compile(Map.of(name, aggregation));
+    }
+
+    public static ElasticLocalAggregator compile(Map<String, ElasticAggregations> aggregations) {
+        var metrics = new ArrayList<Metric>();
+        aggregations.forEach((name, aggregation) -> metrics.add(metric(name, aggregation)));
+        return new ElasticLocalAggregator(List.copyOf(metrics));
+    }
+
+    public Map<String, ElasticMetricsAggregationResponse> aggregate(List<?> documents) {
+        return results(accumulate(documents, 0, documents.size()));
+    }
+
+    public Map<String, ElasticMetricsAggregationResponse> aggregate(List<?> documents, ForkJoinPool pool) {
+        return results(pool.invoke(new AggregateTask(documents, 0, documents.size())));
+    }
+
+    private Accumulator[] accumulate(List<?> documents, int from, int to) {
+        var accumulators = new Accumulator[metrics.size()];
+        for(int i = 0; i < accumulators.length; i++) {
+            accumulators[i] = metrics.get(i).accumulator().get();
+        }
+        for(int d = from; d < to; d++) {
+            var document = documents.get(d);
+            for(int i = 0; i < accumulators.length; i++) {
+                var metric = metrics.get(i);
+                var accumulator = accumulators[i];
+                var visited = accumulator.visited;
+                metric.path().anyMatch(document, accumulator);
+                if(accumulator.visited == visited && metric.missing() != null) {
+                    accumulator.test(metric.missing());
+                }
+            }
+        }
+        return accumulators;
+    }
+
+    private Map<String, ElasticMetricsAggregationResponse> results(Accumulator[] accumulators) {
+        var results = new LinkedHashMap<String, ElasticMetricsAggregationResponse>();
+        for(int i = 0; i < accumulators.length; i++) {
+            results.put(metrics.get(i).name(), accumulators[i].result());
+        }
+        return results;
+    }
+
+    private final class AggregateTask extends RecursiveTask<Accumulator[]> {
+        private final List<?> documents;
+        private final int from;
+        private final int to;
+
+        AggregateTask(List<?> documents, int from, int to) {
+            this.documents = documents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator[] compute() {
+            if(to - from <= SPLIT_THRESHOLD) {
+                return accumulate(documents, from, to);
+            }
+            var middle = (from + to) >>> 1;
+            var left = new AggregateTask(documents, from, middle);
+            left.fork();
+            var accumulators = new AggregateTask(documents, middle, to).compute();
+            var other = left.join();
+            for(int i = 0; i < accumulators.length; i++) {
+                accumulators[i].merge(other[i]);
+            }
+            return accumulators;
+        }
+    }
+
+    private static Metric metric(String name, ElasticAggregations aggregation) {
+        if(aggregation.subAggregations() != null && !aggregation.subAggregations().isEmpty()) {
+            throw new IllegalArgumentException("Metrics aggregation %s cannot have sub-aggregations".formatted(name));
+        }
+        if(aggregation instanceof ElasticAvgAggregation avg) {
+            return stats(name, avg.avg, StatsKind.AVG);
+        } else if(aggregation instanceof ElasticSumAggregation sum) {
+            return stats(name, sum.sum, StatsKind.SUM);
+        } else if(aggregation instanceof ElasticMinAggregation min) {
+            return stats(name, min.min, StatsKind.MIN);
+        } else if(aggregation instanceof ElasticMaxAggregation max) {
+            return stats(name, max.max, StatsKind.MAX);
+        } else if(aggregation instanceof ElasticStatsAggregation stats) {
+            return stats(name, stats.stats, StatsKind.STATS);
+        } else if(aggregation instanceof ElasticExtendedStatsAggregation extendedStats) {
+            var body = extendedStats.extendedStats;
+            var sigma = body.sigma() == null ? 2.0 : body.sigma();
+            return new Metric(name, path(name, body.field()), body.missing(), () -> new StatsAccumulator(StatsKind.EXTENDED_STATS, sigma));
+        } else if(aggregation instanceof ElasticValueCountAggregation valueCount) {
+            var body = valueCount.valueCount;
+            return new Metric(name, path(name, body.field()), body.missing(), ValueCountAccumulator::new);
+        } else if(aggregation instanceof ElasticCardinalityAggregation cardinality) {
+            var body = cardinality.cardinality;
+            var threshold = body.precisionThreshold() == null ? HyperLogLogPlusPlus.DEFAULT_PRECISION_THRESHOLD : body.precisionThreshold();
+            return new Metric(name, path(name, body.field()), body.missing(), () -> new CardinalityAccumulator(threshold));
+        } else if(aggregation instanceof ElasticPercentilesAggregation percentiles) {
+            var body = percentiles.percentiles;
+            if(body.hdr() != null) {
+                throw new IllegalArgumentException("Percentiles %s: only t-digest is supported locally".formatted(name));
+            }
+            var compression = body.tdigest() == null || body.tdigest().compression() == null ? TDigest.DEFAULT_COMPRESSION : body.tdigest().compression();
+            var percents = body.percents() == null ? DEFAULT_PERCENTS : List.copyOf(body.percents());
+            var missing = body.missing() == null ? null : Double.valueOf(body.missing());
+            return new Metric(name, path(name, body.field()), missing, () -> new PercentilesAccumulator(compression, percents));
+        }
+        throw new IllegalArgumentException("Aggregation %s (%s) cannot be computed locally".formatted(name, aggregation.getClass().getSimpleName()));
+    }
+
+    private static Metric stats(String name, StatsBody body, StatsKind kind) {
+        return new Metric(name, path(name, body.field()), body.missing(), () -> new StatsAccumulator(kind, 0));
+    }
+
+    private static DocumentPath path(String name, String field) {
+        if(field == null) {
+            throw new IllegalArgumentException("Aggregation %s needs a field to be computed locally".formatted(name));
+        }
+        return DocumentPath.of(field);
+    }
+
+    private record Metric(String name, DocumentPath path, Object missing, Supplier<Accumulator> accumulator) {
+    }
+
+    // Receives the values of a document, always returning false so that all of them are visited
+    private abstract static class Accumulator implements Predicate<Object> {
+        long visited = 0;
+
+        @Override
+        public final boolean test(Object value) {
+            visited++;
+            add(value);
+            return false;
+        }
+
+        abstract void add(Object value);
+
+        abstract void merge(Accumulator other);
+
+        abstract ElasticMetricsAggregationResponse result();
+    }
+
+    private enum StatsKind {
+        AVG,
+        SUM,
+        MIN,
+        MAX,
+        STATS,
+        EXTENDED_STATS
+    }
+
+    private static final class StatsAccumulator extends Accumulator {
+        private final StatsKind kind;
+        private final double sigma;
+        private long count = 0;
+        // Kahan summations, as done by Elasticsearch
+        private double sum = 0;
+        private double sumCompensation = 0;
+        private double sumOfSquares = 0;
+        private double sumOfSquaresCompensation = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        StatsAccumulator(StatsKind kind, double sigma) {
+            this.kind = kind;
+            this.sigma = sigma;
+        }
+
+        @Override
+        void add(Object value) {
+            var number = toDouble(value);
+            if(Double.isNaN(number)) {
+                return;
+            }
+            count++;
+            addToSum(number, 0);
+            if(kind == StatsKind.EXTENDED_STATS) {
+                addToSumOfSquares(number * number, 0);
+            }
+            min = Math.min(min, number);
+            max = Math.max(max, number);
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            var stats = (StatsAccumulator) other;
+            count += stats.count;
+            addToSum(stats.sum, stats.sumCompensation);
+            addToSumOfSquares(stats.sumOfSquares, stats.sumOfSquaresCompensation);
+            min = Math.min(min, stats.min);
+            max = Math.max(max, stats.max);
+        }
+
+        private void addToSum(double value, double compensation) {
+            var corrected = value - (sumCompensation + compensation);
+            var total = sum + corrected;
+            sumCompensation = (total - sum) - corrected;
+            sum = total;
+        }
+
+        private void addToSumOfSquares(double value, double compensation) {
+            var corrected = value - (sumOfSquaresCompensation + compensation);
+            var total = sumOfSquares + corrected;
+            sumOfSquaresCompensation = (total - sumOfSquares) - corrected;
+            sumOfSquares = total;
+        }
+
+        @Override
+        ElasticMetricsAggregationResponse result() {
+            var empty = count == 0;
+            var avg = empty ? null : sum / count;
+            var minimum = empty ? null : min;
+            var maximum = empty ? null : max;
+            return switch(kind) {
+                case AVG -> value(avg);
+                case SUM -> value(sum);
+                case MIN -> value(minimum);
+                case MAX -> value(maximum);
+                case STATS -> new ElasticMetricsAggregationResponse(null, null, null, null, count, maximum, sum, avg, minimum);
+                case EXTENDED_STATS -> {
+                    Double variance = empty ? null : Math.max(0, sumOfSquares / count - avg * avg);
+                    Double deviation = empty ? null : Math.sqrt(variance);
+                    var bounds = new LinkedHashMap<String, Double>();
+                    bounds.put("upper", empty ? null : avg + sigma * deviation);
+                    bounds.put("lower", empty ? null : avg - sigma * deviation);
+                    yield new ElasticMetricsAggregationResponse(null, null, null, null, count, maximum, sum, avg, minimum,
+                        empty ? null : sumOfSquares, variance, deviation, bounds, null);
+                }
+            };
+        }
+    }
+
+    private static final class ValueCountAccumulator extends Accumulator {
+        @Override
+        void add(Object value) {
+            // Every value counts, the visit count is the result
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            visited += other.visited;
+        }
+
+        @Override
+        ElasticMetricsAggregationResponse result() {
+            return value(visited);
+        }
+    }
+
+    private static final class CardinalityAccumulator extends Accumulator {
+        private final HyperLogLogPlusPlus sketch;
+
+        CardinalityAccumulator(int precisionThreshold) {
+            this.sketch = new HyperLogLogPlusPlus(precisionThreshold);
+        }
+
+        @Override
+        void add(Object value) {
+            sketch.add(hash(value));
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            sketch.merge(((CardinalityAccumulator) other).sketch);
+        }
+
+        @Override
+        ElasticMetricsAggregationResponse result() {
+            return value(sketch.cardinality());
+        }
+
+        private static long hash(Object value) {
+            if(value instanceof CharSequence text) {
+                return HyperLogLogPlusPlus.hash(text);
+            } else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return HyperLogLogPlusPlus.hash(((Number) value).longValue());
+            } else if(value instanceof Number number) {
+                var doubleValue = number.doubleValue();
+                // 2 and 2.0 are the same value
+                return doubleValue == (long) doubleValue
+                    ? HyperLogLogPlusPlus.hash((long) doubleValue)
+                    : HyperLogLogPlusPlus.hash(Double.doubleToLongBits(doubleValue));
+            } else if(value instanceof Enum<?> constant) {
+                return HyperLogLogPlusPlus.hash(constant.name());
+            }
+            return HyperLogLogPlusPlus.hash(value.toString());
+        }
+    }
+
+    private static final class PercentilesAccumulator extends Accumulator {
+        private final TDigest digest;
+        private final List<Double> percents;
+
+        PercentilesAccumulator(double compression, List<Double> percents) {
+            this.digest = new TDigest(compression);
+            this.percents = percents;
+        }
+
+        @Override
+        void add(Object value) {
+            var number = toDouble(value);
+            if(!Double.isNaN(number)) {
+                digest.add(number);
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            digest.merge(((PercentilesAccumulator) other).digest);
+        }
+
+        @Override
+        ElasticMetricsAggregationResponse result() {
+            var values = new LinkedHashMap<String, Double>();
+            for(var percent : percents) {
+                var quantile = digest.quantile(percent / 100);
+                values.put(String.valueOf(percent), Double.isNaN(quantile) ? null : quantile);
+            }
+            return new ElasticMetricsAggregationResponse(null, null, null, null, null, null, null, null, null, null, null, null, null, values);
+        }
+    }
+
+    private static ElasticMetricsAggregationResponse value(Number value) {
+        return new ElasticMetricsAggregationResponse(value, null, null, null, null, null, null, null, null);
+    }
+
+    // Numeric view of a value: booleans count as 0 and 1 and dates as epoch milliseconds, NaN when not numeric
+    private static double toDouble(Object value) {
+        if(value instanceof Number number) {
+            return number.doubleValue();
+        } else if(value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        } else if(value instanceof Instant instant) {
+            return instant.toEpochMilli();
+        } else if(value instanceof LocalDate date) {
+            return date.toEpochDay() * 86_400_000.0;
+        } else if(value instanceof LocalDateTime dateTime) {
+            return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        } else if(value instanceof TemporalAccessor temporal && temporal.isSupported(ChronoField.INSTANT_SECONDS)) {
+            return Instant.from(temporal).toEpochMilli();
+        } else if(value instanceof String text) {
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,628 @@
+package tech.habegger.elastic.aggregation;
+
+import tech.habegger.elastic.response.ElasticAggregationResponse;
+import tech.habegger.elastic.response.ElasticBucketsAggregationResponse;
+import tech.habegger.elastic.response.ElasticCompositeAggregationResponse;
+import tech.habegger.elastic.response.ElasticDateHistogramBucketsResponse;
+import tech.habegger.elastic.response.ElasticFilterAggregationResponse;
+import tech.habegger.elastic.response.ElasticHistogramBucketsResponse;
+import tech.habegger.elastic.response.ElasticMetricsAggregationResponse;
+import tech.habegger.elastic.response.ElasticTermsBucketsResponse;
+import tech.habegger.elastic.response.ElasticTypedBucketsResponse;
+import tech.habegger.elastic.shared.GapPolicy;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Evaluates pipeline aggregations client side over already parsed responses, e.g. a derivative or moving function
+// over a cached date_histogram. The aggregation tree is the one which would be sent to the cluster: pipelines found
+// in it are computed over the matching responses, which are returned with the pipeline results added, as Elastic would.
+public final class ElasticLocalPipelines {
+    private final Level root;
+
+    private ElasticLocalPipelines(Level root) {
+        this.root = root;
+    }
+
+    // Fails with an IllegalArgumentException when a pipeline cannot be evaluated locally, so that it can be sent instead
+    public static ElasticLocalPipelines compile(Map<String, ElasticAggregations> aggregations) {
+        return new ElasticLocalPipelines(compileLevel(aggregations, false));
+    }
+
+    public static ElasticLocalPipelines compile(String name, ElasticAggregations aggregation) {
+        return compile(Map.of(name, aggregation));
+    }
+
+    public Map<String, ElasticAggregationResponse> evaluate(Map<String, ElasticAggregationResponse> responses) {
+        return root.evaluate(responses);
+    }
+
+    private static Level compileLevel(Map<String, ElasticAggregations> aggregations, boolean inBuckets) {
+        var children = new LinkedHashMap<String, Child>();
+        var siblings = new LinkedHashMap<String, Sibling>();
+        if(aggregations == null) {
+            return new Level(children, List.of());
+        }
+        for(var entry : aggregations.entrySet()) {
+            var name = entry.getKey();
+            var aggregation = entry.getValue();
+            if(aggregation instanceof AbstractElasticPipelineAggregation pipeline) {
+                if(!pipeline.isSibling()) {
+                    throw new IllegalArgumentException("Pipeline %s must be a sub-aggregation of a multi-bucket aggregation".formatted(name));
+                }
+                siblings.put(name, compileSibling(name, pipeline));
+            } else if(aggregation.subAggregations() != null) {
+                var parents = new LinkedHashMap<String, Parent>();
+                var others = new LinkedHashMap<String, ElasticAggregations>();
+                for(var sub : aggregation.subAggregations().entrySet()) {
+                    if(sub.getValue() instanceof AbstractElasticPipelineAggregation pipeline && !pipeline.isSibling()) {
+                        parents.put(sub.getKey(), compileParent(sub.getKey(), pipeline));
+                    } else {
+                        others.put(sub.getKey(), sub.getValue());
+                    }
+                }
+                var level = compileLevel(others, true);
+                if(!parents.isEmpty() || !level.isEmpty()) {
+                    children.put(name, new Child(order(parents), level));
+                }
+            }
+        }
+        return new Level(children, order(siblings));
+    }
+
+    // Pipelines reading the output of other pipelines of the same level are evaluated after them
+    private static <P extends Pipeline> List<P> order(Map<String, P> pipelines) {
+        var ordered = new ArrayList<P>();
+        var remaining = new LinkedHashMap<>(pipelines);
+        while(!remaining.isEmpty()) {
+            var progress = false;
+            for(var iterator = remaining.entrySet().iterator(); iterator.hasNext(); ) {
+                var pipeline = iterator.next().getValue();
+                if(pipeline.dependencies().stream().noneMatch(remaining::containsKey)) {
+                    ordered.add(pipeline);
+                    iterator.remove();
+                    progress = true;
+                }
+            }
+            if(!progress) {
+                throw new IllegalArgumentException("Pipelines %s depend on each other".formatted(remaining.keySet()));
+            }
+        }
+        return ordered;
+    }
+
+    private static Parent compileParent(String name, AbstractElasticPipelineAggregation pipeline) {
+        if(pipeline instanceof ElasticDerivativeAggregation derivative) {
+            var body = derivative.derivative;
+            if(body.unit() != null) {
+                throw new IllegalArgumentException("Derivative %s with a unit cannot be evaluated locally".formatted(name));
+            }
+            return new Derivative(name, body.bucketsPath(), gapPolicy(body.gapPolicy()));
+        } else if(pipeline instanceof ElasticCumulativeSumAggregation cumulativeSum) {
+            return new CumulativeSum(name, cumulativeSum.cumulativeSum.bucketsPath());
+        } else if(pipeline instanceof ElasticMovingFunctionAggregation movingFunction) {
+            var body = movingFunction.movingFunction;
+            return new MovingFunction(name, body.bucketsPath(), body.window(), body.shift() == null ? 0 : body.shift(),
+                PipelineScript.compileWindowFunction(body.script()), gapPolicy(body.gapPolicy()));
+        } else if(pipeline instanceof ElasticBucketScriptAggregation bucketScript) {
+            var body = bucketScript.bucketScript;
+            return new BucketScript(name, body.bucketsPath(), PipelineScript.compile(body.script()), gapPolicy(body.gapPolicy()));
+        } else if(pipeline instanceof ElasticBucketSelectorAggregation bucketSelector) {
+            var body = bucketSelector.bucketSelector;
+            return new BucketSelector(name, body.bucketsPath(), PipelineScript.compile(body.script()), gapPolicy(body.gapPolicy()));
+        } else if(pipeline instanceof ElasticBucketSortAggregation bucketSort) {
+            var body = bucketSort.bucketSort;
+            var sort = new ArrayList<Map.Entry<String, OrderDirection>>();
+            if(body.sort() != null) {
+                for(var spec : body.sort()) {
+                    var entry = spec.entrySet().iterator().next();
+                    var direction = entry.getValue() == null || entry.getValue().order() == null ? OrderDirection.asc : entry.getValue().order();
+                    sort.add(Map.entry(entry.getKey(), direction));
+                }
+            }
+            return new BucketSort(name, sort, body.from() == null ? 0 : body.from(), body.size(), gapPolicy(body.gapPolicy()));
+        }
+        throw new IllegalArgumentException("Pipeline %s of type %s cannot be evaluated locally".formatted(name, pipeline.getClass().getSimpleName()));
+    }
+
+    private static Sibling compileSibling(String name, AbstractElasticPipelineAggregation pipeline) {
+        if(pipeline instanceof ElasticAvgBucketAggregation avgBucket) {
+            var body = avgBucket.avgBucket;
+            return new AvgBucket(name, body.bucketsPath(), gapPolicy(body.gapPolicy()));
+        }
+        throw new IllegalArgumentException("Pipeline %s of type %s cannot be evaluated locally".formatted(name, pipeline.getClass().getSimpleName()));
+    }
+
+    private static GapPolicy gapPolicy(GapPolicy policy) {
+        return policy == null ? GapPolicy.skip : policy;
+    }
+
+    private record Level(Map<String, Child> children, List<Sibling> siblings) {
+        boolean isEmpty() {
+            return children.isEmpty() && siblings.isEmpty();
+        }
+
+        Map<String, ElasticAggregationResponse> evaluate(Map<String, ElasticAggregationResponse> responses) {
+            if(responses == null) {
+                return null;
+            }
+            Map<String, ElasticAggregationResponse> evaluated = new LinkedHashMap<>(responses);
+            for(var child : children.entrySet()) {
+                var response = responses.get(child.getKey());
+                if(response != null) {
+                    evaluated.put(child.getKey(), child.getValue().evaluate(response));
+                }
+            }
+            for(var sibling : siblings) {
+                evaluated.put(sibling.name(), sibling.compute(evaluated));
+            }
+            return evaluated;
+        }
+    }
+
+    private record Child(List<Parent> pipelines, Level level) {
+        ElasticAggregationResponse evaluate(ElasticAggregationResponse response) {
+            if(response instanceof ElasticFilterAggregationResponse filter) {
+                if(!pipelines.isEmpty()) {
+                    throw new IllegalArgumentException("Pipeline %s must be a sub-aggregation of a multi-bucket aggregation".formatted(pipelines.get(0).name()));
+                }
+                return new ElasticFilterAggregationResponse(filter.docCount(), level.evaluate(filter.aggregations()));
+            }
+            var table = Table.of(response);
+            if(table == null) {
+                return response;
+            }
+            if(!level.isEmpty()) {
+                table.evaluateNested(level);
+            }
+            for(var pipeline : pipelines) {
+                pipeline.apply(table);
+            }
+            return table.toResponse();
+        }
+    }
+
+    private interface Pipeline {
+        String name();
+
+        List<String> paths();
+
+        default List<String> dependencies() {
+            return paths().stream().map(path -> Path.split(Path.normalize(path))[0]).toList();
+        }
+    }
+
+    private interface Parent extends Pipeline {
+        void apply(Table table);
+    }
+
+    private interface Sibling extends Pipeline {
+        ElasticAggregationResponse compute(Map<String, ElasticAggregationResponse> level);
+    }
+
+    // Resolves a bucket value following the gap policy, NaN standing for a bucket to skip. As for Elasticsearch, empty
+    // buckets are gaps for every value but their document count.
+    private static double resolve(double value, long docCount, String path, GapPolicy policy) {
+        var gap = Double.isNaN(value) || docCount == 0 && !Path.normalize(path).equals("_count");
+        if(!gap) {
+            return value;
+        }
+        return switch(policy) {
+            case insert_zeros -> 0;
+            case keep_values -> value;
+            case skip -> Double.NaN;
+        };
+    }
+
+    private record Derivative(String name, String path, GapPolicy policy) implements Parent {
+        public List<String> paths() {
+            return List.of(path);
+        }
+
+        public void apply(Table table) {
+            var values = table.column(path);
+            var output = table.newColumn();
+            var last = Double.NaN;
+            var first = true;
+            for(var row : table.rows) {
+                var value = resolve(values[row], table.docCount(row), path, policy);
+                if(!first) {
+                    output[row] = value - last;
+                }
+                first = false;
+                last = value;
+            }
+            table.put(name, output);
+        }
+    }
+
+    private record CumulativeSum(String name, String path) implements Parent {
+        public List<String> paths() {
+            return List.of(path);
+        }
+
+        public void apply(Table table) {
+            var values = table.column(path);
+            var output = table.newColumn();
+            var sum = 0.0;
+            for(var row : table.rows) {
+                sum += resolve(values[row], table.docCount(row), path, GapPolicy.insert_zeros);
+                output[row] = sum;
+            }
+            table.put(name, output);
+        }
+    }
+
+    private record MovingFunction(String name, String path, int window, int shift, PipelineScript.WindowFunction function, GapPolicy policy) implements Parent {
+        public List<String> paths() {
+            return List.of(path);
+        }
+
+        // Gaps get no value and are left out of the windows of the other buckets
+        public void apply(Table table) {
+            var values = table.column(path);
+            var output = table.newColumn();
+            var present = new double[table.rows.length];
+            var positions = new int[table.rows.length];
+            var count = 0;
+            for(var row : table.rows) {
+                var value = resolve(values[row], table.docCount(row), path, policy);
+                if(!Double.isNaN(value)) {
+                    present[count] = value;
+                    positions[count++] = row;
+                }
+            }
+            for(int i = 0; i < count; i++) {
+                var from = Math.max(0, Math.min(count, i - window + shift));
+                var to = Math.max(0, Math.min(count, i + shift));
+                output[positions[i]] = function.apply(Arrays.copyOfRange(present, from, to));
+            }
+            table.put(name, output);
+        }
+    }
+
+    private record BucketScript(String name, Map<String, String> variables, PipelineScript.Expression script, GapPolicy policy) implements Parent {
+        public List<String> paths() {
+            return List.copyOf(variables.values());
+        }
+
+        public void apply(Table table) {
+            var output = table.newColumn();
+            for(var row : table.rows) {
+                var params = table.params(variables, row, policy);
+                if(params != null) {
+                    output[row] = script.evaluate(params);
+                }
+            }
+            table.put(name, output);
+        }
+    }
+
+    private record BucketSelector(String name, Map<String, String> variables, PipelineScript.Expression script, GapPolicy policy) implements Parent {
+        public List<String> paths() {
+            return List.copyOf(variables.values());
+        }
+
+        // Buckets with gaps are kept as there is nothing to select them on
+        public void apply(Table table) {
+            table.rows = Arrays.stream(table.rows)
+                .filter(row -> {
+                    var params = table.params(variables, row, policy);
+                    if(params == null) {
+                        return true;
+                    }
+                    var selected = script.evaluate(params);
+                    return selected != 0 && !Double.isNaN(selected);
+                })
+                .toArray();
+        }
+    }
+
+    private record BucketSort(String name, List<Map.Entry<String, OrderDirection>> sort, int from, Integer size, GapPolicy policy) implements Parent {
+        public List<String> paths() {
+            return sort.stream().map(Map.Entry::getKey).toList();
+        }
+
+        // Buckets with a gap in a sort value are dropped when skipping gaps
+        public void apply(Table table) {
+            var rows = table.rows;
+            if(!sort.isEmpty()) {
+                var columns = new ArrayList<double[]>();
+                Comparator<Integer> comparator = null;
+                for(var entry : sort) {
+                    var values = table.column(entry.getKey());
+                    columns.add(values);
+                    Comparator<Integer> byValue = Comparator.comparingDouble(row -> resolve(values[row], table.docCount(row), entry.getKey(), policy));
+                    if(entry.getValue() == OrderDirection.desc) {
+                        byValue = byValue.reversed();
+                    }
+                    comparator = comparator == null ? byValue : comparator.thenComparing(byValue);
+                }
+                var sortComparator = comparator;
+                rows = Arrays.stream(rows)
+                    .filter(row -> IntStream.range(0, sort.size())
+                        .noneMatch(i -> Double.isNaN(resolve(columns.get(i)[row], table.docCount(row), sort.get(i).getKey(), policy))))
+                    .boxed()
+                    .sorted(sortComparator)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            }
+            var start = Math.min(from, rows.length);
+            var end = size == null ? rows.length : Math.min(rows.length, start + size);
+            table.rows = Arrays.copyOfRange(rows, start, end);
+        }
+    }
+
+    private record AvgBucket(String name, String path, GapPolicy policy) implements Sibling {
+        public List<String> paths() {
+            return List.of(path);
+        }
+
+        public ElasticAggregationResponse compute(Map<String, ElasticAggregationResponse> level) {
+            var split = Path.split(Path.normalize(path));
+            var table = Table.of(level.get(split[0]));
+            if(table == null) {
+                throw new IllegalArgumentException("Buckets path %s of %s does not point to a multi-bucket aggregation".formatted(path, name));
+            }
+            var metric = split[1].isEmpty() ? "_count" : split[1];
+            var values = table.column(metric);
+            var sum = 0.0;
+            var count = 0;
+            for(var row : table.rows) {
+                var value = resolve(values[row], table.docCount(row), metric, policy);
+                if(!Double.isNaN(value)) {
+                    sum += value;
+                    count++;
+                }
+            }
+            return new ElasticMetricsAggregationResponse(count == 0 ? null : sum / count, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    private static final class Path {
+        // Multi-value metrics can be addressed as name.stat or name[stat]
+        static String normalize(String path) {
+            if(path.endsWith("]") && path.indexOf('[') > 0) {
+                var open = path.lastIndexOf('[');
+                return path.substring(0, open) + "." + path.substring(open + 1, path.length() - 1);
+            }
+            return path;
+        }
+
+        // Splits off the first aggregation name, the remainder being a path within it
+        static String[] split(String path) {
+            var separator = path.indexOf('>');
+            if(separator < 0) {
+                separator = path.indexOf('.');
+            }
+            return separator < 0 ? new String[] { path, "" } : new String[] { path.substring(0, separator), path.substring(separator + 1) };
+        }
+
+        static double resolve(ElasticAggregationResponse response, String path) {
+            if(response instanceof ElasticFilterAggregationResponse filter) {
+                if(path.isEmpty() || path.equals("_count")) {
+                    return filter.docCount() == null ? Double.NaN : filter.docCount();
+                }
+                var split = split(path);
+                return filter.aggregations() == null ? Double.NaN : resolve(filter.aggregations().get(split[0]), split[1]);
+            } else if(response instanceof ElasticMetricsAggregationResponse metrics) {
+                Number value = switch(path) {
+                    case "", "value" -> metrics.value();
+                    case "count" -> metrics.count();
+                    case "min" -> metrics.min();
+                    case "max" -> metrics.max();
+                    case "avg" -> metrics.avg();
+                    case "sum" -> metrics.sum();
+                    case "sum_of_squares" -> metrics.sum_of_squares();
+                    case "variance" -> metrics.variance();
+                    case "std_deviation" -> metrics.std_deviation();
+                    default -> metrics.values() == null ? null : metrics.values().get(path);
+                };
+                return value == null ? Double.NaN : value.doubleValue();
+            }
+            return Double.NaN;
+        }
+
+        static double resolve(Object node, String path) {
+            if(!(node instanceof Map<?, ?> map)) {
+                return node instanceof Number number && path.isEmpty() ? number.doubleValue() : Double.NaN;
+            }
+            if(path.isEmpty()) {
+                var value = map.containsKey("value") ? map.get("value") : map.get("doc_count");
+                return value instanceof Number number ? number.doubleValue() : Double.NaN;
+            }
+            if(path.equals("_count")) {
+                return map.get("doc_count") instanceof Number number ? number.doubleValue() : Double.NaN;
+            }
+            if(map.get(path) instanceof Number number) {
+                return number.doubleValue();
+            }
+            if(map.get("values") instanceof Map<?, ?> values && values.containsKey(path)) {
+                return resolve(values.get(path), "");
+            }
+            var split = split(path);
+            return resolve(map.get(split[0]), split[1]);
+        }
+    }
+
+    // Bucket columns indexed by source bucket, and the current selection and order of the buckets
+    private static final class Table {
+        private final ElasticAggregationResponse source;
+        private final ElasticTypedBucketsResponse typed;
+        private final List<Map<String, ?>> buckets;
+        private final int size;
+        private final Map<String, double[]> resolved = new HashMap<>();
+        private final Map<String, double[]> outputs = new LinkedHashMap<>();
+        private final Map<String, ElasticAggregationResponse[]> subAggregations = new LinkedHashMap<>();
+        private int[] rows;
+
+        private Table(ElasticAggregationResponse source, ElasticTypedBucketsResponse typed, List<Map<String, ?>> buckets) {
+            this.source = source;
+            this.typed = typed;
+            this.buckets = buckets;
+            this.size = typed != null ? typed.size() : buckets.size();
+            this.rows = IntStream.range(0, size).toArray();
+            if(typed != null) {
+                subAggregations.putAll(typed.subAggregations());
+            }
+        }
+
+        static Table of(ElasticAggregationResponse response) {
+            if(response instanceof ElasticTypedBucketsResponse typed) {
+                return new Table(response, typed, null);
+            } else if(response instanceof ElasticBucketsAggregationResponse raw) {
+                return new Table(response, null, raw.buckets());
+            } else if(response instanceof ElasticCompositeAggregationResponse composite) {
+                return new Table(response, null, composite.buckets());
+            }
+            return null;
+        }
+
+        long docCount(int row) {
+            if(typed != null) {
+                return typed.docCount(row);
+            }
+            return buckets.get(row).get("doc_count") instanceof Number number ? number.longValue() : 0;
+        }
+
+        double[] newColumn() {
+            var column = new double[size];
+            Arrays.fill(column, Double.NaN);
+            return column;
+        }
+
+        void put(String name, double[] column) {
+            outputs.put(name, column);
+        }
+
+        double[] column(String path) {
+            var normalized = Path.normalize(path);
+            var column = outputs.containsKey(normalized) ? outputs.get(normalized) : resolved.get(normalized);
+            if(column != null) {
+                return column;
+            }
+            column = newColumn();
+            if(normalized.equals("_count")) {
+                for(int i = 0; i < size; i++) {
+                    column[i] = docCount(i);
+                }
+            } else if(normalized.equals("_key")) {
+                for(int i = 0; i < size; i++) {
+                    var key = typed != null ? typed.key(i) : buckets.get(i).get("key");
+                    column[i] = key instanceof Number number ? number.doubleValue() : Double.NaN;
+                }
+            } else if(typed != null && typed.metrics().containsKey(normalized)) {
+                return typed.metric(normalized);
+            } else if(typed != null) {
+                var split = Path.split(normalized);
+                var responses = subAggregations.get(split[0]);
+                if(responses != null) {
+                    for(int i = 0; i < size; i++) {
+                        column[i] = Path.resolve(responses[i], split[1]);
+                    }
+                }
+            } else {
+                for(int i = 0; i < size; i++) {
+                    column[i] = Path.resolve(buckets.get(i), normalized);
+                }
+            }
+            resolved.put(normalized, column);
+            return column;
+        }
+
+        // Script parameters of a bucket, or null when one of them is a gap to skip
+        Map<String, Double> params(Map<String, String> variables, int row, GapPolicy policy) {
+            var params = new HashMap<String, Double>();
+            for(var variable : variables.entrySet()) {
+                var value = resolve(column(variable.getValue())[row], docCount(row), variable.getValue(), policy);
+                if(Double.isNaN(value)) {
+                    return null;
+                }
+                params.put(variable.getKey(), value);
+            }
+            return params;
+        }
+
+        // Evaluates the pipelines nested in the sub-aggregations of every bucket, sibling ones giving a column each
+        void evaluateNested(Level level) {
+            if(typed == null) {
+                throw new IllegalArgumentException("Pipelines nested in untyped buckets cannot be evaluated locally, provide the request when parsing the response");
+            }
+            for(int i = 0; i < size; i++) {
+                Map<String, ElasticAggregationResponse> scope = new LinkedHashMap<>();
+                for(var entry : subAggregations.entrySet()) {
+                    scope.put(entry.getKey(), entry.getValue()[i]);
+                }
+                var evaluated = level.evaluate(scope);
+                for(var entry : evaluated.entrySet()) {
+                    if(subAggregations.containsKey(entry.getKey())) {
+                        var column = subAggregations.get(entry.getKey());
+                        if(column == typed.subAggregations().get(entry.getKey())) {
+                            column = column.clone();
+                            subAggregations.put(entry.getKey(), column);
+                        }
+                        column[i] = entry.getValue();
+                    } else if(entry.getValue() instanceof ElasticMetricsAggregationResponse metric) {
+                        outputs.computeIfAbsent(entry.getKey(), name -> newColumn())[i] = metric.value() == null ? Double.NaN : metric.value().doubleValue();
+                    }
+                }
+            }
+        }
+
+        ElasticAggregationResponse toResponse() {
+            if(typed == null) {
+                List<Map<String, ?>> output = new ArrayList<>(rows.length);
+                for(var row : rows) {
+                    Map<String, Object> bucket = new LinkedHashMap<>(buckets.get(row));
+                    for(var column : outputs.entrySet()) {
+                        var value = column.getValue()[row];
+                        if(!Double.isNaN(value)) {
+                            bucket.put(column.getKey(), Map.of("value", value));
+                        }
+                    }
+                    output.add(bucket);
+                }
+                if(source instanceof ElasticCompositeAggregationResponse composite) {
+                    return new ElasticCompositeAggregationResponse(composite.afterKey(), output);
+                }
+                return new ElasticBucketsAggregationResponse(output);
+            }
+            var docCounts = new long[rows.length];
+            Map<String, double[]> metrics = new LinkedHashMap<>();
+            typed.metrics().keySet().forEach(name -> metrics.put(name, new double[rows.length]));
+            outputs.keySet().forEach(name -> metrics.put(name, new double[rows.length]));
+            Map<String, ElasticAggregationResponse[]> subs = new LinkedHashMap<>();
+            subAggregations.keySet().forEach(name -> subs.put(name, new ElasticAggregationResponse[rows.length]));
+            for(int i = 0; i < rows.length; i++) {
+                var row = rows[i];
+                docCounts[i] = typed.docCount(row);
+                for(var metric : metrics.entrySet()) {
+                    var column = outputs.containsKey(metric.getKey()) ? outputs.get(metric.getKey()) : typed.metric(metric.getKey());
+                    metric.getValue()[i] = column[row];
+                }
+                for(var sub : subs.entrySet()) {
+                    sub.getValue()[i] = subAggregations.get(sub.getKey())[row];
+                }
+            }
+            if(typed instanceof ElasticTermsBucketsResponse terms) {
+                var keys = Arrays.stream(rows).mapToObj(row -> terms.keys()[row]).toArray(String[]::new);
+                return new ElasticTermsBucketsResponse(keys, docCounts, metrics, subs, terms.docCountErrorUpperBound(), terms.sumOtherDocCount());
+            }
+            var keysAsString = Arrays.stream(rows).mapToObj(typed::keyAsString).toArray(String[]::new);
+            if(typed instanceof ElasticDateHistogramBucketsResponse dates) {
+                var keys = Arrays.stream(rows).mapToLong(row -> dates.keys()[row]).toArray();
+                return new ElasticDateHistogramBucketsResponse(keys, keysAsString, docCounts, metrics, subs);
+            }
+            var histogram = (ElasticHistogramBucketsResponse) typed;
+            var keys = Arrays.stream(rows).mapToDouble(row -> histogram.keys()[row]).toArray();
+            return new ElasticHistogramBucketsResponse(keys, keysAsString, docCounts, metrics, subs);
+        }
+    }
+}
@@ -9,7 +9,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class ElasticMaxAggregation extends ElasticAggregations {
 
     @JsonProperty("max")
-    private final StatsBody max;
+    final StatsBody max;
 
     ElasticMaxAggregation(
         StatsBody max
@@ -9,7 +9,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class ElasticMinAggregation extends ElasticAggregations {
 
     @JsonProperty("min")
-    private final StatsBody min;
+    final StatsBody min;
 
     ElasticMinAggregation(
         StatsBody min
@@ -0,0 +1,55 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.GapPolicy;
+import tech.habegger.elastic.shared.ScriptExpression;
+
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ElasticMovingFunctionAggregation extends AbstractElasticPipelineAggregation {
+    @JsonProperty("moving_fn")
+    final MovingFunctionBody movingFunction;
+
+    ElasticMovingFunctionAggregation(MovingFunctionBody movingFunction) {
+        this.movingFunction = movingFunction;
+    }
+
+    public static ElasticMovingFunctionAggregation movingFunction(String bucketsPath, int window, String script) {
+        return movingFunction(bucketsPath, window, ScriptExpression.scriptInline(script));
+    }
+
+    public static ElasticMovingFunctionAggregation movingFunction(String bucketsPath, int window, ScriptExpression script) {
+        return new ElasticMovingFunctionAggregation(new MovingFunctionBody(bucketsPath, window, script, null, null));
+    }
+
+    public ElasticMovingFunctionAggregation withShift(Integer shift) {
+        return new ElasticMovingFunctionAggregation(new MovingFunctionBody(
+            movingFunction.bucketsPath, movingFunction.window, movingFunction.script, shift, movingFunction.gapPolicy));
+    }
+
+    public ElasticMovingFunctionAggregation withGapPolicy(GapPolicy gapPolicy) {
+        return new ElasticMovingFunctionAggregation(new MovingFunctionBody(
+            movingFunction.bucketsPath, movingFunction.window, movingFunction.script, movingFunction.shift, gapPolicy));
+    }
+
+    @Override
+    boolean isSibling() {
+        return false;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record MovingFunctionBody(
+        @JsonProperty("buckets_path")
+        String bucketsPath,
+        @JsonProperty("window")
+        int window,
+        @JsonProperty("script")
+        ScriptExpression script,
+        @JsonProperty("shift")
+        Integer shift,
+        @JsonProperty("gap_policy")
+        GapPolicy gapPolicy
+    ) { }
+}
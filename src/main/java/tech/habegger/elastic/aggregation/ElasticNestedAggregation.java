@@ -17,6 +17,10 @@ public final class ElasticNestedAggregation extends ElasticAggregations {
         return new ElasticNestedAggregation( new NestedBody(path));
     }
 
+    public String path() {
+        return nested.path();
+    }
+
     record NestedBody(String path) {
     }
 }
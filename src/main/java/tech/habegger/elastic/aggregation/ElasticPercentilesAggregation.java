@@ -15,7 +15,7 @@ import java.util.function.Function;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public final class ElasticPercentilesAggregation extends ElasticAggregations {
     @JsonProperty("percentiles")
-    private final PercentilesBody percentiles;
+    final PercentilesBody percentiles;
 
     ElasticPercentilesAggregation(
         @JsonProperty("percentile_ranks")
@@ -107,7 +107,7 @@ public final class ElasticPercentilesAggregation extends ElasticAggregations {
         );
     }
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record PercentilesBody(
+    record PercentilesBody(
             @JsonProperty("field")
             String field,
             @JsonProperty("percents")
@@ -9,7 +9,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class ElasticStatsAggregation extends ElasticAggregations {
 
     @JsonProperty("stats")
-    private final StatsBody stats;
+    final StatsBody stats;
 
     ElasticStatsAggregation(
             StatsBody stats
@@ -9,7 +9,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class ElasticSumAggregation extends ElasticAggregations {
 
     @JsonProperty("sum")
-    private final StatsBody sum;
+    final StatsBody sum;
 
     ElasticSumAggregation(
             StatsBody sum
@@ -3,12 +3,17 @@ package tech.habegger.elastic.aggregation;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
 
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public final class ElasticTermsAggregation extends ElasticAggregations {
     @JsonProperty("terms")
-    private final TermsBody terms;
+    final TermsBody terms;
 
     ElasticTermsAggregation(
             TermsBody terms
@@ -16,13 +21,128 @@ public final class ElasticTermsAggregation extends ElasticAggregations {
         this.terms = terms;
     }
     public static ElasticTermsAggregation termsAgg(String field, int size) {
-        return new ElasticTermsAggregation(new TermsBody(field, size));
+        return new ElasticTermsAggregation(new TermsBody(field, size, null, null, null, null));
     }
     public static ElasticTermsAggregation termsAgg(String field) {
-        return new ElasticTermsAggregation(new TermsBody(field, null));
+        return new ElasticTermsAggregation(new TermsBody(field, null, null, null, null, null));
+    }
+
+    public String field() {
+        return terms.field();
+    }
+
+    public Integer size() {
+        return terms.size();
+    }
+
+    public Map<String, OrderDirection> order() {
+        return terms.order();
+    }
+
+    // Sub-aggregations are copied so that variants of a configured aggregation can be derived, and extended, on their own
+    private ElasticTermsAggregation withBody(Function<TermsBody, TermsBody> update) {
+        var updated = new ElasticTermsAggregation(update.apply(this.terms));
+        updated.aggregations = this.aggregations == null ? null : new HashMap<>(this.aggregations);
+        return updated;
+    }
+
+    public ElasticTermsAggregation withField(String field) {
+        return withBody(original -> new TermsBody(
+            field,
+            original.size,
+            original.shardSize,
+            original.order,
+            original.include,
+            original.executionHint
+        ));
+    }
+
+    public ElasticTermsAggregation withSize(Integer size) {
+        return withBody(original -> new TermsBody(
+            original.field,
+            size,
+            original.shardSize,
+            original.order,
+            original.include,
+            original.executionHint
+        ));
+    }
+
+    public ElasticTermsAggregation withShardSize(Integer shardSize) {
+        return withBody(original -> new TermsBody(
+            original.field,
+            original.size,
+            shardSize,
+            original.order,
+            original.include,
+            original.executionHint
+        ));
+    }
+
+    public ElasticTermsAggregation withOrder(String field, OrderDirection direction) {
+        return withBody(original -> new TermsBody(
+            original.field,
+            original.size,
+            original.shardSize,
+            Map.of(field, direction),
+            original.include,
+            original.executionHint
+        ));
+    }
+
+    public ElasticTermsAggregation withPartition(int partition, int numPartitions) {
+        if(partition < 0 || partition >= numPartitions) {
+            throw new IllegalArgumentException("Partition %d is not within the %d partitions".formatted(partition, numPartitions));
+        }
+        return withBody(original -> new TermsBody(
+            original.field,
+            original.size,
+            original.shardSize,
+            original.order,
+            new PartitionSpec(partition, numPartitions),
+            original.executionHint
+        ));
+    }
+
+    public ElasticTermsAggregation withExecutionHint(TermsExecutionHint executionHint) {
+        return withBody(original -> new TermsBody(
+            original.field,
+            original.size,
+            original.shardSize,
+            original.order,
+            original.include,
+            executionHint
+        ));
     }
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record TermsBody(String field, Integer size) {
+    record TermsBody(
+        @JsonProperty("field")
+        String field,
+        @JsonProperty("size")
+        Integer size,
+        @JsonProperty("shard_size")
+        Integer shardSize,
+        @JsonProperty("order")
+        Map<String, OrderDirection> order,
+        @JsonProperty("include")
+        PartitionSpec include,
+        @JsonProperty("execution_hint")
+        TermsExecutionHint executionHint
+    ) {
+    }
+
+    record PartitionSpec(
+        @JsonProperty("partition")
+        int partition,
+        @JsonProperty("num_partitions")
+        int numPartitions
+    ) {
+    }
+
+    @SuppressWarnings("unused")
+    public enum TermsExecutionHint {
+        map,
+        global_ordinals
     }
 }
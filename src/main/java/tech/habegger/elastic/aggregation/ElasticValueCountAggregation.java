@@ -9,7 +9,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public final class ElasticValueCountAggregation extends ElasticAggregations {
 
     @JsonProperty("value_count")
-    private final StatsBody valueCount;
+    final StatsBody valueCount;
 
     ElasticValueCountAggregation(
         StatsBody valueCount
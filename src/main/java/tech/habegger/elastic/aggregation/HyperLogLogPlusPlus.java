@@ -0,0 +1,183 @@
+package tech.habegger.elastic.aggregation;
+
+// Cardinality sketch following HyperLogLog++: hashes are counted exactly up to the precision threshold, then folded
+// into 2^p one byte registers. Instead of the empirical bias correction tables of HLL++, the dense estimate uses the
+// table free estimator of Ertl ("New cardinality estimation algorithms for HyperLogLog sketches", 2017).
+final class HyperLogLogPlusPlus {
+    static final int DEFAULT_PRECISION_THRESHOLD = 3000;
+    private static final int MAX_PRECISION_THRESHOLD = 40000;
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+    private static final double ALPHA_INFINITY = 0.5 / Math.log(2);
+
+    private final int precision;
+    private final int threshold;
+    // Exact phase, an open addressing set of non-zero hashes
+    private long[] hashes = new long[16];
+    private int size = 0;
+    // Dense phase
+    private byte[] registers;
+
+    HyperLogLogPlusPlus(int precisionThreshold) {
+        this.threshold = Math.max(0, Math.min(precisionThreshold, MAX_PRECISION_THRESHOLD));
+        this.precision = precisionFromThreshold(threshold);
+    }
+
+    // Same sizing as Elasticsearch: registers use about as much memory as the exact phase at its threshold
+    static int precisionFromThreshold(int threshold) {
+        var entries = (long) Math.ceil(threshold / 0.75);
+        var precision = 64 - Long.numberOfLeadingZeros(Math.max(1, entries * 4 - 1));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    void add(long hash) {
+        if(registers != null) {
+            addToRegisters(hash);
+            return;
+        }
+        if(hash == 0) {
+            hash = 1;
+        }
+        if(insert(hash) && size > threshold) {
+            toRegisters();
+        }
+    }
+
+    void merge(HyperLogLogPlusPlus other) {
+        if(other.registers == null) {
+            for(var hash : other.hashes) {
+                if(hash != 0) {
+                    add(hash);
+                }
+            }
+            return;
+        }
+        if(registers == null) {
+            toRegisters();
+        }
+        for(int i = 0; i < registers.length; i++) {
+            if(other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    long cardinality() {
+        if(registers == null) {
+            return size;
+        }
+        var m = (double) registers.length;
+        var q = 64 - precision;
+        var histogram = new int[q + 2];
+        for(var register : registers) {
+            histogram[register]++;
+        }
+        var z = m * tau((m - histogram[q + 1]) / m);
+        for(int k = q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma(histogram[0] / m);
+        return Math.round(ALPHA_INFINITY * m * m / z);
+    }
+
+    private boolean insert(long hash) {
+        var mask = hashes.length - 1;
+        var slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while(hashes[slot] != 0) {
+            if(hashes[slot] == hash) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        size++;
+        if(size * 4 > hashes.length * 3) {
+            rehash();
+        }
+        return true;
+    }
+
+    private void rehash() {
+        var previous = hashes;
+        hashes = new long[previous.length * 2];
+        size = 0;
+        for(var hash : previous) {
+            if(hash != 0) {
+                insert(hash);
+            }
+        }
+    }
+
+    private void toRegisters() {
+        registers = new byte[1 << precision];
+        if(hashes != null) {
+            for(var hash : hashes) {
+                if(hash != 0) {
+                    addToRegisters(hash);
+                }
+            }
+        }
+        hashes = null;
+    }
+
+    private void addToRegisters(long hash) {
+        var index = (int) (hash >>> (64 - precision));
+        // The guard bit bounds the rank to 64 - p + 1
+        var rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if(rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    private static double sigma(double x) {
+        if(x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        var y = 1.0;
+        var z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while(z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if(x == 0 || x == 1) {
+            return 0;
+        }
+        var y = 1.0;
+        var z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while(z != previous);
+        return z / 3;
+    }
+
+    static long hash(long value) {
+        // MurmurHash3 fmix64
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    static long hash(CharSequence value) {
+        // FNV-1a over the chars, finalized for a better spread of the high bits used as register index
+        var hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash(hash);
+    }
+}
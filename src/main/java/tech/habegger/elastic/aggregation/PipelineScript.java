@@ -0,0 +1,416 @@
+package tech.habegger.elastic.aggregation;
+
+import tech.habegger.elastic.shared.ScriptExpression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The subset of Painless used by bucket_script, bucket_selector and moving_fn which can be evaluated locally:
+// arithmetic, comparisons and boolean operators over params, a few Math functions and the MovingFunctions helpers.
+// Booleans are represented as 1 and 0.
+final class PipelineScript {
+    private static final Pattern MOVING_FUNCTION = Pattern.compile("MovingFunctions\\.(\\w+)\\(\\s*values\\s*(?:,(.*))?\\)");
+    private static final Pattern UNWEIGHTED_AVG = Pattern.compile("MovingFunctions\\.unweightedAvg\\(\\s*values\\s*\\)");
+
+    interface Expression {
+        double evaluate(Map<String, Double> params);
+    }
+
+    interface WindowFunction {
+        double apply(double[] values);
+    }
+
+    private PipelineScript() {}
+
+    static Expression compile(ScriptExpression script) {
+        var source = sourceOf(script);
+        var parser = new Parser(source, numericParams(script));
+        var expression = parser.parseExpression();
+        parser.expectEnd();
+        return expression;
+    }
+
+    static WindowFunction compileWindowFunction(ScriptExpression script) {
+        var source = sourceOf(script);
+        Matcher matcher = MOVING_FUNCTION.matcher(source);
+        if(!matcher.matches()) {
+            throw new IllegalArgumentException("Cannot evaluate moving function script locally: " + source);
+        }
+        var function = matcher.group(1);
+        var argument = matcher.group(2) == null ? null : matcher.group(2).trim();
+        var params = numericParams(script);
+        return switch(function) {
+            case "max" -> values -> reduce(values, Math::max);
+            case "min" -> values -> reduce(values, Math::min);
+            case "sum" -> values -> {
+                var sum = 0.0;
+                for(var value : values) {
+                    sum += Double.isNaN(value) ? 0 : value;
+                }
+                return sum;
+            };
+            case "unweightedAvg" -> PipelineScript::unweightedAvg;
+            case "linearWeightedAvg" -> values -> {
+                var weighted = 0.0;
+                long totalWeight = 1;
+                long current = 1;
+                for(var value : values) {
+                    if(!Double.isNaN(value)) {
+                        weighted += value * current;
+                        totalWeight += current;
+                        current++;
+                    }
+                }
+                return totalWeight == 1 ? Double.NaN : weighted / totalWeight;
+            };
+            case "ewma" -> {
+                var alpha = constantArgument(function, argument, params);
+                yield values -> {
+                    var average = Double.NaN;
+                    for(var value : values) {
+                        if(!Double.isNaN(value)) {
+                            average = Double.isNaN(average) ? value : value * alpha + average * (1 - alpha);
+                        }
+                    }
+                    return average;
+                };
+            }
+            case "stdDev" -> {
+                if(argument == null || !UNWEIGHTED_AVG.matcher(argument).matches()) {
+                    throw new IllegalArgumentException("Only MovingFunctions.stdDev(values, MovingFunctions.unweightedAvg(values)) can be evaluated locally");
+                }
+                yield values -> {
+                    var average = unweightedAvg(values);
+                    if(Double.isNaN(average)) {
+                        return Double.NaN;
+                    }
+                    var squares = 0.0;
+                    var count = 0;
+                    for(var value : values) {
+                        if(!Double.isNaN(value)) {
+                            squares += (value - average) * (value - average);
+                            count++;
+                        }
+                    }
+                    return Math.sqrt(squares / count);
+                };
+            }
+            default -> throw new IllegalArgumentException("Cannot evaluate MovingFunctions.%s locally".formatted(function));
+        };
+    }
+
+    private static double constantArgument(String function, String argument, Map<String, Double> params) {
+        if(argument == null) {
+            throw new IllegalArgumentException("MovingFunctions.%s needs a second argument".formatted(function));
+        }
+        var parser = new Parser(argument, params);
+        var expression = parser.parseExpression();
+        parser.expectEnd();
+        return expression.evaluate(Map.of());
+    }
+
+    private static double reduce(double[] values, DoubleBinaryOperator operator) {
+        var result = Double.NaN;
+        for(var value : values) {
+            if(!Double.isNaN(value)) {
+                result = Double.isNaN(result) ? value : operator.applyAsDouble(result, value);
+            }
+        }
+        return result;
+    }
+
+    private static double unweightedAvg(double[] values) {
+        var sum = 0.0;
+        var count = 0;
+        for(var value : values) {
+            if(!Double.isNaN(value)) {
+                sum += value;
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    private static String sourceOf(ScriptExpression script) {
+        if(script == null || script.source() == null) {
+            throw new IllegalArgumentException("Only inline scripts can be evaluated locally");
+        }
+        if(script.lang() != null && script.lang() != ScriptExpression.ScriptLang.painless && script.lang() != ScriptExpression.ScriptLang.expression) {
+            throw new IllegalArgumentException("Cannot evaluate %s scripts locally".formatted(script.lang()));
+        }
+        var source = script.source().trim();
+        if(source.startsWith("return ")) {
+            source = source.substring("return ".length());
+        }
+        if(source.endsWith(";")) {
+            source = source.substring(0, source.length() - 1);
+        }
+        return source.trim();
+    }
+
+    private static Map<String, Double> numericParams(ScriptExpression script) {
+        if(script.params() == null) {
+            return Map.of();
+        }
+        var params = new HashMap<String, Double>();
+        script.params().forEach((name, value) -> {
+            if(value instanceof Number number) {
+                params.put(name, number.doubleValue());
+            }
+        });
+        return params;
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final Map<String, Double> constants;
+        private int position = 0;
+
+        Parser(String source, Map<String, Double> constants) {
+            this.source = source;
+            this.constants = constants;
+        }
+
+        Expression parseExpression() {
+            var left = parseAnd();
+            while(accept("||")) {
+                var l = left;
+                var r = parseAnd();
+                left = params -> truth(l.evaluate(params)) || truth(r.evaluate(params)) ? 1 : 0;
+            }
+            return left;
+        }
+
+        private Expression parseAnd() {
+            var left = parseComparison();
+            while(accept("&&")) {
+                var l = left;
+                var r = parseComparison();
+                left = params -> truth(l.evaluate(params)) && truth(r.evaluate(params)) ? 1 : 0;
+            }
+            return left;
+        }
+
+        private Expression parseComparison() {
+            var left = parseAdditive();
+            for(var operator : List.of("<=", ">=", "==", "!=", "<", ">")) {
+                if(accept(operator)) {
+                    var l = left;
+                    var r = parseAdditive();
+                    return switch(operator) {
+                        case "<=" -> params -> l.evaluate(params) <= r.evaluate(params) ? 1 : 0;
+                        case ">=" -> params -> l.evaluate(params) >= r.evaluate(params) ? 1 : 0;
+                        case "==" -> params -> l.evaluate(params) == r.evaluate(params) ? 1 : 0;
+                        case "!=" -> params -> l.evaluate(params) != r.evaluate(params) ? 1 : 0;
+                        case "<" -> params -> l.evaluate(params) < r.evaluate(params) ? 1 : 0;
+                        default -> params -> l.evaluate(params) > r.evaluate(params) ? 1 : 0;
+                    };
+                }
+            }
+            return left;
+        }
+
+        private Expression parseAdditive() {
+            var left = parseMultiplicative();
+            while(true) {
+                var l = left;
+                if(accept("+")) {
+                    var r = parseMultiplicative();
+                    left = params -> l.evaluate(params) + r.evaluate(params);
+                } else if(accept("-")) {
+                    var r = parseMultiplicative();
+                    left = params -> l.evaluate(params) - r.evaluate(params);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression parseMultiplicative() {
+            var left = parseUnary();
+            while(true) {
+                var l = left;
+                if(accept("*")) {
+                    var r = parseUnary();
+                    left = params -> l.evaluate(params) * r.evaluate(params);
+                } else if(accept("/")) {
+                    var r = parseUnary();
+                    left = params -> l.evaluate(params) / r.evaluate(params);
+                } else if(accept("%")) {
+                    var r = parseUnary();
+                    left = params -> l.evaluate(params) % r.evaluate(params);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression parseUnary() {
+            if(accept("-")) {
+                var operand = parseUnary();
+                return params -> -operand.evaluate(params);
+            }
+            if(peek() == '!' && !source.startsWith("!=", position)) {
+                position++;
+                var operand = parseUnary();
+                return params -> truth(operand.evaluate(params)) ? 0 : 1;
+            }
+            return parsePrimary();
+        }
+
+        private Expression parsePrimary() {
+            skipSpaces();
+            if(accept("(")) {
+                var inner = parseExpression();
+                expect(")");
+                return inner;
+            }
+            if(position < source.length() && (Character.isDigit(peek()) || peek() == '.')) {
+                var start = position;
+                while(position < source.length() && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+                    position++;
+                }
+                var value = Double.parseDouble(source.substring(start, position));
+                return params -> value;
+            }
+            var identifier = identifier();
+            switch(identifier) {
+                case "true" -> {
+                    return params -> 1;
+                }
+                case "false" -> {
+                    return params -> 0;
+                }
+                case "params" -> {
+                    String name;
+                    if(accept("[")) {
+                        skipSpaces();
+                        var quote = source.charAt(position);
+                        var end = source.indexOf(quote, position + 1);
+                        if((quote != '\'' && quote != '"') || end < 0) {
+                            throw error("a quoted parameter name");
+                        }
+                        name = source.substring(position + 1, end);
+                        position = end + 1;
+                        expect("]");
+                    } else {
+                        expect(".");
+                        name = identifier();
+                    }
+                    var constant = constants.get(name);
+                    if(constant != null) {
+                        return params -> params.getOrDefault(name, constant);
+                    }
+                    return params -> {
+                        var value = params.get(name);
+                        if(value == null) {
+                            throw new IllegalArgumentException("Unknown script parameter " + name);
+                        }
+                        return value;
+                    };
+                }
+                case "Math" -> {
+                    expect(".");
+                    return mathFunction(identifier());
+                }
+                default -> throw error("params, Math or a number but found " + identifier);
+            }
+        }
+
+        private Expression mathFunction(String name) {
+            expect("(");
+            var arguments = new ArrayList<Expression>();
+            if(!accept(")")) {
+                do {
+                    arguments.add(parseExpression());
+                } while(accept(","));
+                expect(")");
+            }
+            var first = arguments.isEmpty() ? null : arguments.get(0);
+            var second = arguments.size() < 2 ? null : arguments.get(1);
+            var arity = switch(name) {
+                case "abs", "sqrt", "log", "log10", "exp", "floor", "ceil", "round" -> 1;
+                case "min", "max", "pow" -> 2;
+                default -> throw error("a supported Math function but found " + name);
+            };
+            if(arguments.size() != arity) {
+                throw error("%d arguments for Math.%s".formatted(arity, name));
+            }
+            return switch(name) {
+                case "abs" -> params -> Math.abs(first.evaluate(params));
+                case "sqrt" -> params -> Math.sqrt(first.evaluate(params));
+                case "log" -> params -> Math.log(first.evaluate(params));
+                case "log10" -> params -> Math.log10(first.evaluate(params));
+                case "exp" -> params -> Math.exp(first.evaluate(params));
+                case "floor" -> params -> Math.floor(first.evaluate(params));
+                case "ceil" -> params -> Math.ceil(first.evaluate(params));
+                case "round" -> params -> Math.round(first.evaluate(params));
+                case "min" -> params -> Math.min(first.evaluate(params), second.evaluate(params));
+                case "max" -> params -> Math.max(first.evaluate(params), second.evaluate(params));
+                default -> params -> Math.pow(first.evaluate(params), second.evaluate(params));
+            };
+        }
+
+        private String identifier() {
+            skipSpaces();
+            var start = position;
+            while(position < source.length() && (Character.isLetterOrDigit(source.charAt(position)) || source.charAt(position) == '_')) {
+                position++;
+            }
+            if(start == position) {
+                throw error("an identifier");
+            }
+            return source.substring(start, position);
+        }
+
+        void expectEnd() {
+            skipSpaces();
+            if(position != source.length()) {
+                throw error("the end of the script");
+            }
+        }
+
+        private void expect(String token) {
+            if(!accept(token)) {
+                throw error("'" + token + "'");
+            }
+        }
+
+        private boolean accept(String token) {
+            skipSpaces();
+            if(source.startsWith(token, position)) {
+                // Do not split compound operators
+                if(token.length() == 1 && "<>=!".indexOf(token.charAt(0)) >= 0 && source.startsWith("=", position + 1)) {
+                    return false;
+                }
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            skipSpaces();
+            return position < source.length() ? source.charAt(position) : '\0';
+        }
+
+        private void skipSpaces() {
+            while(position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String expected) {
+            return new IllegalArgumentException("Cannot evaluate script locally, expected %s at %d in: %s".formatted(expected, position, source));
+        }
+    }
+
+    private static boolean truth(double value) {
+        return value != 0 && !Double.isNaN(value);
+    }
+}
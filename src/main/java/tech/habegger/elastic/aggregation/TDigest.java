@@ -0,0 +1,160 @@
+package tech.habegger.elastic.aggregation;
+
+import java.util.Arrays;
+
+// Merging t-digest (Dunning & Ertl, "Computing extremely accurate quantiles using t-digests"). Values are buffered
+// then sorted and merged into centroids whose weight is bounded by 4 * n * q * (1 - q) / compression, which keeps the
+// tails accurate.
+final class TDigest {
+    static final int DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private final double[] buffer;
+    private int buffered = 0;
+    // The first centroids entries are sorted by mean. Merges go through the scratch arrays which are then swapped in,
+    // so that compressing does not allocate once the arrays are large enough.
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private int centroids = 0;
+    private double[] scratchMeans = new double[0];
+    private double[] scratchWeights = new double[0];
+    private double totalWeight = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest(double compression) {
+        this.compression = compression;
+        this.buffer = new double[(int) Math.max(32, 5 * compression)];
+    }
+
+    void add(double value) {
+        buffer[buffered++] = value;
+        totalWeight++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if(buffered == buffer.length) {
+            compress();
+        }
+    }
+
+    void merge(TDigest other) {
+        compress();
+        other.compress();
+        if(other.centroids == 0) {
+            return;
+        }
+        var count = ensureScratch(centroids + other.centroids);
+        int i = 0;
+        int j = 0;
+        for(int k = 0; k < count; k++) {
+            if(j == other.centroids || (i < centroids && means[i] <= other.means[j])) {
+                scratchMeans[k] = means[i];
+                scratchWeights[k] = weights[i++];
+            } else {
+                scratchMeans[k] = other.means[j];
+                scratchWeights[k] = other.weights[j++];
+            }
+        }
+        totalWeight += other.totalWeight;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        collapse(count);
+    }
+
+    long size() {
+        return (long) totalWeight;
+    }
+
+    // Quantile in [0, 1], interpolating between centroid centers, or NaN without values
+    double quantile(double q) {
+        compress();
+        if(centroids == 0) {
+            return Double.NaN;
+        }
+        if(q <= 0) {
+            return min;
+        }
+        if(q >= 1) {
+            return max;
+        }
+        if(centroids == 1) {
+            return means[0];
+        }
+        var index = q * totalWeight;
+        var center = weights[0] / 2;
+        if(index < center) {
+            return min + (means[0] - min) * index / center;
+        }
+        for(int i = 0; i < centroids - 1; i++) {
+            var nextCenter = center + (weights[i] + weights[i + 1]) / 2;
+            if(index < nextCenter) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (nextCenter - center);
+            }
+            center = nextCenter;
+        }
+        var last = centroids - 1;
+        return means[last] + (max - means[last]) * (index - center) / (weights[last] / 2);
+    }
+
+    private void compress() {
+        if(buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered);
+        var count = ensureScratch(centroids + buffered);
+        int i = 0;
+        int j = 0;
+        for(int k = 0; k < count; k++) {
+            if(j == buffered || (i < centroids && means[i] <= buffer[j])) {
+                scratchMeans[k] = means[i];
+                scratchWeights[k] = weights[i++];
+            } else {
+                scratchMeans[k] = buffer[j++];
+                scratchWeights[k] = 1;
+            }
+        }
+        buffered = 0;
+        collapse(count);
+    }
+
+    private int ensureScratch(int count) {
+        if(scratchMeans.length < count) {
+            scratchMeans = new double[count];
+            scratchWeights = new double[count];
+        }
+        return count;
+    }
+
+    // Merges neighbouring sorted centroids of the scratch arrays as long as the size bound allows, then swaps them in
+    private void collapse(int count) {
+        var emitted = 0;
+        var weightSoFar = 0.0;
+        var mean = scratchMeans[0];
+        var weight = scratchWeights[0];
+        for(int k = 1; k < count; k++) {
+            var proposed = weight + scratchWeights[k];
+            var q0 = weightSoFar / totalWeight;
+            var q2 = (weightSoFar + proposed) / totalWeight;
+            var bound = 4 * totalWeight * Math.min(q0 * (1 - q0), q2 * (1 - q2)) / compression;
+            if(proposed <= bound) {
+                mean += (scratchMeans[k] - mean) * scratchWeights[k] / proposed;
+                weight = proposed;
+            } else {
+                scratchMeans[emitted] = mean;
+                scratchWeights[emitted++] = weight;
+                weightSoFar += weight;
+                mean = scratchMeans[k];
+                weight = scratchWeights[k];
+            }
+        }
+        scratchMeans[emitted] = mean;
+        scratchWeights[emitted++] = weight;
+        var previousMeans = means;
+        var previousWeights = weights;
+        means = scratchMeans;
+        weights = scratchWeights;
+        centroids = emitted;
+        scratchMeans = previousMeans;
+        scratchWeights = previousWeights;
+    }
+}
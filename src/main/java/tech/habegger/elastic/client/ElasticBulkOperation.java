@@ -0,0 +1,26 @@
+package tech.habegger.elastic.client;
+
+public record ElasticBulkOperation(Action action, String index, String id, Object document) {
+    public static ElasticBulkOperation index(String index, String id, Object document) {
+        return new ElasticBulkOperation(Action.index, index, id, document);
+    }
+
+    public static ElasticBulkOperation create(String index, String id, Object document) {
+        return new ElasticBulkOperation(Action.create, index, id, document);
+    }
+
+    public static ElasticBulkOperation update(String index, String id, Object partialDocument) {
+        return new ElasticBulkOperation(Action.update, index, id, partialDocument);
+    }
+
+    public static ElasticBulkOperation delete(String index, String id) {
+        return new ElasticBulkOperation(Action.delete, index, id, null);
+    }
+
+    public enum Action {
+        index,
+        create,
+        update,
+        delete
+    }
+}
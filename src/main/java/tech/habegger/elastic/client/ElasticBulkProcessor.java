@@ -0,0 +1,329 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.response.ElasticBulkEntry;
+import tech.habegger.elastic.response.ElasticBulkResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ElasticBulkProcessor implements Closeable {
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 502, 503, 504);
+
+    private final ElasticClient client;
+    private final ElasticBulkWriter writer;
+    private final String path;
+    private final int maxActions;
+    private final long maxBytes;
+    private final int maxRetries;
+    private final Duration backoff;
+    private final Listener listener;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService scheduler;
+    // Waits for a free request slot on behalf of the scheduler, which must stay available for retries and flushes
+    private final ExecutorService dispatcher;
+    private final ScheduledFuture<?> periodicFlush;
+    private volatile Thread schedulerThread;
+
+    private final Object lock = new Object();
+    private List<Pending> buffer = new ArrayList<>();
+    private long bufferBytes = 0;
+    private long outstanding = 0;
+    private boolean closed = false;
+
+    private ElasticBulkProcessor(Builder builder) {
+        this.client = builder.client;
+        this.writer = new ElasticBulkWriter(builder.client.mapper());
+        this.path = ElasticClient.indexPath(builder.index, "_bulk");
+        this.maxActions = builder.maxActions;
+        this.maxBytes = builder.maxBytes;
+        this.maxRetries = builder.maxRetries;
+        this.backoff = builder.backoff;
+        this.listener = builder.listener;
+        this.inFlight = new Semaphore(builder.maxConcurrentRequests);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "elastic-bulk-processor");
+            thread.setDaemon(true);
+            schedulerThread = thread;
+            return thread;
+        });
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "elastic-bulk-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if(builder.flushInterval != null) {
+            var interval = builder.flushInterval.toMillis();
+            this.periodicFlush = scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.periodicFlush = null;
+        }
+    }
+
+    public static Builder builder(ElasticClient client) {
+        return new Builder(client);
+    }
+
+    public void add(ElasticBulkOperation operation) throws IOException {
+        // Serialize on the calling thread so that producers share the encoding work
+        var pending = new Pending(operation, writer.writeAsBytes(operation), 0);
+        synchronized(lock) {
+            if(closed) {
+                throw new IllegalStateException("Bulk processor is closed");
+            }
+            outstanding++;
+        }
+        enqueue(pending);
+    }
+
+    public void flush() {
+        List<Pending> batch;
+        synchronized(lock) {
+            batch = drainBuffer();
+        }
+        if(!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    public boolean awaitCompletion(Duration timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while(true) {
+            flush();
+            synchronized(lock) {
+                if(outstanding == 0) {
+                    return true;
+                }
+                var remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if(remaining <= 0) {
+                    return false;
+                }
+                lock.wait(Math.min(remaining, Math.max(backoff.toMillis(), 10)));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized(lock) {
+            closed = true;
+        }
+        if(periodicFlush != null) {
+            periodicFlush.cancel(false);
+        }
+        try {
+            awaitCompletion(Duration.ofDays(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for bulk requests to complete", e);
+        } finally {
+            scheduler.shutdown();
+            dispatcher.shutdown();
+        }
+    }
+
+    private void enqueue(Pending pending) {
+        List<Pending> batch = null;
+        synchronized(lock) {
+            buffer.add(pending);
+            bufferBytes += pending.bytes().length;
+            if(buffer.size() >= maxActions || bufferBytes >= maxBytes) {
+                batch = drainBuffer();
+            }
+        }
+        if(batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    private List<Pending> drainBuffer() {
+        var batch = buffer;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        if(inFlight.tryAcquire()) {
+            send(batch);
+        } else if(Thread.currentThread() == schedulerThread) {
+            dispatcher.execute(() -> {
+                inFlight.acquireUninterruptibly();
+                send(batch);
+            });
+        } else {
+            // Blocks the flushing thread while too many requests are in flight, pushing back on producers
+            inFlight.acquireUninterruptibly();
+            send(batch);
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        var body = HttpRequest.BodyPublishers.ofByteArrays(batch.stream().map(Pending::bytes).toList());
+        client.performAsync("POST", path, body, client.contentType().streamMediaType()).whenComplete((response, error) -> {
+            inFlight.release();
+            handle(batch, response, error);
+        });
+    }
+
+    private void handle(List<Pending> batch, HttpResponse<byte[]> response, Throwable error) {
+        // Connection failures and overloaded nodes are retried, other failures would only fail again
+        var retryable = error != null;
+        if(error == null && response.statusCode() >= 400) {
+            retryable = RETRYABLE_STATUSES.contains(response.statusCode());
+            error = new ElasticClientException(response.statusCode(), "Bulk request failed with HTTP %d: %s".formatted(response.statusCode(), ElasticClient.abbreviate(response.body())));
+        }
+        ElasticBulkResponse bulkResponse = null;
+        if(error == null) {
+            try {
+                bulkResponse = client.mapper().readValue(response.body(), ElasticBulkResponse.class);
+                if(bulkResponse.getItems() == null || bulkResponse.getItems().size() != batch.size()) {
+                    error = new ElasticClientException(response.statusCode(), "Unexpected bulk response with HTTP " + response.statusCode());
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if(error != null) {
+            var attempts = retryable ? maxRetries : 0;
+            var retries = batch.stream().filter(pending -> pending.attempt() < attempts).toList();
+            var failed = batch.stream().filter(pending -> pending.attempt() >= attempts).map(Pending::operation).toList();
+            if(!failed.isEmpty()) {
+                listener.onRequestFailure(failed, error);
+                completed(failed.size());
+            }
+            retry(retries);
+            return;
+        }
+
+        var retries = new ArrayList<Pending>();
+        var done = 0;
+        for(int i = 0; i < batch.size(); i++) {
+            var pending = batch.get(i);
+            var entry = bulkResponse.getItems().get(i).values().iterator().next();
+            if(entry.hasError() && isRetryable(entry) && pending.attempt() < maxRetries) {
+                retries.add(pending);
+            } else {
+                if(entry.hasError()) {
+                    listener.onItemFailure(pending.operation(), entry);
+                }
+                done++;
+            }
+        }
+        listener.afterBulk(batch.size(), bulkResponse);
+        completed(done);
+        retry(retries);
+    }
+
+    private static boolean isRetryable(ElasticBulkEntry entry) {
+        return entry.getStatus() != null && RETRYABLE_STATUSES.contains(entry.getStatus());
+    }
+
+    private void retry(List<Pending> retries) {
+        if(retries.isEmpty()) {
+            return;
+        }
+        var attempt = retries.get(0).attempt();
+        var delay = backoff.toMillis() << Math.min(attempt, 16);
+        scheduler.schedule(() -> {
+            for(var pending : retries) {
+                enqueue(new Pending(pending.operation(), pending.bytes(), pending.attempt() + 1));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void completed(int count) {
+        synchronized(lock) {
+            outstanding -= count;
+            if(outstanding == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private record Pending(ElasticBulkOperation operation, byte[] bytes, int attempt) {
+    }
+
+    public interface Listener {
+        default void afterBulk(int operations, ElasticBulkResponse response) {
+        }
+
+        default void onItemFailure(ElasticBulkOperation operation, ElasticBulkEntry entry) {
+        }
+
+        default void onRequestFailure(List<ElasticBulkOperation> operations, Throwable error) {
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Builder {
+        private final ElasticClient client;
+        private String index = null;
+        private int maxActions = 1000;
+        private long maxBytes = 5 * 1024 * 1024;
+        private Duration flushInterval = null;
+        private int maxConcurrentRequests = 1;
+        private int maxRetries = 3;
+        private Duration backoff = Duration.ofMillis(100);
+        private Listener listener = new Listener() {};
+
+        private Builder(ElasticClient client) {
+            this.client = client;
+        }
+
+        public Builder withIndex(String index) {
+            this.index = index;
+            return this;
+        }
+
+        public Builder withMaxActions(int maxActions) {
+            this.maxActions = maxActions;
+            return this;
+        }
+
+        public Builder withMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public Builder withFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public Builder withMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        public Builder withMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder withBackoff(Duration backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public Builder withListener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public ElasticBulkProcessor build() {
+            return new ElasticBulkProcessor(this);
+        }
+    }
+}
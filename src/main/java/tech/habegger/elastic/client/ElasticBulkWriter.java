@@ -0,0 +1,77 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class ElasticBulkWriter {
+    private final ObjectWriter writer;
+    private final int separator;
+
+    public ElasticBulkWriter(ObjectMapper mapper) {
+        // Bulk bodies are newline delimited, so every line must stay compact
+        this.writer = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.separator = ElasticContentType.of(mapper.getFactory()).streamSeparator();
+    }
+
+    public byte[] writeAsBytes(ElasticBulkOperation operation) throws IOException {
+        var output = new ByteArrayOutputStream(256);
+        write(operation, output);
+        return output.toByteArray();
+    }
+
+    public byte[] writeAsBytes(Iterable<ElasticBulkOperation> operations) throws IOException {
+        var output = new ByteArrayOutputStream(4096);
+        for(var operation : operations) {
+            write(operation, output);
+        }
+        return output.toByteArray();
+    }
+
+    public void write(ElasticBulkOperation operation, OutputStream output) throws IOException {
+        writeLine(output, generator -> {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(operation.action().name());
+            if(operation.index() != null) {
+                generator.writeStringField("_index", operation.index());
+            }
+            if(operation.id() != null) {
+                generator.writeStringField("_id", operation.id());
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        });
+        if(operation.action() == ElasticBulkOperation.Action.delete) {
+            return;
+        }
+        writeLine(output, generator -> {
+            if(operation.action() == ElasticBulkOperation.Action.update) {
+                generator.writeStartObject();
+                generator.writeFieldName("doc");
+                writer.writeValue(generator, operation.document());
+                generator.writeEndObject();
+            } else {
+                writer.writeValue(generator, operation.document());
+            }
+        });
+    }
+
+    // Every line gets its own generator so that binary formats start each document with a fresh header
+    private void writeLine(OutputStream output, Line line) throws IOException {
+        try(var generator = writer.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            line.write(generator);
+        }
+        output.write(separator);
+    }
+
+    @FunctionalInterface
+    interface Line {
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
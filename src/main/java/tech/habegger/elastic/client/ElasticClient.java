@@ -0,0 +1,376 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import tech.habegger.elastic.response.ElasticProjectedHits;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.response.ElasticSourceProjection;
+import tech.habegger.elastic.response.ElasticSourceSlice;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator;
+import tech.habegger.elastic.search.ElasticRequestWriter;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+public class ElasticClient {
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final ElasticContentType contentType;
+    private final ElasticRequestWriter requestWriter;
+    private final ElasticMultiSearchWriter multiSearchWriter;
+    private final ElasticMultiSearchReader multiSearchReader;
+    private final List<URI> nodes;
+    private final ElasticNodeSelector nodeSelector;
+    private final Duration requestTimeout;
+    private final Map<String, String> headers;
+    private final Executor executor;
+    private final ElasticRequestLimiter limiter;
+    private final boolean lazySource;
+    private final ElasticQueryCostEstimator costEstimator;
+
+    private ElasticClient(Builder builder) {
+        this.nodes = List.copyOf(builder.nodes);
+        this.nodeSelector = builder.nodeSelector;
+        this.contentType = builder.contentType;
+        this.mapper = builder.contentType.mapper(builder.mapper);
+        this.requestWriter = new ElasticRequestWriter(mapper);
+        this.multiSearchWriter = contentType == ElasticContentType.CBOR ? null : new ElasticMultiSearchWriter(mapper);
+        this.multiSearchReader = new ElasticMultiSearchReader(mapper, builder.lazySource);
+        this.requestTimeout = builder.requestTimeout;
+        this.headers = Map.copyOf(builder.headers);
+        this.executor = builder.executor;
+        this.limiter = builder.maxConcurrentRequests == null ? null : new ElasticRequestLimiter(builder.maxConcurrentRequests);
+        this.lazySource = builder.lazySource;
+        this.costEstimator = builder.costEstimator;
+        var httpClientBuilder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(builder.connectTimeout);
+        if(builder.executor != null) {
+            httpClientBuilder.executor(builder.executor);
+        }
+        this.httpClient = httpClientBuilder.build();
+    }
+
+    public static Builder builder(URI... nodes) {
+        return new Builder(List.of(nodes));
+    }
+
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    public ElasticContentType contentType() {
+        return contentType;
+    }
+
+    public <T> CompletableFuture<ElasticSearchResponse<T>> searchAsync(String index, ElasticSearchRequest request, Class<T> sourceType) {
+        return searchAsync(index, request, ElasticSearchResponse.reader(mapper, request, sourceType));
+    }
+
+    public <T> CompletableFuture<ElasticSearchResponse<T>> searchAsync(String index, ElasticSearchRequest request, TypeReference<ElasticSearchResponse<T>> responseType) {
+        return searchAsync(index, request, ElasticSearchResponse.reader(mapper, request, responseType));
+    }
+
+    public <T> ElasticSearchResponse<T> search(String index, ElasticSearchRequest request, Class<T> sourceType) throws IOException, InterruptedException {
+        return await(searchAsync(index, request, sourceType));
+    }
+
+    public <T> ElasticSearchResponse<T> search(String index, ElasticSearchRequest request, TypeReference<ElasticSearchResponse<T>> responseType) throws IOException, InterruptedException {
+        return await(searchAsync(index, request, responseType));
+    }
+
+    public CompletableFuture<ElasticProjectedHits> searchAsync(String index, ElasticSearchRequest request, ElasticSourceProjection projection) {
+        byte[] body;
+        try {
+            body = requestWriter.writeAsBytes(guard(request));
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return performAsync("POST", indexPath(index, "_search"), body, contentType.mediaType())
+            .thenApply(response -> {
+                if(response.statusCode() >= 400) {
+                    throw new UncheckedIOException(new ElasticClientException(response.statusCode(), "Search failed with HTTP %d: %s".formatted(response.statusCode(), abbreviate(response.body()))));
+                }
+                try {
+                    return projection.read(mapper, response.body());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    public ElasticProjectedHits search(String index, ElasticSearchRequest request, ElasticSourceProjection projection) throws IOException, InterruptedException {
+        return await(searchAsync(index, request, projection));
+    }
+
+    private <T> CompletableFuture<ElasticSearchResponse<T>> searchAsync(String index, ElasticSearchRequest request, ObjectReader reader) {
+        byte[] body;
+        try {
+            body = requestWriter.writeAsBytes(guard(request));
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return performAsync("POST", indexPath(index, "_search"), body, contentType.mediaType())
+            .thenApply(response -> readResponse(response, lazySource ? ElasticSourceSlice.lazy(reader, response.body()) : reader));
+    }
+
+    public CompletableFuture<List<ElasticSearchResponse<?>>> multiSearchAsync(String index, List<? extends ElasticMultiSearchItem<?>> items) {
+        if(multiSearchWriter == null) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(contentType + " cannot be used for multi search bodies"));
+        }
+        byte[] body;
+        try {
+            body = multiSearchWriter.writeAsBytes(items.stream().map(this::guard).toList());
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return performAsync("POST", indexPath(index, "_msearch"), body, contentType.streamMediaType())
+            .thenApply(response -> {
+                if(response.statusCode() >= 400) {
+                    throw new UncheckedIOException(new ElasticClientException(response.statusCode(), "Multi search failed with HTTP %d: %s".formatted(response.statusCode(), abbreviate(response.body()))));
+                }
+                try {
+                    return multiSearchReader.read(response.body(), items);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    public List<ElasticSearchResponse<?>> multiSearch(String index, List<? extends ElasticMultiSearchItem<?>> items) throws IOException, InterruptedException {
+        return await(multiSearchAsync(index, items));
+    }
+
+    public CompletableFuture<String> openPointInTimeAsync(String index, Duration keepAlive) {
+        return performAsync("POST", indexPath(index, "_pit") + "?keep_alive=" + keepAlive(keepAlive), (byte[]) null, null)
+            .thenApply(response -> {
+                if(response.statusCode() >= 400) {
+                    throw new UncheckedIOException(new ElasticClientException(response.statusCode(), "Failed to open point in time: " + abbreviate(response.body())));
+                }
+                return this.<PointInTime>readResponse(response, mapper.readerFor(PointInTime.class)).id();
+            });
+    }
+
+    public String openPointInTime(String index, Duration keepAlive) throws IOException, InterruptedException {
+        return await(openPointInTimeAsync(index, keepAlive));
+    }
+
+    public CompletableFuture<Void> closePointInTimeAsync(String id) {
+        byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(new PointInTime(id));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return performAsync("DELETE", "/_pit", body, contentType.mediaType()).thenApply(response -> null);
+    }
+
+    public void closePointInTime(String id) throws IOException, InterruptedException {
+        await(closePointInTimeAsync(id));
+    }
+
+    // Requests are checked against the cost policies, if any, right before being serialized
+    private ElasticSearchRequest guard(ElasticSearchRequest request) {
+        return costEstimator == null ? request : costEstimator.enforce(request);
+    }
+
+    private <T> ElasticMultiSearchItem<T> guard(ElasticMultiSearchItem<T> item) {
+        var request = guard(item.request());
+        return request == item.request() ? item : new ElasticMultiSearchItem<>(item.index(), request, item.sourceType());
+    }
+
+    static String keepAlive(Duration keepAlive) {
+        return keepAlive.toMillis() + "ms";
+    }
+
+    public CompletableFuture<HttpResponse<byte[]>> performAsync(String method, String path, byte[] body, String contentType) {
+        return performAsync(method, path, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body), contentType);
+    }
+
+    public CompletableFuture<HttpResponse<byte[]>> performAsync(String method, String path, HttpRequest.BodyPublisher body, String contentType) {
+        if(limiter != null) {
+            return limiter.submit(() -> send(method, path, body, contentType, 0));
+        }
+        return send(method, path, body, contentType, 0);
+    }
+
+    public HttpResponse<byte[]> perform(String method, String path, byte[] body, String contentType) throws IOException, InterruptedException {
+        return await(performAsync(method, path, body, contentType));
+    }
+
+    public static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if(cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            } else if(cause instanceof IOException io) {
+                throw io;
+            } else if(cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    static String indexPath(String index, String endpoint) {
+        return index == null || index.isEmpty() ? "/" + endpoint : "/" + index + "/" + endpoint;
+    }
+
+    <T> T readResponse(HttpResponse<byte[]> response, ObjectReader reader) {
+        try {
+            return reader.readValue(response.body());
+        } catch (IOException e) {
+            if(response.statusCode() >= 400) {
+                throw new UncheckedIOException(new ElasticClientException(response.statusCode(), "HTTP %d: %s".formatted(response.statusCode(), abbreviate(response.body())), e));
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(String method, String path, HttpRequest.BodyPublisher body, String contentType, int attempt) {
+        var node = nodeSelector.select(nodes);
+        var request = HttpRequest.newBuilder(node.resolve(path))
+            .timeout(requestTimeout)
+            .method(method, body);
+        if(contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        if(this.contentType != ElasticContentType.JSON && !headers.containsKey("Accept")) {
+            request.header("Accept", this.contentType.mediaType());
+        }
+        headers.forEach(request::header);
+        var future = httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if(attempt + 1 < nodes.size()) {
+            // Fail over to another node when the selected one cannot be reached
+            future = future.handle((response, error) -> {
+                if(error == null) {
+                    return CompletableFuture.completedFuture(response);
+                }
+                if(isConnectFailure(error)) {
+                    return send(method, path, body, contentType, attempt + 1);
+                }
+                return CompletableFuture.<HttpResponse<byte[]>>failedFuture(error);
+            }).thenCompose(result -> result);
+        }
+        if(executor != null) {
+            future = future.thenApplyAsync(response -> response, executor);
+        }
+        return future;
+    }
+
+    private static boolean isConnectFailure(Throwable error) {
+        var cause = error instanceof CompletionException ? error.getCause() : error;
+        return cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException;
+    }
+
+    static String abbreviate(byte[] body) {
+        var text = new String(body, StandardCharsets.UTF_8);
+        return text.length() > 200 ? text.substring(0, 200) + "..." : text;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record PointInTime(String id) {
+    }
+
+    @SuppressWarnings("unused")
+    public static class Builder {
+        private final List<URI> nodes;
+        private ElasticNodeSelector nodeSelector = ElasticNodeSelector.roundRobin();
+        private ObjectMapper mapper = new ObjectMapper();
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration requestTimeout = Duration.ofSeconds(30);
+        private Integer maxConcurrentRequests = null;
+        private Executor executor = null;
+        private boolean lazySource = false;
+        private ElasticContentType contentType = ElasticContentType.JSON;
+        private ElasticQueryCostEstimator costEstimator = null;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        private Builder(List<URI> nodes) {
+            this.nodes = new ArrayList<>(nodes);
+        }
+
+        public Builder withNode(URI node) {
+            this.nodes.add(node);
+            return this;
+        }
+
+        public Builder withNodeSelector(ElasticNodeSelector nodeSelector) {
+            this.nodeSelector = nodeSelector;
+            return this;
+        }
+
+        public Builder withMapper(ObjectMapper mapper) {
+            this.mapper = mapper;
+            return this;
+        }
+
+        public Builder withConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder withRequestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public Builder withMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withContentType(ElasticContentType contentType) {
+            this.contentType = contentType;
+            return this;
+        }
+
+        public Builder withLazySource(boolean lazySource) {
+            this.lazySource = lazySource;
+            return this;
+        }
+
+        public Builder withCostEstimator(ElasticQueryCostEstimator costEstimator) {
+            this.costEstimator = costEstimator;
+            return this;
+        }
+
+        public Builder withHeader(String name, String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        public ElasticClient build() {
+            if(nodes.isEmpty()) {
+                throw new IllegalStateException("At least one node is required");
+            }
+            return new ElasticClient(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package tech.habegger.elastic.client;
+
+import java.io.IOException;
+
+public class ElasticClientException extends IOException {
+    private final int status;
+
+    public ElasticClientException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public ElasticClientException(int status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,140 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.aggregation.ElasticCompositeAggregation;
+import tech.habegger.elastic.response.ElasticCompositeAggregationResponse;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Iterates over every bucket of a composite aggregation, requesting the next page with the after_key of the previous one
+public class ElasticCompositeCursor implements Iterator<Map<String, ?>>, Closeable {
+
+    private final ElasticClient client;
+    private final String index;
+    private final ElasticSearchRequest request;
+    private final String aggregationName;
+    private final ElasticCompositeAggregation composite;
+    private final boolean prefetch;
+
+    private Iterator<Map<String, ?>> page = Collections.emptyIterator();
+    private CompletableFuture<ElasticSearchResponse<Object>> nextPage;
+    // After key of the last page received, fetched once the page is consumed when not prefetching
+    private Map<String, Object> pendingAfter;
+
+    ElasticCompositeCursor(ElasticClient client, String index, ElasticSearchRequest request, String aggregationName, boolean prefetch) {
+        if(request.aggregations() == null || !(request.aggregations().get(aggregationName) instanceof ElasticCompositeAggregation found)) {
+            throw new IllegalArgumentException("Aggregation %s is not a composite aggregation of the request".formatted(aggregationName));
+        }
+        this.client = client;
+        this.index = index;
+        // Hits are not needed to enumerate buckets
+        this.request = request.size() == null ? request.withSize(0) : request;
+        this.aggregationName = aggregationName;
+        this.composite = found;
+        this.prefetch = prefetch;
+        this.nextPage = fetch(null);
+    }
+
+    public static ElasticCompositeCursor open(ElasticClient client, String index, ElasticSearchRequest request, String aggregationName) {
+        return open(client, index, request, aggregationName, true);
+    }
+
+    public static ElasticCompositeCursor open(ElasticClient client, String index, ElasticSearchRequest request, String aggregationName, boolean prefetch) {
+        return new ElasticCompositeCursor(client, index, request, aggregationName, prefetch);
+    }
+
+    public static Stream<Map<String, ?>> stream(ElasticClient client, String index, ElasticSearchRequest request, String aggregationName) {
+        return open(client, index, request, aggregationName).stream();
+    }
+
+    public Stream<Map<String, ?>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(!page.hasNext()) {
+            if(nextPage == null && pendingAfter != null) {
+                nextPage = fetch(pendingAfter);
+                pendingAfter = null;
+            }
+            if(nextPage == null) {
+                return false;
+            }
+            var response = awaitPage();
+            if(response.hasError()) {
+                nextPage = null;
+                var reason = response.getError() == null ? null : response.getError().reason();
+                throw new UncheckedIOException(new ElasticClientException(response.getStatus() == null ? 0 : response.getStatus(), "Search failed: " + reason));
+            }
+            var aggregation = response.getAggregations() == null ? null : response.getAggregations().get(aggregationName);
+            var buckets = response.getAggregationBuckets(aggregationName);
+            if(buckets == null) {
+                buckets = List.of();
+            }
+            nextPage = null;
+            // Pages can be short while more buckets follow, e.g. once a bucket_selector dropped some, only an empty
+            // page or a missing after_key ends the enumeration
+            if(aggregation instanceof ElasticCompositeAggregationResponse paged && paged.afterKey() != null && !buckets.isEmpty()) {
+                if(prefetch) {
+                    // Prefetch the next page while the current one is being consumed
+                    nextPage = fetch(paged.afterKey());
+                } else {
+                    pendingAfter = paged.afterKey();
+                }
+            }
+            page = buckets.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, ?> next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    @Override
+    public void close() {
+        if(nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+        pendingAfter = null;
+        page = Collections.emptyIterator();
+    }
+
+    private CompletableFuture<ElasticSearchResponse<Object>> fetch(Map<String, Object> after) {
+        var pageRequest = after == null ? request : request.withAggregation(aggregationName, composite.withAfter(after));
+        return client.searchAsync(index, pageRequest, Object.class);
+    }
+
+    private ElasticSearchResponse<Object> awaitPage() {
+        try {
+            return ElasticClient.await(nextPage);
+        } catch (IOException e) {
+            nextPage = null;
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the next page"));
+        }
+    }
+}
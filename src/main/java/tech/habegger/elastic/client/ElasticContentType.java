@@ -0,0 +1,78 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public enum ElasticContentType {
+    JSON("application/json", "application/x-ndjson", '\n'),
+    // Binary formats need jackson-dataformat-smile or jackson-dataformat-cbor on the classpath
+    SMILE("application/smile", "application/smile", 0xFF),
+    CBOR("application/cbor", null, -1);
+
+    private final String mediaType;
+    private final String streamMediaType;
+    private final int streamSeparator;
+
+    ElasticContentType(String mediaType, String streamMediaType, int streamSeparator) {
+        this.mediaType = mediaType;
+        this.streamMediaType = streamMediaType;
+        this.streamSeparator = streamSeparator;
+    }
+
+    public static ElasticContentType of(JsonFactory factory) {
+        return switch(factory.getFormatName()) {
+            case "Smile" -> SMILE;
+            case "CBOR" -> CBOR;
+            default -> JSON;
+        };
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    // Content type of bulk and multi search bodies, made of separated documents
+    public String streamMediaType() {
+        checkStreamable();
+        return streamMediaType;
+    }
+
+    public int streamSeparator() {
+        checkStreamable();
+        return streamSeparator;
+    }
+
+    // Copies the configuration, modules and annotations setup of the given JSON mapper onto this encoding
+    public ObjectMapper mapper(ObjectMapper mapper) {
+        if(of(mapper.getFactory()) == this) {
+            return mapper;
+        }
+        return switch(this) {
+            case JSON -> mapper.copyWith(new JsonFactory());
+            case SMILE -> SmileMappers.copy(mapper);
+            case CBOR -> CborMappers.copy(mapper);
+        };
+    }
+
+    // The binary format factories are only referenced from these holders, so that they are loaded only when the
+    // format is selected and JSON users do not need the optional dependencies
+    private static final class SmileMappers {
+        static ObjectMapper copy(ObjectMapper mapper) {
+            return mapper.copyWith(new SmileFactory());
+        }
+    }
+
+    private static final class CborMappers {
+        static ObjectMapper copy(ObjectMapper mapper) {
+            return mapper.copyWith(new CBORFactory());
+        }
+    }
+
+    private void checkStreamable() {
+        if(streamSeparator < 0) {
+            throw new UnsupportedOperationException(name() + " cannot be used for bulk and multi search bodies");
+        }
+    }
+}
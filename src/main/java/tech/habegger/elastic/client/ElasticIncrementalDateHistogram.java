@@ -0,0 +1,302 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.aggregation.AbstractElasticPipelineAggregation;
+import tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation;
+import tech.habegger.elastic.response.ElasticAggregationResponse;
+import tech.habegger.elastic.response.ElasticDateHistogramBucketsResponse;
+import tech.habegger.elastic.search.ElasticBooleanClause;
+import tech.habegger.elastic.search.ElasticRangeClause;
+import tech.habegger.elastic.search.ElasticRequestFingerprint;
+import tech.habegger.elastic.search.ElasticSearchClause;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// Keeps the buckets of a date_histogram over a sliding time window and, on refresh, only queries the buckets which
+// can still change: the open one plus a lookback for late documents. Those are spliced into the cached series, buckets
+// which slid out of the window being dropped. The window is the range on the histogram field found in the query.
+public class ElasticIncrementalDateHistogram {
+    private static final Pattern DATE_MATH = Pattern.compile("([+-])(\\d+)([yMwdhHms])|/([yMwdhHms])");
+
+    private final ElasticClient client;
+    private final Duration lookback;
+    private final Clock clock;
+    private final int maxEntries;
+    private final Map<ElasticRequestFingerprint, Entry> entries;
+
+    private ElasticIncrementalDateHistogram(Builder builder) {
+        this.client = builder.client;
+        this.lookback = builder.lookback;
+        this.clock = builder.clock;
+        this.maxEntries = builder.maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ElasticRequestFingerprint, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static Builder builder(ElasticClient client) {
+        return new Builder(client);
+    }
+
+    public ElasticDateHistogramBucketsResponse refresh(String index, ElasticSearchRequest request, String aggregationName) throws IOException, InterruptedException {
+        return ElasticClient.await(refreshAsync(index, request, aggregationName));
+    }
+
+    public CompletableFuture<ElasticDateHistogramBucketsResponse> refreshAsync(String index, ElasticSearchRequest request, String aggregationName) {
+        var histogram = histogram(request, aggregationName);
+        var field = histogram.field();
+        var window = new AtomicReference<ElasticRangeClause>();
+        var unbounded = rewriteRange(request.query(), field, range -> {
+            window.set(range);
+            return ElasticRangeClause.range(field, (String) null, null);
+        });
+        if(window.get() == null) {
+            throw new IllegalArgumentException("Request needs a range filter on %s to be refreshed incrementally".formatted(field));
+        }
+        // Sliding absolute windows are the same series, hence the cache key ignores the window bounds
+        var key = ElasticRequestFingerprint.of(index, aggregationName, request.withQuery(unbounded));
+        var now = clock.instant();
+        var windowFrom = resolve(window.get().gte(), now);
+        var windowStart = windowFrom == null ? null : histogram.bucketStart(windowFrom);
+        // Only the histogram is computed, other aggregations and hits would not be correct over the tail
+        var base = request.withSize(0).withAggregations(Map.of(aggregationName, histogram));
+
+        Entry cached;
+        synchronized(entries) {
+            cached = entries.get(key);
+        }
+        // The tail also covers the bucket which was open at the previous refresh, in case that one is older
+        var tailStart = cached == null ? null : histogram.bucketStart(min(now, cached.refreshedAt).minus(lookback));
+        if(tailStart == null || windowStart != null && !tailStart.isAfter(windowStart) || !cached.covers(windowStart)) {
+            return search(index, base, aggregationName)
+                .thenApply(buckets -> store(key, new Entry(buckets, now, windowStart)));
+        }
+        var tail = base.withQuery(rewriteRange(request.query(), field, range -> ElasticRangeClause.range(field, tailStart.toString(), range.lte())));
+        return search(index, tail, aggregationName)
+            .thenApply(buckets -> store(key, new Entry(splice(cached.buckets, buckets, windowStart, tailStart), now, windowStart)));
+    }
+
+    public void invalidateAll() {
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+
+    private static ElasticDateHistogramAggregation histogram(ElasticSearchRequest request, String aggregationName) {
+        if(request.aggregations() == null || !(request.aggregations().get(aggregationName) instanceof ElasticDateHistogramAggregation histogram)) {
+            throw new IllegalArgumentException("Aggregation %s is not a date_histogram of the request".formatted(aggregationName));
+        }
+        if(histogram.subAggregations() != null && histogram.subAggregations().values().stream().anyMatch(AbstractElasticPipelineAggregation.class::isInstance)) {
+            // They would only see the tail, evaluate them over the refreshed buckets with ElasticLocalPipelines instead
+            throw new IllegalArgumentException("Pipelines of %s cannot be refreshed incrementally".formatted(aggregationName));
+        }
+        return histogram;
+    }
+
+    private CompletableFuture<ElasticDateHistogramBucketsResponse> search(String index, ElasticSearchRequest request, String aggregationName) {
+        return client.searchAsync(index, request, Object.class).thenApply(response -> {
+            if(response.hasError()) {
+                var reason = response.getError() == null ? null : response.getError().reason();
+                throw new UncheckedIOException(new ElasticClientException(response.getStatus() == null ? 0 : response.getStatus(), "Histogram refresh failed: " + reason));
+            }
+            var buckets = response.getDateHistogramBuckets(aggregationName);
+            return buckets != null ? buckets : new ElasticDateHistogramBucketsResponse(new long[0], new String[0], new long[0], Map.of(), Map.of());
+        });
+    }
+
+    private ElasticDateHistogramBucketsResponse store(ElasticRequestFingerprint key, Entry entry) {
+        synchronized(entries) {
+            entries.put(key, entry);
+        }
+        return entry.buckets;
+    }
+
+    // Replaces the range on the field where it restricts the whole query: the query itself or a filter/must clause of it
+    private static ElasticSearchClause rewriteRange(ElasticSearchClause clause, String field, Function<ElasticRangeClause, ElasticRangeClause> rewrite) {
+        if(clause instanceof ElasticRangeClause range && field.equals(range.field())) {
+            return rewrite.apply(range);
+        } else if(clause instanceof ElasticBooleanClause bool) {
+            var body = bool.bool();
+            var must = rewriteAll(body.must(), field, rewrite);
+            var filter = rewriteAll(body.filter(), field, rewrite);
+            if(must != body.must() || filter != body.filter()) {
+                return new ElasticBooleanClause(new ElasticBooleanClause.BooleanBody(body.should(), must, body.mustNot(), filter, body.minimumShouldMatch()));
+            }
+        }
+        return clause;
+    }
+
+    private static List<ElasticSearchClause> rewriteAll(List<ElasticSearchClause> clauses, String field, Function<ElasticRangeClause, ElasticRangeClause> rewrite) {
+        if(clauses == null) {
+            return null;
+        }
+        var rewritten = new ArrayList<ElasticSearchClause>(clauses.size());
+        var changed = false;
+        for(var clause : clauses) {
+            var updated = rewriteRange(clause, field, rewrite);
+            changed |= updated != clause;
+            rewritten.add(updated);
+        }
+        return changed ? rewritten : clauses;
+    }
+
+    // Cached buckets still in the window and before the tail, followed by the tail buckets
+    static ElasticDateHistogramBucketsResponse splice(ElasticDateHistogramBucketsResponse cached, ElasticDateHistogramBucketsResponse tail, Instant windowStart, Instant tailStart) {
+        var rows = new ArrayList<Map.Entry<ElasticDateHistogramBucketsResponse, Integer>>();
+        for(int i = 0; i < cached.size(); i++) {
+            var key = cached.keys()[i];
+            if((windowStart == null || key >= windowStart.toEpochMilli()) && key < tailStart.toEpochMilli()) {
+                rows.add(Map.entry(cached, i));
+            }
+        }
+        for(int i = 0; i < tail.size(); i++) {
+            rows.add(Map.entry(tail, i));
+        }
+        var size = rows.size();
+        var keys = new long[size];
+        var keysAsString = new String[size];
+        var docCounts = new long[size];
+        var metricNames = new LinkedHashSet<>(cached.metrics().keySet());
+        metricNames.addAll(tail.metrics().keySet());
+        var subAggregationNames = new LinkedHashSet<>(cached.subAggregations().keySet());
+        subAggregationNames.addAll(tail.subAggregations().keySet());
+        Map<String, double[]> metrics = new LinkedHashMap<>();
+        metricNames.forEach(name -> metrics.put(name, new double[size]));
+        Map<String, ElasticAggregationResponse[]> subAggregations = new LinkedHashMap<>();
+        subAggregationNames.forEach(name -> subAggregations.put(name, new ElasticAggregationResponse[size]));
+        for(int i = 0; i < size; i++) {
+            var part = rows.get(i).getKey();
+            var row = rows.get(i).getValue();
+            keys[i] = part.keys()[row];
+            keysAsString[i] = part.keysAsString()[row];
+            docCounts[i] = part.docCounts()[row];
+            for(var metric : metrics.entrySet()) {
+                metric.getValue()[i] = part.metric(metric.getKey(), row);
+            }
+            for(var subAggregation : subAggregations.entrySet()) {
+                var column = part.subAggregations().get(subAggregation.getKey());
+                subAggregation.getValue()[i] = column == null ? null : column[row];
+            }
+        }
+        return new ElasticDateHistogramBucketsResponse(keys, keysAsString, docCounts, metrics, subAggregations);
+    }
+
+    // Range bounds are either absolute dates or now-relative date math like now-24h or now-1d/d
+    static Instant resolve(String bound, Instant now) {
+        if(bound == null) {
+            return null;
+        }
+        if(bound.startsWith("now")) {
+            var resolved = now.atZone(ZoneOffset.UTC);
+            var matcher = DATE_MATH.matcher(bound);
+            var position = 3;
+            while(position < bound.length()) {
+                if(!matcher.find(position) || matcher.start() != position) {
+                    throw new IllegalArgumentException("Unsupported date math " + bound);
+                }
+                if(matcher.group(4) != null) {
+                    var unit = unit(matcher.group(4));
+                    resolved = switch(unit) {
+                        case YEARS -> resolved.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+                        case MONTHS -> resolved.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+                        case WEEKS -> resolved.truncatedTo(ChronoUnit.DAYS).minusDays(resolved.getDayOfWeek().getValue() - 1);
+                        default -> resolved.truncatedTo(unit);
+                    };
+                } else {
+                    var amount = Long.parseLong(matcher.group(2));
+                    resolved = resolved.plus("-".equals(matcher.group(1)) ? -amount : amount, unit(matcher.group(3)));
+                }
+                position = matcher.end();
+            }
+            return resolved.toInstant();
+        }
+        try {
+            if(bound.chars().allMatch(Character::isDigit)) {
+                return Instant.ofEpochMilli(Long.parseLong(bound));
+            } else if(bound.length() == 10) {
+                return LocalDate.parse(bound).atStartOfDay(ZoneOffset.UTC).toInstant();
+            } else if(bound.endsWith("Z") || bound.matches(".*[+-]\\d\\d:\\d\\d$")) {
+                return Instant.parse(bound);
+            }
+            return LocalDateTime.parse(bound).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported range bound " + bound, e);
+        }
+    }
+
+    private static ChronoUnit unit(String symbol) {
+        return switch(symbol) {
+            case "y" -> ChronoUnit.YEARS;
+            case "M" -> ChronoUnit.MONTHS;
+            case "w" -> ChronoUnit.WEEKS;
+            case "d" -> ChronoUnit.DAYS;
+            case "h", "H" -> ChronoUnit.HOURS;
+            case "m" -> ChronoUnit.MINUTES;
+            default -> ChronoUnit.SECONDS;
+        };
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    // Buckets cached from the start of the window they were computed for, null when the window had no lower bound
+    private record Entry(ElasticDateHistogramBucketsResponse buckets, Instant refreshedAt, Instant coveredFrom) {
+        boolean covers(Instant windowStart) {
+            return coveredFrom == null || windowStart != null && !windowStart.isBefore(coveredFrom);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Builder {
+        private final ElasticClient client;
+        private Duration lookback = Duration.ZERO;
+        private Clock clock = Clock.systemUTC();
+        private int maxEntries = 100;
+
+        private Builder(ElasticClient client) {
+            this.client = client;
+        }
+
+        // How far before the open bucket documents may still arrive, the buckets it covers are queried again
+        public Builder withLookback(Duration lookback) {
+            this.lookback = lookback;
+            return this;
+        }
+
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder withMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public ElasticIncrementalDateHistogram build() {
+            return new ElasticIncrementalDateHistogram(this);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ElasticMultiSearchBatcher implements Closeable {
+    private final ElasticClient client;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<Pending<?>> buffer = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush = null;
+    private boolean closed = false;
+
+    private ElasticMultiSearchBatcher(Builder builder) {
+        this.client = builder.client;
+        this.windowMillis = builder.window.toMillis();
+        this.maxBatchSize = builder.maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "elastic-msearch-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Builder builder(ElasticClient client) {
+        return new Builder(client);
+    }
+
+    public <T> CompletableFuture<ElasticSearchResponse<T>> submit(String index, ElasticSearchRequest request, Class<T> sourceType) {
+        var pending = new Pending<>(ElasticMultiSearchItem.search(index, request, sourceType), new CompletableFuture<ElasticSearchResponse<T>>());
+        List<Pending<?>> batch = null;
+        synchronized(lock) {
+            if(closed) {
+                throw new IllegalStateException("Multi search batcher is closed");
+            }
+            buffer.add(pending);
+            if(buffer.size() >= maxBatchSize) {
+                batch = drainBuffer();
+            } else if(scheduledFlush == null) {
+                // The first request of a batch opens the window, later ones ride along
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if(batch != null) {
+            dispatch(batch);
+        }
+        return pending.future();
+    }
+
+    public <T> ElasticSearchResponse<T> search(String index, ElasticSearchRequest request, Class<T> sourceType) throws IOException, InterruptedException {
+        return ElasticClient.await(submit(index, request, sourceType));
+    }
+
+    public void flush() {
+        List<Pending<?>> batch;
+        synchronized(lock) {
+            batch = drainBuffer();
+        }
+        if(!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized(lock) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    private List<Pending<?>> drainBuffer() {
+        if(scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        var batch = buffer;
+        buffer = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending<?>> batch) {
+        // A single request does not need the multi search envelope
+        if(batch.size() == 1) {
+            batch.get(0).send(client);
+            return;
+        }
+        var items = batch.stream().<ElasticMultiSearchItem<?>>map(Pending::item).toList();
+        client.multiSearchAsync(null, items).whenComplete((responses, error) -> {
+            for(int i = 0; i < batch.size(); i++) {
+                if(error != null) {
+                    batch.get(i).future().completeExceptionally(error);
+                } else {
+                    batch.get(i).complete(responses.get(i));
+                }
+            }
+        });
+    }
+
+    private record Pending<T>(ElasticMultiSearchItem<T> item, CompletableFuture<ElasticSearchResponse<T>> future) {
+        @SuppressWarnings("unchecked")
+        void complete(ElasticSearchResponse<?> response) {
+            future.complete((ElasticSearchResponse<T>) response);
+        }
+
+        void send(ElasticClient client) {
+            client.searchAsync(item.index(), item.request(), item.sourceType()).whenComplete((response, error) -> {
+                if(error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(response);
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Builder {
+        private final ElasticClient client;
+        private Duration window = Duration.ofMillis(5);
+        private int maxBatchSize = 100;
+
+        private Builder(ElasticClient client) {
+            this.client = client;
+        }
+
+        public Builder withWindow(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public ElasticMultiSearchBatcher build() {
+            return new ElasticMultiSearchBatcher(this);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+public record ElasticMultiSearchItem<T>(String index, ElasticSearchRequest request, Class<T> sourceType) {
+    public static <T> ElasticMultiSearchItem<T> search(String index, ElasticSearchRequest request, Class<T> sourceType) {
+        return new ElasticMultiSearchItem<>(index, request, sourceType);
+    }
+}
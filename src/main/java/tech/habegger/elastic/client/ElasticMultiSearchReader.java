@@ -0,0 +1,64 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.response.ElasticSourceSlice;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ElasticMultiSearchReader {
+    private final ObjectMapper mapper;
+    private final boolean lazySource;
+
+    public ElasticMultiSearchReader(ObjectMapper mapper) {
+        this(mapper, false);
+    }
+
+    public ElasticMultiSearchReader(ObjectMapper mapper, boolean lazySource) {
+        this.mapper = mapper;
+        this.lazySource = lazySource;
+    }
+
+    public List<ElasticSearchResponse<?>> read(byte[] body, List<? extends ElasticMultiSearchItem<?>> items) throws IOException {
+        var readers = items.stream()
+            .map(item -> ElasticSearchResponse.reader(mapper, item.request(), item.sourceType()))
+            .map(reader -> lazySource ? ElasticSourceSlice.lazy(reader, body) : reader)
+            .toList();
+        try(var parser = mapper.createParser(body)) {
+            return read(parser, readers);
+        }
+    }
+
+    // Each entry of the responses array is read with the reader of the matching request, so that every response
+    // gets its own source type and bucket layouts.
+    static List<ElasticSearchResponse<?>> read(JsonParser parser, List<ObjectReader> readers) throws IOException {
+        if(parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected multi search response to start with an object");
+        }
+        List<ElasticSearchResponse<?>> responses = null;
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            var token = parser.nextToken();
+            if("responses".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                responses = new ArrayList<>(readers.size());
+                while(parser.nextToken() == JsonToken.START_OBJECT) {
+                    if(responses.size() >= readers.size()) {
+                        throw new IOException("Multi search response has more entries than requests");
+                    }
+                    responses.add(readers.get(responses.size()).readValue(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if(responses == null || responses.size() != readers.size()) {
+            throw new IOException("Expected %d multi search responses but got %s".formatted(readers.size(), responses == null ? "none" : responses.size()));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,52 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import tech.habegger.elastic.search.ElasticRequestWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public class ElasticMultiSearchWriter {
+    private final ObjectWriter writer;
+    private final ElasticRequestWriter requestWriter;
+    private final int separator;
+
+    public ElasticMultiSearchWriter(ObjectMapper mapper) {
+        // Multi search bodies are newline delimited, so every line must stay compact
+        this.writer = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.requestWriter = new ElasticRequestWriter(mapper);
+        this.separator = ElasticContentType.of(mapper.getFactory()).streamSeparator();
+    }
+
+    public byte[] writeAsBytes(List<? extends ElasticMultiSearchItem<?>> items) throws IOException {
+        var output = new ByteArrayOutputStream(items.size() * 256);
+        write(items, output);
+        return output.toByteArray();
+    }
+
+    public void write(List<? extends ElasticMultiSearchItem<?>> items, OutputStream output) throws IOException {
+        for(var item : items) {
+            writeLine(output, generator -> {
+                generator.writeStartObject();
+                if(item.index() != null) {
+                    generator.writeStringField("index", item.index());
+                }
+                generator.writeEndObject();
+            });
+            writeLine(output, generator -> requestWriter.write(item.request(), generator));
+        }
+    }
+
+    private void writeLine(OutputStream output, ElasticBulkWriter.Line line) throws IOException {
+        try(var generator = writer.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            line.write(generator);
+        }
+        output.write(separator);
+    }
+}
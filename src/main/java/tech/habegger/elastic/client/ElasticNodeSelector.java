@@ -0,0 +1,20 @@
+package tech.habegger.elastic.client;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@FunctionalInterface
+public interface ElasticNodeSelector {
+    URI select(List<URI> nodes);
+
+    static ElasticNodeSelector roundRobin() {
+        var next = new AtomicInteger();
+        return nodes -> nodes.get(Math.floorMod(next.getAndIncrement(), nodes.size()));
+    }
+
+    static ElasticNodeSelector random() {
+        return nodes -> nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+    }
+}
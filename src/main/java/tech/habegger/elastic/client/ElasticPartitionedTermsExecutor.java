@@ -0,0 +1,162 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.response.ElasticAggregationResponse;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.response.ElasticTermsBucketsResponse;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+// Runs one terms aggregation as N requests each restricted to a partition of the terms (include.partition), so that no
+// single request has to build every bucket. Partitions hold disjoint terms and are stitched back into one result.
+public class ElasticPartitionedTermsExecutor {
+    private final ElasticClient client;
+    private final int partitions;
+    private final int parallelism;
+
+    ElasticPartitionedTermsExecutor(ElasticClient client, int partitions, int parallelism) {
+        if(partitions < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Partitions and parallelism must be positive");
+        }
+        this.client = client;
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+    }
+
+    public static ElasticPartitionedTermsExecutor partitioned(ElasticClient client, int partitions, int parallelism) {
+        return new ElasticPartitionedTermsExecutor(client, partitions, parallelism);
+    }
+
+    public ElasticTermsBucketsResponse execute(String index, ElasticSearchRequest request, String aggregationName) throws IOException, InterruptedException {
+        return ElasticClient.await(executeAsync(index, request, aggregationName));
+    }
+
+    public CompletableFuture<ElasticTermsBucketsResponse> executeAsync(String index, ElasticSearchRequest request, String aggregationName) {
+        if(request.aggregations() == null || !(request.aggregations().get(aggregationName) instanceof ElasticTermsAggregation terms)) {
+            throw new IllegalArgumentException("Aggregation %s is not a terms aggregation of the request".formatted(aggregationName));
+        }
+        // Hits are returned by none of the partitions, they would be the same for each
+        var base = request.withSize(0);
+        var limiter = new ElasticRequestLimiter(parallelism);
+        List<CompletableFuture<ElasticSearchResponse<Object>>> pending = IntStream.range(0, partitions)
+            .mapToObj(partition -> base.withAggregation(aggregationName, terms.withPartition(partition, partitions)))
+            .map(partitionRequest -> limiter.submit(() -> client.searchAsync(index, partitionRequest, Object.class)))
+            .toList();
+        return CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+            .thenApply(done -> {
+                var parts = new ArrayList<ElasticTermsBucketsResponse>(partitions);
+                for(var future : pending) {
+                    var response = future.join();
+                    if(response.hasError()) {
+                        var reason = response.getError() == null ? null : response.getError().reason();
+                        throw new UncheckedIOException(new ElasticClientException(response.getStatus() == null ? 0 : response.getStatus(), "Partitioned search failed: " + reason));
+                    }
+                    var part = response.getTermsBuckets(aggregationName);
+                    if(part != null) {
+                        parts.add(part);
+                    }
+                }
+                return stitch(parts, terms.order());
+            });
+    }
+
+    static ElasticTermsBucketsResponse stitch(List<ElasticTermsBucketsResponse> parts, Map<String, OrderDirection> order) {
+        var size = parts.stream().mapToInt(ElasticTermsBucketsResponse::size).sum();
+        var keys = new String[size];
+        var docCounts = new long[size];
+        var metricNames = new LinkedHashSet<String>();
+        var subAggregationNames = new LinkedHashSet<String>();
+        long errorUpperBound = 0;
+        long sumOtherDocCount = 0;
+        for(var part : parts) {
+            metricNames.addAll(part.metrics().keySet());
+            subAggregationNames.addAll(part.subAggregations().keySet());
+            errorUpperBound += part.docCountErrorUpperBound() == null ? 0 : part.docCountErrorUpperBound();
+            sumOtherDocCount += part.sumOtherDocCount() == null ? 0 : part.sumOtherDocCount();
+        }
+        Map<String, double[]> metrics = new LinkedHashMap<>();
+        metricNames.forEach(name -> metrics.put(name, new double[size]));
+        Map<String, ElasticAggregationResponse[]> subAggregations = new LinkedHashMap<>();
+        subAggregationNames.forEach(name -> subAggregations.put(name, new ElasticAggregationResponse[size]));
+
+        var offset = 0;
+        for(var part : parts) {
+            var length = part.size();
+            System.arraycopy(part.keys(), 0, keys, offset, length);
+            System.arraycopy(part.docCounts(), 0, docCounts, offset, length);
+            for(var metric : metrics.entrySet()) {
+                var column = part.metrics().get(metric.getKey());
+                if(column != null) {
+                    System.arraycopy(column, 0, metric.getValue(), offset, length);
+                } else {
+                    Arrays.fill(metric.getValue(), offset, offset + length, Double.NaN);
+                }
+            }
+            for(var subAggregation : subAggregations.entrySet()) {
+                var column = part.subAggregations().get(subAggregation.getKey());
+                if(column != null) {
+                    System.arraycopy(column, 0, subAggregation.getValue(), offset, length);
+                }
+            }
+            offset += length;
+        }
+        return sort(new ElasticTermsBucketsResponse(keys, docCounts, metrics, subAggregations, errorUpperBound, sumOtherDocCount), order);
+    }
+
+    // Applies the requested bucket order across partitions, by default the most frequent terms first
+    private static ElasticTermsBucketsResponse sort(ElasticTermsBucketsResponse stitched, Map<String, OrderDirection> order) {
+        var entry = order == null || order.isEmpty() ? Map.entry("_count", OrderDirection.desc) : order.entrySet().iterator().next();
+        var keys = stitched.keys();
+        Comparator<Integer> comparator;
+        if("_key".equals(entry.getKey())) {
+            comparator = Comparator.comparing(i -> keys[i]);
+        } else if("_count".equals(entry.getKey())) {
+            var counts = stitched.docCounts();
+            comparator = Comparator.comparingLong(i -> counts[i]);
+        } else {
+            var column = stitched.metric(entry.getKey());
+            if(column == null) {
+                // Ordered on something not returned in the buckets, partitions are kept as they are
+                return stitched;
+            }
+            comparator = Comparator.comparingDouble(i -> column[i]);
+        }
+        if(entry.getValue() == OrderDirection.desc) {
+            comparator = comparator.reversed();
+        }
+        comparator = comparator.thenComparing(i -> keys[i]);
+        var permutation = IntStream.range(0, stitched.size()).boxed().sorted(comparator).mapToInt(Integer::intValue).toArray();
+
+        var sortedKeys = new String[permutation.length];
+        var sortedCounts = new long[permutation.length];
+        Map<String, double[]> sortedMetrics = new LinkedHashMap<>();
+        stitched.metrics().forEach((name, values) -> sortedMetrics.put(name, new double[permutation.length]));
+        Map<String, ElasticAggregationResponse[]> sortedSubAggregations = new LinkedHashMap<>();
+        stitched.subAggregations().forEach((name, values) -> sortedSubAggregations.put(name, new ElasticAggregationResponse[permutation.length]));
+        for(int i = 0; i < permutation.length; i++) {
+            var source = permutation[i];
+            sortedKeys[i] = keys[source];
+            sortedCounts[i] = stitched.docCounts()[source];
+            for(var metric : sortedMetrics.entrySet()) {
+                metric.getValue()[i] = stitched.metrics().get(metric.getKey())[source];
+            }
+            for(var subAggregation : sortedSubAggregations.entrySet()) {
+                subAggregation.getValue()[i] = stitched.subAggregations().get(subAggregation.getKey())[source];
+            }
+        }
+        return new ElasticTermsBucketsResponse(sortedKeys, sortedCounts, sortedMetrics, sortedSubAggregations,
+            stitched.docCountErrorUpperBound(), stitched.sumOtherDocCount());
+    }
+}
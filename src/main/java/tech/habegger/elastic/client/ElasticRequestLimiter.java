@@ -0,0 +1,73 @@
+package tech.habegger.elastic.client;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+class ElasticRequestLimiter {
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    // Calls which complete right away, e.g. rejected or cached ones, release their slot while this thread is still
+    // draining: the loop already running picks the next calls instead of recursing into another one
+    private final ThreadLocal<Boolean> draining = ThreadLocal.withInitial(() -> false);
+
+    ElasticRequestLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        var result = new CompletableFuture<T>();
+        pending.add(() -> {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, error) -> {
+                release();
+                if(error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        drain();
+        return result;
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        if(draining.get()) {
+            return;
+        }
+        draining.set(true);
+        try {
+            while(!pending.isEmpty()) {
+                var current = inFlight.get();
+                if(current >= maxInFlight) {
+                    return;
+                }
+                if(!inFlight.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                var next = pending.poll();
+                if(next == null) {
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                next.run();
+            }
+        } finally {
+            draining.set(false);
+        }
+    }
+}
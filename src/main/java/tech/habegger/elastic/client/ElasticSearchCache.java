@@ -0,0 +1,177 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.search.ElasticRequestFingerprint;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class ElasticSearchCache {
+    private final ElasticClient client;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Map<ElasticRequestFingerprint, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ElasticSearchCache(Builder builder) {
+        this.client = builder.client;
+        this.maxEntries = builder.maxEntries;
+        this.ttl = builder.ttl;
+        this.clock = builder.clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ElasticRequestFingerprint, Entry> eldest) {
+                if(size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static Builder builder(ElasticClient client) {
+        return new Builder(client);
+    }
+
+    public <T> CompletableFuture<ElasticSearchResponse<T>> searchAsync(String index, ElasticSearchRequest request, Class<T> sourceType) {
+        var key = ElasticRequestFingerprint.of(index, sourceType.getName(), request);
+        return cached(key, () -> client.searchAsync(index, request, sourceType));
+    }
+
+    public <T> CompletableFuture<ElasticSearchResponse<T>> searchAsync(String index, ElasticSearchRequest request, TypeReference<ElasticSearchResponse<T>> responseType) {
+        var key = ElasticRequestFingerprint.of(index, responseType.getType().getTypeName(), request);
+        return cached(key, () -> client.searchAsync(index, request, responseType));
+    }
+
+    public <T> ElasticSearchResponse<T> search(String index, ElasticSearchRequest request, Class<T> sourceType) throws IOException, InterruptedException {
+        return ElasticClient.await(searchAsync(index, request, sourceType));
+    }
+
+    public <T> ElasticSearchResponse<T> search(String index, ElasticSearchRequest request, TypeReference<ElasticSearchResponse<T>> responseType) throws IOException, InterruptedException {
+        return ElasticClient.await(searchAsync(index, request, responseType));
+    }
+
+    public void invalidateAll() {
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized(entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum(), size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> cached(ElasticRequestFingerprint key, Supplier<CompletableFuture<T>> loader) {
+        var now = clock.millis();
+        CompletableFuture<T> created;
+        synchronized(entries) {
+            var entry = entries.get(key);
+            if(entry != null && !entry.isExpired(now)) {
+                if(entry.future.isDone()) {
+                    hits.increment();
+                } else {
+                    // Singleflight: join the identical request already in flight
+                    coalesced.increment();
+                }
+                return (CompletableFuture<T>) entry.future;
+            }
+            misses.increment();
+            created = new CompletableFuture<>();
+            entries.put(key, new Entry(created, now + ttl.toMillis()));
+        }
+        CompletableFuture<T> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            // Nothing else would complete the entry, leaving the callers which joined it waiting until it expires
+            created.completeExceptionally(e);
+            forget(key, created);
+            return created;
+        }
+        loaded.whenComplete((value, error) -> {
+            // Failures are handed to the waiting callers but never cached
+            if(error != null) {
+                forget(key, created);
+                created.completeExceptionally(error);
+            } else {
+                if(value instanceof ElasticSearchResponse<?> response && response.hasError()) {
+                    forget(key, created);
+                }
+                created.complete(value);
+            }
+        });
+        return created;
+    }
+
+    private void forget(ElasticRequestFingerprint key, CompletableFuture<?> future) {
+        synchronized(entries) {
+            var entry = entries.get(key);
+            if(entry != null && entry.future == future) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private record Entry(CompletableFuture<?> future, long expiresAt) {
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    public record Stats(long hits, long misses, long coalesced, long evictions, int size) {
+        public double hitRatio() {
+            var requests = hits + misses + coalesced;
+            return requests == 0 ? 0.0 : (double) (hits + coalesced) / requests;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Builder {
+        private final ElasticClient client;
+        private int maxEntries = 1_000;
+        private Duration ttl = Duration.ofMinutes(1);
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(ElasticClient client) {
+            this.client = client;
+        }
+
+        public Builder withMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder withTtl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public ElasticSearchCache build() {
+            return new ElasticSearchCache(this);
+        }
+    }
+}
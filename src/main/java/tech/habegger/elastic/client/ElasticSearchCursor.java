@@ -0,0 +1,179 @@
+package tech.habegger.elastic.client;
+
+import tech.habegger.elastic.response.ElasticHit;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.PitSpec;
+import tech.habegger.elastic.shared.SliceSpec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ElasticSearchCursor<T> implements Iterator<ElasticHit<T>>, Closeable {
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private final ElasticClient client;
+    private final ElasticSearchRequest request;
+    private final Class<T> sourceType;
+    private final String keepAlive;
+    private final SliceSpec slice;
+    private final boolean ownsPit;
+    private final int pageSize;
+    // Shared by the slices of a stream, so that the id they last got back is the one closed
+    private final AtomicReference<String> pitId;
+
+    private Iterator<ElasticHit<T>> page = Collections.emptyIterator();
+    private CompletableFuture<ElasticSearchResponse<T>> nextPage;
+
+    ElasticSearchCursor(ElasticClient client, ElasticSearchRequest request, Class<T> sourceType, AtomicReference<String> pitId, String keepAlive, SliceSpec slice, boolean ownsPit) {
+        this.client = client;
+        this.request = request;
+        this.sourceType = sourceType;
+        this.pitId = pitId;
+        this.keepAlive = keepAlive;
+        this.slice = slice;
+        this.ownsPit = ownsPit;
+        this.pageSize = request.size() == null ? DEFAULT_PAGE_SIZE : request.size();
+        this.nextPage = fetch(null);
+    }
+
+    public static <T> ElasticSearchCursor<T> open(ElasticClient client, String index, ElasticSearchRequest request, Class<T> sourceType, Duration keepAlive) throws IOException, InterruptedException {
+        var pitId = client.openPointInTime(index, keepAlive);
+        return new ElasticSearchCursor<>(client, request, sourceType, new AtomicReference<>(pitId), ElasticClient.keepAlive(keepAlive), null, true);
+    }
+
+    public static <T> Stream<ElasticHit<T>> stream(ElasticClient client, String index, ElasticSearchRequest request, Class<T> sourceType, Duration keepAlive) throws IOException, InterruptedException {
+        return open(client, index, request, sourceType, keepAlive).stream();
+    }
+
+    public static <T> Stream<ElasticHit<T>> stream(ElasticClient client, String index, ElasticSearchRequest request, Class<T> sourceType, Duration keepAlive, int slices) throws IOException, InterruptedException {
+        if(slices <= 1) {
+            return stream(client, index, request, sourceType, keepAlive);
+        }
+        var pitId = new AtomicReference<>(client.openPointInTime(index, keepAlive));
+        List<ElasticSearchCursor<T>> cursors = IntStream.range(0, slices)
+            .mapToObj(id -> new ElasticSearchCursor<>(client, request, sourceType, pitId, ElasticClient.keepAlive(keepAlive), new SliceSpec(id, slices), false))
+            .toList();
+        return cursors.parallelStream()
+            .flatMap(ElasticSearchCursor::stream)
+            .onClose(() -> {
+                cursors.forEach(ElasticSearchCursor::cancel);
+                closePointInTime(client, pitId.get());
+            });
+    }
+
+    public Stream<ElasticHit<T>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(!page.hasNext()) {
+            if(nextPage == null) {
+                return false;
+            }
+            var response = awaitPage();
+            if(response.hasError()) {
+                nextPage = null;
+                var reason = response.getError() == null ? null : response.getError().reason();
+                throw new UncheckedIOException(new ElasticClientException(response.getStatus() == null ? 0 : response.getStatus(), "Search failed: " + reason));
+            }
+            if(response.getPitId() != null) {
+                pitId.set(response.getPitId());
+            }
+            var hits = response.getHits() == null ? List.<ElasticHit<T>>of() : response.getHits();
+            if(hits.size() < pageSize || hits.isEmpty()) {
+                nextPage = null;
+            } else {
+                var searchAfter = hits.get(hits.size() - 1).getSortValues();
+                if(searchAfter == null) {
+                    throw new IllegalStateException("Hits must carry sort values to be paginated with search_after");
+                }
+                // Prefetch the next page while the current one is being consumed
+                nextPage = fetch(searchAfter);
+            }
+            page = hits.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public ElasticHit<T> next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        cancel();
+        if(ownsPit) {
+            try {
+                client.closePointInTime(pitId.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while closing point in time");
+            }
+        }
+    }
+
+    private void cancel() {
+        if(nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+        page = Collections.emptyIterator();
+    }
+
+    private CompletableFuture<ElasticSearchResponse<T>> fetch(List<Object> searchAfter) {
+        var pageRequest = request
+            .withPit(new PitSpec(pitId.get(), keepAlive))
+            .withSearchAfter(searchAfter)
+            .withSlice(slice);
+        return client.searchAsync(null, pageRequest, sourceType);
+    }
+
+    private ElasticSearchResponse<T> awaitPage() {
+        try {
+            return ElasticClient.await(nextPage);
+        } catch (IOException e) {
+            nextPage = null;
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the next page"));
+        }
+    }
+
+    private static void closePointInTime(ElasticClient client, String pitId) {
+        try {
+            client.closePointInTime(pitId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -28,7 +28,7 @@ public interface ElasticProperty {
             Map<String, Object> rawData = new LinkedHashMap<>();
             var token = parser.nextToken();
             while(token == JsonToken.FIELD_NAME) {
-                var fieldName = parser.getValueAsString();
+                var fieldName = parser.currentName();
                 parser.nextToken();
                 Object value = switch(fieldName) {
                     case "properties", "fields" -> codec.readValue(parser, new TypeReference<Map<String, ElasticProperty>>(){});
@@ -0,0 +1,194 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import tech.habegger.elastic.aggregation.ElasticStatsAggregation;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+class BucketColumns {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Set<String> STATS_FIELDS = Set.of("count", "min", "max", "avg", "sum");
+
+    private final ElasticBucketLayout layout;
+    private final String path;
+    private int size = 0;
+    private int capacity = INITIAL_CAPACITY;
+    private String[] stringKeys;
+    private double[] doubleKeys;
+    private long[] longKeys;
+    private String[] keysAsString;
+    private long[] docCounts = new long[INITIAL_CAPACITY];
+    private final Map<String, double[]> metrics = new LinkedHashMap<>();
+    private final Map<String, ElasticAggregationResponse[]> subAggregations = new LinkedHashMap<>();
+
+    private BucketColumns(ElasticBucketLayout layout, String path) {
+        this.layout = layout;
+        this.path = path;
+        switch(layout) {
+            case TERMS -> stringKeys = new String[INITIAL_CAPACITY];
+            case HISTOGRAM -> doubleKeys = new double[INITIAL_CAPACITY];
+            case DATE_HISTOGRAM -> longKeys = new long[INITIAL_CAPACITY];
+        }
+        if(layout != ElasticBucketLayout.TERMS) {
+            keysAsString = new String[INITIAL_CAPACITY];
+        }
+    }
+
+    static BucketColumns read(JsonParser parser, DeserializationContext context, ElasticBucketLayout layout, String path) throws IOException {
+        var columns = new BucketColumns(layout, path);
+        if(parser.currentToken() != JsonToken.START_ARRAY) {
+            context.reportInputMismatch(ElasticAggregationResponse.class, "Expected buckets array for %s aggregation", layout);
+        }
+        while(parser.nextToken() == JsonToken.START_OBJECT) {
+            columns.readBucket(parser, context);
+        }
+        return columns;
+    }
+
+    ElasticTypedBucketsResponse toResponse(Long docCountErrorUpperBound, Long sumOtherDocCount) {
+        trim();
+        return switch(layout) {
+            case TERMS -> new ElasticTermsBucketsResponse(stringKeys, docCounts, metrics, subAggregations, docCountErrorUpperBound, sumOtherDocCount);
+            case HISTOGRAM -> new ElasticHistogramBucketsResponse(doubleKeys, keysAsString, docCounts, metrics, subAggregations);
+            case DATE_HISTOGRAM -> new ElasticDateHistogramBucketsResponse(longKeys, keysAsString, docCounts, metrics, subAggregations);
+        };
+    }
+
+    private void readBucket(JsonParser parser, DeserializationContext context) throws IOException {
+        if(size == capacity) {
+            grow();
+        }
+        var token = parser.nextToken();
+        while(token == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            token = parser.nextToken();
+            switch(fieldName) {
+                case "key" -> readKey(parser);
+                case "key_as_string" -> {
+                    if(keysAsString != null) {
+                        keysAsString[size] = parser.getValueAsString();
+                    }
+                }
+                case "doc_count" -> docCounts[size] = parser.getLongValue();
+                default -> {
+                    if(token == JsonToken.START_OBJECT) {
+                        readSubAggregation(fieldName, parser, context);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            token = parser.nextToken();
+        }
+        size++;
+    }
+
+    private void readKey(JsonParser parser) throws IOException {
+        switch(layout) {
+            case TERMS -> stringKeys[size] = parser.getValueAsString();
+            case HISTOGRAM -> doubleKeys[size] = parser.getValueAsDouble();
+            case DATE_HISTOGRAM -> longKeys[size] = parser.getValueAsLong();
+        }
+    }
+
+    private void readSubAggregation(String name, JsonParser parser, DeserializationContext context) throws IOException {
+        var token = parser.nextToken();
+        if(token == JsonToken.FIELD_NAME && "value".equals(parser.currentName())) {
+            parser.nextToken();
+            column(name)[size] = numberOrNaN(parser);
+            parser.skipChildren();
+            skipRemainingFields(parser);
+            return;
+        }
+        // Only plain stats are flattened into columns, extended_stats and others are kept whole
+        if(token == JsonToken.FIELD_NAME && ElasticBucketLayout.requested(context, ElasticBucketLayout.path(path, name)) instanceof ElasticStatsAggregation) {
+            while(token == JsonToken.FIELD_NAME) {
+                var statName = parser.currentName();
+                parser.nextToken();
+                if(STATS_FIELDS.contains(statName)) {
+                    column(name + "." + statName)[size] = numberOrNaN(parser);
+                } else {
+                    parser.skipChildren();
+                }
+                token = parser.nextToken();
+            }
+            return;
+        }
+
+        var buffer = context.bufferForInputBuffering(parser);
+        buffer.writeStartObject();
+        buffer.writeFieldName(name);
+        buffer.writeStartObject();
+        while(token == JsonToken.FIELD_NAME) {
+            buffer.copyCurrentStructure(parser);
+            token = parser.nextToken();
+        }
+        buffer.writeEndObject();
+        buffer.writeEndObject();
+        var bufferedParser = buffer.asParserOnFirstToken();
+        bufferedParser.nextToken();
+        bufferedParser.nextToken();
+        subAggregations.computeIfAbsent(name, k -> new ElasticAggregationResponse[capacity])[size] =
+            context.readValue(bufferedParser, ElasticAggregationResponse.class);
+    }
+
+    private static void skipRemainingFields(JsonParser parser) throws IOException {
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private static double numberOrNaN(JsonParser parser) throws IOException {
+        return parser.currentToken().isNumeric() ? parser.getDoubleValue() : Double.NaN;
+    }
+
+    private double[] column(String name) {
+        return metrics.computeIfAbsent(name, k -> {
+            var column = new double[capacity];
+            Arrays.fill(column, Double.NaN);
+            return column;
+        });
+    }
+
+    private void grow() {
+        capacity = capacity * 2;
+        resize(capacity);
+        metrics.replaceAll((name, column) -> {
+            var previousLength = column.length;
+            var resized = Arrays.copyOf(column, capacity);
+            Arrays.fill(resized, previousLength, capacity, Double.NaN);
+            return resized;
+        });
+    }
+
+    private void trim() {
+        if(size != capacity) {
+            resize(size);
+            metrics.replaceAll((name, column) -> Arrays.copyOf(column, size));
+        }
+    }
+
+    private void resize(int length) {
+        docCounts = Arrays.copyOf(docCounts, length);
+        if(stringKeys != null) {
+            stringKeys = Arrays.copyOf(stringKeys, length);
+        }
+        if(doubleKeys != null) {
+            doubleKeys = Arrays.copyOf(doubleKeys, length);
+        }
+        if(longKeys != null) {
+            longKeys = Arrays.copyOf(longKeys, length);
+        }
+        if(keysAsString != null) {
+            keysAsString = Arrays.copyOf(keysAsString, length);
+        }
+        subAggregations.replaceAll((name, column) -> Arrays.copyOf(column, length));
+    }
+}
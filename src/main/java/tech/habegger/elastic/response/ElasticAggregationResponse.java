@@ -2,6 +2,7 @@ package tech.habegger.elastic.response;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
@@ -24,12 +25,26 @@ public interface ElasticAggregationResponse {
 
         @Override
         public ElasticAggregationResponse deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            // Sub-aggregations read along are looked up under the path of this one
+            var parentPath = (String) context.getAttribute(ElasticBucketLayout.PATH_ATTRIBUTE);
+            var name = parser.currentName();
+            var path = name == null ? parentPath : ElasticBucketLayout.path(parentPath, name);
+            context.setAttribute(ElasticBucketLayout.PATH_ATTRIBUTE, path);
+            try {
+                return read(parser, context, path);
+            } finally {
+                context.setAttribute(ElasticBucketLayout.PATH_ATTRIBUTE, parentPath);
+            }
+        }
+
+        private ElasticAggregationResponse read(JsonParser parser, DeserializationContext context, String path) throws IOException {
             var codec = parser.getCodec();
+            var layout = ElasticBucketLayout.of(ElasticBucketLayout.requested(context, path));
             Map<String, Object> rawData = new LinkedHashMap<>();
             var token = parser.nextToken();
             boolean inFilter = false;
             while(token == JsonToken.FIELD_NAME) {
-                var fieldName = parser.getValueAsString();
+                var fieldName = parser.currentName();
                 parser.nextToken();
                 Object value = switch(fieldName) {
                     case "doc_count" -> {
@@ -40,12 +55,18 @@ public interface ElasticAggregationResponse {
                         codec.readValue(parser, Long.class);
                     case "value" -> codec.readValue(parser, Number.class);
                     case "value_as_string" -> codec.readValue(parser, String.class);
-                    case "max", "sum", "avg", "min" -> codec.readValue(parser, Double.class);
-                    case "buckets" -> codec.readValue(parser, new TypeReference<List<Map<String, ?>>>(){});
+                    case "max", "sum", "avg", "min", "sum_of_squares", "variance", "std_deviation" -> codec.readValue(parser, Double.class);
+                    case "std_deviation_bounds" -> codec.readValue(parser, new TypeReference<Map<String, Double>>(){});
+                    case "values" -> readValues(parser, codec);
+                    case "after_key" -> codec.readValue(parser, new TypeReference<LinkedHashMap<String, Object>>(){});
+                    case "buckets" -> layout != null
+                        ? BucketColumns.read(parser, context, layout, path)
+                        : codec.readValue(parser, new TypeReference<List<Map<String, ?>>>(){});
                     default -> {
                         if(inFilter) {
-                            yield codec.readValue(parser, ElasticAggregationResponse.class);
+                            yield context.readValue(parser, ElasticAggregationResponse.class);
                         } else {
+                            parser.skipChildren();
                             yield null;
                         }
                     }
@@ -66,6 +87,16 @@ public interface ElasticAggregationResponse {
                     (Long)rawData.get("doc_count") ,
                     aggregations
                 );
+            } else if(rawData.get("buckets") instanceof BucketColumns columns) {
+                return columns.toResponse(
+                    (Long) rawData.get("doc_count_error_upper_bound"),
+                    (Long) rawData.get("sum_other_doc_count")
+                );
+            } else if(rawData.containsKey("after_key")) {
+                return new ElasticCompositeAggregationResponse(
+                    (Map<String, Object>) rawData.get("after_key"),
+                    (List<Map<String, ?>>) rawData.get("buckets")
+                );
             } else if(rawData.containsKey("buckets")) {
                 return new ElasticBucketsAggregationResponse((List<Map<String, ?>>)rawData.get("buckets"));
             } else {
@@ -78,11 +109,28 @@ public interface ElasticAggregationResponse {
                     (Double) rawData.get("max"),
                     (Double) rawData.get("sum"),
                     (Double) rawData.get("avg"),
-                    (Double) rawData.get("min")
+                    (Double) rawData.get("min"),
+                    (Double) rawData.get("sum_of_squares"),
+                    (Double) rawData.get("variance"),
+                    (Double) rawData.get("std_deviation"),
+                    (Map<String, Double>) rawData.get("std_deviation_bounds"),
+                    (Map<String, Double>) rawData.get("values")
                 );
             }
         }
 
+        // Percentiles are keyed by default, or a list of key/value pairs with keyed set to false
+        private static Map<String, Double> readValues(JsonParser parser, ObjectCodec codec) throws IOException {
+            if(parser.currentToken() == JsonToken.START_ARRAY) {
+                Map<String, Double> values = new LinkedHashMap<>();
+                for(Map<String, Object> entry : codec.readValue(parser, new TypeReference<List<Map<String, Object>>>(){})) {
+                    values.put(String.valueOf(entry.get("key")), entry.get("value") instanceof Number number ? number.doubleValue() : null);
+                }
+                return values;
+            }
+            return codec.readValue(parser, new TypeReference<LinkedHashMap<String, Double>>(){});
+        }
+
         public ElasticAggregationResponseDeserializer(Class<?> vc) {
             super(vc);
         }
@@ -0,0 +1,63 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.databind.DeserializationContext;
+import tech.habegger.elastic.aggregation.ElasticAggregations;
+import tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation;
+import tech.habegger.elastic.aggregation.ElasticHistogramAggregation;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum ElasticBucketLayout {
+    TERMS,
+    HISTOGRAM,
+    DATE_HISTOGRAM;
+
+    public static final String CONTEXT_ATTRIBUTE = ElasticBucketLayout.class.getName();
+    // Path of the aggregation being read, under which its sub-aggregations are looked up
+    static final String PATH_ATTRIBUTE = CONTEXT_ATTRIBUTE + ".path";
+    private static final String PATH_SEPARATOR = ">";
+
+    public static ElasticBucketLayout of(ElasticAggregations aggregation) {
+        if(aggregation instanceof ElasticTermsAggregation) {
+            return TERMS;
+        } else if(aggregation instanceof ElasticDateHistogramAggregation) {
+            return DATE_HISTOGRAM;
+        } else if(aggregation instanceof ElasticHistogramAggregation) {
+            return HISTOGRAM;
+        }
+        return null;
+    }
+
+    // Requested aggregations keyed by their path in the aggregation tree, e.g. sales>by_type, as names are only
+    // unique among siblings
+    public static Map<String, ElasticAggregations> aggregations(ElasticSearchRequest request) {
+        Map<String, ElasticAggregations> aggregations = new HashMap<>();
+        collect(null, request.aggregations(), aggregations);
+        return aggregations;
+    }
+
+    static String path(String parent, String name) {
+        return parent == null ? name : parent + PATH_SEPARATOR + name;
+    }
+
+    static ElasticAggregations requested(DeserializationContext context, String path) {
+        if(path != null && context.getAttribute(CONTEXT_ATTRIBUTE) instanceof Map<?, ?> aggregations) {
+            return (ElasticAggregations) aggregations.get(path);
+        }
+        return null;
+    }
+
+    private static void collect(String parent, Map<String, ElasticAggregations> aggregations, Map<String, ElasticAggregations> collected) {
+        if(aggregations == null) {
+            return;
+        }
+        aggregations.forEach((name, aggregation) -> {
+            var path = path(parent, name);
+            collected.put(path, aggregation);
+            collect(path, aggregation.subAggregations(), collected);
+        });
+    }
+}
@@ -1,10 +1,12 @@
 package tech.habegger.elastic.response;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.Map;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 @SuppressWarnings({"FieldCanBeLocal", "unused"})
 public class ElasticBulkEntry {
     private final String _index;
@@ -12,6 +14,8 @@ public class ElasticBulkEntry {
     private final Integer _version;
     private final String result;
     private final Map<String, String> shards;
+    private final Integer status;
+    private final ElasticSearchError error;
 
     @JsonCreator
     public ElasticBulkEntry(
@@ -19,12 +23,16 @@ public class ElasticBulkEntry {
         @JsonProperty("_id") String id,
         @JsonProperty("_version") Integer version,
         @JsonProperty("result") String result,
-        @JsonProperty("_shards") Map<String, String> shards) {
+        @JsonProperty("_shards") Map<String, String> shards,
+        @JsonProperty("status") Integer status,
+        @JsonProperty("error") ElasticSearchError error) {
         this._index = index;
         this._id = id;
         this._version = version;
         this.result = result;
         this.shards = shards;
+        this.status = status;
+        this.error = error;
     }
 
     public String getIndex() {
@@ -35,5 +43,20 @@ public class ElasticBulkEntry {
         return _id;
     }
 
+    public String getResult() {
+        return result;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public ElasticSearchError getError() {
+        return error;
+    }
 
 }
@@ -1,10 +1,12 @@
 package tech.habegger.elastic.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
 import java.util.Map;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 @SuppressWarnings("unused")
 public class ElasticBulkResponse {
     @JsonProperty("took")
@@ -14,6 +16,14 @@ public class ElasticBulkResponse {
     @JsonProperty("items")
     List<Map<String, ElasticBulkEntry>> items;
 
+    public String getTook() {
+        return took;
+    }
+
+    public boolean hasErrors() {
+        return Boolean.TRUE.equals(errors);
+    }
+
     public List<Map<String, ElasticBulkEntry>> getItems() {
         return items;
     }
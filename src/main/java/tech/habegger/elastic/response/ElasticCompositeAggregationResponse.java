@@ -0,0 +1,10 @@
+package tech.habegger.elastic.response;
+
+import java.util.List;
+import java.util.Map;
+
+public record ElasticCompositeAggregationResponse(
+    Map<String, Object> afterKey,
+    List<Map<String, ?>> buckets
+) implements ElasticAggregationResponse {
+}
@@ -0,0 +1,26 @@
+package tech.habegger.elastic.response;
+
+import java.time.Instant;
+import java.util.Map;
+
+public record ElasticDateHistogramBucketsResponse(
+    long[] keys,
+    String[] keysAsString,
+    long[] docCounts,
+    Map<String, double[]> metrics,
+    Map<String, ElasticAggregationResponse[]> subAggregations
+) implements ElasticTypedBucketsResponse {
+    @Override
+    public Object key(int index) {
+        return keys[index];
+    }
+
+    @Override
+    public String keyAsString(int index) {
+        return keysAsString[index];
+    }
+
+    public Instant instant(int index) {
+        return Instant.ofEpochMilli(keys[index]);
+    }
+}
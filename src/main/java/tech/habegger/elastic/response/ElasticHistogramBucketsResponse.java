@@ -0,0 +1,21 @@
+package tech.habegger.elastic.response;
+
+import java.util.Map;
+
+public record ElasticHistogramBucketsResponse(
+    double[] keys,
+    String[] keysAsString,
+    long[] docCounts,
+    Map<String, double[]> metrics,
+    Map<String, ElasticAggregationResponse[]> subAggregations
+) implements ElasticTypedBucketsResponse {
+    @Override
+    public Object key(int index) {
+        return keys[index];
+    }
+
+    @Override
+    public String keyAsString(int index) {
+        return keysAsString[index];
+    }
+}
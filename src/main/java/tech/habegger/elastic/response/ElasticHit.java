@@ -2,7 +2,19 @@ package tech.habegger.elastic.response;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.UTF8StreamJsonParser;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
+import java.io.IOException;
 import java.util.List;
 
 @SuppressWarnings("unused")
@@ -10,8 +22,8 @@ public class ElasticHit<T> {
     private final String _index;
     private final String _id;
     private final Double _score;
-    private final List<Double> sort;
-    private final T _source;
+    private final List<Object> sort;
+    private final Object _source;
 
     private final List<String> _ignored;
     @JsonCreator
@@ -19,8 +31,8 @@ public class ElasticHit<T> {
         @JsonProperty("_index") String index,
         @JsonProperty("_id") String id,
         @JsonProperty("_score") Double score,
-        @JsonProperty("_source") T source,
-        @JsonProperty("sort") List<Double> sort,
+        @JsonProperty("_source") @JsonDeserialize(using = ElasticSourceDeserializer.class) T source,
+        @JsonProperty("sort") List<Object> sort,
         @JsonProperty("_ignored") List<String> ignored) {
         _index = index;
         _id = id;
@@ -43,13 +55,69 @@ public class ElasticHit<T> {
     }
 
     public Double getSort() {
-        return sort != null && !sort.isEmpty() ? sort.get(0): null;
+        return sort != null && !sort.isEmpty() && sort.get(0) instanceof Number number ? number.doubleValue() : null;
     }
+
+    public List<Object> getSortValues() {
+        return sort;
+    }
+    @SuppressWarnings("unchecked")
     public T getSource() {
-        return _source;
+        return _source instanceof ElasticSourceSlice slice ? (T) slice.value() : (T) _source;
+    }
+
+    public ElasticSourceSlice getRawSource() {
+        return _source instanceof ElasticSourceSlice slice ? slice : null;
     }
 
     public List<String> getIgnored() {
         return _ignored;
     }
+
+    static class ElasticSourceDeserializer extends StdDeserializer<Object> implements ContextualDeserializer {
+        private final JavaType sourceType;
+        private final JsonDeserializer<Object> sourceDeserializer;
+
+        @SuppressWarnings("unused")
+        public ElasticSourceDeserializer() {
+            this(null, null);
+        }
+
+        private ElasticSourceDeserializer(JavaType sourceType, JsonDeserializer<Object> sourceDeserializer) {
+            super(Object.class);
+            this.sourceType = sourceType;
+            this.sourceDeserializer = sourceDeserializer;
+        }
+
+        @Override
+        public JsonDeserializer<?> createContextual(DeserializationContext context, BeanProperty property) throws JsonMappingException {
+            var type = property != null ? property.getType() : context.constructType(Object.class);
+            return new ElasticSourceDeserializer(type, context.findContextualValueDeserializer(type, property));
+        }
+
+        @Override
+        public Object deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            // Offsets only match the buffer when the parser reads that very buffer, not a token buffer or a stream
+            if(context.getAttribute(ElasticSourceSlice.CONTEXT_ATTRIBUTE) instanceof ElasticSourceSlice.Input input
+                && parser instanceof UTF8StreamJsonParser
+                && parser.currentToken() == JsonToken.START_OBJECT
+                && parser.getCodec() != null) {
+                var buffer = input.buffer();
+                var start = input.offset() + parser.currentTokenLocation().getByteOffset();
+                parser.skipChildren();
+                var end = input.offset() + parser.currentLocation().getByteOffset();
+                // Reading another range than the one given to lazy shows up as a slice not spanning an object
+                if(start >= 0 && end <= buffer.length && buffer[(int) start] == '{' && buffer[(int) end - 1] == '}') {
+                    return new ElasticSourceSlice(buffer, (int) start, (int) (end - start), parser.getCodec(), sourceType);
+                }
+                throw JsonMappingException.from(parser, "Lazy _source buffer does not match the parsed content");
+            }
+            return sourceDeserializer.deserialize(parser, context);
+        }
+
+        @Override
+        public Object getNullValue(DeserializationContext context) throws JsonMappingException {
+            return sourceDeserializer == null ? null : sourceDeserializer.getNullValue(context);
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package tech.habegger.elastic.response;
 
+import java.util.Map;
+
 public record ElasticMetricsAggregationResponse(
         Number value,
         String value_as_string,
@@ -9,9 +11,28 @@ public record ElasticMetricsAggregationResponse(
         Double max,
         Double sum,
         Double avg,
-        Double min
+        Double min,
+        Double sum_of_squares,
+        Double variance,
+        Double std_deviation,
+        Map<String, Double> std_deviation_bounds,
+        Map<String, Double> values
 ) implements ElasticAggregationResponse
 {
+    public ElasticMetricsAggregationResponse(
+        Number value,
+        String value_as_string,
+        Long doc_count_error_upper_bound,
+        Long sum_other_doc_count,
+        Long count,
+        Double max,
+        Double sum,
+        Double avg,
+        Double min
+    ) {
+        this(value, value_as_string, doc_count_error_upper_bound, sum_other_doc_count, count, max, sum, avg, min, null, null, null, null, null);
+    }
+
     Double doubleValue() {
         if(value instanceof Double doubleValue) {
             return  doubleValue;
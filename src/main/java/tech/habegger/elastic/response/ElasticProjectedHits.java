@@ -0,0 +1,198 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import tech.habegger.elastic.response.ElasticSourceProjection.Field;
+import tech.habegger.elastic.response.ElasticSourceProjection.ValueType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+public class ElasticProjectedHits {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Field> fields;
+    final Column[] columns;
+    private int size = 0;
+    private int capacity = INITIAL_CAPACITY;
+    String[] ids = new String[INITIAL_CAPACITY];
+    double[] scores = new double[INITIAL_CAPACITY];
+    long totalHits = 0;
+
+    ElasticProjectedHits(Map<String, Field> fields) {
+        this.fields = fields;
+        this.columns = new Column[fields.size()];
+        for(var field : fields.values()) {
+            columns[field.index()] = new Column(field);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public String[] ids() {
+        return ids;
+    }
+
+    public double[] scores() {
+        return scores;
+    }
+
+    public long[] longs(String path) {
+        return column(path, ValueType.LONG).longs;
+    }
+
+    public double[] doubles(String path) {
+        return column(path, ValueType.DOUBLE).doubles;
+    }
+
+    public String[] strings(String path) {
+        return column(path, ValueType.STRING).strings;
+    }
+
+    // Values of hit i of a multi-valued path are found at [offsets[i], offsets[i + 1]) of its value array
+    public int[] offsets(String path) {
+        var column = column(path, null);
+        if(!column.field.multiValued()) {
+            throw new IllegalArgumentException("Path %s is not multi-valued".formatted(path));
+        }
+        return column.offsets;
+    }
+
+    public boolean isPresent(String path, int row) {
+        var column = column(path, null);
+        if(column.field.multiValued()) {
+            return column.offsets[row + 1] > column.offsets[row];
+        }
+        return column.present.get(row);
+    }
+
+    private Column column(String path, ValueType type) {
+        var field = fields.get(path);
+        if(field == null) {
+            throw new IllegalArgumentException("Path %s is not part of the projection".formatted(path));
+        }
+        if(type != null && field.type() != type) {
+            throw new IllegalArgumentException("Path %s is projected as %s, not %s".formatted(path, field.type(), type));
+        }
+        return columns[field.index()];
+    }
+
+    int startRow() {
+        if(size == capacity) {
+            capacity *= 2;
+            ids = Arrays.copyOf(ids, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            for(var column : columns) {
+                column.growRows(capacity);
+            }
+        }
+        scores[size] = Double.NaN;
+        for(var column : columns) {
+            column.startRow(size);
+        }
+        return size;
+    }
+
+    void endRow(int row) {
+        for(var column : columns) {
+            column.endRow(row);
+        }
+        size = row + 1;
+    }
+
+    void trim() {
+        ids = Arrays.copyOf(ids, size);
+        scores = Arrays.copyOf(scores, size);
+        for(var column : columns) {
+            column.trim(size);
+        }
+    }
+
+    static class Column {
+        private final Field field;
+        private long[] longs;
+        private double[] doubles;
+        private String[] strings;
+        private int[] offsets;
+        private BitSet present;
+        private int count = 0;
+
+        Column(Field field) {
+            this.field = field;
+            allocate(INITIAL_CAPACITY);
+            if(field.multiValued()) {
+                offsets = new int[INITIAL_CAPACITY + 1];
+            } else {
+                present = new BitSet();
+            }
+        }
+
+        void append(JsonParser parser, int row) throws IOException {
+            int slot;
+            if(field.multiValued()) {
+                if(count == length()) {
+                    allocate(Math.max(count * 2, INITIAL_CAPACITY));
+                }
+                slot = count++;
+            } else {
+                slot = row;
+                present.set(row);
+            }
+            switch(field.type()) {
+                case LONG -> longs[slot] = parser.getValueAsLong();
+                case DOUBLE -> doubles[slot] = parser.getValueAsDouble(Double.NaN);
+                case STRING -> strings[slot] = parser.getValueAsString();
+            }
+        }
+
+        void growRows(int capacity) {
+            if(field.multiValued()) {
+                offsets = Arrays.copyOf(offsets, capacity + 1);
+            } else {
+                allocate(capacity);
+            }
+        }
+
+        void startRow(int row) {
+            if(!field.multiValued() && field.type() == ValueType.DOUBLE) {
+                doubles[row] = Double.NaN;
+            }
+        }
+
+        void endRow(int row) {
+            if(field.multiValued()) {
+                offsets[row + 1] = count;
+            }
+        }
+
+        void trim(int rows) {
+            allocate(field.multiValued() ? count : rows);
+            if(field.multiValued()) {
+                offsets = Arrays.copyOf(offsets, rows + 1);
+            }
+        }
+
+        private int length() {
+            return switch(field.type()) {
+                case LONG -> longs.length;
+                case DOUBLE -> doubles.length;
+                case STRING -> strings.length;
+            };
+        }
+
+        private void allocate(int length) {
+            switch(field.type()) {
+                case LONG -> longs = longs == null ? new long[length] : Arrays.copyOf(longs, length);
+                case DOUBLE -> doubles = doubles == null ? new double[length] : Arrays.copyOf(doubles, length);
+                case STRING -> strings = strings == null ? new String[length] : Arrays.copyOf(strings, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package tech.habegger.elastic.response;
+
+import tech.habegger.elastic.aggregation.ElasticAggregations;
+import tech.habegger.elastic.aggregation.ElasticAvgAggregation;
+import tech.habegger.elastic.aggregation.ElasticCardinalityAggregation;
+import tech.habegger.elastic.aggregation.ElasticExtendedStatsAggregation;
+import tech.habegger.elastic.aggregation.ElasticMaxAggregation;
+import tech.habegger.elastic.aggregation.ElasticMinAggregation;
+import tech.habegger.elastic.aggregation.ElasticPercentilesAggregation;
+import tech.habegger.elastic.aggregation.ElasticStatsAggregation;
+import tech.habegger.elastic.aggregation.ElasticSumAggregation;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.aggregation.ElasticValueCountAggregation;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Combines the responses of one search request sent to several indices or clusters holding disjoint documents. Hits
+// are merged in sort order with a k-way heap over the already sorted hit lists, aggregation trees are reduced by name
+// and buckets by key. The request tells how each metric recombines: min, max, sum, value_count, stats and
+// extended_stats are exact, cardinality is summed, avg and percentiles are weighted by the document count of their
+// enclosing scope (exact for avg when every document has the field).
+public class ElasticResponseMerger {
+    private static final int DEFAULT_SIZE = 10;
+    private static final int DEFAULT_TERMS_SIZE = 10;
+    private static final double DEFAULT_SIGMA = 2;
+
+    private final Map<String, ElasticAggregations> aggregations;
+    private final Comparator<ElasticHit<?>> hitOrder;
+    private final int size;
+
+    public ElasticResponseMerger(ElasticSearchRequest request) {
+        this.aggregations = request.aggregations() == null ? Map.of() : request.aggregations();
+        this.hitOrder = hitOrder(request);
+        this.size = request.size() == null ? DEFAULT_SIZE : request.size();
+    }
+
+    public <T> ElasticSearchResponse<T> merge(List<ElasticSearchResponse<T>> responses) {
+        var merged = new ElasticSearchResponse<T>();
+        var took = 0L;
+        var timedOut = false;
+        var weights = new long[responses.size()];
+        List<Map<String, ElasticAggregationResponse>> aggregationParts = new ArrayList<>();
+        for(int i = 0; i < responses.size(); i++) {
+            var response = responses.get(i);
+            if(response.hasError() && merged.error == null) {
+                merged.error = response.error;
+                merged.status = response.status;
+            }
+            took = Math.max(took, parseLong(response.took));
+            timedOut |= Boolean.TRUE.equals(response.timed_out);
+            merged._shards = add(merged._shards, response._shards);
+            weights[i] = response.getTotalHits();
+            aggregationParts.add(response.aggregations);
+        }
+        merged.took = String.valueOf(took);
+        merged.timed_out = timedOut;
+        merged.hits = mergeHits(responses);
+        if(aggregationParts.stream().anyMatch(part -> part != null)) {
+            merged.aggregations = mergeAggregations(aggregations, aggregationParts, weights);
+        }
+        return merged;
+    }
+
+    private <T> ElasticSearchResponse.InternalHits<T> mergeHits(List<ElasticSearchResponse<T>> responses) {
+        var total = 0;
+        var exact = true;
+        Integer maxScore = null;
+        var anyHits = false;
+        var queue = new PriorityQueue<HitCursor<T>>(Math.max(1, responses.size()), (a, b) -> {
+            var order = hitOrder.compare(a.current(), b.current());
+            return order != 0 ? order : Integer.compare(a.source, b.source);
+        });
+        for(int i = 0; i < responses.size(); i++) {
+            var hits = responses.get(i).hits;
+            if(hits == null) {
+                continue;
+            }
+            anyHits = true;
+            if(hits.total() != null) {
+                total += hits.total().value() == null ? 0 : hits.total().value();
+                exact &= "eq".equals(hits.total().relation());
+            }
+            if(hits.max_score() != null && (maxScore == null || hits.max_score() > maxScore)) {
+                maxScore = hits.max_score();
+            }
+            if(hits.hits() != null && !hits.hits().isEmpty()) {
+                queue.add(new HitCursor<>(hits.hits(), i));
+            }
+        }
+        if(!anyHits) {
+            return null;
+        }
+        var merged = new ArrayList<ElasticHit<T>>(Math.min(size, queue.stream().mapToInt(cursor -> cursor.hits.size()).sum()));
+        while(merged.size() < size && !queue.isEmpty()) {
+            var cursor = queue.poll();
+            merged.add(cursor.current());
+            if(++cursor.position < cursor.hits.size()) {
+                queue.add(cursor);
+            }
+        }
+        return new ElasticSearchResponse.InternalHits<>(new ElasticSearchResponse.TotalStats(total, exact ? "eq" : "gte"), maxScore, merged);
+    }
+
+    private static final class HitCursor<T> {
+        private final List<ElasticHit<T>> hits;
+        private final int source;
+        private int position = 0;
+
+        HitCursor(List<ElasticHit<T>> hits, int source) {
+            this.hits = hits;
+            this.source = source;
+        }
+
+        ElasticHit<T> current() {
+            return hits.get(position);
+        }
+    }
+
+    private static Comparator<ElasticHit<?>> hitOrder(ElasticSearchRequest request) {
+        if(request.sort() == null || request.sort().isEmpty()) {
+            // Hits without a score sort last, as for missing sort values
+            return (a, b) -> a.getScore() == null || b.getScore() == null
+                ? compareValues(a.getScore(), b.getScore())
+                : compareValues(b.getScore(), a.getScore());
+        }
+        var descending = new boolean[request.sort().size()];
+        for(int i = 0; i < descending.length; i++) {
+            var entry = request.sort().get(i).entrySet().iterator().next();
+            var direction = entry.getValue() == null ? null : entry.getValue().order();
+            descending[i] = direction == null ? "_score".equals(entry.getKey()) : direction == OrderDirection.desc;
+        }
+        return (a, b) -> {
+            var left = a.getSortValues();
+            var right = b.getSortValues();
+            for(int i = 0; i < descending.length; i++) {
+                var leftValue = left == null || i >= left.size() ? null : left.get(i);
+                var rightValue = right == null || i >= right.size() ? null : right.get(i);
+                // Missing values sort last whatever the direction
+                if(leftValue == null || rightValue == null) {
+                    if(leftValue != rightValue) {
+                        return leftValue == null ? 1 : -1;
+                    }
+                    continue;
+                }
+                var order = compareValues(leftValue, rightValue);
+                if(order != 0) {
+                    return descending[i] ? -order : order;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static int compareValues(Object left, Object right) {
+        if(left == null || right == null) {
+            return left == right ? 0 : left == null ? 1 : -1;
+        }
+        if(left instanceof Number leftNumber && right instanceof Number rightNumber) {
+            if(isIntegral(leftNumber) && isIntegral(rightNumber)) {
+                return Long.compare(leftNumber.longValue(), rightNumber.longValue());
+            }
+            return Double.compare(leftNumber.doubleValue(), rightNumber.doubleValue());
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    // Each part comes with the document count of its enclosing scope, used to weight averages
+    private Map<String, ElasticAggregationResponse> mergeAggregations(Map<String, ElasticAggregations> requested, List<Map<String, ElasticAggregationResponse>> parts, long[] weights) {
+        var names = new LinkedHashSet<String>();
+        for(var part : parts) {
+            if(part != null) {
+                names.addAll(part.keySet());
+            }
+        }
+        Map<String, ElasticAggregationResponse> merged = new LinkedHashMap<>();
+        for(var name : names) {
+            var responses = new ArrayList<ElasticAggregationResponse>();
+            var responseWeights = new long[parts.size()];
+            for(int i = 0; i < parts.size(); i++) {
+                var response = parts.get(i) == null ? null : parts.get(i).get(name);
+                if(response != null) {
+                    responseWeights[responses.size()] = weights[i];
+                    responses.add(response);
+                }
+            }
+            var request = requested == null ? null : requested.get(name);
+            merged.put(name, merge(name, request, responses, Arrays.copyOf(responseWeights, responses.size())));
+        }
+        return merged;
+    }
+
+    private ElasticAggregationResponse merge(String name, ElasticAggregations request, List<ElasticAggregationResponse> parts, long[] weights) {
+        if(parts.size() == 1) {
+            return parts.get(0);
+        }
+        var first = parts.get(0);
+        if(first instanceof ElasticFilterAggregationResponse) {
+            return mergeFilters(request, parts);
+        } else if(first instanceof ElasticTypedBucketsResponse) {
+            return mergeTypedBuckets(name, request, parts);
+        } else if(first instanceof ElasticBucketsAggregationResponse) {
+            return mergeBuckets(name, request, parts);
+        } else if(first instanceof ElasticMetricsAggregationResponse) {
+            return mergeMetrics(name, request, parts, weights);
+        }
+        throw new IllegalArgumentException("Cannot merge aggregation %s of type %s".formatted(name, first.getClass().getSimpleName()));
+    }
+
+    private ElasticAggregationResponse mergeFilters(ElasticAggregations request, List<ElasticAggregationResponse> parts) {
+        var docCount = 0L;
+        var weights = new long[parts.size()];
+        var subAggregations = new ArrayList<Map<String, ElasticAggregationResponse>>();
+        for(int i = 0; i < parts.size(); i++) {
+            var filter = (ElasticFilterAggregationResponse) parts.get(i);
+            weights[i] = filter.docCount() == null ? 0 : filter.docCount();
+            docCount += weights[i];
+            subAggregations.add(filter.aggregations());
+        }
+        return new ElasticFilterAggregationResponse(docCount, mergeAggregations(subAggregationsOf(request), subAggregations, weights));
+    }
+
+    private ElasticAggregationResponse mergeMetrics(String name, ElasticAggregations request, List<ElasticAggregationResponse> parts, long[] weights) {
+        var metrics = parts.stream().map(ElasticMetricsAggregationResponse.class::cast).toList();
+        var kind = MetricKind.of(request);
+        if(kind == null) {
+            kind = MetricKind.infer(metrics.get(0));
+        }
+        if(kind == null) {
+            throw new IllegalArgumentException("Cannot merge metric aggregation %s which is not part of the request".formatted(name));
+        }
+        return switch(kind) {
+            case MIN, MAX, SUM, AVG -> {
+                var reducer = new ValueReducer(kind);
+                String valueAsString = null;
+                for(int i = 0; i < metrics.size(); i++) {
+                    var value = metrics.get(i).value();
+                    if(value != null && reducer.add(value.doubleValue(), weights[i])) {
+                        valueAsString = metrics.get(i).value_as_string();
+                    }
+                }
+                var result = reducer.result();
+                yield new ElasticMetricsAggregationResponse(Double.isNaN(result) ? null : result,
+                    kind == MetricKind.MIN || kind == MetricKind.MAX ? valueAsString : null, null, null, null, null, null, null, null);
+            }
+            case COUNT -> {
+                var count = 0L;
+                for(var metric : metrics) {
+                    count += metric.value() == null ? 0 : metric.value().longValue();
+                }
+                yield new ElasticMetricsAggregationResponse(count, null, null, null, null, null, null, null, null);
+            }
+            case STATS, EXTENDED_STATS -> mergeStats(kind, metrics);
+            case PERCENTILES -> {
+                var reducers = new LinkedHashMap<String, ValueReducer>();
+                for(int i = 0; i < metrics.size(); i++) {
+                    var values = metrics.get(i).values();
+                    if(values == null) {
+                        continue;
+                    }
+                    for(var entry : values.entrySet()) {
+                        var reducer = reducers.computeIfAbsent(entry.getKey(), key -> new ValueReducer(MetricKind.AVG));
+                        if(entry.getValue() != null) {
+                            reducer.add(entry.getValue(), weights[i]);
+                        }
+                    }
+                }
+                Map<String, Double> values = new LinkedHashMap<>();
+                reducers.forEach((key, reducer) -> values.put(key, Double.isNaN(reducer.result()) ? null : reducer.result()));
+                yield new ElasticMetricsAggregationResponse(null, null, null, null, null, null, null, null, null, null, null, null, null, values);
+            }
+        };
+    }
+
+    private static ElasticAggregationResponse mergeStats(MetricKind kind, List<ElasticMetricsAggregationResponse> metrics) {
+        var count = 0L;
+        var sum = 0.0;
+        var sumOfSquares = 0.0;
+        var min = new ValueReducer(MetricKind.MIN);
+        var max = new ValueReducer(MetricKind.MAX);
+        var sigma = Double.NaN;
+        for(var metric : metrics) {
+            count += metric.count() == null ? 0 : metric.count();
+            sum += metric.sum() == null ? 0 : metric.sum();
+            sumOfSquares += metric.sum_of_squares() == null ? 0 : metric.sum_of_squares();
+            min.add(metric.min() == null ? Double.NaN : metric.min(), 0);
+            max.add(metric.max() == null ? Double.NaN : metric.max(), 0);
+            // The request sigma is recovered from the bounds
+            if(Double.isNaN(sigma) && metric.std_deviation_bounds() != null && metric.std_deviation() != null && metric.std_deviation() > 0
+                && metric.std_deviation_bounds().get("upper") != null && metric.avg() != null) {
+                sigma = (metric.std_deviation_bounds().get("upper") - metric.avg()) / metric.std_deviation();
+            }
+        }
+        var empty = count == 0;
+        Double avg = empty ? null : sum / count;
+        Double minimum = empty ? null : min.result();
+        Double maximum = empty ? null : max.result();
+        if(kind == MetricKind.STATS) {
+            return new ElasticMetricsAggregationResponse(null, null, null, null, count, maximum, sum, avg, minimum);
+        }
+        Double variance = empty ? null : Math.max(0, sumOfSquares / count - avg * avg);
+        Double deviation = empty ? null : Math.sqrt(variance);
+        var bounds = new LinkedHashMap<String, Double>();
+        var boundSigma = Double.isNaN(sigma) ? DEFAULT_SIGMA : sigma;
+        bounds.put("upper", empty ? null : avg + boundSigma * deviation);
+        bounds.put("lower", empty ? null : avg - boundSigma * deviation);
+        return new ElasticMetricsAggregationResponse(null, null, null, null, count, maximum, sum, avg, minimum,
+            empty ? null : sumOfSquares, variance, deviation, bounds, null);
+    }
+
+    // Applies the requested bucket order, by default the most frequent terms first, then by key before truncating to the
+    // requested number of buckets. Metrics used for ordering are reduced across parts as they are for the buckets.
+    private Comparator<Integer> termsOrder(String name, ElasticAggregations request, List<Object> keys, long[] counts,
+                                           List<List<int[]>> contributions, List<ElasticTypedBucketsResponse> typedParts, Set<String> metricNames) {
+        var requested = request instanceof ElasticTermsAggregation terms ? terms.order() : null;
+        var entry = requested == null || requested.isEmpty() ? Map.entry("_count", OrderDirection.desc) : requested.entrySet().iterator().next();
+        Comparator<Integer> comparator;
+        if("_key".equals(entry.getKey())) {
+            comparator = (a, b) -> compareValues(keys.get(a), keys.get(b));
+        } else if("_count".equals(entry.getKey()) || !metricNames.contains(entry.getKey())) {
+            // Ordered on something not returned in the buckets, the most frequent terms are kept
+            comparator = Comparator.comparingLong(i -> counts[i]);
+            entry = Map.entry("_count", OrderDirection.desc);
+        } else {
+            var kind = columnKind(name, entry.getKey(), subAggregationsOf(request));
+            var values = new double[keys.size()];
+            for(int i = 0; i < values.length; i++) {
+                var reducer = new ValueReducer(kind);
+                for(var source : contributions.get(i)) {
+                    var part = typedParts.get(source[0]);
+                    reducer.add(part.metric(entry.getKey(), source[1]), part.docCount(source[1]));
+                }
+                values[i] = reducer.result();
+            }
+            comparator = Comparator.comparingDouble(i -> values[i]);
+        }
+        if(entry.getValue() == OrderDirection.desc) {
+            comparator = comparator.reversed();
+        }
+        return comparator.thenComparing(i -> keys.get(i).toString());
+    }
+
+    private ElasticAggregationResponse mergeTypedBuckets(String name, ElasticAggregations request, List<ElasticAggregationResponse> parts) {
+        var typedParts = parts.stream().map(ElasticTypedBucketsResponse.class::cast).toList();
+        var first = typedParts.get(0);
+        var keyIndex = new LinkedHashMap<Object, Integer>();
+        var keys = new ArrayList<Object>();
+        var keysAsString = new ArrayList<String>();
+        var docCounts = new long[16];
+        // For each merged bucket, the (part, bucket) pairs it is made of
+        var contributions = new ArrayList<List<int[]>>();
+        var metricNames = new LinkedHashSet<String>();
+        var subAggregationNames = new LinkedHashSet<String>();
+        for(int p = 0; p < typedParts.size(); p++) {
+            var part = typedParts.get(p);
+            if(part.getClass() != first.getClass()) {
+                throw new IllegalArgumentException("Cannot merge %s buckets with %s buckets for %s".formatted(
+                    first.getClass().getSimpleName(), part.getClass().getSimpleName(), name));
+            }
+            metricNames.addAll(part.metrics().keySet());
+            subAggregationNames.addAll(part.subAggregations().keySet());
+            for(int i = 0; i < part.size(); i++) {
+                var key = part.key(i);
+                var index = keyIndex.get(key);
+                if(index == null) {
+                    index = keys.size();
+                    keyIndex.put(key, index);
+                    keys.add(key);
+                    keysAsString.add(part.keyAsString(i));
+                    contributions.add(new ArrayList<>());
+                    if(index == docCounts.length) {
+                        docCounts = Arrays.copyOf(docCounts, index * 2);
+                    }
+                }
+                docCounts[index] += part.docCount(i);
+                contributions.get(index).add(new int[] { p, i });
+            }
+        }
+
+        var order = new ArrayList<Integer>(keys.size());
+        for(int i = 0; i < keys.size(); i++) {
+            order.add(i);
+        }
+        var counts = docCounts;
+        var sumOtherDocCount = (Long) null;
+        var docCountErrorUpperBound = (Long) null;
+        if(first instanceof ElasticTermsBucketsResponse) {
+            order.sort(termsOrder(name, request, keys, counts, contributions, typedParts, metricNames));
+            var termsSize = request instanceof ElasticTermsAggregation terms && terms.size() != null ? terms.size() : DEFAULT_TERMS_SIZE;
+            sumOtherDocCount = 0L;
+            docCountErrorUpperBound = 0L;
+            for(var part : typedParts) {
+                var terms = (ElasticTermsBucketsResponse) part;
+                sumOtherDocCount += terms.sumOtherDocCount() == null ? 0 : terms.sumOtherDocCount();
+                docCountErrorUpperBound += terms.docCountErrorUpperBound() == null ? 0 : terms.docCountErrorUpperBound();
+            }
+            while(order.size() > termsSize) {
+                sumOtherDocCount += counts[order.remove(order.size() - 1)];
+            }
+        } else {
+            order.sort((a, b) -> compareValues(keys.get(a), keys.get(b)));
+        }
+
+        var size = order.size();
+        var mergedDocCounts = new long[size];
+        Map<String, double[]> metrics = new LinkedHashMap<>();
+        Map<String, ElasticAggregationResponse[]> subAggregations = new LinkedHashMap<>();
+        for(var metricName : metricNames) {
+            metrics.put(metricName, new double[size]);
+        }
+        for(var subAggregationName : subAggregationNames) {
+            subAggregations.put(subAggregationName, new ElasticAggregationResponse[size]);
+        }
+        var requestedSubAggregations = subAggregationsOf(request);
+        for(int b = 0; b < size; b++) {
+            var merged = order.get(b);
+            mergedDocCounts[b] = counts[merged];
+            var sources = contributions.get(merged);
+            for(var metricName : metricNames) {
+                var reducer = new ValueReducer(columnKind(name, metricName, requestedSubAggregations));
+                for(var source : sources) {
+                    var part = typedParts.get(source[0]);
+                    reducer.add(part.metric(metricName, source[1]), part.docCount(source[1]));
+                }
+                metrics.get(metricName)[b] = reducer.result();
+            }
+            for(var subAggregationName : subAggregationNames) {
+                var subParts = new ArrayList<ElasticAggregationResponse>();
+                var subWeights = new long[sources.size()];
+                for(var source : sources) {
+                    var part = typedParts.get(source[0]);
+                    var column = part.subAggregations().get(subAggregationName);
+                    if(column != null && column[source[1]] != null) {
+                        subWeights[subParts.size()] = part.docCount(source[1]);
+                        subParts.add(column[source[1]]);
+                    }
+                }
+                if(!subParts.isEmpty()) {
+                    var subRequest = requestedSubAggregations == null ? null : requestedSubAggregations.get(subAggregationName);
+                    subAggregations.get(subAggregationName)[b] = merge(subAggregationName, subRequest, subParts, Arrays.copyOf(subWeights, subParts.size()));
+                }
+            }
+        }
+        recomputeStatsAverages(metrics);
+
+        if(first instanceof ElasticTermsBucketsResponse) {
+            var mergedKeys = order.stream().map(i -> (String) keys.get(i)).toArray(String[]::new);
+            return new ElasticTermsBucketsResponse(mergedKeys, mergedDocCounts, metrics, subAggregations, docCountErrorUpperBound, sumOtherDocCount);
+        }
+        var mergedKeysAsString = order.stream().map(keysAsString::get).toArray(String[]::new);
+        if(first instanceof ElasticDateHistogramBucketsResponse) {
+            var mergedKeys = order.stream().mapToLong(i -> (Long) keys.get(i)).toArray();
+            return new ElasticDateHistogramBucketsResponse(mergedKeys, mergedKeysAsString, mergedDocCounts, metrics, subAggregations);
+        }
+        var mergedKeys = order.stream().mapToDouble(i -> (Double) keys.get(i)).toArray();
+        return new ElasticHistogramBucketsResponse(mergedKeys, mergedKeysAsString, mergedDocCounts, metrics, subAggregations);
+    }
+
+    // Stats sub-aggregations are flattened into name.count, name.sum, ... columns, whose average follows from the sums
+    private static void recomputeStatsAverages(Map<String, double[]> metrics) {
+        for(var entry : metrics.entrySet()) {
+            var name = entry.getKey();
+            if(!name.endsWith(".avg")) {
+                continue;
+            }
+            var prefix = name.substring(0, name.length() - ".avg".length());
+            var sums = metrics.get(prefix + ".sum");
+            var counts = metrics.get(prefix + ".count");
+            if(sums == null || counts == null) {
+                continue;
+            }
+            var averages = entry.getValue();
+            for(int i = 0; i < averages.length; i++) {
+                averages[i] = counts[i] > 0 ? sums[i] / counts[i] : Double.NaN;
+            }
+        }
+    }
+
+    private static MetricKind columnKind(String aggregationName, String column, Map<String, ElasticAggregations> requested) {
+        var separator = column.lastIndexOf('.');
+        if(separator >= 0) {
+            return switch(column.substring(separator + 1)) {
+                case "min" -> MetricKind.MIN;
+                case "max" -> MetricKind.MAX;
+                case "avg" -> MetricKind.AVG;
+                default -> MetricKind.SUM;
+            };
+        }
+        var kind = MetricKind.of(requested == null ? null : requested.get(column));
+        if(kind == null || kind == MetricKind.STATS || kind == MetricKind.EXTENDED_STATS || kind == MetricKind.PERCENTILES) {
+            throw new IllegalArgumentException("Cannot merge metric %s of %s which is not part of the request".formatted(column, aggregationName));
+        }
+        return kind == MetricKind.COUNT ? MetricKind.SUM : kind;
+    }
+
+    // Untyped buckets are merged by key, their doc counts summed and single value metrics reduced
+    @SuppressWarnings("unchecked")
+    private ElasticAggregationResponse mergeBuckets(String name, ElasticAggregations request, List<ElasticAggregationResponse> parts) {
+        var requestedSubAggregations = subAggregationsOf(request);
+        var merged = new LinkedHashMap<Object, Map<String, Object>>();
+        var reducers = new LinkedHashMap<Object, Map<String, ValueReducer>>();
+        for(var part : parts) {
+            var buckets = ((ElasticBucketsAggregationResponse) part).buckets();
+            for(int i = 0; i < buckets.size(); i++) {
+                var bucket = buckets.get(i);
+                var key = bucket.containsKey("key") ? bucket.get("key") : i;
+                var docCount = bucket.get("doc_count") instanceof Number number ? number.longValue() : 0;
+                var target = merged.get(key);
+                if(target == null) {
+                    merged.put(key, new LinkedHashMap<>(bucket));
+                    reducers.put(key, new LinkedHashMap<>());
+                    target = merged.get(key);
+                } else {
+                    target.put("doc_count", ((Number) target.get("doc_count")).longValue() + docCount);
+                }
+                for(var entry : bucket.entrySet()) {
+                    if(entry.getValue() instanceof Map<?, ?> value && value.containsKey("value") && !value.containsKey("doc_count")) {
+                        var kind = columnKind(name, entry.getKey(), requestedSubAggregations);
+                        var number = value.get("value") instanceof Number n ? n.doubleValue() : Double.NaN;
+                        reducers.get(key).computeIfAbsent(entry.getKey(), k -> new ValueReducer(kind)).add(number, docCount);
+                    }
+                }
+            }
+        }
+        List<Map<String, ?>> buckets = new ArrayList<>();
+        merged.forEach((key, bucket) -> {
+            reducers.get(key).forEach((metric, reducer) -> {
+                var result = reducer.result();
+                bucket.put(metric, Double.isNaN(result) ? Map.of() : Map.of("value", result));
+            });
+            buckets.add(bucket);
+        });
+        return new ElasticBucketsAggregationResponse(buckets);
+    }
+
+    private static Map<String, ElasticAggregations> subAggregationsOf(ElasticAggregations request) {
+        return request == null ? null : request.subAggregations();
+    }
+
+    private static ElasticSearchResponse.ShardStats add(ElasticSearchResponse.ShardStats left, ElasticSearchResponse.ShardStats right) {
+        if(left == null || right == null) {
+            return left == null ? right : left;
+        }
+        return new ElasticSearchResponse.ShardStats(
+            sum(left.total(), right.total()),
+            sum(left.successful(), right.successful()),
+            sum(left.skipped(), right.skipped()),
+            sum(left.failed(), right.failed())
+        );
+    }
+
+    private static Integer sum(Integer left, Integer right) {
+        return left == null ? right : right == null ? left : left + right;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private enum MetricKind {
+        MIN,
+        MAX,
+        SUM,
+        COUNT,
+        AVG,
+        STATS,
+        EXTENDED_STATS,
+        PERCENTILES;
+
+        static MetricKind of(ElasticAggregations aggregation) {
+            if(aggregation instanceof ElasticMinAggregation) {
+                return MIN;
+            } else if(aggregation instanceof ElasticMaxAggregation) {
+                return MAX;
+            } else if(aggregation instanceof ElasticSumAggregation) {
+                return SUM;
+            } else if(aggregation instanceof ElasticValueCountAggregation || aggregation instanceof ElasticCardinalityAggregation) {
+                return COUNT;
+            } else if(aggregation instanceof ElasticAvgAggregation) {
+                return AVG;
+            } else if(aggregation instanceof ElasticStatsAggregation) {
+                return STATS;
+            } else if(aggregation instanceof ElasticExtendedStatsAggregation) {
+                return EXTENDED_STATS;
+            } else if(aggregation instanceof ElasticPercentilesAggregation) {
+                return PERCENTILES;
+            }
+            return null;
+        }
+
+        // Multi value metrics can be recognized from their fields
+        static MetricKind infer(ElasticMetricsAggregationResponse metric) {
+            if(metric.variance() != null) {
+                return EXTENDED_STATS;
+            } else if(metric.count() != null) {
+                return STATS;
+            } else if(metric.values() != null) {
+                return PERCENTILES;
+            }
+            return null;
+        }
+    }
+
+    // Reduces the values of a single value metric, NaN standing for a missing value
+    private static final class ValueReducer {
+        private final MetricKind kind;
+        private double value = Double.NaN;
+        private double weightedSum = 0;
+        private long totalWeight = 0;
+        private double plainSum = 0;
+        private int count = 0;
+
+        ValueReducer(MetricKind kind) {
+            this.kind = kind;
+        }
+
+        // Returns whether the value became the result, for min and max
+        boolean add(double candidate, long weight) {
+            if(Double.isNaN(candidate)) {
+                return false;
+            }
+            count++;
+            var previous = value;
+            switch(kind) {
+                case MIN -> value = Double.isNaN(value) ? candidate : Math.min(value, candidate);
+                case MAX -> value = Double.isNaN(value) ? candidate : Math.max(value, candidate);
+                case AVG -> {
+                    weightedSum += candidate * weight;
+                    totalWeight += weight;
+                    plainSum += candidate;
+                }
+                default -> value = Double.isNaN(value) ? candidate : value + candidate;
+            }
+            return Double.compare(previous, value) != 0;
+        }
+
+        double result() {
+            if(kind != MetricKind.AVG) {
+                return value;
+            }
+            if(count == 0) {
+                return Double.NaN;
+            }
+            return totalWeight > 0 ? weightedSum / totalWeight : plainSum / count;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package tech.habegger.elastic.response;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import tech.habegger.elastic.search.ElasticSearchRequest;
 
 import java.time.Instant;
 import java.util.List;
@@ -14,6 +18,8 @@ public class ElasticSearchResponse<T> implements ElasticAggregationResponseConta
     Boolean timed_out;
     @JsonProperty("_shards")
     ShardStats _shards;
+    @JsonProperty("pit_id")
+    String pitId;
     @JsonProperty("hits")
     InternalHits<T> hits;
     @JsonProperty("aggregations")
@@ -23,11 +29,38 @@ public class ElasticSearchResponse<T> implements ElasticAggregationResponseConta
     @JsonProperty("error")
     ElasticSearchError error;
 
-    private record ShardStats(Integer total, Integer successful, Integer skipped, Integer failed) { }
+    public record ShardStats(Integer total, Integer successful, Integer skipped, Integer failed) { }
 
-    private record InternalHits<T>(TotalStats total, Integer max_score, List<ElasticHit<T>> hits) { }
+    record InternalHits<T>(TotalStats total, Integer max_score, List<ElasticHit<T>> hits) { }
 
-    private record TotalStats(Integer value, String relation) { }
+    record TotalStats(Integer value, String relation) { }
+
+    public static <T> ObjectReader reader(ObjectMapper mapper, ElasticSearchRequest request, Class<T> sourceType) {
+        var responseType = mapper.getTypeFactory().constructParametricType(ElasticSearchResponse.class, sourceType);
+        return mapper.readerFor(responseType)
+            .withAttribute(ElasticBucketLayout.CONTEXT_ATTRIBUTE, ElasticBucketLayout.aggregations(request));
+    }
+
+    public static <T> ObjectReader reader(ObjectMapper mapper, ElasticSearchRequest request, TypeReference<ElasticSearchResponse<T>> responseType) {
+        return mapper.readerFor(responseType)
+            .withAttribute(ElasticBucketLayout.CONTEXT_ATTRIBUTE, ElasticBucketLayout.aggregations(request));
+    }
+
+    public String getTook() {
+        return took;
+    }
+
+    public Boolean isTimedOut() {
+        return timed_out;
+    }
+
+    public String getPitId() {
+        return pitId;
+    }
+
+    public ShardStats getShards() {
+        return _shards;
+    }
 
     public List<ElasticHit<T>> getHits() {
         return hits == null ? null : hits.hits;
@@ -63,11 +96,27 @@ public class ElasticSearchResponse<T> implements ElasticAggregationResponseConta
         var agg = aggregations.get(aggregationName);
         if(agg instanceof ElasticBucketsAggregationResponse bucketAgg) {
             return bucketAgg.buckets();
+        } else if(agg instanceof ElasticCompositeAggregationResponse compositeAgg) {
+            return compositeAgg.buckets();
+        } else if(agg instanceof ElasticTypedBucketsResponse typedAgg) {
+            return typedAgg.toBuckets();
         } else {
             return null;
         }
     }
 
+    public ElasticTermsBucketsResponse getTermsBuckets(String aggregationName) {
+        return getAggregation(aggregationName, ElasticTermsBucketsResponse.class);
+    }
+
+    public ElasticHistogramBucketsResponse getHistogramBuckets(String aggregationName) {
+        return getAggregation(aggregationName, ElasticHistogramBucketsResponse.class);
+    }
+
+    public ElasticDateHistogramBucketsResponse getDateHistogramBuckets(String aggregationName) {
+        return getAggregation(aggregationName, ElasticDateHistogramBucketsResponse.class);
+    }
+
     public Map<String, ElasticAggregationResponse> getAggregations() {
         return aggregations;
     }
@@ -0,0 +1,267 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@SuppressWarnings("unused")
+public class ElasticSearchResponseStream<T> implements Iterator<ElasticHit<T>>, ElasticAggregationResponseContainer, Closeable {
+    private static final TypeReference<Map<String, ElasticAggregationResponse>> AGGREGATIONS_TYPE = new TypeReference<>() {};
+
+    private final JsonParser parser;
+    private final ObjectReader hitReader;
+    private final ObjectReader reader;
+
+    private String took;
+    private Boolean timedOut;
+    private ElasticSearchResponse.ShardStats shards;
+    private String pitId;
+    private Long totalHits;
+    private String totalRelation;
+    private Double maxScore;
+    private Map<String, ElasticAggregationResponse> aggregations;
+    private Integer status;
+    private ElasticSearchError error;
+
+    private boolean inHits = false;
+    private ElasticHit<T> nextHit = null;
+
+    ElasticSearchResponseStream(ObjectReader reader, JsonParser parser, JavaType sourceType) throws IOException {
+        this.reader = reader;
+        this.parser = parser;
+        this.hitReader = reader.forType(reader.getTypeFactory().constructParametricType(ElasticHit.class, sourceType));
+        if(parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected search response to start with an object");
+        }
+        readTopLevelUntilHits();
+    }
+
+    public static <T> ElasticSearchResponseStream<T> open(ObjectMapper mapper, InputStream input, Class<T> sourceType) throws IOException {
+        return open(mapper, mapper.createParser(input), mapper.constructType(sourceType));
+    }
+
+    public static <T> ElasticSearchResponseStream<T> open(ObjectMapper mapper, InputStream input, TypeReference<T> sourceType) throws IOException {
+        return open(mapper, mapper.createParser(input), mapper.constructType(sourceType));
+    }
+
+    public static <T> ElasticSearchResponseStream<T> open(ObjectMapper mapper, byte[] input, Class<T> sourceType) throws IOException {
+        return open(mapper, mapper.createParser(input), mapper.constructType(sourceType));
+    }
+
+    public static <T> ElasticSearchResponseStream<T> open(ObjectMapper mapper, ElasticSearchRequest request, InputStream input, Class<T> sourceType) throws IOException {
+        var reader = mapper.reader()
+            .withAttribute(ElasticBucketLayout.CONTEXT_ATTRIBUTE, ElasticBucketLayout.aggregations(request));
+        return new ElasticSearchResponseStream<>(reader, mapper.createParser(input), mapper.constructType(sourceType));
+    }
+
+    public static <T> ElasticSearchResponseStream<T> open(ObjectMapper mapper, JsonParser parser, JavaType sourceType) throws IOException {
+        return new ElasticSearchResponseStream<>(mapper.reader(), parser, sourceType);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(nextHit != null) {
+            return true;
+        }
+        if(!inHits) {
+            return false;
+        }
+        try {
+            var token = parser.nextToken();
+            if(token == JsonToken.START_OBJECT) {
+                nextHit = hitReader.readValue(parser);
+                return true;
+            }
+            inHits = false;
+            readRemainingHitsFields();
+            readTopLevelUntilHits();
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public ElasticHit<T> next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var hit = nextHit;
+        nextHit = null;
+        return hit;
+    }
+
+    public Stream<ElasticHit<T>> hits() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    public String getTook() {
+        return took;
+    }
+
+    public Boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public String getPitId() {
+        return pitId;
+    }
+
+    public ElasticSearchResponse.ShardStats getShards() {
+        return shards;
+    }
+
+    public long getTotalHits() {
+        return totalHits == null ? 0 : totalHits;
+    }
+
+    public boolean isHitCountExact() {
+        return "eq".equals(totalRelation);
+    }
+
+    public Double getMaxScore() {
+        return maxScore;
+    }
+
+    @Override
+    public Map<String, ElasticAggregationResponse> getAggregations() {
+        if(inHits || nextHit != null) {
+            skipRemainingHits();
+        }
+        return aggregations;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public ElasticSearchError getError() {
+        return error;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void skipRemainingHits() {
+        nextHit = null;
+        try {
+            while(inHits) {
+                var token = parser.nextToken();
+                if(token == JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                } else {
+                    inHits = false;
+                    readRemainingHitsFields();
+                    readTopLevelUntilHits();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readTopLevelUntilHits() throws IOException {
+        var token = parser.nextToken();
+        while(token == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            parser.nextToken();
+            switch(fieldName) {
+                case "took" -> took = parser.getValueAsString();
+                case "timed_out" -> timedOut = parser.getValueAsBoolean();
+                case "pit_id" -> pitId = parser.getValueAsString();
+                case "_shards" -> shards = reader.readValue(parser, ElasticSearchResponse.ShardStats.class);
+                case "aggregations" -> aggregations = reader.forType(AGGREGATIONS_TYPE).readValue(parser);
+                case "status" -> status = parser.getValueAsInt();
+                case "error" -> error = reader.readValue(parser, ElasticSearchError.class);
+                case "hits" -> {
+                    if(readHitsFieldsUntilArray()) {
+                        inHits = true;
+                        return;
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+            token = parser.nextToken();
+        }
+    }
+
+    private boolean readHitsFieldsUntilArray() throws IOException {
+        var token = parser.nextToken();
+        while(token == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            token = parser.nextToken();
+            if("hits".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                return true;
+            }
+            readHitsField(fieldName);
+            token = parser.nextToken();
+        }
+        return false;
+    }
+
+    private void readRemainingHitsFields() throws IOException {
+        var token = parser.nextToken();
+        while(token == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            parser.nextToken();
+            readHitsField(fieldName);
+            token = parser.nextToken();
+        }
+    }
+
+    private void readHitsField(String fieldName) throws IOException {
+        switch(fieldName) {
+            case "total" -> readTotal();
+            case "max_score" -> maxScore = parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsDouble();
+            default -> parser.skipChildren();
+        }
+    }
+
+    private void readTotal() throws IOException {
+        if(parser.currentToken().isNumeric()) {
+            totalHits = parser.getLongValue();
+            totalRelation = "eq";
+            return;
+        }
+        var token = parser.nextToken();
+        while(token == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            parser.nextToken();
+            switch(fieldName) {
+                case "value" -> totalHits = parser.getValueAsLong();
+                case "relation" -> totalRelation = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+            token = parser.nextToken();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import tech.habegger.elastic.shared.SourceSpec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ElasticSourceProjection {
+    private final Map<String, Field> fields;
+    private final Node root = new Node();
+
+    private ElasticSourceProjection(Map<String, Field> fields) {
+        this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+        fields.values().forEach(field -> root.add(field.segments(), 0, field));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public SourceSpec sourceSpec() {
+        return SourceSpec.include(fields.values().stream().map(field -> String.join(".", field.segments())).toArray(String[]::new));
+    }
+
+    public ElasticProjectedHits read(ObjectMapper mapper, byte[] response) throws IOException {
+        return read(mapper.getFactory(), response);
+    }
+
+    public ElasticProjectedHits read(JsonFactory factory, byte[] response) throws IOException {
+        try(var parser = factory.createParser(response)) {
+            return read(parser);
+        }
+    }
+
+    public ElasticProjectedHits read(JsonFactory factory, InputStream response) throws IOException {
+        try(var parser = factory.createParser(response)) {
+            return read(parser);
+        }
+    }
+
+    // Single pass over the response: only hits.total, hits.hits[]._id/_score/_source and the projected source paths
+    // are looked at, everything else is skipped without being materialized.
+    public ElasticProjectedHits read(JsonParser parser) throws IOException {
+        var hits = new ElasticProjectedHits(fields);
+        if(parser.currentToken() == null) {
+            parser.nextToken();
+        }
+        expect(parser, JsonToken.START_OBJECT, "search response");
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            parser.nextToken();
+            if("hits".equals(fieldName) && parser.currentToken() == JsonToken.START_OBJECT) {
+                readHits(parser, hits);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        hits.trim();
+        return hits;
+    }
+
+    private void readHits(JsonParser parser, ElasticProjectedHits hits) throws IOException {
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            var token = parser.nextToken();
+            if("total".equals(fieldName) && token == JsonToken.START_OBJECT) {
+                while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                    var totalField = parser.currentName();
+                    parser.nextToken();
+                    if("value".equals(totalField)) {
+                        hits.totalHits = parser.getValueAsLong();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if("hits".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                while(parser.nextToken() == JsonToken.START_OBJECT) {
+                    readHit(parser, hits);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readHit(JsonParser parser, ElasticProjectedHits hits) throws IOException {
+        var row = hits.startRow();
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            var token = parser.nextToken();
+            switch(fieldName) {
+                case "_id" -> hits.ids[row] = parser.getValueAsString();
+                case "_score" -> hits.scores[row] = token.isNumeric() ? parser.getDoubleValue() : Double.NaN;
+                case "_source" -> {
+                    if(token == JsonToken.START_OBJECT) {
+                        readObject(parser, root, hits, row);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        hits.endRow(row);
+    }
+
+    private void readObject(JsonParser parser, Node node, ElasticProjectedHits hits, int row) throws IOException {
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            var token = parser.nextToken();
+            var child = node.child(fieldName);
+            if(child == null) {
+                parser.skipChildren();
+            } else {
+                readValue(parser, token, child, hits, row);
+            }
+        }
+    }
+
+    private void readValue(JsonParser parser, JsonToken token, Node node, ElasticProjectedHits hits, int row) throws IOException {
+        if(token == JsonToken.START_ARRAY) {
+            while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                readValue(parser, token, node, hits, row);
+            }
+        } else if(token == JsonToken.START_OBJECT) {
+            if(node.children == null) {
+                parser.skipChildren();
+            } else {
+                readObject(parser, node, hits, row);
+            }
+        } else if(node.field != null && token != JsonToken.VALUE_NULL) {
+            hits.columns[node.field.index()].append(parser, row);
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected, String what) throws IOException {
+        if(parser.currentToken() != expected) {
+            throw new IOException("Expected %s to start with %s but got %s".formatted(what, expected, parser.currentToken()));
+        }
+    }
+
+    public enum ValueType {
+        LONG,
+        DOUBLE,
+        STRING
+    }
+
+    record Field(int index, String path, String[] segments, ValueType type, boolean multiValued) {
+        static Field parse(int index, String path, ValueType type) {
+            var multiValued = path.endsWith("[]");
+            var name = multiValued ? path.substring(0, path.length() - 2) : path;
+            if(name.isEmpty()) {
+                throw new IllegalArgumentException("Empty projection path");
+            }
+            return new Field(index, path, name.split("\\."), type, multiValued);
+        }
+    }
+
+    private static class Node {
+        private Map<String, Node> children;
+        private Field field;
+
+        void add(String[] segments, int depth, Field field) {
+            if(depth == segments.length) {
+                this.field = field;
+                return;
+            }
+            if(children == null) {
+                children = new HashMap<>();
+            }
+            children.computeIfAbsent(segments[depth], key -> new Node()).add(segments, depth + 1, field);
+        }
+
+        Node child(String name) {
+            if(children == null) {
+                return null;
+            }
+            var child = children.get(name);
+            if(child == null && name.indexOf('.') > 0) {
+                // Sources may also use dotted keys such as {"user.id": 1}
+                child = this;
+                for(var segment : name.split("\\.")) {
+                    child = child.children == null ? null : child.children.get(segment);
+                    if(child == null) {
+                        break;
+                    }
+                }
+            }
+            return child;
+        }
+    }
+
+    public static class Builder {
+        private final Map<String, Field> fields = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder withLong(String path) {
+            return with(path, ValueType.LONG);
+        }
+
+        public Builder withDouble(String path) {
+            return with(path, ValueType.DOUBLE);
+        }
+
+        public Builder withString(String path) {
+            return with(path, ValueType.STRING);
+        }
+
+        public Builder with(String path, ValueType type) {
+            var field = Field.parse(fields.size(), path, type);
+            for(var other : fields.values()) {
+                if(Arrays.equals(other.segments(), field.segments())) {
+                    throw new IllegalArgumentException("Path %s is already projected as %s".formatted(path, other.path()));
+                }
+            }
+            fields.put(path, field);
+            return this;
+        }
+
+        public ElasticSourceProjection build() {
+            return new ElasticSourceProjection(fields);
+        }
+    }
+}
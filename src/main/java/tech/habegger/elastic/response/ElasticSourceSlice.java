@@ -0,0 +1,98 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public final class ElasticSourceSlice {
+    public static final String CONTEXT_ATTRIBUTE = ElasticSourceSlice.class.getName();
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final ObjectCodec codec;
+    private final JavaType sourceType;
+    private volatile Object value;
+
+    ElasticSourceSlice(byte[] buffer, int offset, int length, ObjectCodec codec, JavaType sourceType) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.codec = codec;
+        this.sourceType = sourceType;
+    }
+
+    // Hits read through the returned reader keep their _source as a slice of the given buffer, which must be the
+    // very array handed to readValue.
+    public static ObjectReader lazy(ObjectReader reader, byte[] buffer) {
+        return lazy(reader, buffer, 0);
+    }
+
+    // Same for readValue(buffer, offset, length), parser offsets counting from the start of the read range
+    public static ObjectReader lazy(ObjectReader reader, byte[] buffer, int offset) {
+        if(offset < 0 || offset > buffer.length) {
+            throw new IllegalArgumentException("Offset %d is outside of a buffer of %d bytes".formatted(offset, buffer.length));
+        }
+        return reader.withAttribute(CONTEXT_ATTRIBUTE, new Input(buffer, offset));
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, offset, length);
+    }
+
+    public JsonNode asNode() {
+        try(var parser = codec.getFactory().createParser(buffer, offset, length)) {
+            return codec.readTree(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public <R> R bind(Class<R> type) {
+        try(var parser = codec.getFactory().createParser(buffer, offset, length)) {
+            return codec.readValue(parser, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Object value() {
+        var bound = value;
+        if(bound == null) {
+            try(var parser = codec.getFactory().createParser(buffer, offset, length)) {
+                bound = codec.readValue(parser, sourceType);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            value = bound;
+        }
+        return bound;
+    }
+
+    record Input(byte[] buffer, int offset) {
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, offset, length, StandardCharsets.UTF_8);
+    }
+}
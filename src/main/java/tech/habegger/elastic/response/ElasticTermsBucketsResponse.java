@@ -0,0 +1,22 @@
+package tech.habegger.elastic.response;
+
+import java.util.Map;
+
+public record ElasticTermsBucketsResponse(
+    String[] keys,
+    long[] docCounts,
+    Map<String, double[]> metrics,
+    Map<String, ElasticAggregationResponse[]> subAggregations,
+    Long docCountErrorUpperBound,
+    Long sumOtherDocCount
+) implements ElasticTypedBucketsResponse {
+    @Override
+    public Object key(int index) {
+        return keys[index];
+    }
+
+    @Override
+    public String keyAsString(int index) {
+        return null;
+    }
+}
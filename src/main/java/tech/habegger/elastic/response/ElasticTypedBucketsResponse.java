@@ -0,0 +1,68 @@
+package tech.habegger.elastic.response;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public interface ElasticTypedBucketsResponse extends ElasticAggregationResponse {
+    long[] docCounts();
+
+    Map<String, double[]> metrics();
+
+    Map<String, ElasticAggregationResponse[]> subAggregations();
+
+    Object key(int index);
+
+    String keyAsString(int index);
+
+    default int size() {
+        return docCounts().length;
+    }
+
+    default long docCount(int index) {
+        return docCounts()[index];
+    }
+
+    default double[] metric(String name) {
+        return metrics().get(name);
+    }
+
+    default double metric(String name, int index) {
+        var column = metrics().get(name);
+        return column == null ? Double.NaN : column[index];
+    }
+
+    default List<Map<String, ?>> toBuckets() {
+        List<Map<String, ?>> buckets = new ArrayList<>(size());
+        for(int i = 0; i < size(); i++) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("key", key(i));
+            var keyAsString = keyAsString(i);
+            if(keyAsString != null) {
+                bucket.put("key_as_string", keyAsString);
+            }
+            bucket.put("doc_count", docCount(i));
+            for(var metric : metrics().entrySet()) {
+                var value = metric.getValue()[i];
+                if(Double.isNaN(value)) {
+                    continue;
+                }
+                var name = metric.getKey();
+                var separator = name.lastIndexOf('.');
+                if(separator < 0) {
+                    bucket.put(name, Map.of("value", value));
+                } else {
+                    @SuppressWarnings("unchecked")
+                    var stats = (Map<String, Object>) bucket.computeIfAbsent(name.substring(0, separator), k -> new LinkedHashMap<String, Object>());
+                    stats.put(name.substring(separator + 1), value);
+                }
+            }
+            for(var subAggregation : subAggregations().entrySet()) {
+                bucket.put(subAggregation.getKey(), subAggregation.getValue()[i]);
+            }
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+}
@@ -26,10 +26,10 @@ public record ElasticBooleanClause(BooleanBody bool) implements ElasticSearchCla
 
     @SuppressWarnings({"UnusedReturnValue", "FieldCanBeLocal","unused"})
     public static class Builder {
-        private final List<ElasticSearchClause> should = new ArrayList<>();
-        private final List<ElasticSearchClause> must = new ArrayList<>();
-        private final List<ElasticSearchClause> mustNot = new ArrayList<>();
-        private final List<ElasticSearchClause> filter = new ArrayList<>();
+        private List<ElasticSearchClause> should = new ArrayList<>();
+        private List<ElasticSearchClause> must = new ArrayList<>();
+        private List<ElasticSearchClause> mustNot = new ArrayList<>();
+        private List<ElasticSearchClause> filter = new ArrayList<>();
 
         private Integer minimumShouldMatch;
 
@@ -55,6 +55,16 @@ public record ElasticBooleanClause(BooleanBody bool) implements ElasticSearchCla
             return this;
         }
 
+        // Clears the builder for reuse. Clauses built before keep their lists, only the non-empty ones are replaced.
+        public Builder reset() {
+            should = should.isEmpty() ? should : new ArrayList<>();
+            must = must.isEmpty() ? must : new ArrayList<>();
+            mustNot = mustNot.isEmpty() ? mustNot : new ArrayList<>();
+            filter = filter.isEmpty() ? filter : new ArrayList<>();
+            minimumShouldMatch = null;
+            return this;
+        }
+
         public boolean isEmpty() {
             return should.isEmpty() && must.isEmpty() && filter.isEmpty() && mustNot.isEmpty();
         }
@@ -8,7 +8,7 @@ public record ElasticBoostingClause(BoostingBody boosting) implements ElasticSea
     public static ElasticBoostingClause boosting(ElasticSearchClause positive, ElasticSearchClause negative, float negativeBoost) {
         return new ElasticBoostingClause(new BoostingBody(positive, negative, negativeBoost));
     }
-    private record BoostingBody(
+    record BoostingBody(
         ElasticSearchClause positive,
         ElasticSearchClause negative,
         @JsonProperty("negative_boost")
@@ -0,0 +1,93 @@
+package tech.habegger.elastic.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Thread confined builders and output buffer which are reset and reused from one request to the next instead of
+// allocated for each of them. Requests and clauses built from a lease stay valid once it is closed, the serialized
+// bytes are only valid until then.
+public final class ElasticBuilderPool {
+    // Buffers which grew beyond this size for an unusually large request are not kept for the next ones
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+    private static final int INITIAL_BUFFER = 512;
+    private static final ThreadLocal<Lease> LEASES = ThreadLocal.withInitial(() -> new Lease(true));
+
+    private ElasticBuilderPool() {
+    }
+
+    // A lease acquired while the one of the thread is still open is a fresh one, dropped once closed
+    public static Lease acquire() {
+        var lease = LEASES.get();
+        if(lease.acquired) {
+            lease = new Lease(false);
+        }
+        lease.acquired = true;
+        return lease;
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final boolean pooled;
+        private final ElasticSearchRequest.Builder request = ElasticSearchRequest.requestBuilder();
+        private final List<ElasticBooleanClause.Builder> bools = new ArrayList<>();
+        private int usedBools = 0;
+        private Output output = new Output();
+        private boolean acquired = false;
+
+        private Lease(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        public ElasticSearchRequest.Builder request() {
+            return request;
+        }
+
+        // Each call gives another builder, so that bool clauses can be nested within each other
+        public ElasticBooleanClause.Builder bool() {
+            if(usedBools == bools.size()) {
+                bools.add(ElasticBooleanClause.newBool());
+            }
+            return bools.get(usedBools++);
+        }
+
+        public Output write(ElasticRequestWriter writer, ElasticSearchRequest request) throws IOException {
+            output.reset();
+            writer.write(request, output);
+            return output;
+        }
+
+        public boolean isPooled() {
+            return pooled;
+        }
+
+        @Override
+        public void close() {
+            request.reset();
+            for(int i = 0; i < usedBools; i++) {
+                bools.get(i).reset();
+            }
+            usedBools = 0;
+            if(output.capacity() > MAX_RETAINED_BUFFER) {
+                output = new Output();
+            }
+            output.reset();
+            acquired = false;
+        }
+    }
+
+    // Serialized request, the bytes are the first size() ones of the buffer which is overwritten by the next request
+    public static final class Output extends ByteArrayOutputStream {
+        private Output() {
+            super(INITIAL_BUFFER);
+        }
+
+        public byte[] buffer() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
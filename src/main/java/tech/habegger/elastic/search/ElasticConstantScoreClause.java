@@ -16,7 +16,7 @@ public record ElasticConstantScoreClause(
         return new ElasticConstantScoreClause(new ConstantScoreBody(filter, boost));
     }
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record ConstantScoreBody(
+    record ConstantScoreBody(
         ElasticSearchClause filter,
         Float boost) {
     }
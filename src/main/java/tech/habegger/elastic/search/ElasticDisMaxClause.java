@@ -16,7 +16,7 @@ public record ElasticDisMaxClause(
         return new ElasticDisMaxClause(new DisMaxBody(Arrays.asList(queries), tieBreaker));
     }
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record DisMaxBody(
+    record DisMaxBody(
         List<ElasticSearchClause> queries,
         @JsonProperty("tie_breaker")
         Float tieBreaker) {
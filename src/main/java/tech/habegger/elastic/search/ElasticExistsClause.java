@@ -5,5 +5,5 @@ public record ElasticExistsClause(ExistsBody exists) implements ElasticSearchCla
     public static ElasticExistsClause exists(String field) {
         return new ElasticExistsClause(new ExistsBody(field));
     }
-    private record ExistsBody(String field) {}
+    record ExistsBody(String field) {}
 }
@@ -12,8 +12,8 @@ record FunctionScoreBody(ElasticSearchClause query, List<FunctionBody> functions
         return new Builder(query);
     }
 
-    private interface FunctionBody {}
-    private record FilterFunctionBody(ElasticSearchClause filter, double weight) implements FunctionBody {
+    interface FunctionBody {}
+    record FilterFunctionBody(ElasticSearchClause filter, double weight) implements FunctionBody {
     }
 
     private record RandomScoreFunctionBody(RandomScoreContent random_score) implements FunctionBody {
@@ -9,6 +9,6 @@ public record ElasticIdsClause(IdsBody ids) implements ElasticSearchClause {
         return new ElasticIdsClause(new IdsBody(Arrays.asList(ids)));
     }
 
-    private record IdsBody(List<String> values)  {
+    record IdsBody(List<String> values)  {
     }
 }
@@ -1,10 +1,29 @@
 package tech.habegger.elastic.search;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public record ElasticKnn(String field, float[] query_vector, int k, int num_candidates, ElasticSearchClause filter) {
+@JsonPropertyOrder({"field", "query_vector", "k", "num_candidates", "filter"})
+public record ElasticKnn(String field, @JsonProperty("query_vector") ElasticKnnVector queryVector, int k, int num_candidates, ElasticSearchClause filter) {
+    // Constructor and accessor of the former float array component, use ElasticKnnVector instead
+    @Deprecated
+    public ElasticKnn(String field, float[] query_vector, int k, int num_candidates, ElasticSearchClause filter) {
+        this(field, query_vector == null ? null : ElasticKnnVector.floats(query_vector), k, num_candidates, filter);
+    }
+
+    // Null for hex encoded byte vectors
+    @Deprecated
+    public float[] query_vector() {
+        return queryVector == null ? null : queryVector.floatValues();
+    }
+
     public static ElasticKnn knn(String field, float[] query_vector, int k, int num_candidates, ElasticSearchClause filter) {
+        return new ElasticKnn(field, query_vector == null ? null : ElasticKnnVector.floats(query_vector), k, num_candidates, filter);
+    }
+
+    public static ElasticKnn knn(String field, ElasticKnnVector query_vector, int k, int num_candidates, ElasticSearchClause filter) {
         return new ElasticKnn(field, query_vector, k, num_candidates, filter);
     }
 }
@@ -0,0 +1,155 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+
+@JsonSerialize(using = ElasticKnnVector.ElasticKnnVectorSerializer.class)
+public final class ElasticKnnVector {
+    private final Encoding encoding;
+    private final float[] floats;
+    private final byte[] bytes;
+    // Encoded forms are derived from the values and kept so that a vector shared by many requests is only encoded once
+    private transient volatile String encoded;
+    private transient volatile char[] json;
+
+    private ElasticKnnVector(Encoding encoding, float[] floats, byte[] bytes) {
+        this.encoding = encoding;
+        this.floats = floats;
+        this.bytes = bytes;
+    }
+
+    public static ElasticKnnVector floats(float[] values) {
+        return new ElasticKnnVector(Encoding.FLOAT_ARRAY, values, null);
+    }
+
+    // Big-endian IEEE 754 float32 values, base64 encoded, as accepted by recent clusters
+    public static ElasticKnnVector base64(float[] values) {
+        return new ElasticKnnVector(Encoding.BASE64, values, null);
+    }
+
+    // Byte element vectors as a hexadecimal string
+    public static ElasticKnnVector hex(byte[] values) {
+        return new ElasticKnnVector(Encoding.HEX, null, values);
+    }
+
+    // Computes the wire form once, for vectors sent with many requests
+    public ElasticKnnVector encode() {
+        if(encoding == Encoding.FLOAT_ARRAY) {
+            json();
+        } else {
+            encoded();
+        }
+        return this;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    public float[] floatValues() {
+        return floats;
+    }
+
+    public byte[] byteValues() {
+        return bytes;
+    }
+
+    public int dimensions() {
+        return floats != null ? floats.length : bytes.length;
+    }
+
+    public void write(JsonGenerator generator) throws IOException {
+        if(encoding != Encoding.FLOAT_ARRAY) {
+            generator.writeString(encoded());
+        } else if(!(generator instanceof JsonGeneratorImpl) || hasNonFinite()) {
+            // Binary formats have a native float representation and there is no textual form for NaN and infinities
+            generator.writeStartArray(floats, floats.length);
+            for(var value : floats) {
+                generator.writeNumber(value);
+            }
+            generator.writeEndArray();
+        } else if(json != null && generator.getPrettyPrinter() == null) {
+            var text = json;
+            generator.writeRawValue(text, 0, text.length);
+        } else {
+            var buffer = new char[FloatFormatter.MAX_CHARS];
+            generator.writeStartArray(floats, floats.length);
+            for(var value : floats) {
+                generator.writeRawValue(buffer, 0, FloatFormatter.format(value, buffer, 0));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private boolean hasNonFinite() {
+        for(var value : floats) {
+            if(!Float.isFinite(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private char[] json() {
+        var text = json;
+        if(text == null) {
+            var buffer = new char[2 + floats.length * (FloatFormatter.MAX_CHARS + 1)];
+            var length = 0;
+            buffer[length++] = '[';
+            for(int i = 0; i < floats.length; i++) {
+                if(i > 0) {
+                    buffer[length++] = ',';
+                }
+                length += FloatFormatter.format(floats[i], buffer, length);
+            }
+            buffer[length++] = ']';
+            text = Arrays.copyOf(buffer, length);
+            json = text;
+        }
+        return text;
+    }
+
+    private String encoded() {
+        var text = encoded;
+        if(text == null) {
+            text = switch(encoding) {
+                case BASE64 -> {
+                    var buffer = ByteBuffer.allocate(floats.length * Float.BYTES);
+                    buffer.asFloatBuffer().put(floats);
+                    yield Base64.getEncoder().encodeToString(buffer.array());
+                }
+                case HEX -> HexFormat.of().formatHex(bytes);
+                case FLOAT_ARRAY -> throw new IllegalStateException("Float arrays are written as JSON arrays");
+            };
+            encoded = text;
+        }
+        return text;
+    }
+
+    public enum Encoding {
+        FLOAT_ARRAY,
+        BASE64,
+        HEX
+    }
+
+    static class ElasticKnnVectorSerializer extends StdSerializer<ElasticKnnVector> {
+        @SuppressWarnings("unused")
+        public ElasticKnnVectorSerializer() {
+            super(ElasticKnnVector.class);
+        }
+
+        @Override
+        public void serialize(ElasticKnnVector vector, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            vector.write(generator);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package tech.habegger.elastic.search;
+
+import tech.habegger.elastic.shared.DocumentPath;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Evaluates the filtering subset of the DSL (term, terms, range, exists, prefix, wildcard, ids, bool, constant_score
+// and match_all) against in-memory documents, following Elasticsearch semantics: a multi-valued field matches when any
+// of its values does, arrays of objects are flattened and missing fields have no value. The clause tree is compiled
+// once, so that testing a document neither re-inspects the clauses nor allocates.
+public final class ElasticLocalMatcher<T> implements Predicate<T> {
+    private static final String ID_FIELD = "_id";
+    private static final Function<Object, String> MAP_ID = document -> stringOrNull(((Map<?, ?>) document).get(ID_FIELD));
+
+    private final Node root;
+
+    private ElasticLocalMatcher(Node root) {
+        this.root = root;
+    }
+
+    // Documents as parsed from JSON, ids being read from the _id key
+    public static ElasticLocalMatcher<Map<String, Object>> compile(ElasticSearchClause clause) {
+        return new ElasticLocalMatcher<>(new Compiler(null, MAP_ID).compile(clause));
+    }
+
+    // Plain objects and records, fields being read from record components, getters or fields
+    public static <T> ElasticLocalMatcher<T> compile(ElasticSearchClause clause, Class<T> type) {
+        return new ElasticLocalMatcher<>(new Compiler(type, null).compile(clause));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ElasticLocalMatcher<T> compile(ElasticSearchClause clause, Class<T> type, Function<? super T, String> id) {
+        return new ElasticLocalMatcher<>(new Compiler(type, (Function<Object, String>) id).compile(clause));
+    }
+
+    @Override
+    public boolean test(T document) {
+        return document != null && root.matches(document);
+    }
+
+    private static final class Compiler {
+        private final Class<?> type;
+        private final Function<Object, String> id;
+
+        Compiler(Class<?> type, Function<Object, String> id) {
+            var map = type == null || Map.class.isAssignableFrom(type);
+            this.type = map ? null : type;
+            // Maps keep their id under _id, as for the untyped documents
+            this.id = id == null && map ? MAP_ID : id;
+        }
+
+        Node compile(ElasticSearchClause clause) {
+            if(clause instanceof ElasticBooleanClause bool) {
+                return compileBool(bool.bool());
+            } else if(clause instanceof ElasticConstantScoreClause constantScore) {
+                return compile(constantScore.constantScore().filter());
+            } else if(clause instanceof ElasticMatchAllClause) {
+                return MatchAll.INSTANCE;
+            } else if(clause instanceof ElasticTermClause term) {
+                var entry = single(term.term, "term");
+                return new Leaf(path(entry.getKey()), new TermValue(entry.getValue()), 1);
+            } else if(clause instanceof ElasticTermsClause terms) {
+                var entry = single(terms.terms, "terms");
+                return new Leaf(path(entry.getKey()), new TermsValue(entry.getValue()), 2);
+            } else if(clause instanceof ElasticRangeClause range) {
+                var entry = single(range.range, "range");
+                return new Leaf(path(entry.getKey()), RangeValue.of(entry.getValue().gte(), entry.getValue().lte()), 2);
+            } else if(clause instanceof ElasticExistsClause exists) {
+                return new Leaf(path(exists.exists().field()), value -> true, 0);
+            } else if(clause instanceof ElasticPrefixClause prefix) {
+                var entry = single(prefix.prefix, "prefix");
+                var value = entry.getValue();
+                return new Leaf(path(entry.getKey()), candidate -> textOf(candidate).startsWith(value), 2);
+            } else if(clause instanceof ElasticWildcardClause wildcard) {
+                var entry = single(wildcard.wildcard(), "wildcard");
+                var body = entry.getValue();
+                return new Leaf(path(entry.getKey()), new WildcardValue(body.value(), Boolean.TRUE.equals(body.caseInsensitive())), 3);
+            } else if(clause instanceof ElasticIdsClause ids) {
+                if(id == null) {
+                    throw new IllegalArgumentException("An id accessor is needed to evaluate ids clauses on " + type.getName());
+                }
+                return new IdsNode(id, Set.copyOf(ids.ids().values()));
+            }
+            throw new IllegalArgumentException("Clause %s cannot be evaluated locally".formatted(clause == null ? null : clause.getClass().getSimpleName()));
+        }
+
+        private Node compileBool(ElasticBooleanClause.BooleanBody body) {
+            var required = compileAll(body.must());
+            required.addAll(compileAll(body.filter()));
+            var excluded = compileAll(body.mustNot());
+            var optional = compileAll(body.should());
+            var minimumShouldMatch = body.minimumShouldMatch() == null
+                ? (required.isEmpty() && !optional.isEmpty() ? 1 : 0)
+                : body.minimumShouldMatch() < 0 ? Math.max(0, optional.size() + body.minimumShouldMatch()) : body.minimumShouldMatch();
+            if(minimumShouldMatch > optional.size()) {
+                return MatchNone.INSTANCE;
+            }
+            if(minimumShouldMatch == 0) {
+                // Non required should clauses only affect scoring
+                optional.clear();
+            }
+            if(excluded.isEmpty() && optional.isEmpty() && required.size() == 1) {
+                return required.get(0);
+            }
+            if(excluded.isEmpty() && required.isEmpty() && optional.size() == 1) {
+                return optional.get(0);
+            }
+            return new BoolNode(sorted(required), sorted(excluded), sorted(optional), minimumShouldMatch);
+        }
+
+        private List<Node> compileAll(List<ElasticSearchClause> clauses) {
+            var nodes = new ArrayList<Node>();
+            if(clauses != null) {
+                for(var clause : clauses) {
+                    nodes.add(compile(clause));
+                }
+            }
+            return nodes;
+        }
+
+        private DocumentPath path(String field) {
+            return type == null ? DocumentPath.of(field) : DocumentPath.of(field, type);
+        }
+
+        private static <V> Map.Entry<String, V> single(Map<String, V> body, String name) {
+            if(body.size() != 1) {
+                throw new IllegalArgumentException("Expected a single field in %s clause but got %s".formatted(name, body.keySet()));
+            }
+            return body.entrySet().iterator().next();
+        }
+
+        // Cheapest clauses first so that conjunctions and disjunctions short-circuit early
+        private static Node[] sorted(List<Node> nodes) {
+            return nodes.stream().sorted(Comparator.comparingInt(Node::cost)).toArray(Node[]::new);
+        }
+    }
+
+    private interface Node {
+        boolean matches(Object document);
+
+        int cost();
+    }
+
+    private interface ValueTest extends Predicate<Object> {
+    }
+
+    private enum MatchAll implements Node {
+        INSTANCE;
+
+        @Override
+        public boolean matches(Object document) {
+            return true;
+        }
+
+        @Override
+        public int cost() {
+            return 0;
+        }
+    }
+
+    private enum MatchNone implements Node {
+        INSTANCE;
+
+        @Override
+        public boolean matches(Object document) {
+            return false;
+        }
+
+        @Override
+        public int cost() {
+            return 0;
+        }
+    }
+
+    private record BoolNode(Node[] required, Node[] excluded, Node[] optional, int minimumShouldMatch) implements Node {
+        @Override
+        public boolean matches(Object document) {
+            for(var node : required) {
+                if(!node.matches(document)) {
+                    return false;
+                }
+            }
+            for(var node : excluded) {
+                if(node.matches(document)) {
+                    return false;
+                }
+            }
+            if(minimumShouldMatch == 0) {
+                return true;
+            }
+            var matched = 0;
+            for(int i = 0; i < optional.length; i++) {
+                if(optional[i].matches(document) && ++matched == minimumShouldMatch) {
+                    return true;
+                }
+                if(matched + optional.length - i - 1 < minimumShouldMatch) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int cost() {
+            var cost = 1;
+            for(var node : required) {
+                cost += node.cost();
+            }
+            for(var node : excluded) {
+                cost += node.cost();
+            }
+            for(var node : optional) {
+                cost += node.cost();
+            }
+            return cost;
+        }
+    }
+
+    private record IdsNode(Function<Object, String> id, Set<String> ids) implements Node {
+        @Override
+        public boolean matches(Object document) {
+            var value = id.apply(document);
+            return value != null && ids.contains(value);
+        }
+
+        @Override
+        public int cost() {
+            return 1;
+        }
+    }
+
+    private record Leaf(DocumentPath path, ValueTest test, int cost) implements Node {
+        @Override
+        public boolean matches(Object document) {
+            return path.anyMatch(document, test);
+        }
+    }
+
+    private static final class TermValue implements ValueTest {
+        private final String text;
+        private final boolean integral;
+        private final long longValue;
+        private final boolean numeric;
+        private final double doubleValue;
+
+        TermValue(String text) {
+            this.text = text;
+            var parsedLong = parseLong(text);
+            var parsedDouble = parseDouble(text);
+            this.integral = parsedLong != null;
+            this.longValue = integral ? parsedLong : 0;
+            this.numeric = parsedDouble != null;
+            this.doubleValue = numeric ? parsedDouble : Double.NaN;
+        }
+
+        @Override
+        public boolean test(Object value) {
+            if(value instanceof String string) {
+                return text.equals(string);
+            } else if(isIntegral(value)) {
+                return integral ? longValue == ((Number) value).longValue() : numeric && doubleValue == ((Number) value).longValue();
+            } else if(value instanceof Number number) {
+                return numeric && doubleValue == number.doubleValue();
+            }
+            return text.equals(textOf(value));
+        }
+    }
+
+    private static final class TermsValue implements ValueTest {
+        private final Set<String> texts;
+        private final long[] longs;
+        private final double[] doubles;
+
+        TermsValue(List<String> values) {
+            texts = new HashSet<>(values);
+            longs = values.stream().map(ElasticLocalMatcher::parseLong).filter(v -> v != null).mapToLong(Long::longValue).sorted().toArray();
+            doubles = values.stream().map(ElasticLocalMatcher::parseDouble).filter(v -> v != null).mapToDouble(Double::doubleValue).sorted().toArray();
+        }
+
+        @Override
+        public boolean test(Object value) {
+            if(value instanceof String string) {
+                return texts.contains(string);
+            } else if(isIntegral(value)) {
+                var number = ((Number) value).longValue();
+                return Arrays.binarySearch(longs, number) >= 0 || Arrays.binarySearch(doubles, (double) number) >= 0;
+            } else if(value instanceof Number number) {
+                return Arrays.binarySearch(doubles, number.doubleValue()) >= 0;
+            }
+            return texts.contains(textOf(value));
+        }
+    }
+
+    private static final class WildcardValue implements ValueTest {
+        private static final int ANY_STRING = -1;
+        private static final int ANY_CHAR = -2;
+
+        private final int[] pattern;
+        private final boolean caseInsensitive;
+
+        WildcardValue(String pattern, boolean caseInsensitive) {
+            this.caseInsensitive = caseInsensitive;
+            var compiled = new int[pattern.length()];
+            var length = 0;
+            for(int i = 0; i < pattern.length(); i++) {
+                var c = pattern.charAt(i);
+                if(c == '\\' && i + 1 < pattern.length()) {
+                    compiled[length++] = fold(pattern.charAt(++i));
+                } else if(c == '*') {
+                    compiled[length++] = ANY_STRING;
+                } else if(c == '?') {
+                    compiled[length++] = ANY_CHAR;
+                } else {
+                    compiled[length++] = fold(c);
+                }
+            }
+            this.pattern = Arrays.copyOf(compiled, length);
+        }
+
+        @Override
+        public boolean test(Object value) {
+            var text = textOf(value);
+            int p = 0;
+            int t = 0;
+            int starPattern = -1;
+            int starText = 0;
+            while(t < text.length()) {
+                if(p < pattern.length && pattern[p] == ANY_STRING) {
+                    starPattern = p++;
+                    starText = t;
+                } else if(p < pattern.length && (pattern[p] == ANY_CHAR || pattern[p] == fold(text.charAt(t)))) {
+                    p++;
+                    t++;
+                } else if(starPattern >= 0) {
+                    // Let the last * absorb one more char and retry
+                    p = starPattern + 1;
+                    t = ++starText;
+                } else {
+                    return false;
+                }
+            }
+            while(p < pattern.length && pattern[p] == ANY_STRING) {
+                p++;
+            }
+            return p == pattern.length;
+        }
+
+        private int fold(char c) {
+            return caseInsensitive ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+        }
+    }
+
+    // Bounds are compared as numbers when they are numeric, as instants when they are dates and as strings otherwise
+    private abstract static class RangeValue implements ValueTest {
+        static RangeValue of(String gte, String lte) {
+            for(var bound : new String[] { gte, lte }) {
+                if(bound != null && (bound.startsWith("now") || bound.contains("||"))) {
+                    throw new IllegalArgumentException("Date math %s cannot be evaluated locally".formatted(bound));
+                }
+            }
+            if((gte == null || parseDouble(gte) != null) && (lte == null || parseDouble(lte) != null)) {
+                return new NumericRange(gte, lte);
+            }
+            if((gte == null || parseEpochMillis(gte, false) != null) && (lte == null || parseEpochMillis(lte, true) != null)) {
+                return new DateRange(gte == null ? Long.MIN_VALUE : parseEpochMillis(gte, false), lte == null ? Long.MAX_VALUE : parseEpochMillis(lte, true));
+            }
+            return new StringRange(gte, lte);
+        }
+    }
+
+    private static final class NumericRange extends RangeValue {
+        private final long lowerLong;
+        private final long upperLong;
+        private final double lower;
+        private final double upper;
+        private final boolean integralBounds;
+
+        NumericRange(String gte, String lte) {
+            lower = gte == null ? Double.NEGATIVE_INFINITY : parseDouble(gte);
+            upper = lte == null ? Double.POSITIVE_INFINITY : parseDouble(lte);
+            var lowerParsed = gte == null ? Long.valueOf(Long.MIN_VALUE) : parseLong(gte);
+            var upperParsed = lte == null ? Long.valueOf(Long.MAX_VALUE) : parseLong(lte);
+            integralBounds = lowerParsed != null && upperParsed != null;
+            lowerLong = integralBounds ? lowerParsed : 0;
+            upperLong = integralBounds ? upperParsed : 0;
+        }
+
+        @Override
+        public boolean test(Object value) {
+            if(integralBounds && isIntegral(value)) {
+                var number = ((Number) value).longValue();
+                return number >= lowerLong && number <= upperLong;
+            }
+            double number;
+            if(value instanceof Number n) {
+                number = n.doubleValue();
+            } else if(value instanceof String string) {
+                var parsed = parseDouble(string);
+                if(parsed == null) {
+                    return false;
+                }
+                number = parsed;
+            } else {
+                return false;
+            }
+            return number >= lower && number <= upper;
+        }
+    }
+
+    private static final class DateRange extends RangeValue {
+        private final long lower;
+        private final long upper;
+
+        DateRange(long lower, long upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        @Override
+        public boolean test(Object value) {
+            long millis;
+            if(value instanceof Instant instant) {
+                millis = instant.toEpochMilli();
+            } else if(value instanceof OffsetDateTime dateTime) {
+                millis = dateTime.toInstant().toEpochMilli();
+            } else if(value instanceof ZonedDateTime dateTime) {
+                millis = dateTime.toInstant().toEpochMilli();
+            } else if(value instanceof LocalDateTime dateTime) {
+                millis = dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+            } else if(value instanceof LocalDate date) {
+                millis = date.toEpochDay() * 86_400_000L;
+            } else if(value instanceof Date date) {
+                millis = date.getTime();
+            } else if(value instanceof Number number) {
+                // Numbers in date fields are epoch milliseconds
+                millis = number.longValue();
+            } else if(value instanceof String string) {
+                var parsed = parseEpochMillis(string, false);
+                if(parsed == null) {
+                    return false;
+                }
+                millis = parsed;
+            } else {
+                return false;
+            }
+            return millis >= lower && millis <= upper;
+        }
+    }
+
+    private static final class StringRange extends RangeValue {
+        private final String lower;
+        private final String upper;
+
+        StringRange(String lower, String upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        @Override
+        public boolean test(Object value) {
+            var text = textOf(value);
+            return (lower == null || text.compareTo(lower) >= 0) && (upper == null || text.compareTo(upper) <= 0);
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static String textOf(Object value) {
+        if(value instanceof String string) {
+            return string;
+        } else if(value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        return value.toString();
+    }
+
+    private static String stringOrNull(Object value) {
+        return value == null ? null : textOf(value);
+    }
+
+    private static Long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseDouble(String text) {
+        if(text.isEmpty() || !(Character.isDigit(text.charAt(text.length() - 1)) || text.endsWith("."))) {
+            // Rejects NaN, Infinity and the f/d suffixes Java would accept
+            return null;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Upper bounds given as dates only include the whole day, as Elasticsearch rounds missing components up
+    private static Long parseEpochMillis(String text, boolean roundUp) {
+        try {
+            return Instant.parse(text).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // Try the next format
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // Try the next format
+        }
+        try {
+            return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // Try the next format
+        }
+        try {
+            var day = LocalDate.parse(text).toEpochDay();
+            return roundUp ? (day + 1) * 86_400_000L - 1 : day * 86_400_000L;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
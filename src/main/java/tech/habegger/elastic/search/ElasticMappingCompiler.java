@@ -0,0 +1,386 @@
+package tech.habegger.elastic.search;
+
+import tech.habegger.elastic.aggregation.ElasticAggregations;
+import tech.habegger.elastic.aggregation.ElasticCardinalityAggregation;
+import tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation;
+import tech.habegger.elastic.aggregation.ElasticNestedAggregation;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.mapping.ElasticFieldProperty;
+import tech.habegger.elastic.mapping.ElasticMappingsDefinition;
+import tech.habegger.elastic.mapping.ElasticObjectProperty;
+import tech.habegger.elastic.mapping.ElasticProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Checks the fields of a request against the mappings of the index and picks the clause types fitting them: exact
+// matches on text fields go to their keyword sub-field, match on keyword fields becomes a term and clauses on fields
+// of nested objects are wrapped in the nested clauses they need. Requests which cannot work on the mappings fail
+// with an IllegalArgumentException listing every problem found.
+public class ElasticMappingCompiler {
+    private static final Set<String> INTEGER_TYPES = Set.of("long", "integer", "short", "byte", "unsigned_long");
+    private static final Set<String> DECIMAL_TYPES = Set.of("double", "float", "half_float", "scaled_float");
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
+    // Fields of every document which never appear in the mapped properties
+    private static final Set<String> METADATA_FIELDS = Set.of("_id", "_index", "_routing", "_seq_no", "_primary_term", "_version", "_ignored", "_tier", "_doc_count", "_field_names");
+
+    private final ElasticMappingsDefinition mappings;
+
+    public ElasticMappingCompiler(ElasticMappingsDefinition mappings) {
+        this.mappings = mappings;
+    }
+
+    public Result<ElasticSearchRequest> compile(ElasticSearchRequest request) {
+        var compilation = new Compilation(request.runtimeMappings());
+        var query = request.query() == null ? null : compilation.clause("query", request.query(), null);
+        var postFilter = request.postFilter() == null ? null : compilation.clause("post_filter", request.postFilter(), null);
+        var aggregations = request.aggregations() == null ? null : compilation.aggregations("aggregations", request.aggregations(), null);
+        compilation.failOnErrors();
+        if(compilation.changes.isEmpty()) {
+            return new Result<>(request, List.of());
+        }
+        return new Result<>(new ElasticSearchRequest(
+            request.runtimeMappings(),
+            query,
+            request.knn(),
+            request.source(),
+            request.sort(),
+            request.from(),
+            request.size(),
+            request.minScore(),
+            aggregations,
+            postFilter,
+            request.fields(),
+            request.trackTotalHits(),
+            request.searchAfter(),
+            request.pit(),
+            request.slice()
+        ), List.copyOf(compilation.changes));
+    }
+
+    public Result<ElasticSearchClause> compile(ElasticSearchClause clause) {
+        var compilation = new Compilation(null);
+        var compiled = compilation.clause("query", clause, null);
+        compilation.failOnErrors();
+        return new Result<>(compiled, List.copyOf(compilation.changes));
+    }
+
+    private final class Compilation {
+        private final Map<String, ElasticFieldProperty> runtimeMappings;
+        private final List<Change> changes = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        Compilation(Map<String, ElasticFieldProperty> runtimeMappings) {
+            this.runtimeMappings = runtimeMappings == null ? Map.of() : runtimeMappings;
+        }
+
+        void failOnErrors() {
+            if(!errors.isEmpty()) {
+                throw new IllegalArgumentException("Request does not fit the mappings: " + String.join("; ", errors));
+            }
+        }
+
+        // The nested path is the one of the innermost enclosing nested clause, null at the root of the documents
+        ElasticSearchClause clause(String path, ElasticSearchClause clause, String nestedPath) {
+            if(clause instanceof ElasticBooleanClause bool) {
+                var body = bool.bool();
+                var should = clauses(path + ".bool.should", body.should(), nestedPath);
+                var must = clauses(path + ".bool.must", body.must(), nestedPath);
+                var mustNot = clauses(path + ".bool.must_not", body.mustNot(), nestedPath);
+                var filter = clauses(path + ".bool.filter", body.filter(), nestedPath);
+                if(should == body.should() && must == body.must() && mustNot == body.mustNot() && filter == body.filter()) {
+                    return clause;
+                }
+                return new ElasticBooleanClause(new ElasticBooleanClause.BooleanBody(should, must, mustNot, filter, body.minimumShouldMatch()));
+            } else if(clause instanceof ElasticConstantScoreClause constantScore && constantScore.constantScore() != null) {
+                var body = constantScore.constantScore();
+                var filter = body.filter() == null ? null : clause(path + ".constant_score.filter", body.filter(), nestedPath);
+                return filter == body.filter() ? clause : new ElasticConstantScoreClause(new ElasticConstantScoreClause.ConstantScoreBody(filter, body.boost()));
+            } else if(clause instanceof ElasticNestedClause nested) {
+                return nested(path, nested, nestedPath);
+            } else if(clause instanceof ElasticTermClause term) {
+                var entry = term.term.entrySet().iterator().next();
+                var field = exactField(path, "term", entry.getKey(), List.of(entry.getValue()));
+                if(field == null) {
+                    return clause;
+                }
+                var compiled = field.path().equals(entry.getKey()) ? clause : ElasticTermClause.term(field.path(), entry.getValue());
+                return wrap(path, "term", compiled, field, nestedPath);
+            } else if(clause instanceof ElasticTermsClause terms) {
+                var entry = terms.terms.entrySet().iterator().next();
+                var field = exactField(path, "terms", entry.getKey(), entry.getValue());
+                if(field == null) {
+                    return clause;
+                }
+                var compiled = field.path().equals(entry.getKey()) ? clause : new ElasticTermsClause(Map.of(field.path(), entry.getValue()));
+                return wrap(path, "terms", compiled, field, nestedPath);
+            } else if(clause instanceof ElasticMatchClause match) {
+                var entry = match.match.entrySet().iterator().next();
+                var field = field(path, entry.getKey());
+                if(field == null) {
+                    return clause;
+                }
+                var compiled = clause;
+                if("keyword".equals(field.type())) {
+                    // Keyword fields are not analyzed, a match on them is an exact match without the query parsing
+                    compiled = ElasticTermClause.term(entry.getKey(), entry.getValue());
+                    changes.add(new Change(ChangeKind.MATCH_TO_TERM, "Replaced match on keyword field %s by a term at %s".formatted(entry.getKey(), path)));
+                }
+                return wrap(path, "match", compiled, field, nestedPath);
+            } else if(clause instanceof ElasticRangeClause range) {
+                return leaf(path, "range", clause, range.field(), nestedPath);
+            } else if(clause instanceof ElasticExistsClause exists) {
+                return leaf(path, "exists", clause, exists.exists().field(), nestedPath);
+            } else if(clause instanceof ElasticPrefixClause prefix) {
+                return leaf(path, "prefix", clause, prefix.prefix.keySet().iterator().next(), nestedPath);
+            } else if(clause instanceof ElasticWildcardClause wildcard) {
+                return leaf(path, "wildcard", clause, wildcard.wildcard().keySet().iterator().next(), nestedPath);
+            } else if(clause instanceof ElasticRegexpClause regexp) {
+                return leaf(path, "regexp", clause, regexp.regexp().keySet().iterator().next(), nestedPath);
+            }
+            return clause;
+        }
+
+        private List<ElasticSearchClause> clauses(String path, List<ElasticSearchClause> clauses, String nestedPath) {
+            if(clauses == null) {
+                return null;
+            }
+            var result = new ArrayList<ElasticSearchClause>(clauses.size());
+            var changed = false;
+            for(int i = 0; i < clauses.size(); i++) {
+                var updated = clause("%s[%d]".formatted(path, i), clauses.get(i), nestedPath);
+                changed |= updated != clauses.get(i);
+                result.add(updated);
+            }
+            return changed ? result : clauses;
+        }
+
+        private ElasticSearchClause nested(String path, ElasticNestedClause nested, String nestedPath) {
+            var body = nested.nested;
+            var object = field(path, body.path());
+            if(object == null) {
+                return nested;
+            } else if(!"nested".equals(object.type())) {
+                errors.add("Path %s of the nested clause at %s is not a nested object".formatted(body.path(), path));
+                return nested;
+            }
+            var query = body.query() == null ? null : clause(path + ".nested.query", body.query(), body.path());
+            var compiled = query == body.query() ? nested : new ElasticNestedClause(new ElasticNestedClause.NestedBody(body.path(), query, body.scoreMode(), body.ignoreUnmapped()));
+            // The nested object itself is the last of its nested paths, only its parents may need wrapping
+            var parents = new Field(object.path(), object.type(), object.nestedPaths().subList(0, object.nestedPaths().size() - 1), null);
+            return wrap(path, "nested", compiled, parents, nestedPath);
+        }
+
+        private ElasticSearchClause leaf(String path, String type, ElasticSearchClause clause, String name, String nestedPath) {
+            var field = field(path, name);
+            return field == null ? clause : wrap(path, type, clause, field, nestedPath);
+        }
+
+        // Term level exact matches on text fields compare against the analyzed tokens, their keyword sub-field is used
+        // instead when there is one
+        private Field exactField(String path, String type, String name, List<String> values) {
+            var field = field(path, name);
+            if(field == null) {
+                return null;
+            }
+            if("text".equals(field.type())) {
+                var keyword = field.keyword();
+                if(keyword == null) {
+                    errors.add("%s on text field %s at %s has no keyword sub-field to match exactly".formatted(type, name, path));
+                    return null;
+                }
+                changes.add(new Change(ChangeKind.KEYWORD_SUB_FIELD, "Replaced text field %s by %s in %s at %s".formatted(name, keyword.path(), type, path)));
+                field = keyword;
+            }
+            for(var value : values) {
+                if(!isValid(field.type(), value)) {
+                    errors.add("Value %s of %s at %s is not a valid %s for field %s".formatted(value, type, path, field.type(), name));
+                }
+            }
+            return field;
+        }
+
+        // Wraps the clause in the nested clauses of its field which are not already opened by the enclosing clauses.
+        // Each clause is wrapped on its own: clauses which must match the same nested object have to share an
+        // explicit nested clause.
+        private ElasticSearchClause wrap(String path, String type, ElasticSearchClause clause, Field field, String nestedPath) {
+            var nestedPaths = field.nestedPaths();
+            var opened = nestedPath == null ? 0 : nestedPaths.indexOf(nestedPath) + 1;
+            if(nestedPath != null && opened == 0) {
+                errors.add("Field %s of %s at %s is not within nested path %s".formatted(field.path(), type, path, nestedPath));
+                return clause;
+            }
+            var result = clause;
+            for(int i = nestedPaths.size() - 1; i >= opened; i--) {
+                result = ElasticNestedClause.nested(nestedPaths.get(i), result);
+                changes.add(new Change(ChangeKind.WRAPPED_IN_NESTED, "Wrapped %s on %s in nested %s at %s".formatted(type, field.path(), nestedPaths.get(i), path)));
+            }
+            return result;
+        }
+
+        Map<String, ElasticAggregations> aggregations(String path, Map<String, ElasticAggregations> aggregations, String nestedPath) {
+            Map<String, ElasticAggregations> result = null;
+            for(var entry : aggregations.entrySet()) {
+                var updated = aggregation(path + "." + entry.getKey(), entry.getValue(), nestedPath);
+                if(updated != entry.getValue()) {
+                    if(result == null) {
+                        result = new HashMap<>(aggregations);
+                    }
+                    result.put(entry.getKey(), updated);
+                }
+            }
+            return result == null ? aggregations : result;
+        }
+
+        private ElasticAggregations aggregation(String path, ElasticAggregations aggregation, String nestedPath) {
+            var result = aggregation;
+            var subNestedPath = nestedPath;
+            if(aggregation instanceof ElasticTermsAggregation terms && terms.field() != null) {
+                var field = aggregationField(path, "terms", terms.field(), nestedPath);
+                if(field != null && !field.equals(terms.field())) {
+                    result = terms.withField(field);
+                }
+            } else if(aggregation instanceof ElasticCardinalityAggregation cardinality && cardinality.field() != null) {
+                var field = aggregationField(path, "cardinality", cardinality.field(), nestedPath);
+                if(field != null && !field.equals(cardinality.field())) {
+                    result = cardinality.withField(field);
+                }
+            } else if(aggregation instanceof ElasticDateHistogramAggregation dateHistogram && dateHistogram.field() != null) {
+                aggregationField(path, "date_histogram", dateHistogram.field(), nestedPath);
+            } else if(aggregation instanceof ElasticNestedAggregation nested) {
+                var object = field(path, nested.path());
+                if(object != null && !"nested".equals(object.type())) {
+                    errors.add("Path %s of the nested aggregation at %s is not a nested object".formatted(nested.path(), path));
+                }
+                subNestedPath = nested.path();
+            }
+            if(aggregation.subAggregations() != null) {
+                var subAggregations = aggregations(path + ".aggregations", aggregation.subAggregations(), subNestedPath);
+                if(subAggregations != aggregation.subAggregations()) {
+                    result = result.withSubAggregations(subAggregations);
+                }
+            }
+            return result;
+        }
+
+        // Aggregating a text field needs its fielddata loaded on the heap, its keyword sub-field is used instead. Fields
+        // of nested objects are not wrapped as a nested aggregation changes the shape of the response.
+        private String aggregationField(String path, String type, String name, String nestedPath) {
+            var field = field(path, name);
+            if(field == null) {
+                return null;
+            }
+            var innermost = field.nestedPaths().isEmpty() ? null : field.nestedPaths().get(field.nestedPaths().size() - 1);
+            if(innermost != null && !innermost.equals(nestedPath)) {
+                errors.add("Field %s of %s aggregation at %s has to be aggregated within a nested aggregation on %s".formatted(name, type, path, innermost));
+            }
+            if("text".equals(field.type())) {
+                var keyword = field.keyword();
+                if(keyword == null) {
+                    errors.add("%s aggregation on text field %s at %s has no keyword sub-field to aggregate".formatted(type, name, path));
+                    return null;
+                }
+                changes.add(new Change(ChangeKind.KEYWORD_SUB_FIELD, "Replaced text field %s by %s in %s aggregation at %s".formatted(name, keyword.path(), type, path)));
+                return keyword.path();
+            }
+            return name;
+        }
+
+        private Field field(String path, String name) {
+            Field field;
+            if(runtimeMappings.containsKey(name)) {
+                field = Field.of(name, runtimeMappings.get(name), List.of());
+            } else if(METADATA_FIELDS.contains(name)) {
+                field = new Field(name, "metadata", List.of(), null);
+            } else {
+                field = resolve(name);
+            }
+            if(field == null) {
+                errors.add("Unknown field %s at %s".formatted(name, path));
+            }
+            return field;
+        }
+    }
+
+    // Walks the dotted name down the object properties, then into the multi-fields of the field reached
+    private Field resolve(String name) {
+        var segments = name.split("\\.");
+        var properties = mappings.properties();
+        var nestedPaths = new ArrayList<String>();
+        for(int i = 0; i < segments.length; i++) {
+            ElasticProperty property = properties == null ? null : properties.get(segments[i]);
+            var path = String.join(".", List.of(segments).subList(0, i + 1));
+            if(property instanceof ElasticObjectProperty object) {
+                if("nested".equals(object.type())) {
+                    nestedPaths.add(path);
+                }
+                if(i == segments.length - 1) {
+                    return new Field(path, object.type() == null ? "object" : object.type(), List.copyOf(nestedPaths), null);
+                }
+                properties = object.properties();
+            } else if(property instanceof ElasticFieldProperty field) {
+                if(i == segments.length - 1) {
+                    return Field.of(path, field, nestedPaths);
+                }
+                var subName = String.join(".", List.of(segments).subList(i + 1, segments.length));
+                var subField = field.fields() == null ? null : field.fields().get(subName);
+                return subField == null ? null : Field.of(name, subField, nestedPaths);
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValid(String type, String value) {
+        if(value == null) {
+            return true;
+        } else if(INTEGER_TYPES.contains(type)) {
+            return INTEGER.matcher(value).matches();
+        } else if(DECIMAL_TYPES.contains(type)) {
+            try {
+                Double.parseDouble(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        } else if("boolean".equals(type)) {
+            return "true".equals(value) || "false".equals(value);
+        }
+        return true;
+    }
+
+    private record Field(String path, String type, List<String> nestedPaths, Field keyword) {
+        static Field of(String path, ElasticFieldProperty property, List<String> nestedPaths) {
+            Field keyword = null;
+            if(property.fields() != null) {
+                for(var subField : property.fields().entrySet()) {
+                    if("keyword".equals(subField.getValue().type())) {
+                        keyword = new Field(path + "." + subField.getKey(), "keyword", List.copyOf(nestedPaths), null);
+                        break;
+                    }
+                }
+            }
+            return new Field(path, property.type(), List.copyOf(nestedPaths), keyword);
+        }
+    }
+
+    public record Result<T>(T value, List<Change> changes) {
+        public boolean isChanged() {
+            return !changes.isEmpty();
+        }
+    }
+
+    public record Change(ChangeKind kind, String description) {
+    }
+
+    public enum ChangeKind {
+        KEYWORD_SUB_FIELD,
+        MATCH_TO_TERM,
+        WRAPPED_IN_NESTED
+    }
+}
@@ -8,7 +8,7 @@ import java.util.Map;
 public class ElasticMatchClause implements ElasticSearchClause {
 
     @JsonProperty("match")
-    private final Map<String, String> match;
+    final Map<String, String> match;
 
     ElasticMatchClause(Map<String, String> match) {
         this.match = match;
@@ -6,7 +6,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 @SuppressWarnings({"FieldCanBeLocal", "unused"})
 public class ElasticNestedClause implements ElasticSearchClause {
     @JsonProperty("nested")
-    private final NestedBody nested;
+    final NestedBody nested;
 
     ElasticNestedClause(NestedBody nested) {
         this.nested = nested;
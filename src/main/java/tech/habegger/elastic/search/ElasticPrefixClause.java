@@ -3,7 +3,7 @@ package tech.habegger.elastic.search;
 import java.util.Map;
 
 public class ElasticPrefixClause implements ElasticSearchClause {
-    private final Map<String, String> prefix;
+    final Map<String, String> prefix;
 
     ElasticPrefixClause(Map<String, String> prefix) {
         this.prefix = prefix;
@@ -0,0 +1,439 @@
+package tech.habegger.elastic.search;
+
+import tech.habegger.elastic.aggregation.ElasticAggregations;
+import tech.habegger.elastic.aggregation.ElasticCompositeAggregation;
+import tech.habegger.elastic.aggregation.ElasticFilterAggregation;
+import tech.habegger.elastic.aggregation.ElasticFiltersAggregation;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Estimates the cost of a request from its structure alone, and enforces guardrails on the shapes known to hurt a
+// cluster before the request is sent. Scores are heuristic: only meant to compare requests and spot the costly parts.
+public class ElasticQueryCostEstimator {
+    private static final double LEAF_COST = 1;
+    private static final double RANGE_COST = 2;
+    private static final double PREFIX_COST = 5;
+    private static final double FUZZY_COST = 10;
+    private static final double WILDCARD_COST = 10;
+    private static final double LEADING_WILDCARD_COST = 100;
+    private static final double REGEXP_COST = 20;
+    private static final double UNBOUNDED_REGEXP_COST = 200;
+    private static final double SCRIPT_COST = 50;
+    private static final int DEFAULT_TERMS_SIZE = 10;
+
+    private final Map<Rule, Action> policies;
+    private final int maxTermsValues;
+    private final int maxNestedDepth;
+    private final int maxAggregationSize;
+    private final int maxDeterminizedStates;
+    private final Consumer<Violation> warnings;
+
+    private ElasticQueryCostEstimator(Builder builder) {
+        this.policies = new EnumMap<>(builder.policies);
+        this.maxTermsValues = builder.maxTermsValues;
+        this.maxNestedDepth = builder.maxNestedDepth;
+        this.maxAggregationSize = builder.maxAggregationSize;
+        this.maxDeterminizedStates = builder.maxDeterminizedStates;
+        this.warnings = builder.warnings;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Estimate estimate(ElasticSearchRequest request) {
+        var walk = new Walk(false);
+        walk.request(request);
+        return walk.estimate();
+    }
+
+    // Returns the request with the rewrite policies applied, failing with an IllegalArgumentException when a reject
+    // policy is violated. Violations which cannot be rewritten where they are found are rejected as well.
+    public ElasticSearchRequest enforce(ElasticSearchRequest request) {
+        var walk = new Walk(true);
+        var rewritten = walk.request(request);
+        var rejected = new ArrayList<Violation>();
+        for(var violation : walk.violations) {
+            var action = policies.get(violation.rule());
+            if(action == Action.REJECT || action == Action.REWRITE && !violation.rewritten()) {
+                rejected.add(violation);
+            } else if(action == Action.WARN) {
+                warnings.accept(violation);
+            }
+        }
+        if(!rejected.isEmpty()) {
+            throw new IllegalArgumentException("Request rejected: " + rejected.stream().map(Violation::toString).collect(Collectors.joining("; ")));
+        }
+        return rewritten;
+    }
+
+    private final class Walk {
+        private final boolean rewrite;
+        private final List<ClauseCost> clauses = new ArrayList<>();
+        private final List<Violation> violations = new ArrayList<>();
+        private double score = 0;
+
+        Walk(boolean rewrite) {
+            this.rewrite = rewrite;
+        }
+
+        Estimate estimate() {
+            return new Estimate(score, List.copyOf(clauses), List.copyOf(violations));
+        }
+
+        ElasticSearchRequest request(ElasticSearchRequest request) {
+            var query = request.query() == null ? null : clause("query", request.query(), 1, 0);
+            var knn = request.knn() == null ? null : knn(request.knn());
+            var postFilter = request.postFilter() == null ? null : clause("post_filter", request.postFilter(), 1, 0);
+            var aggregations = request.aggregations() == null ? null : topLevelAggregations(request.aggregations());
+            if(query == request.query() && knn == request.knn() && postFilter == request.postFilter() && aggregations == request.aggregations()) {
+                return request;
+            }
+            return new ElasticSearchRequest(
+                request.runtimeMappings(),
+                query,
+                knn,
+                request.source(),
+                request.sort(),
+                request.from(),
+                request.size(),
+                request.minScore(),
+                aggregations,
+                postFilter,
+                request.fields(),
+                request.trackTotalHits(),
+                request.searchAfter(),
+                request.pit(),
+                request.slice()
+            );
+        }
+
+        private ElasticKnn knn(ElasticKnn knn) {
+            var filter = child("knn.filter", knn.filter(), 1, 0);
+            return filter == knn.filter() ? knn : new ElasticKnn(knn.field(), knn.queryVector(), knn.k(), knn.num_candidates(), filter);
+        }
+
+        // Nested clauses run their query for every matching nested document, hence weigh more the deeper they are
+        private ElasticSearchClause clause(String path, ElasticSearchClause clause, double weight, int nestedDepth) {
+            if(clause instanceof ElasticBooleanClause bool) {
+                var body = bool.bool();
+                var should = clauses(path + ".bool.should", body.should(), weight, nestedDepth);
+                var must = clauses(path + ".bool.must", body.must(), weight, nestedDepth);
+                var mustNot = clauses(path + ".bool.must_not", body.mustNot(), weight, nestedDepth);
+                var filter = clauses(path + ".bool.filter", body.filter(), weight, nestedDepth);
+                if(should == body.should() && must == body.must() && mustNot == body.mustNot() && filter == body.filter()) {
+                    return clause;
+                }
+                return new ElasticBooleanClause(new ElasticBooleanClause.BooleanBody(should, must, mustNot, filter, body.minimumShouldMatch()));
+            } else if(clause instanceof ElasticConstantScoreClause constantScore && constantScore.constantScore() != null) {
+                var body = constantScore.constantScore();
+                var filter = body.filter() == null ? null : clause(path + ".constant_score.filter", body.filter(), weight, nestedDepth);
+                return filter == body.filter() ? clause : new ElasticConstantScoreClause(new ElasticConstantScoreClause.ConstantScoreBody(filter, body.boost()));
+            } else if(clause instanceof ElasticNestedClause nested) {
+                var body = nested.nested;
+                var nestedPath = "%s.nested(%s)".formatted(path, body.path());
+                if(nestedDepth + 1 > maxNestedDepth) {
+                    violation(Rule.DEEP_NESTING, nestedPath, "Nested %d levels deep, more than %d".formatted(nestedDepth + 1, maxNestedDepth), false);
+                }
+                cost(nestedPath, "nested", LEAF_COST * weight);
+                if(body.query() == null) {
+                    return clause;
+                }
+                var query = clause(nestedPath + ".query", body.query(), weight * 2, nestedDepth + 1);
+                return query == body.query() ? clause : new ElasticNestedClause(new ElasticNestedClause.NestedBody(body.path(), query, body.scoreMode(), body.ignoreUnmapped()));
+            } else if(clause instanceof ElasticTermsClause terms) {
+                for(var entry : terms.terms.entrySet()) {
+                    var values = entry.getValue() == null ? 0 : entry.getValue().size();
+                    var termsPath = "%s.terms(%s)".formatted(path, entry.getKey());
+                    if(values > maxTermsValues) {
+                        violation(Rule.LARGE_TERMS, termsPath, "%d terms, more than %d".formatted(values, maxTermsValues), false);
+                    }
+                    cost(termsPath, "terms", (LEAF_COST + values / 100.0) * weight);
+                }
+                return clause;
+            } else if(clause instanceof ElasticWildcardClause wildcard) {
+                for(var entry : wildcard.wildcard().entrySet()) {
+                    var wildcardPath = "%s.wildcard(%s)".formatted(path, entry.getKey());
+                    var value = entry.getValue().value();
+                    if(value != null && (value.startsWith("*") || value.startsWith("?"))) {
+                        violation(Rule.LEADING_WILDCARD, wildcardPath, "Pattern %s starts with a wildcard".formatted(value), false);
+                        cost(wildcardPath, "wildcard", LEADING_WILDCARD_COST * weight);
+                    } else {
+                        cost(wildcardPath, "wildcard", WILDCARD_COST * weight);
+                    }
+                }
+                return clause;
+            } else if(clause instanceof ElasticRegexpClause regexp) {
+                return regexp(path, regexp, weight);
+            } else if(clause instanceof ElasticDisMaxClause disMax) {
+                var body = disMax.constantScore();
+                var queries = clauses(path + ".dis_max.queries", body.queries(), weight, nestedDepth);
+                return queries == body.queries() ? clause : new ElasticDisMaxClause(new ElasticDisMaxClause.DisMaxBody(queries, body.tieBreaker()));
+            } else if(clause instanceof ElasticBoostingClause boosting) {
+                var body = boosting.boosting();
+                var positive = child(path + ".boosting.positive", body.positive(), weight, nestedDepth);
+                var negative = child(path + ".boosting.negative", body.negative(), weight, nestedDepth);
+                if(positive == body.positive() && negative == body.negative()) {
+                    return clause;
+                }
+                return new ElasticBoostingClause(new ElasticBoostingClause.BoostingBody(positive, negative, body.negativeBoost()));
+            } else if(clause instanceof ElasticPinnedClause pinned) {
+                var body = pinned.pinned();
+                var organic = child(path + ".pinned.organic", body.organic(), weight, nestedDepth);
+                return organic == body.organic() ? clause : new ElasticPinnedClause(new ElasticPinnedClause.PinnedBody(body.docs(), organic));
+            } else if(clause instanceof ElasticScriptScoreClause scriptScore) {
+                var body = scriptScore.script_score();
+                cost(path, "script_score", SCRIPT_COST * weight);
+                var query = child(path + ".script_score.query", body.query(), weight, nestedDepth);
+                return query == body.query() ? clause : new ElasticScriptScoreClause(new ElasticScriptScoreClause.ScriptScoreBody(query, body.script(), body.minScore(), body.boost()));
+            } else if(clause instanceof ElasticFunctionScoreClause functionScore) {
+                return functionScore(path, functionScore, weight, nestedDepth);
+            }
+            cost(path, type(clause), baseCost(clause) * weight);
+            return clause;
+        }
+
+        private ElasticSearchClause child(String path, ElasticSearchClause clause, double weight, int nestedDepth) {
+            return clause == null ? null : clause(path, clause, weight, nestedDepth);
+        }
+
+        private ElasticSearchClause functionScore(String path, ElasticFunctionScoreClause functionScore, double weight, int nestedDepth) {
+            var body = functionScore.function_score();
+            cost(path, "function_score", SCRIPT_COST * weight);
+            var query = child(path + ".function_score.query", body.query(), weight, nestedDepth);
+            var functions = body.functions();
+            var changed = query != body.query();
+            if(functions != null) {
+                functions = new ArrayList<>(functions);
+                for(int i = 0; i < functions.size(); i++) {
+                    if(functions.get(i) instanceof ElasticFunctionScoreClause.FilterFunctionBody function) {
+                        var filter = child("%s.function_score.functions[%d].filter".formatted(path, i), function.filter(), weight, nestedDepth);
+                        if(filter != function.filter()) {
+                            functions.set(i, new ElasticFunctionScoreClause.FilterFunctionBody(filter, function.weight()));
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            return changed ? new ElasticFunctionScoreClause(new ElasticFunctionScoreClause.FunctionScoreBody(query, functions)) : functionScore;
+        }
+
+        private List<ElasticSearchClause> clauses(String path, List<ElasticSearchClause> clauses, double weight, int nestedDepth) {
+            if(clauses == null) {
+                return null;
+            }
+            var result = new ArrayList<ElasticSearchClause>(clauses.size());
+            var changed = false;
+            for(int i = 0; i < clauses.size(); i++) {
+                var updated = clause("%s[%d]".formatted(path, i), clauses.get(i), weight, nestedDepth);
+                changed |= updated != clauses.get(i);
+                result.add(updated);
+            }
+            return changed ? result : clauses;
+        }
+
+        // A regexp without literal prefix has to be matched against every term of the field
+        private ElasticSearchClause regexp(String path, ElasticRegexpClause regexp, double weight) {
+            var entry = regexp.regexp().entrySet().iterator().next();
+            var regexpPath = "%s.regexp(%s)".formatted(path, entry.getKey());
+            var body = entry.getValue();
+            var value = body.value();
+            var unbounded = value == null || value.isEmpty() || ".[(".indexOf(value.charAt(0)) >= 0;
+            cost(regexpPath, "regexp", (unbounded ? UNBOUNDED_REGEXP_COST : REGEXP_COST) * weight);
+            if(!unbounded || body.maxDeterminizedStates() != null) {
+                return regexp;
+            }
+            var rewritable = policies.get(Rule.UNBOUNDED_REGEXP) == Action.REWRITE;
+            violation(Rule.UNBOUNDED_REGEXP, regexpPath, "Pattern %s has no literal prefix nor max_determinized_states".formatted(value), rewritable);
+            return rewrite && rewritable ? regexp.withMaxDeterminizedStates(maxDeterminizedStates) : regexp;
+        }
+
+        private Map<String, ElasticAggregations> topLevelAggregations(Map<String, ElasticAggregations> aggregations) {
+            Map<String, ElasticAggregations> result = null;
+            for(var entry : aggregations.entrySet()) {
+                var updated = aggregation("aggregations." + entry.getKey(), entry.getValue(), 1, true);
+                if(updated != entry.getValue()) {
+                    if(result == null) {
+                        result = new HashMap<>(aggregations);
+                    }
+                    result.put(entry.getKey(), updated);
+                }
+            }
+            return result == null ? aggregations : result;
+        }
+
+        // Sub-aggregations run once per bucket of their parent, their cost is multiplied by the buckets of the parents
+        private ElasticAggregations aggregation(String path, ElasticAggregations aggregation, long parentBuckets, boolean topLevel) {
+            Integer size = null;
+            if(aggregation instanceof ElasticTermsAggregation terms) {
+                size = terms.size() == null ? DEFAULT_TERMS_SIZE : terms.size();
+            } else if(aggregation instanceof ElasticCompositeAggregation composite) {
+                size = composite.size() == null ? DEFAULT_TERMS_SIZE : composite.size();
+            }
+            var result = filters(path, aggregation, parentBuckets);
+            if(size != null && size > maxAggregationSize) {
+                // Sub-aggregations cannot be replaced without copying their parent, only top level terms are clamped
+                var rewritable = topLevel && aggregation instanceof ElasticTermsAggregation && policies.get(Rule.LARGE_AGGREGATION) == Action.REWRITE;
+                violation(Rule.LARGE_AGGREGATION, path, "Size %d, more than %d".formatted(size, maxAggregationSize), rewritable);
+                if(rewrite && rewritable) {
+                    result = ((ElasticTermsAggregation) aggregation).withSize(maxAggregationSize);
+                    size = maxAggregationSize;
+                }
+            }
+            var buckets = size == null ? 1 : (long) size;
+            cost(path, type(aggregation), (size == null ? LEAF_COST : size / 100.0) * parentBuckets);
+            Map<String, ElasticAggregations> subAggregations = null;
+            if(aggregation.subAggregations() != null) {
+                for(var sub : aggregation.subAggregations().entrySet()) {
+                    var updated = aggregation("%s.aggregations.%s".formatted(path, sub.getKey()), sub.getValue(), parentBuckets * buckets, false);
+                    if(updated != sub.getValue()) {
+                        if(subAggregations == null) {
+                            subAggregations = new HashMap<>(aggregation.subAggregations());
+                        }
+                        subAggregations.put(sub.getKey(), updated);
+                    }
+                }
+            }
+            return subAggregations == null ? result : result.withSubAggregations(subAggregations);
+        }
+
+        // Filter clauses of bucket aggregations run once per bucket of their parents
+        private ElasticAggregations filters(String path, ElasticAggregations aggregation, long parentBuckets) {
+            if(aggregation instanceof ElasticFilterAggregation filter) {
+                var clause = child(path + ".filter", filter.filter(), parentBuckets, 0);
+                return clause == filter.filter() ? aggregation : filter.withFilter(clause);
+            } else if(aggregation instanceof ElasticFiltersAggregation filters && filters.filters() != null) {
+                Map<String, ElasticSearchClause> result = null;
+                for(var entry : filters.filters().entrySet()) {
+                    var clause = child("%s.filters.%s".formatted(path, entry.getKey()), entry.getValue(), parentBuckets, 0);
+                    if(clause != entry.getValue()) {
+                        if(result == null) {
+                            result = new LinkedHashMap<>(filters.filters());
+                        }
+                        result.put(entry.getKey(), clause);
+                    }
+                }
+                return result == null ? aggregation : filters.withFilters(result);
+            }
+            return aggregation;
+        }
+
+        private void cost(String path, String type, double cost) {
+            clauses.add(new ClauseCost(path, type, cost));
+            score += cost;
+        }
+
+        private void violation(Rule rule, String path, String description, boolean rewritten) {
+            if(policies.containsKey(rule)) {
+                violations.add(new Violation(rule, path, description, rewrite && rewritten));
+            }
+        }
+    }
+
+    private static double baseCost(ElasticSearchClause clause) {
+        if(clause instanceof ElasticRangeClause) {
+            return RANGE_COST;
+        } else if(clause instanceof ElasticPrefixClause) {
+            return PREFIX_COST;
+        } else if(clause instanceof ElasticFuzzyClause) {
+            return FUZZY_COST;
+        }
+        return LEAF_COST;
+    }
+
+    // Clause and aggregation class names without their Elastic prefix and Clause/Aggregation suffix, e.g. match_phrase
+    private static String type(Object element) {
+        var name = element.getClass().getSimpleName().replaceFirst("^Elastic", "").replaceFirst("(Clause|Aggregation)$", "");
+        return name.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    public record Estimate(double score, List<ClauseCost> clauses, List<Violation> violations) {
+        public boolean isViolated() {
+            return !violations.isEmpty();
+        }
+    }
+
+    public record ClauseCost(String path, String type, double cost) {
+    }
+
+    public record Violation(Rule rule, String path, String description, boolean rewritten) {
+        @Override
+        public String toString() {
+            return "%s at %s: %s".formatted(rule, path, description);
+        }
+    }
+
+    public enum Rule {
+        LEADING_WILDCARD,
+        UNBOUNDED_REGEXP,
+        LARGE_TERMS,
+        DEEP_NESTING,
+        LARGE_AGGREGATION
+    }
+
+    public enum Action {
+        REJECT,
+        REWRITE,
+        WARN
+    }
+
+    @SuppressWarnings("unused")
+    public static class Builder {
+        private final Map<Rule, Action> policies = new EnumMap<>(Rule.class);
+        private int maxTermsValues = 10_000;
+        private int maxNestedDepth = 3;
+        private int maxAggregationSize = 10_000;
+        private int maxDeterminizedStates = 1_000;
+        private Consumer<Violation> warnings = violation -> { };
+
+        private Builder() {
+        }
+
+        // Rules without policy are neither enforced nor reported
+        public Builder withPolicy(Rule rule, Action action) {
+            if(action == Action.REWRITE && rule != Rule.UNBOUNDED_REGEXP && rule != Rule.LARGE_AGGREGATION) {
+                throw new IllegalArgumentException("No rewrite for " + rule);
+            }
+            policies.put(rule, action);
+            return this;
+        }
+
+        public Builder withMaxTermsValues(int maxTermsValues) {
+            this.maxTermsValues = maxTermsValues;
+            return this;
+        }
+
+        public Builder withMaxNestedDepth(int maxNestedDepth) {
+            this.maxNestedDepth = maxNestedDepth;
+            return this;
+        }
+
+        public Builder withMaxAggregationSize(int maxAggregationSize) {
+            this.maxAggregationSize = maxAggregationSize;
+            return this;
+        }
+
+        // Limit given to unbounded regexp clauses by the rewrite policy
+        public Builder withMaxDeterminizedStates(int maxDeterminizedStates) {
+            this.maxDeterminizedStates = maxDeterminizedStates;
+            return this;
+        }
+
+        public Builder onWarning(Consumer<Violation> warnings) {
+            this.warnings = warnings;
+            return this;
+        }
+
+        public ElasticQueryCostEstimator build() {
+            return new ElasticQueryCostEstimator(this);
+        }
+    }
+}
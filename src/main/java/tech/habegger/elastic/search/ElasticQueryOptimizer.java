@@ -0,0 +1,294 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+public class ElasticQueryOptimizer {
+    private final ObjectMapper mapper;
+
+    public ElasticQueryOptimizer(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public Result<ElasticSearchRequest> optimize(ElasticSearchRequest request) {
+        var changes = new ArrayList<Change>();
+        var query = request.query() == null ? null : optimize(request.query(), isScored(request), changes);
+        var postFilter = request.postFilter() == null ? null : optimize(request.postFilter(), false, changes);
+        if(changes.isEmpty()) {
+            return new Result<>(request, List.of());
+        }
+        return new Result<>(new ElasticSearchRequest(
+            request.runtimeMappings(),
+            query,
+            request.knn(),
+            request.source(),
+            request.sort(),
+            request.from(),
+            request.size(),
+            request.minScore(),
+            request.aggregations(),
+            postFilter,
+            request.fields(),
+            request.trackTotalHits(),
+            request.searchAfter(),
+            request.pit(),
+            request.slice()
+        ), List.copyOf(changes));
+    }
+
+    public Result<ElasticSearchClause> optimize(ElasticSearchClause clause, boolean scored) {
+        var changes = new ArrayList<Change>();
+        var optimized = optimize(clause, scored, changes);
+        return new Result<>(optimized, List.copyOf(changes));
+    }
+
+    private static boolean isScored(ElasticSearchRequest request) {
+        if(request.minScore() != null) {
+            return true;
+        }
+        if(request.size() != null && request.size() == 0) {
+            return false;
+        }
+        if(request.sort() == null || request.sort().isEmpty()) {
+            return true;
+        }
+        return request.sort().stream().anyMatch(spec -> spec.containsKey("_score"));
+    }
+
+    private ElasticSearchClause optimize(ElasticSearchClause clause, boolean scored, List<Change> changes) {
+        if(clause instanceof ElasticBooleanClause bool) {
+            return optimizeBool(bool.bool(), scored, changes);
+        } else if(clause instanceof ElasticConstantScoreClause constantScore && constantScore.constantScore() != null) {
+            var body = constantScore.constantScore();
+            var filter = body.filter() == null ? null : optimize(body.filter(), false, changes);
+            return filter == body.filter() ? clause : new ElasticConstantScoreClause(new ElasticConstantScoreClause.ConstantScoreBody(filter, body.boost()));
+        } else if(clause instanceof ElasticNestedClause nested && nested.nested.query() != null) {
+            var body = nested.nested;
+            var nestedScored = scored && body.scoreMode() != ElasticNestedClause.ScoreMode.none;
+            var query = optimize(body.query(), nestedScored, changes);
+            return query == body.query() ? clause : new ElasticNestedClause(new ElasticNestedClause.NestedBody(body.path(), query, body.scoreMode(), body.ignoreUnmapped()));
+        }
+        return clause;
+    }
+
+    private ElasticSearchClause optimizeBool(ElasticBooleanClause.BooleanBody body, boolean scored, List<Change> changes) {
+        var should = optimizeAll(body.should(), scored, changes);
+        var must = optimizeAll(body.must(), scored, changes);
+        var filter = optimizeAll(body.filter(), false, changes);
+        var mustNot = optimizeAll(body.mustNot(), false, changes);
+        var minimumShouldMatch = body.minimumShouldMatch();
+        var shouldIsDisjunction = minimumShouldMatch == null || minimumShouldMatch == 1;
+
+        if(!scored && !must.isEmpty()) {
+            changes.add(new Change(ChangeKind.MOVED_TO_FILTER, "Moved %d non-scoring must clause(s) to filter".formatted(must.size())));
+            filter.addAll(0, must);
+            must.clear();
+        }
+
+        var hadRequired = !must.isEmpty() || !filter.isEmpty();
+        var flatMust = new ArrayList<ElasticSearchClause>();
+        var flatFilter = new ArrayList<ElasticSearchClause>();
+        var flatMustNot = new ArrayList<>(mustNot);
+        for(var clause : filter) {
+            if(isConjunction(clause)) {
+                var nested = ((ElasticBooleanClause) clause).bool();
+                addAll(flatFilter, nested.must());
+                addAll(flatFilter, nested.filter());
+                addAll(flatMustNot, nested.mustNot());
+                changes.add(new Change(ChangeKind.FLATTENED_BOOL, "Merged nested bool into parent filter"));
+            } else {
+                flatFilter.add(clause);
+            }
+        }
+        for(var clause : must) {
+            if(isConjunction(clause)) {
+                var nested = ((ElasticBooleanClause) clause).bool();
+                addAll(flatMust, nested.must());
+                addAll(flatFilter, nested.filter());
+                addAll(flatMustNot, nested.mustNot());
+                changes.add(new Change(ChangeKind.FLATTENED_BOOL, "Merged nested bool into parent must"));
+            } else {
+                flatMust.add(clause);
+            }
+        }
+        must = flatMust;
+        filter = flatFilter;
+        if(hadRequired && must.isEmpty() && filter.isEmpty() && !should.isEmpty() && minimumShouldMatch == null) {
+            // Should clauses are optional next to must or filter clauses, they must stay so once those are flattened away
+            minimumShouldMatch = 0;
+            changes.add(new Change(ChangeKind.FLATTENED_BOOL, "Kept should clauses optional with minimum_should_match 0"));
+        }
+        mustNot = liftNegatedDisjunctions(flatMustNot, changes);
+
+        mustNot = mergeTerms("must_not", mustNot, changes);
+        if(!scored && shouldIsDisjunction) {
+            should = mergeTerms("should", should, changes);
+        }
+
+        filter = deduplicate("filter", filter, changes);
+        mustNot = deduplicate("must_not", mustNot, changes);
+        if(!scored && shouldIsDisjunction) {
+            should = deduplicate("should", should, changes);
+        }
+
+        var clauseCount = should.size() + must.size() + filter.size() + mustNot.size();
+        if(clauseCount == 1) {
+            ElasticSearchClause single = null;
+            if(must.size() == 1) {
+                single = must.get(0);
+            } else if(filter.size() == 1 && !scored) {
+                single = filter.get(0);
+            } else if(should.size() == 1 && shouldIsDisjunction) {
+                single = should.get(0);
+            }
+            if(single != null) {
+                changes.add(new Change(ChangeKind.FLATTENED_BOOL, "Replaced single clause bool with its clause: " + key(single)));
+                return single;
+            }
+        }
+        return new ElasticBooleanClause(new ElasticBooleanClause.BooleanBody(
+            should.isEmpty() ? null : should,
+            must.isEmpty() ? null : must,
+            mustNot.isEmpty() ? null : mustNot,
+            filter.isEmpty() ? null : filter,
+            should.isEmpty() ? null : minimumShouldMatch
+        ));
+    }
+
+    private List<ElasticSearchClause> optimizeAll(List<ElasticSearchClause> clauses, boolean scored, List<Change> changes) {
+        var result = new ArrayList<ElasticSearchClause>();
+        if(clauses != null) {
+            for(var clause : clauses) {
+                result.add(optimize(clause, scored, changes));
+            }
+        }
+        return result;
+    }
+
+    // A nested bool without should clauses is a plain conjunction that can be merged into its parent
+    private static boolean isConjunction(ElasticSearchClause clause) {
+        if(!(clause instanceof ElasticBooleanClause bool)) {
+            return false;
+        }
+        var body = bool.bool();
+        return body.should() == null && (body.must() != null || body.filter() != null || body.mustNot() != null);
+    }
+
+    private static void addAll(List<ElasticSearchClause> target, List<ElasticSearchClause> clauses) {
+        if(clauses != null) {
+            target.addAll(clauses);
+        }
+    }
+
+    // must_not: [bool: { should: [a, b] }] is equivalent to must_not: [a, b]
+    private static List<ElasticSearchClause> liftNegatedDisjunctions(List<ElasticSearchClause> clauses, List<Change> changes) {
+        var result = new ArrayList<ElasticSearchClause>();
+        for(var clause : clauses) {
+            if(clause instanceof ElasticBooleanClause bool && isPureDisjunction(bool.bool())) {
+                result.addAll(bool.bool().should());
+                changes.add(new Change(ChangeKind.FLATTENED_BOOL, "Merged negated should-only bool into must_not"));
+            } else {
+                result.add(clause);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isPureDisjunction(ElasticBooleanClause.BooleanBody body) {
+        return body.should() != null
+            && body.must() == null
+            && body.filter() == null
+            && body.mustNot() == null
+            && (body.minimumShouldMatch() == null || body.minimumShouldMatch() == 1);
+    }
+
+    // Only valid for occurrences with "any of" semantics: should (as a disjunction) and must_not
+    private static List<ElasticSearchClause> mergeTerms(String occurrence, List<ElasticSearchClause> clauses, List<Change> changes) {
+        var valuesByField = new LinkedHashMap<String, LinkedHashSet<String>>();
+        var countByField = new LinkedHashMap<String, Integer>();
+        for(var clause : clauses) {
+            var field = termField(clause);
+            if(field != null) {
+                valuesByField.computeIfAbsent(field, k -> new LinkedHashSet<>()).addAll(termValues(clause));
+                countByField.merge(field, 1, Integer::sum);
+            }
+        }
+        if(countByField.values().stream().noneMatch(count -> count > 1)) {
+            return clauses;
+        }
+        var result = new ArrayList<ElasticSearchClause>();
+        var emitted = new HashSet<String>();
+        for(var clause : clauses) {
+            var field = termField(clause);
+            if(field == null || countByField.get(field) == 1) {
+                result.add(clause);
+            } else if(emitted.add(field)) {
+                result.add(new ElasticTermsClause(Map.of(field, List.copyOf(valuesByField.get(field)))));
+                changes.add(new Change(ChangeKind.MERGED_TERMS, "Merged %d %s clauses on field %s into a single terms clause".formatted(countByField.get(field), occurrence, field)));
+            }
+        }
+        return result;
+    }
+
+    private static String termField(ElasticSearchClause clause) {
+        if(clause instanceof ElasticTermClause term && term.term.size() == 1) {
+            return term.term.keySet().iterator().next();
+        } else if(clause instanceof ElasticTermsClause terms && terms.terms.size() == 1) {
+            return terms.terms.keySet().iterator().next();
+        }
+        return null;
+    }
+
+    private static List<String> termValues(ElasticSearchClause clause) {
+        if(clause instanceof ElasticTermClause term) {
+            return List.copyOf(term.term.values());
+        }
+        return ((ElasticTermsClause) clause).terms.values().iterator().next();
+    }
+
+    private List<ElasticSearchClause> deduplicate(String occurrence, List<ElasticSearchClause> clauses, List<Change> changes) {
+        var seen = new HashSet<String>();
+        var result = new ArrayList<ElasticSearchClause>();
+        for(var clause : clauses) {
+            var key = key(clause);
+            if(seen.add(key)) {
+                result.add(clause);
+            } else {
+                changes.add(new Change(ChangeKind.DEDUPLICATED_CLAUSE, "Removed duplicate %s clause: %s".formatted(occurrence, key)));
+            }
+        }
+        return result;
+    }
+
+    private String key(ElasticSearchClause clause) {
+        try {
+            return mapper.writeValueAsString(clause);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public record Result<T>(T value, List<Change> changes) {
+        public boolean isChanged() {
+            return !changes.isEmpty();
+        }
+    }
+
+    public record Change(ChangeKind kind, String description) {
+    }
+
+    public enum ChangeKind {
+        FLATTENED_BOOL,
+        MERGED_TERMS,
+        DEDUPLICATED_CLAUSE,
+        MOVED_TO_FILTER
+    }
+}
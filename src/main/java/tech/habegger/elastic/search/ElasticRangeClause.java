@@ -13,7 +13,7 @@ import static tech.habegger.elastic.shared.Helpers.nullOrString;
 public class ElasticRangeClause implements ElasticSearchClause {
 
     @JsonProperty("range")
-    private final Map<String, RangeBody> range;
+    final Map<String, RangeBody> range;
 
     ElasticRangeClause(Map<String, RangeBody> range) {
         this.range = range;
@@ -31,7 +31,20 @@ public class ElasticRangeClause implements ElasticSearchClause {
     public static ElasticRangeClause range(String field, LocalDate from, LocalDate to) {
         return range(field, from == null ? null : from.toString(), to == null ? null : to.toString());
     }
+
+    public String field() {
+        return range.keySet().iterator().next();
+    }
+
+    public String gte() {
+        return range.values().iterator().next().gte();
+    }
+
+    public String lte() {
+        return range.values().iterator().next().lte();
+    }
+
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    private record RangeBody(String gte, String lte) {
+    record RangeBody(String gte, String lte) {
     }
 }
@@ -0,0 +1,196 @@
+package tech.habegger.elastic.search;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public record ElasticRequestFingerprint(long high, long low) {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for(var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for(var field : current.getDeclaredFields()) {
+                    if(!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(Field[]::new);
+        }
+    };
+
+    public static ElasticRequestFingerprint of(Object... values) {
+        var hasher = new Hasher();
+        for(var value : values) {
+            hasher.value(value);
+        }
+        return hasher.finish();
+    }
+
+    @Override
+    public String toString() {
+        return "%016x%016x".formatted(high, low);
+    }
+
+    // Walks the request object graph, hashing a canonical form: map entries in key order, every integral number as
+    // a long and every float widened through its shortest decimal representation.
+    private static final class Hasher {
+        private static final int NULL = 0;
+        private static final int STRING = 1;
+        private static final int LONG = 2;
+        private static final int DOUBLE = 3;
+        private static final int BOOLEAN = 4;
+        private static final int SEQUENCE = 5;
+        private static final int MAP = 6;
+        private static final int OBJECT = 7;
+
+        private long h1 = 0x9368e53c2f6af274L;
+        private long h2 = 0x586dcd208f7cd3fdL;
+        private long length = 0;
+
+        void value(Object value) {
+            if(value == null) {
+                tag(NULL);
+            } else if(value instanceof CharSequence || value instanceof Character || value instanceof Enum<?>) {
+                string(value instanceof Enum<?> constant ? constant.name() : value.toString());
+            } else if(value instanceof Boolean bool) {
+                tag(BOOLEAN);
+                mix(bool ? 1 : 0);
+            } else if(value instanceof Float number) {
+                number(Double.parseDouble(Float.toString(number)));
+            } else if(value instanceof Double number) {
+                number(number);
+            } else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                integral(((Number) value).longValue());
+            } else if(value instanceof BigInteger || value instanceof BigDecimal) {
+                string(value instanceof BigDecimal decimal ? decimal.stripTrailingZeros().toPlainString() : value.toString());
+            } else if(value instanceof Map<?, ?> map) {
+                map(map);
+            } else if(value instanceof Collection<?> collection) {
+                tag(SEQUENCE);
+                mix(collection.size());
+                for(var element : collection) {
+                    value(element);
+                }
+            } else if(value.getClass().isArray()) {
+                var size = Array.getLength(value);
+                tag(SEQUENCE);
+                mix(size);
+                for(int i = 0; i < size; i++) {
+                    value(Array.get(value, i));
+                }
+            } else if(value.getClass().getName().startsWith("java.")) {
+                string(value.toString());
+            } else {
+                object(value);
+            }
+        }
+
+        private void map(Map<?, ?> map) {
+            var entries = new ArrayList<Map.Entry<?, ?>>(map.entrySet());
+            entries.sort((left, right) -> String.valueOf(left.getKey()).compareTo(String.valueOf(right.getKey())));
+            tag(MAP);
+            mix(entries.size());
+            for(var entry : entries) {
+                value(entry.getKey());
+                value(entry.getValue());
+            }
+        }
+
+        private void object(Object value) {
+            tag(OBJECT);
+            string(value.getClass().getName());
+            for(var field : FIELDS.get(value.getClass())) {
+                try {
+                    value(field.get(value));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot read " + field, e);
+                }
+            }
+        }
+
+        private void number(double value) {
+            if(value == Math.rint(value) && Math.abs(value) < 0x1p63) {
+                integral((long) value);
+            } else {
+                tag(DOUBLE);
+                mix(Double.doubleToLongBits(value == 0.0 ? 0.0 : value));
+            }
+        }
+
+        private void integral(long value) {
+            tag(LONG);
+            mix(value);
+        }
+
+        private void string(String value) {
+            tag(STRING);
+            mix(value.length());
+            int i = 0;
+            for(; i + 4 <= value.length(); i += 4) {
+                mix(((long) value.charAt(i) << 48) | ((long) value.charAt(i + 1) << 32) | ((long) value.charAt(i + 2) << 16) | value.charAt(i + 3));
+            }
+            long tail = 0;
+            for(; i < value.length(); i++) {
+                tail = (tail << 16) | value.charAt(i);
+            }
+            mix(tail);
+        }
+
+        private void tag(int tag) {
+            mix(tag);
+        }
+
+        // MurmurHash3 x64 128 style block mixing, one 64 bit block per call
+        private void mix(long block) {
+            length++;
+            long k1 = block * C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            long k2 = block * C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        ElasticRequestFingerprint finish() {
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+            return new ElasticRequestFingerprint(h1, h2);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
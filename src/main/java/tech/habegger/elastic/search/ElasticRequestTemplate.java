@@ -0,0 +1,128 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ElasticRequestTemplate {
+    private static final char PARAMETER_START = '\uE000';
+    private static final char PARAMETER_END = '\uE001';
+    // UTF-8 encodings of the private use characters delimiting parameter names
+    private static final byte[] PARAMETER_START_BYTES = { (byte) 0xEE, (byte) 0x80, (byte) 0x80 };
+    private static final byte[] PARAMETER_END_BYTES = { (byte) 0xEE, (byte) 0x80, (byte) 0x81 };
+
+    private final byte[][] segments;
+    private final String[] parameters;
+    private final int segmentsLength;
+
+    private ElasticRequestTemplate(byte[][] segments, String[] parameters) {
+        this.segments = segments;
+        this.parameters = parameters;
+        this.segmentsLength = Arrays.stream(segments).mapToInt(segment -> segment.length).sum();
+    }
+
+    public static String param(String name) {
+        if(name == null || name.isEmpty() || name.indexOf(PARAMETER_START) >= 0 || name.indexOf(PARAMETER_END) >= 0) {
+            throw new IllegalArgumentException("Invalid template parameter name: " + name);
+        }
+        return PARAMETER_START + name + PARAMETER_END;
+    }
+
+    // Parameters are found through the UTF-8 bytes of their delimiters, which only plain JSON output keeps as such
+    public static ElasticRequestTemplate compile(ObjectMapper mapper, ElasticSearchRequest request) throws IOException {
+        if(!JsonFactory.FORMAT_NAME_JSON.equals(mapper.getFactory().getFormatName())) {
+            throw new IllegalArgumentException("Request templates need a JSON mapper, got " + mapper.getFactory().getFormatName());
+        }
+        if(mapper.isEnabled(JsonWriteFeature.ESCAPE_NON_ASCII.mappedFeature())) {
+            throw new IllegalArgumentException("Request templates need a mapper which does not escape non ASCII characters");
+        }
+        return compile(new ElasticRequestWriter(mapper).writeAsBytes(request));
+    }
+
+    static ElasticRequestTemplate compile(byte[] serialized) {
+        List<byte[]> segments = new ArrayList<>();
+        List<String> parameters = new ArrayList<>();
+        int segmentStart = 0;
+        int start = indexOf(serialized, PARAMETER_START_BYTES, 0);
+        while(start >= 0) {
+            int nameStart = start + PARAMETER_START_BYTES.length;
+            int end = indexOf(serialized, PARAMETER_END_BYTES, nameStart);
+            if(end < 0) {
+                throw new IllegalArgumentException("Unterminated template parameter at offset " + start);
+            }
+            segments.add(Arrays.copyOfRange(serialized, segmentStart, start));
+            parameters.add(new String(serialized, nameStart, end - nameStart, StandardCharsets.UTF_8));
+            segmentStart = end + PARAMETER_END_BYTES.length;
+            start = indexOf(serialized, PARAMETER_START_BYTES, segmentStart);
+        }
+        segments.add(Arrays.copyOfRange(serialized, segmentStart, serialized.length));
+        return new ElasticRequestTemplate(segments.toArray(byte[][]::new), parameters.toArray(String[]::new));
+    }
+
+    public Set<String> parameterNames() {
+        return new LinkedHashSet<>(Arrays.asList(parameters));
+    }
+
+    public byte[] render(Map<String, ?> values) {
+        var encoder = JsonStringEncoder.getInstance();
+        var encoded = new byte[parameters.length][];
+        int length = segmentsLength;
+        for(int i = 0; i < parameters.length; i++) {
+            encoded[i] = encoder.quoteAsUTF8(valueOf(parameters[i], values));
+            length += encoded[i].length;
+        }
+
+        var result = new byte[length];
+        int offset = 0;
+        for(int i = 0; i < parameters.length; i++) {
+            System.arraycopy(segments[i], 0, result, offset, segments[i].length);
+            offset += segments[i].length;
+            System.arraycopy(encoded[i], 0, result, offset, encoded[i].length);
+            offset += encoded[i].length;
+        }
+        var last = segments[parameters.length];
+        System.arraycopy(last, 0, result, offset, last.length);
+        return result;
+    }
+
+    public void render(Map<String, ?> values, OutputStream output) throws IOException {
+        var encoder = JsonStringEncoder.getInstance();
+        for(int i = 0; i < parameters.length; i++) {
+            output.write(segments[i]);
+            output.write(encoder.quoteAsUTF8(valueOf(parameters[i], values)));
+        }
+        output.write(segments[parameters.length]);
+    }
+
+    private static String valueOf(String parameter, Map<String, ?> values) {
+        var value = values.get(parameter);
+        if(value == null) {
+            throw new IllegalArgumentException("Missing value for template parameter: " + parameter);
+        }
+        return value.toString();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] marker, int from) {
+        outer:
+        for(int i = from; i <= bytes.length - marker.length; i++) {
+            for(int j = 0; j < marker.length; j++) {
+                if(bytes[i + j] != marker[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,365 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import tech.habegger.elastic.aggregation.ElasticAggregationsWriter;
+import tech.habegger.elastic.shared.OrderSpec;
+import tech.habegger.elastic.shared.SourceSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ElasticRequestWriter {
+    private final ObjectMapper mapper;
+    private final ObjectWriter objectWriter;
+    private final ElasticAggregationsWriter aggregationsWriter;
+
+    public ElasticRequestWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+        // Indentation is the one of the generator written to, which stays compact for newline delimited bodies
+        this.objectWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.aggregationsWriter = new ElasticAggregationsWriter(this);
+    }
+
+    public byte[] writeAsBytes(ElasticSearchRequest request) throws IOException {
+        var output = new ByteArrayOutputStream(512);
+        write(request, output);
+        return output.toByteArray();
+    }
+
+    public void write(ElasticSearchRequest request, OutputStream output) throws IOException {
+        try(var generator = mapper.writer().createGenerator(output, JsonEncoding.UTF8)) {
+            write(request, generator);
+        }
+    }
+
+    public void write(ElasticSearchRequest request, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        if(request.query() != null) {
+            generator.writeFieldName("query");
+            writeClause(request.query(), generator);
+        }
+        if(request.knn() != null) {
+            generator.writeFieldName("knn");
+            writeKnn(request.knn(), generator);
+        }
+        if(request.sort() != null && !request.sort().isEmpty()) {
+            generator.writeFieldName("sort");
+            writeSort(request.sort(), generator);
+        }
+        if(request.from() != null) {
+            generator.writeNumberField("from", request.from());
+        }
+        if(request.size() != null) {
+            generator.writeNumberField("size", request.size());
+        }
+        if(request.aggregations() != null && !request.aggregations().isEmpty()) {
+            generator.writeFieldName("aggregations");
+            aggregationsWriter.write(new TreeMap<>(request.aggregations()), generator);
+        }
+        if(request.fields() != null && !request.fields().isEmpty()) {
+            generator.writeArrayFieldStart("fields");
+            for(var field : request.fields()) {
+                generator.writeStartObject();
+                generator.writeStringField("field", field.field());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if(request.pit() != null) {
+            generator.writeObjectFieldStart("pit");
+            if(request.pit().id() != null) {
+                generator.writeStringField("id", request.pit().id());
+            }
+            if(request.pit().keepAlive() != null) {
+                generator.writeStringField("keep_alive", request.pit().keepAlive());
+            }
+            generator.writeEndObject();
+        }
+        if(request.slice() != null) {
+            generator.writeObjectFieldStart("slice");
+            generator.writeNumberField("id", request.slice().id());
+            generator.writeNumberField("max", request.slice().max());
+            generator.writeEndObject();
+        }
+        if(request.runtimeMappings() != null && !request.runtimeMappings().isEmpty()) {
+            generator.writeFieldName("runtime_mappings");
+            writeObject(request.runtimeMappings(), generator);
+        }
+        if(request.source() != null) {
+            generator.writeFieldName("_source");
+            writeSource(request.source(), generator);
+        }
+        if(request.minScore() != null) {
+            generator.writeNumberField("min_score", request.minScore());
+        }
+        if(request.postFilter() != null) {
+            generator.writeFieldName("post_filter");
+            writeClause(request.postFilter(), generator);
+        }
+        if(request.trackTotalHits() != null) {
+            generator.writeBooleanField("track_total_hits", request.trackTotalHits());
+        }
+        if(request.searchAfter() != null && !request.searchAfter().isEmpty()) {
+            generator.writeArrayFieldStart("search_after");
+            for(var value : request.searchAfter()) {
+                writeSortValue(value, generator);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    public void writeClause(ElasticSearchClause clause, JsonGenerator generator) throws IOException {
+        if(clause instanceof ElasticBooleanClause bool) {
+            writeBool(bool.bool(), generator);
+        } else if(clause instanceof ElasticTermClause term) {
+            writeSingleEntry("term", term.term, generator);
+        } else if(clause instanceof ElasticTermsClause terms) {
+            writeTerms(terms.terms, generator);
+        } else if(clause instanceof ElasticMatchClause match) {
+            writeSingleEntry("match", match.match, generator);
+        } else if(clause instanceof ElasticPrefixClause prefix) {
+            writeSingleEntry("prefix", prefix.prefix, generator);
+        } else if(clause instanceof ElasticRangeClause range) {
+            writeRange(range.range, generator);
+        } else if(clause instanceof ElasticExistsClause exists) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("exists");
+            generator.writeStringField("field", exists.exists().field());
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } else if(clause instanceof ElasticIdsClause ids) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("ids");
+            generator.writeFieldName("values");
+            writeStrings(ids.ids().values(), generator);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } else if(clause instanceof ElasticWildcardClause wildcard) {
+            writeWildcard(wildcard, generator);
+        } else if(clause instanceof ElasticNestedClause nested) {
+            writeNested(nested.nested, generator);
+        } else if(clause instanceof ElasticConstantScoreClause constantScore) {
+            writeConstantScore(constantScore.constantScore(), generator);
+        } else if(clause instanceof ElasticMatchAllClause) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("match_all");
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } else {
+            writeObject(clause, generator);
+        }
+    }
+
+    public void writeObject(Object value, JsonGenerator generator) throws IOException {
+        objectWriter.writeValue(generator, value);
+    }
+
+    private void writeSortValue(Object value, JsonGenerator generator) throws IOException {
+        if(value instanceof String text) {
+            generator.writeString(text);
+        } else if(value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if(value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if(value instanceof Double number) {
+            generator.writeNumber(number);
+        } else {
+            writeObject(value, generator);
+        }
+    }
+
+    private void writeBool(ElasticBooleanClause.BooleanBody body, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("bool");
+        writeClauses("should", body.should(), generator);
+        writeClauses("must", body.must(), generator);
+        writeClauses("filter", body.filter(), generator);
+        writeClauses("must_not", body.mustNot(), generator);
+        if(body.minimumShouldMatch() != null) {
+            generator.writeNumberField("minimum_should_match", body.minimumShouldMatch());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private void writeClauses(String name, List<ElasticSearchClause> clauses, JsonGenerator generator) throws IOException {
+        if(clauses == null) {
+            return;
+        }
+        generator.writeArrayFieldStart(name);
+        for(var clause : clauses) {
+            writeClause(clause, generator);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeSingleEntry(String type, Map<String, String> body, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart(type);
+        for(var entry : body.entrySet()) {
+            generator.writeStringField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeTerms(Map<String, List<String>> body, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("terms");
+        for(var entry : body.entrySet()) {
+            generator.writeFieldName(entry.getKey());
+            writeStrings(entry.getValue(), generator);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeRange(Map<String, ElasticRangeClause.RangeBody> body, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("range");
+        for(var entry : body.entrySet()) {
+            generator.writeObjectFieldStart(entry.getKey());
+            var range = entry.getValue();
+            if(range.gte() != null) {
+                generator.writeStringField("gte", range.gte());
+            }
+            if(range.lte() != null) {
+                generator.writeStringField("lte", range.lte());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeWildcard(ElasticWildcardClause clause, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("wildcard");
+        for(var entry : clause.wildcard().entrySet()) {
+            generator.writeObjectFieldStart(entry.getKey());
+            var body = entry.getValue();
+            if(body.value() != null) {
+                generator.writeStringField("value", body.value());
+            }
+            if(body.boost() != null) {
+                generator.writeNumberField("boost", body.boost());
+            }
+            if(body.caseInsensitive() != null) {
+                generator.writeBooleanField("case_insensitive", body.caseInsensitive());
+            }
+            if(body.rewrite() != null) {
+                generator.writeStringField("rewrite", body.rewrite().name());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private void writeNested(ElasticNestedClause.NestedBody body, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("nested");
+        if(body.path() != null) {
+            generator.writeStringField("path", body.path());
+        }
+        if(body.query() != null) {
+            generator.writeFieldName("query");
+            writeClause(body.query(), generator);
+        }
+        if(body.scoreMode() != null) {
+            generator.writeStringField("score_mode", body.scoreMode().name());
+        }
+        if(body.ignoreUnmapped() != null) {
+            generator.writeBooleanField("ignore_unmapped", body.ignoreUnmapped());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private void writeConstantScore(ElasticConstantScoreClause.ConstantScoreBody body, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("constant_score");
+        if(body == null) {
+            generator.writeNull();
+        } else {
+            generator.writeStartObject();
+            if(body.filter() != null) {
+                generator.writeFieldName("filter");
+                writeClause(body.filter(), generator);
+            }
+            if(body.boost() != null) {
+                generator.writeNumberField("boost", body.boost());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeKnn(ElasticKnn knn, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        if(knn.field() != null) {
+            generator.writeStringField("field", knn.field());
+        }
+        if(knn.queryVector() != null) {
+            generator.writeFieldName("query_vector");
+            knn.queryVector().write(generator);
+        }
+        generator.writeNumberField("k", knn.k());
+        generator.writeNumberField("num_candidates", knn.num_candidates());
+        if(knn.filter() != null) {
+            generator.writeFieldName("filter");
+            writeClause(knn.filter(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeSource(SourceSpec source, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        if(source.includes() != null) {
+            generator.writeFieldName("includes");
+            writeStrings(source.includes(), generator);
+        }
+        if(source.excludes() != null) {
+            generator.writeFieldName("excludes");
+            writeStrings(source.excludes(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeSort(List<Map<String, OrderSpec>> sort, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for(var spec : sort) {
+            generator.writeStartObject();
+            for(var entry : spec.entrySet()) {
+                generator.writeObjectFieldStart(entry.getKey());
+                if(entry.getValue().order() != null) {
+                    generator.writeStringField("order", entry.getValue().order().name());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeStrings(List<String> values, JsonGenerator generator) throws IOException {
+        if(values == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for(var value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+}
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import tech.habegger.elastic.mapping.ElasticFieldProperty;
 import tech.habegger.elastic.shared.OrderSpec;
+import tech.habegger.elastic.shared.PitSpec;
+import tech.habegger.elastic.shared.SliceSpec;
 import tech.habegger.elastic.shared.SortSpec;
 import tech.habegger.elastic.shared.SourceSpec;
 import tech.habegger.elastic.aggregation.ElasticAggregations;
@@ -32,7 +34,11 @@ public record ElasticSearchRequest(
     ElasticSearchClause postFilter,
     List<ElasticSearchField> fields,
     @JsonProperty("track_total_hits")
-    Boolean trackTotalHits
+    Boolean trackTotalHits,
+    @JsonProperty("search_after")
+    List<Object> searchAfter,
+    PitSpec pit,
+    SliceSpec slice
     ) {
     public static ElasticSearchRequest query(ElasticSearchClause clause, int pageSize) {
         return ElasticSearchRequest.requestBuilder()
@@ -48,6 +54,36 @@ public record ElasticSearchRequest(
         ;
     }
 
+    public ElasticSearchRequest withQuery(ElasticSearchClause query) {
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, aggregations, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
+    public ElasticSearchRequest withSearchAfter(List<Object> searchAfter) {
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, aggregations, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
+    public ElasticSearchRequest withPit(PitSpec pit) {
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, aggregations, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
+    public ElasticSearchRequest withSlice(SliceSpec slice) {
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, aggregations, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
+    public ElasticSearchRequest withSize(Integer size) {
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, aggregations, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
+    public ElasticSearchRequest withAggregation(String name, ElasticAggregations aggregation) {
+        var updated = aggregations == null ? new HashMap<String, ElasticAggregations>() : new HashMap<>(aggregations);
+        updated.put(name, aggregation);
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, updated, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
+    public ElasticSearchRequest withAggregations(Map<String, ElasticAggregations> aggregations) {
+        return new ElasticSearchRequest(runtimeMappings, query, knn, source, sort, from, size, minScore, aggregations, postFilter, fields, trackTotalHits, searchAfter, pit, slice);
+    }
+
     public static Builder requestBuilder() {
         return new Builder();
     }
@@ -68,6 +104,9 @@ public record ElasticSearchRequest(
         List<ElasticSearchField> fields = new ArrayList<>();
 
         Boolean trackTotalHits = null;
+        List<Object> searchAfter = null;
+        PitSpec pit = null;
+        SliceSpec slice = null;
 
         private Builder() {}
 
@@ -136,6 +175,26 @@ public record ElasticSearchRequest(
             return this;
         }
 
+        public Builder withSearchAfter(Object... searchAfter) {
+            this.searchAfter = Arrays.asList(searchAfter);
+            return this;
+        }
+
+        public Builder withSearchAfter(List<Object> searchAfter) {
+            this.searchAfter = searchAfter;
+            return this;
+        }
+
+        public Builder withPit(String id, String keepAlive) {
+            this.pit = new PitSpec(id, keepAlive);
+            return this;
+        }
+
+        public Builder withSlice(int id, int max) {
+            this.slice = new SliceSpec(id, max);
+            return this;
+        }
+
         public ElasticSearchRequest build() {
             return new ElasticSearchRequest(
                 nullIfEmpty(runtimeMapping),
@@ -149,7 +208,10 @@ public record ElasticSearchRequest(
                 nullIfEmpty(aggregations),
                 postFilter,
                 nullIfEmpty(fields),
-                trackTotalHits
+                trackTotalHits,
+                searchAfter,
+                pit,
+                slice
             );
         }
 
@@ -162,6 +224,26 @@ public record ElasticSearchRequest(
             this.runtimeMapping.put(field, mapping);
             return this;
         }
+
+        // Clears the builder for reuse. Requests built before keep their collections, only the non-empty ones are replaced.
+        public Builder reset() {
+            query = null;
+            knn = null;
+            source = null;
+            sort = null;
+            from = null;
+            size = null;
+            minScore = null;
+            aggregations = aggregations.isEmpty() ? aggregations : new HashMap<>();
+            runtimeMapping = runtimeMapping.isEmpty() ? runtimeMapping : new HashMap<>();
+            postFilter = null;
+            fields = fields.isEmpty() ? fields : new ArrayList<>();
+            trackTotalHits = null;
+            searchAfter = null;
+            pit = null;
+            slice = null;
+            return this;
+        }
     }
 }
 
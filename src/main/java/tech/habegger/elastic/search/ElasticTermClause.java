@@ -7,7 +7,7 @@ import java.util.Map;
 @SuppressWarnings({"FieldCanBeLocal", "unused"})
 public class ElasticTermClause implements ElasticSearchClause {
     @JsonProperty("term")
-    private final Map<String, String> term;
+    final Map<String, String> term;
 
     ElasticTermClause(Map<String, String> term) {
         this.term = term;
@@ -9,7 +9,7 @@ import java.util.Map;
 @SuppressWarnings({"FieldCanBeLocal", "unused"})
 public class ElasticTermsClause implements ElasticSearchClause {
     @JsonProperty("terms")
-    private final Map<String, List<String>> terms;
+    final Map<String, List<String>> terms;
 
     ElasticTermsClause(Map<String, List<String>> terms) {
         this.terms = terms;
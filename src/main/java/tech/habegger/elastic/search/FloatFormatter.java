@@ -0,0 +1,262 @@
+package tech.habegger.elastic.search;
+
+import java.math.BigInteger;
+
+// Shortest round-trip formatting of floats (Ryu, Ulf Adams 2018) into a caller supplied buffer, without allocating.
+// The output follows the notation of Float.toString: plain between 10^-3 and 10^7, computerized scientific otherwise.
+final class FloatFormatter {
+    static final int MAX_CHARS = 16;
+
+    private static final int POW5_BITCOUNT = 61;
+    private static final int POW5_INV_BITCOUNT = 59;
+    private static final long[] POW5_SPLIT = new long[47];
+    private static final long[] POW5_INV_SPLIT = new long[31];
+
+    static {
+        var five = BigInteger.valueOf(5);
+        for(int i = 0; i < POW5_SPLIT.length; i++) {
+            var pow = five.pow(i);
+            POW5_SPLIT[i] = pow.shiftRight(pow.bitLength() - POW5_BITCOUNT).longValueExact();
+        }
+        for(int i = 0; i < POW5_INV_SPLIT.length; i++) {
+            var pow = five.pow(i);
+            var shift = pow.bitLength() - 1 + POW5_INV_BITCOUNT;
+            POW5_INV_SPLIT[i] = BigInteger.ONE.shiftLeft(shift).divide(pow).add(BigInteger.ONE).longValueExact();
+        }
+    }
+
+    private FloatFormatter() {
+    }
+
+    // Returns the number of chars written, or -1 for NaN and infinities which have no JSON representation
+    static int format(float value, char[] buffer, int offset) {
+        var bits = Float.floatToRawIntBits(value);
+        var ieeeMantissa = bits & ((1 << 23) - 1);
+        var ieeeExponent = (bits >>> 23) & 0xFF;
+        var position = offset;
+        if(ieeeExponent == 0xFF) {
+            return -1;
+        }
+        if(bits < 0) {
+            buffer[position++] = '-';
+        }
+        if(ieeeExponent == 0 && ieeeMantissa == 0) {
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            buffer[position++] = '0';
+            return position - offset;
+        }
+
+        int e2;
+        int m2;
+        if(ieeeExponent == 0) {
+            e2 = 1 - 127 - 23 - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - 127 - 23 - 2;
+            m2 = ieeeMantissa | (1 << 23);
+        }
+        var acceptBounds = (m2 & 1) == 0;
+
+        var mv = 4 * m2;
+        var mp = 4 * m2 + 2;
+        var mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+        var mm = 4 * m2 - 1 - mmShift;
+
+        int vr;
+        int vp;
+        int vm;
+        int e10;
+        var vmIsTrailingZeros = false;
+        var vrIsTrailingZeros = false;
+        var lastRemovedDigit = 0;
+        if(e2 >= 0) {
+            var q = log10Pow2(e2);
+            e10 = q;
+            var k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            var i = -e2 + q + k;
+            vr = mulPow5InvDivPow2(mv, q, i);
+            vp = mulPow5InvDivPow2(mp, q, i);
+            vm = mulPow5InvDivPow2(mm, q, i);
+            if(q != 0 && (vp - 1) / 10 <= vm / 10) {
+                var l = POW5_INV_BITCOUNT + pow5bits(q - 1) - 1;
+                lastRemovedDigit = mulPow5InvDivPow2(mv, q - 1, -e2 + q - 1 + l) % 10;
+            }
+            if(q <= 9) {
+                if(mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if(acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+                } else if(multipleOfPowerOf5(mp, q)) {
+                    vp--;
+                }
+            }
+        } else {
+            var q = log10Pow5(-e2);
+            e10 = q + e2;
+            var i = -e2 - q;
+            var k = pow5bits(i) - POW5_BITCOUNT;
+            var j = q - k;
+            vr = mulPow5DivPow2(mv, i, j);
+            vp = mulPow5DivPow2(mp, i, j);
+            vm = mulPow5DivPow2(mm, i, j);
+            if(q != 0 && (vp - 1) / 10 <= vm / 10) {
+                j = q - 1 - (pow5bits(i + 1) - POW5_BITCOUNT);
+                lastRemovedDigit = mulPow5DivPow2(mv, i + 1, j) % 10;
+            }
+            if(q <= 1) {
+                vrIsTrailingZeros = true;
+                if(acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    vp--;
+                }
+            } else if(q < 31) {
+                vrIsTrailingZeros = (mv & ((1 << (q - 1)) - 1)) == 0;
+            }
+        }
+
+        var removed = 0;
+        int output;
+        if(vmIsTrailingZeros || vrIsTrailingZeros) {
+            while(vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            if(vmIsTrailingZeros) {
+                while(vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = vr % 10;
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+            if(vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                lastRemovedDigit = 4;
+            }
+            output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            while(vp / 10 > vm / 10) {
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            output = vr + (vr == vm || lastRemovedDigit >= 5 ? 1 : 0);
+        }
+        var exponent = e10 + removed;
+        return position - offset + write(output, exponent, buffer, position);
+    }
+
+    // Writes digits * 10^exponent
+    private static int write(int digits, int exponent, char[] buffer, int offset) {
+        var length = decimalLength(digits);
+        // Scientific exponent of the leading digit
+        var scientific = exponent + length - 1;
+        var position = offset;
+        if(scientific >= -3 && scientific < 7) {
+            if(scientific < 0) {
+                buffer[position++] = '0';
+                buffer[position++] = '.';
+                for(int i = -1; i > scientific; i--) {
+                    buffer[position++] = '0';
+                }
+                writeDigits(digits, length, buffer, position);
+                position += length;
+            } else if(exponent >= 0) {
+                writeDigits(digits, length, buffer, position);
+                position += length;
+                for(int i = 0; i < exponent; i++) {
+                    buffer[position++] = '0';
+                }
+                buffer[position++] = '.';
+                buffer[position++] = '0';
+            } else {
+                var integerDigits = scientific + 1;
+                writeDigits(digits, length, buffer, position + 1);
+                System.arraycopy(buffer, position + 1, buffer, position, integerDigits);
+                buffer[position + integerDigits] = '.';
+                position += length + 1;
+            }
+            return position - offset;
+        }
+        writeDigits(digits, length, buffer, position + 1);
+        buffer[position] = buffer[position + 1];
+        buffer[position + 1] = '.';
+        position += length + 1;
+        if(length == 1) {
+            buffer[position++] = '0';
+        }
+        buffer[position++] = 'E';
+        if(scientific < 0) {
+            buffer[position++] = '-';
+            scientific = -scientific;
+        }
+        if(scientific >= 10) {
+            buffer[position++] = (char) ('0' + scientific / 10);
+        }
+        buffer[position++] = (char) ('0' + scientific % 10);
+        return position - offset;
+    }
+
+    private static void writeDigits(int digits, int length, char[] buffer, int offset) {
+        for(int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+    }
+
+    private static int decimalLength(int value) {
+        var length = 1;
+        for(var bound = 10; length < 10 && value >= bound; bound *= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int pow5bits(int e) {
+        return e == 0 ? 1 : (int) ((e * 1217359L) >>> 19) + 1;
+    }
+
+    private static int log10Pow2(int e) {
+        return (int) ((e * 78913L) >>> 18);
+    }
+
+    private static int log10Pow5(int e) {
+        return (int) ((e * 732923L) >>> 20);
+    }
+
+    private static boolean multipleOfPowerOf5(int value, int q) {
+        var count = 0;
+        while(value > 0 && value % 5 == 0) {
+            value /= 5;
+            count++;
+        }
+        return count >= q;
+    }
+
+    private static int mulPow5InvDivPow2(int m, int q, int j) {
+        return mulShift(m, POW5_INV_SPLIT[q], j);
+    }
+
+    private static int mulPow5DivPow2(int m, int i, int j) {
+        return mulShift(m, POW5_SPLIT[i], j);
+    }
+
+    private static int mulShift(int m, long factor, int shift) {
+        var factorLow = factor & 0xFFFFFFFFL;
+        var factorHigh = factor >>> 32;
+        var bits0 = m * factorLow;
+        var bits1 = m * factorHigh;
+        var sum = (bits0 >>> 32) + bits1;
+        return (int) (sum >>> (shift - 32));
+    }
+}
@@ -0,0 +1,234 @@
+package tech.habegger.elastic.shared;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// A dotted field path of a document, walked through maps (as parsed from JSON), records and plain objects. As in
+// Elasticsearch, collections and arrays met on the way are flattened and missing fields have no value.
+public final class DocumentPath {
+    private final String field;
+    private final String[] segments;
+    // Remaining path from each depth, for documents using dotted keys such as {"user.id": 1}
+    private final String[] remainders;
+    private final Accessor[] accessors;
+
+    private DocumentPath(String field) {
+        this.field = field;
+        segments = field.split("\\.");
+        remainders = new String[segments.length];
+        accessors = new Accessor[segments.length];
+        for(int i = 0; i < segments.length; i++) {
+            remainders[i] = String.join(".", Arrays.copyOfRange(segments, i, segments.length));
+            accessors[i] = new Accessor(segments[i]);
+        }
+    }
+
+    public static DocumentPath of(String field) {
+        return new DocumentPath(field);
+    }
+
+    // Fails fast when the first property of the path does not exist on the given type, most likely a typo
+    public static DocumentPath of(String field, Class<?> type) {
+        var path = new DocumentPath(field);
+        if(!Map.class.isAssignableFrom(type) && Accessor.resolve(type, path.segments[0]) == null) {
+            throw new IllegalArgumentException("Type %s has no property %s".formatted(type.getName(), path.segments[0]));
+        }
+        return path;
+    }
+
+    public String field() {
+        return field;
+    }
+
+    // Passes the values found at this path to the test until it returns true. Returning false from the test visits
+    // every value.
+    public boolean anyMatch(Object document, Predicate<Object> test) {
+        return anyMatch(document, 0, test);
+    }
+
+    private boolean anyMatch(Object current, int depth, Predicate<Object> test) {
+        if(current == null) {
+            return false;
+        }
+        if(depth == segments.length) {
+            return anyValue(current, test);
+        }
+        // Most documents are maps, tested first as interface checks are not free on hot paths
+        if(current instanceof Map<?, ?> map) {
+            var child = map.get(segments[depth]);
+            if(child == null && depth < segments.length - 1) {
+                var dotted = map.get(remainders[depth]);
+                if(dotted != null) {
+                    return anyValue(dotted, test);
+                }
+            }
+            return anyMatch(child, depth + 1, test);
+        } else if(current instanceof List<?> list && list instanceof RandomAccess) {
+            for(int i = 0; i < list.size(); i++) {
+                if(anyMatch(list.get(i), depth, test)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(current instanceof Iterable<?> iterable) {
+            for(var element : iterable) {
+                if(anyMatch(element, depth, test)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(current instanceof Object[] array) {
+            for(var element : array) {
+                if(anyMatch(element, depth, test)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return anyMatch(accessors[depth].get(current), depth + 1, test);
+    }
+
+    private static boolean anyValue(Object value, Predicate<Object> test) {
+        if(value == null) {
+            return false;
+        } else if(value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return test.test(value);
+        } else if(value instanceof List<?> list && list instanceof RandomAccess) {
+            for(int i = 0; i < list.size(); i++) {
+                if(anyValue(list.get(i), test)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(value instanceof Iterable<?> iterable) {
+            for(var element : iterable) {
+                if(anyValue(element, test)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(value instanceof Object[] array) {
+            for(var element : array) {
+                if(anyValue(element, test)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(value instanceof long[] array) {
+            for(var element : array) {
+                if(test.test(element)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(value instanceof int[] array) {
+            for(var element : array) {
+                if(test.test(element)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if(value instanceof double[] array) {
+            for(var element : array) {
+                if(test.test(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return test.test(value);
+    }
+
+    // Reads a property of plain objects, caching the resolution for the last seen class
+    private static final class Accessor {
+        private static final Function<Object, Object> MISSING = target -> null;
+
+        private final String name;
+        private Resolved resolved;
+
+        Accessor(String name) {
+            this.name = name;
+        }
+
+        Object get(Object target) {
+            var current = resolved;
+            if(current == null || current.type() != target.getClass()) {
+                var getter = resolve(target.getClass(), name);
+                current = new Resolved(target.getClass(), getter == null ? MISSING : getter);
+                resolved = current;
+            }
+            return current.getter().apply(target);
+        }
+
+        static Function<Object, Object> resolve(Class<?> type, String name) {
+            if(type.isRecord()) {
+                for(var component : type.getRecordComponents()) {
+                    if(component.getName().equals(name)) {
+                        return invoker(component.getAccessor());
+                    }
+                }
+            }
+            var capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for(var candidate : List.of("get" + capitalized, "is" + capitalized, name)) {
+                var method = method(type, candidate);
+                if(method != null) {
+                    return invoker(method);
+                }
+            }
+            for(var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for(var field : current.getDeclaredFields()) {
+                    if(field.getName().equals(name) && !Modifier.isStatic(field.getModifiers()) && field.trySetAccessible()) {
+                        return reader(field);
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static Method method(Class<?> type, String name) {
+            for(var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                try {
+                    var method = current.getDeclaredMethod(name);
+                    if(!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class && method.trySetAccessible()) {
+                        return method;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // Look further up the hierarchy
+                }
+            }
+            return null;
+        }
+
+        private static Function<Object, Object> invoker(Method method) {
+            method.trySetAccessible();
+            return target -> {
+                try {
+                    return method.invoke(target);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IllegalStateException("Cannot read %s of %s".formatted(method.getName(), target.getClass().getName()), e);
+                }
+            };
+        }
+
+        private static Function<Object, Object> reader(Field field) {
+            return target -> {
+                try {
+                    return field.get(target);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot read %s of %s".formatted(field.getName(), target.getClass().getName()), e);
+                }
+            };
+        }
+
+        private record Resolved(Class<?> type, Function<Object, Object> getter) {
+        }
+    }
+}
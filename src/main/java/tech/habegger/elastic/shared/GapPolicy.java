@@ -0,0 +1,8 @@
+package tech.habegger.elastic.shared;
+
+@SuppressWarnings("unused")
+public enum GapPolicy {
+    skip,
+    insert_zeros,
+    keep_values
+}
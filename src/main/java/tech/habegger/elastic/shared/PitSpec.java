@@ -0,0 +1,12 @@
+package tech.habegger.elastic.shared;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PitSpec(
+    String id,
+    @JsonProperty("keep_alive")
+    String keepAlive
+) {
+}
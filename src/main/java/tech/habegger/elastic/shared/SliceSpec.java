@@ -0,0 +1,4 @@
+package tech.habegger.elastic.shared;
+
+public record SliceSpec(int id, int max) {
+}
@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 import tech.habegger.elastic.search.ElasticSearchRequest;
 import tech.habegger.elastic.shared.*;
 
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static tech.habegger.elastic.TestUtils.MAPPER;
@@ -14,6 +16,8 @@ import static tech.habegger.elastic.aggregation.ElasticAdjacencyMatrixAggregatio
 import static tech.habegger.elastic.aggregation.ElasticAutoDateHistogramAggregation.autoDateHistogram;
 import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
 import static tech.habegger.elastic.aggregation.ElasticCategorizeTextAggregation.categorizeText;
+import static tech.habegger.elastic.aggregation.ElasticCompositeAggregation.CompositeSource.termsSource;
+import static tech.habegger.elastic.aggregation.ElasticCompositeAggregation.newComposite;
 import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
 import static tech.habegger.elastic.aggregation.ElasticDateRangeAggregation.dateRange;
 import static tech.habegger.elastic.aggregation.ElasticDiversifiedSamplerAggregation.diversifiedSampler;
@@ -274,6 +278,47 @@ public class ElasticBucketAggregationsTest {
         );
     }
 
+    @Test
+    void compositeAggregation() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.requestBuilder()
+            .aggregation("my_buckets", newComposite()
+                .dateHistogram("date", "timestamp", CalendarUnit.day)
+                .source(termsSource("product", "product").withOrder(OrderDirection.desc).withMissingBucket())
+                .histogram("price", "price", 5)
+                .geotileGrid("tile", "location", 8)
+                .size(2)
+                .build()
+                .withAfter(Map.of("date", 1494288000000L))
+            )
+            .build();
+
+        // When
+        var actual = MAPPER.writeValueAsString(query);
+
+        // Then
+        assertThat(actual).isEqualToIgnoringWhitespace(
+            """
+                {
+                  "aggregations": {
+                    "my_buckets": {
+                      "composite": {
+                        "size": 2,
+                        "sources": [
+                          { "date": { "date_histogram": { "field": "timestamp", "calendar_interval": "day" } } },
+                          { "product": { "terms": { "field": "product", "order": "desc", "missing_bucket": true } } },
+                          { "price": { "histogram": { "field": "price", "interval": 5.0 } } },
+                          { "tile": { "geotile_grid": { "field": "location", "precision": 8 } } }
+                        ],
+                        "after": { "date": 1494288000000 }
+                      }
+                    }
+                  }
+                }
+                """
+        );
+    }
+
     @Test
     void dateHistogramAggregationWithCalendarInterval() throws JsonProcessingException {
         // Given
@@ -394,6 +439,21 @@ public class ElasticBucketAggregationsTest {
         );
     }
 
+    @Test
+    void dateHistogramBucketStart() {
+        // Given
+        var monthly = dateHistogram("date", CalendarUnit.month).withTimeZone(ZoneId.of("Europe/Paris"));
+        var quarterly = dateHistogram("date", CalendarUnit.quarter);
+        var weekly = dateHistogram("date", CalendarUnit.week);
+        var fixed = dateHistogram("date", 30, TimeUnit.days);
+
+        // When / Then
+        assertThat(monthly.bucketStart(Instant.parse("2024-03-31T22:30:00Z"))).isEqualTo(Instant.parse("2024-03-31T22:00:00Z"));
+        assertThat(quarterly.bucketStart(Instant.parse("2024-05-20T10:00:00Z"))).isEqualTo(Instant.parse("2024-04-01T00:00:00Z"));
+        assertThat(weekly.bucketStart(Instant.parse("2024-01-03T10:00:00Z"))).isEqualTo(Instant.parse("2024-01-01T00:00:00Z"));
+        assertThat(fixed.bucketStart(Instant.parse("2024-01-15T00:00:00Z"))).isEqualTo(Instant.parse("2023-12-19T00:00:00Z"));
+    }
+
     @Test
     void dateRangeAggregation() throws JsonProcessingException {
         // Given
@@ -1956,6 +2016,74 @@ public class ElasticBucketAggregationsTest {
         );
     }
 
+    @Test
+    void termsAggregationWithPartition() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.requestBuilder()
+            .aggregation("expired_sessions",
+                termsAgg("account_id")
+                    .withSize(10000)
+                    .withShardSize(12000)
+                    .withOrder("last_access", OrderDirection.asc)
+                    .withPartition(0, 20)
+                    .withExecutionHint(ElasticTermsAggregation.TermsExecutionHint.map)
+                    .aggregation("last_access", ElasticMaxAggregation.max("access_date"))
+            )
+            .build();
+
+        // When
+        var actual = MAPPER.writeValueAsString(query);
+
+        // Then
+        assertThat(actual).isEqualToIgnoringWhitespace(
+            """
+                {
+                  "aggregations": {
+                    "expired_sessions": {
+                      "aggregations": {
+                        "last_access": { "max": { "field": "access_date" } }
+                      },
+                      "terms": {
+                        "field": "account_id",
+                        "size": 10000,
+                        "shard_size": 12000,
+                        "order": { "last_access": "asc" },
+                        "include": { "partition": 0, "num_partitions": 20 },
+                        "execution_hint": "map"
+                      }
+                    }
+                  }
+                }
+                """
+        );
+    }
+
+    @Test
+    void derivedTermsAggregationsKeepTheirOwnSubAggregations() {
+        // Given
+        var terms = termsAgg("genre");
+        terms.aggregation("x", avg("price"));
+
+        // When
+        terms.withSize(100).aggregation("y", avg("rating"));
+
+        // Then
+        assertThat(terms.subAggregations()).containsOnlyKeys("x");
+    }
+
+    @Test
+    void nextCompositePagesKeepTheirOwnSubAggregations() {
+        // Given
+        var composite = newComposite().source(termsSource("genre", "genre")).build();
+        composite.aggregation("x", avg("price"));
+
+        // When
+        composite.withAfter(Map.of("genre", "rock")).aggregation("y", avg("rating"));
+
+        // Then
+        assertThat(composite.subAggregations()).containsOnlyKeys("x");
+    }
+
     @Test
     void timesSeriesAggregation() throws JsonProcessingException {
         // Given
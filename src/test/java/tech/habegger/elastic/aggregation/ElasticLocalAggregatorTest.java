@@ -0,0 +1,118 @@
+package tech.habegger.elastic.aggregation;
+
+import org.assertj.core.data.Offset;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticCardinalityAggregation.cardinality;
+import static tech.habegger.elastic.aggregation.ElasticExtendedStatsAggregation.extendedStats;
+import static tech.habegger.elastic.aggregation.ElasticMaxAggregation.max;
+import static tech.habegger.elastic.aggregation.ElasticMinAggregation.min;
+import static tech.habegger.elastic.aggregation.ElasticPercentilesAggregation.percentiles;
+import static tech.habegger.elastic.aggregation.ElasticStatsAggregation.stats;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.aggregation.ElasticValueCountAggregation.valueCount;
+
+class ElasticLocalAggregatorTest {
+    private static final List<Map<String, Object>> PRODUCTS = List.of(
+        Map.of("price", 10, "tags", List.of("a", "b"), "vendor", Map.of("name", "acme")),
+        Map.of("price", 20.5, "tags", List.of("b"), "vendor", Map.of("name", "globex")),
+        Map.of("price", "30", "vendor", Map.of("name", "acme")),
+        Map.of("tags", List.of("c"))
+    );
+
+    @Test
+    void computeStatsOverDocuments() {
+        // Given
+        var aggregator = ElasticLocalAggregator.compile(Map.of(
+            "avg_price", avg("price"),
+            "sum_price", sum("price"),
+            "min_price", min("price", 0),
+            "max_price", max("price"),
+            "price_stats", stats("price"),
+            "price_extended", extendedStats("price").withSigma(1.0),
+            "tag_count", valueCount("tags"),
+            "vendors", cardinality("vendor.name")
+        ));
+
+        // When
+        var actual = aggregator.aggregate(PRODUCTS);
+
+        // Then
+        assertThat(actual.get("avg_price").value()).isEqualTo(60.5 / 3);
+        assertThat(actual.get("sum_price").value()).isEqualTo(60.5);
+        assertThat(actual.get("min_price").value()).isEqualTo(0.0);
+        assertThat(actual.get("max_price").value()).isEqualTo(30.0);
+        assertThat(actual.get("price_stats").count()).isEqualTo(3L);
+        assertThat(actual.get("price_stats").avg()).isEqualTo(60.5 / 3);
+        assertThat(actual.get("tag_count").value()).isEqualTo(4L);
+        assertThat(actual.get("vendors").value()).isEqualTo(2L);
+        var extended = actual.get("price_extended");
+        assertThat(extended.sum_of_squares()).isEqualTo(100 + 420.25 + 900);
+        assertThat(extended.variance()).isCloseTo((100 + 420.25 + 900) / 3 - (60.5 / 3) * (60.5 / 3), Offset.offset(1e-9));
+        assertThat(extended.std_deviation_bounds().get("upper")).isCloseTo(60.5 / 3 + extended.std_deviation(), Offset.offset(1e-9));
+    }
+
+    @Test
+    void returnEmptyValuesWithoutDocuments() {
+        // Given
+        var aggregator = ElasticLocalAggregator.compile(Map.of("avg", avg("price"), "sum", sum("price"), "p", percentiles("price", 50.0)));
+
+        // When
+        var actual = aggregator.aggregate(List.of());
+
+        // Then
+        assertThat(actual.get("avg").value()).isNull();
+        assertThat(actual.get("sum").value()).isEqualTo(0.0);
+        assertThat(actual.get("p").values()).containsEntry("50.0", null);
+    }
+
+    @Test
+    void estimateCardinalityAndPercentilesInParallel() {
+        // Given
+        var documents = new ArrayList<Map<String, Object>>();
+        for(int i = 0; i < 200_000; i++) {
+            documents.add(Map.of("user", "user-" + (i % 50_000), "latency", i % 10_000));
+        }
+        var aggregator = ElasticLocalAggregator.compile(Map.of(
+            "users", cardinality("user"),
+            "exact_users", cardinality("user").withPrecisionThreshold(40_000),
+            "latency", percentiles("latency", 1.0, 50.0, 99.0),
+            "latency_stats", stats("latency")
+        ));
+
+        // When
+        var sequential = aggregator.aggregate(documents);
+        var parallel = aggregator.aggregate(documents, ForkJoinPool.commonPool());
+
+        // Then
+        assertThat(sequential.get("users").value().doubleValue()).isCloseTo(50_000, Percentage.withPercentage(3));
+        assertThat(parallel.get("users").value()).isEqualTo(sequential.get("users").value());
+        assertThat(parallel.get("latency_stats")).isEqualTo(sequential.get("latency_stats"));
+        for(var result : List.of(sequential, parallel)) {
+            var values = result.get("latency").values();
+            assertThat(values.get("1.0")).isCloseTo(100, Offset.offset(10.0));
+            assertThat(values.get("50.0")).isCloseTo(5_000, Offset.offset(100.0));
+            assertThat(values.get("99.0")).isCloseTo(9_900, Offset.offset(10.0));
+        }
+    }
+
+    @Test
+    void rejectAggregationsThatCannotBeComputedLocally() {
+        assertThatThrownBy(() -> ElasticLocalAggregator.compile("by_tag", termsAgg("tags")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("by_tag");
+        assertThatThrownBy(() -> ElasticLocalAggregator.compile("p", percentiles("latency").withHdr(3)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("t-digest");
+    }
+}
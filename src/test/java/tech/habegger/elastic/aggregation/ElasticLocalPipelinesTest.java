@@ -0,0 +1,169 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.response.ElasticAggregationResponse;
+import tech.habegger.elastic.response.ElasticBucketsAggregationResponse;
+import tech.habegger.elastic.response.ElasticDateHistogramBucketsResponse;
+import tech.habegger.elastic.response.ElasticMetricsAggregationResponse;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.CalendarUnit;
+import tech.habegger.elastic.shared.GapPolicy;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgBucketAggregation.avgBucket;
+import static tech.habegger.elastic.aggregation.ElasticBucketScriptAggregation.bucketScript;
+import static tech.habegger.elastic.aggregation.ElasticBucketSelectorAggregation.bucketSelector;
+import static tech.habegger.elastic.aggregation.ElasticBucketSortAggregation.bucketSort;
+import static tech.habegger.elastic.aggregation.ElasticCumulativeSumAggregation.cumulativeSum;
+import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
+import static tech.habegger.elastic.aggregation.ElasticDerivativeAggregation.derivative;
+import static tech.habegger.elastic.aggregation.ElasticMovingFunctionAggregation.movingFunction;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.shared.ScriptExpression.scriptInline;
+import static tech.habegger.elastic.shared.ScriptExpression.scriptReference;
+import static tech.habegger.elastic.shared.SortSpec.desc;
+
+class ElasticLocalPipelinesTest {
+    private static final String SALES_PER_MONTH = """
+        {
+          "aggregations": {
+            "sales_per_month": {
+              "buckets": [
+                { "key_as_string": "2015-01-01", "key": 1420070400000, "doc_count": 3, "sales": { "value": 550.0 }, "tshirts": { "value": 200.0 } },
+                { "key_as_string": "2015-02-01", "key": 1422748800000, "doc_count": 0, "sales": { "value": null }, "tshirts": { "value": null } },
+                { "key_as_string": "2015-03-01", "key": 1425168000000, "doc_count": 2, "sales": { "value": 375.0 }, "tshirts": { "value": 175.0 } },
+                { "key_as_string": "2015-04-01", "key": 1427846400000, "doc_count": 2, "sales": { "value": 60.0 }, "tshirts": { "value": 30.0 } }
+              ]
+            }
+          }
+        }
+        """;
+
+    @Test
+    void computeParentPipelinesOverTypedBuckets() throws JsonProcessingException {
+        // Given
+        var histogram = dateHistogram("date", CalendarUnit.month)
+            .aggregation("sales", sum("price"))
+            .aggregation("tshirts", sum("tshirt_price"))
+            .aggregation("sales_deriv", derivative("sales"))
+            .aggregation("sales_deriv_zeros", derivative("sales").withGapPolicy(GapPolicy.insert_zeros))
+            .aggregation("cumulative_sales", cumulativeSum("sales"))
+            .aggregation("moving_max", movingFunction("sales", 2, "MovingFunctions.max(values)"))
+            .aggregation("tshirt_share", bucketScript(Map.of("tshirts", "tshirts", "total", "sales"), "params.tshirts / params.total * 100"));
+        var responses = read(histogram);
+
+        // When
+        var actual = ElasticLocalPipelines.compile("sales_per_month", histogram).evaluate(responses);
+
+        // Then
+        assertThat(actual.get("sales_per_month")).isInstanceOfSatisfying(ElasticDateHistogramBucketsResponse.class, months -> {
+            assertThat(months.keysAsString()).containsExactly("2015-01-01", "2015-02-01", "2015-03-01", "2015-04-01");
+            assertThat(months.metric("sales_deriv")).containsExactly(Double.NaN, Double.NaN, Double.NaN, -315.0);
+            assertThat(months.metric("sales_deriv_zeros")).containsExactly(Double.NaN, -550.0, 375.0, -315.0);
+            assertThat(months.metric("cumulative_sales")).containsExactly(550.0, 550.0, 925.0, 985.0);
+            assertThat(months.metric("moving_max")).containsExactly(Double.NaN, Double.NaN, 550.0, 550.0);
+            assertThat(months.metric("tshirt_share")[0]).isCloseTo(200.0 / 550 * 100, Offset.offset(1e-9));
+            assertThat(months.metric("tshirt_share")[1]).isNaN();
+            assertThat(months.metric("sales")).containsExactly(550.0, Double.NaN, 375.0, 60.0);
+        });
+    }
+
+    @Test
+    void selectAndSortTypedBuckets() throws JsonProcessingException {
+        // Given
+        var histogram = dateHistogram("date", CalendarUnit.month)
+            .aggregation("sales", sum("price"))
+            .aggregation("tshirts", sum("tshirt_price"))
+            .aggregation("big_months", bucketSelector(Map.of("total", "sales"), "params.total > 100"))
+            .aggregation("top_months", bucketSort(desc("sales")).withSize(1));
+        var responses = read(histogram);
+
+        // When
+        var actual = ElasticLocalPipelines.compile("sales_per_month", histogram).evaluate(responses);
+
+        // Then
+        assertThat(actual.get("sales_per_month")).isInstanceOfSatisfying(ElasticDateHistogramBucketsResponse.class, months -> {
+            assertThat(months.keysAsString()).containsExactly("2015-01-01");
+            assertThat(months.metric("sales")).containsExactly(550.0);
+            assertThat(months.metric("tshirts")).containsExactly(200.0);
+        });
+    }
+
+    @Test
+    void computeSiblingPipelineNextToBuckets() throws JsonProcessingException {
+        // Given
+        var histogram = dateHistogram("date", CalendarUnit.month)
+            .aggregation("sales", sum("price"))
+            .aggregation("tshirts", sum("tshirt_price"));
+        var responses = read(histogram);
+
+        // When
+        var actual = ElasticLocalPipelines.compile(Map.of(
+            "sales_per_month", histogram,
+            "avg_monthly_sales", avgBucket("sales_per_month>sales"),
+            "avg_monthly_docs", avgBucket("sales_per_month")
+        )).evaluate(responses);
+
+        // Then
+        assertThat(actual.get("avg_monthly_sales")).isInstanceOfSatisfying(ElasticMetricsAggregationResponse.class, avg ->
+            assertThat(avg.value()).isEqualTo(985.0 / 3)
+        );
+        assertThat(actual.get("avg_monthly_docs")).isInstanceOfSatisfying(ElasticMetricsAggregationResponse.class, avg ->
+            assertThat(avg.value()).isEqualTo(7.0 / 4)
+        );
+        assertThat(actual.get("sales_per_month")).isSameAs(responses.get("sales_per_month"));
+    }
+
+    @Test
+    void computePipelinesOverRawBuckets() {
+        // Given
+        var histogram = dateHistogram("date", CalendarUnit.month)
+            .aggregation("sales", sum("price"))
+            .aggregation("sales_deriv", derivative("sales"))
+            .aggregation("average", movingFunction("sales", 2, scriptInline("MovingFunctions.unweightedAvg(values)")).withShift(1));
+        Map<String, ElasticAggregationResponse> responses = Map.of("sales_per_month", new ElasticBucketsAggregationResponse(List.of(
+            Map.of("key", 1, "doc_count", 1, "sales", Map.of("value", 10.0)),
+            Map.of("key", 2, "doc_count", 1, "sales", Map.of("value", 30.0)),
+            Map.of("key", 3, "doc_count", 1, "sales", Map.of("value", 20.0))
+        )));
+
+        // When
+        var actual = ElasticLocalPipelines.compile("sales_per_month", histogram).evaluate(responses);
+
+        // Then
+        assertThat(actual.get("sales_per_month")).isInstanceOfSatisfying(ElasticBucketsAggregationResponse.class, months -> {
+            assertThat(months.buckets()).extracting(bucket -> (Object) bucket.get("sales_deriv"))
+                .containsExactly(null, Map.of("value", 20.0), Map.of("value", -10.0));
+            assertThat(months.buckets()).extracting(bucket -> (Object) bucket.get("average"))
+                .containsExactly(Map.of("value", 10.0), Map.of("value", 20.0), Map.of("value", 25.0));
+        });
+    }
+
+    @Test
+    void rejectPipelinesWhichCannotBeEvaluatedLocally() {
+        assertThatThrownBy(() -> ElasticLocalPipelines.compile("sales_per_month", dateHistogram("date", CalendarUnit.month)
+            .aggregation("sales", sum("price"))
+            .aggregation("per_day", derivative("sales").withUnit("day"))))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ElasticLocalPipelines.compile("sales_per_month", dateHistogram("date", CalendarUnit.month)
+            .aggregation("sales", sum("price"))
+            .aggregation("stored", bucketScript(Map.of("total", "sales"), scriptReference(null, "my_script", null)))))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ElasticLocalPipelines.compile("sales_deriv", derivative("sales")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Map<String, ElasticAggregationResponse> read(ElasticAggregations histogram) throws JsonProcessingException {
+        var request = ElasticSearchRequest.requestBuilder().aggregation("sales_per_month", histogram).build();
+        ElasticSearchResponse<Object> response = ElasticSearchResponse.reader(MAPPER, request, Object.class).readValue(SALES_PER_MONTH);
+        return response.getAggregations();
+    }
+}
@@ -0,0 +1,139 @@
+package tech.habegger.elastic.aggregation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.CalendarUnit;
+import tech.habegger.elastic.shared.GapPolicy;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgBucketAggregation.avgBucket;
+import static tech.habegger.elastic.aggregation.ElasticBucketScriptAggregation.bucketScript;
+import static tech.habegger.elastic.aggregation.ElasticBucketSelectorAggregation.bucketSelector;
+import static tech.habegger.elastic.aggregation.ElasticBucketSortAggregation.bucketSort;
+import static tech.habegger.elastic.aggregation.ElasticCumulativeSumAggregation.cumulativeSum;
+import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
+import static tech.habegger.elastic.aggregation.ElasticDerivativeAggregation.derivative;
+import static tech.habegger.elastic.aggregation.ElasticMovingFunctionAggregation.movingFunction;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.shared.SortSpec.desc;
+
+public class ElasticPipelineAggregationsTest {
+    @Test
+    void parentPipelineAggregations() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.requestBuilder()
+            .withSize(0)
+            .aggregation("sales_per_month", dateHistogram("date", CalendarUnit.month)
+                .aggregation("sales", sum("price"))
+                .aggregation("sales_deriv", derivative("sales").withGapPolicy(GapPolicy.insert_zeros))
+                .aggregation("cumulative_sales", cumulativeSum("sales"))
+                .aggregation("the_movavg", movingFunction("sales", 10, "MovingFunctions.unweightedAvg(values)").withShift(1))
+            )
+            .build();
+
+        // When
+        var actual = MAPPER.writeValueAsString(query);
+
+        // Then
+        assertThat(MAPPER.readTree(actual)).isEqualTo(MAPPER.readTree(
+            """
+                {
+                  "size": 0,
+                  "aggregations": {
+                    "sales_per_month": {
+                      "date_histogram": { "field": "date", "calendar_interval": "month" },
+                      "aggregations": {
+                        "sales": { "sum": { "field": "price" } },
+                        "sales_deriv": { "derivative": { "buckets_path": "sales", "gap_policy": "insert_zeros" } },
+                        "cumulative_sales": { "cumulative_sum": { "buckets_path": "sales" } },
+                        "the_movavg": {
+                          "moving_fn": {
+                            "buckets_path": "sales",
+                            "window": 10,
+                            "script": { "source": "MovingFunctions.unweightedAvg(values)" },
+                            "shift": 1
+                          }
+                        }
+                      }
+                    }
+                  }
+                }
+                """
+        ));
+    }
+
+    @Test
+    void bucketScriptSelectorAndSortAggregations() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.requestBuilder()
+            .aggregation("sales_per_month", dateHistogram("date", CalendarUnit.month)
+                .aggregation("total_sales", sum("price"))
+                .aggregation("t-shirt_sales", sum("t_shirt_price"))
+                .aggregation("t-shirt_percentage", bucketScript(
+                    Map.of("tShirtSales", "t-shirt_sales", "totalSales", "total_sales"),
+                    "params.tShirtSales / params.totalSales * 100"
+                ))
+                .aggregation("sales_bucket_filter", bucketSelector(Map.of("totalSales", "total_sales"), "params.totalSales > 200"))
+                .aggregation("sales_bucket_sort", bucketSort(desc("total_sales")).withSize(3))
+            )
+            .build();
+
+        // When
+        var actual = MAPPER.writeValueAsString(query);
+
+        // Then
+        assertThat(MAPPER.readTree(actual)).isEqualTo(MAPPER.readTree(
+            """
+                {
+                  "aggregations": {
+                    "sales_per_month": {
+                      "date_histogram": { "field": "date", "calendar_interval": "month" },
+                      "aggregations": {
+                        "total_sales": { "sum": { "field": "price" } },
+                        "t-shirt_sales": { "sum": { "field": "t_shirt_price" } },
+                        "t-shirt_percentage": {
+                          "bucket_script": {
+                            "buckets_path": { "tShirtSales": "t-shirt_sales", "totalSales": "total_sales" },
+                            "script": { "source": "params.tShirtSales / params.totalSales * 100" }
+                          }
+                        },
+                        "sales_bucket_filter": {
+                          "bucket_selector": {
+                            "buckets_path": { "totalSales": "total_sales" },
+                            "script": { "source": "params.totalSales > 200" }
+                          }
+                        },
+                        "sales_bucket_sort": {
+                          "bucket_sort": { "sort": [ { "total_sales": { "order": "desc" } } ], "size": 3 }
+                        }
+                      }
+                    }
+                  }
+                }
+                """
+        ));
+    }
+
+    @Test
+    void siblingPipelineAggregation() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.requestBuilder()
+            .aggregation("sales_per_month", dateHistogram("date", CalendarUnit.month).aggregation("sales", sum("price")))
+            .aggregation("avg_monthly_sales", avgBucket("sales_per_month>sales").withFormat("#,##0.00"))
+            .build();
+
+        // When
+        var actual = MAPPER.writeValueAsString(query);
+
+        // Then
+        assertThat(MAPPER.readTree(actual).get("aggregations").get("avg_monthly_sales")).isEqualTo(MAPPER.readTree(
+            """
+                { "avg_bucket": { "buckets_path": "sales_per_month>sales", "format": "#,##0.00" } }
+                """
+        ));
+    }
+}
@@ -0,0 +1,198 @@
+package tech.habegger.elastic.client;
+
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.response.ElasticBulkEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.client.ElasticBulkOperation.delete;
+import static tech.habegger.elastic.client.ElasticBulkOperation.index;
+import static tech.habegger.elastic.client.ElasticBulkOperation.update;
+
+public class ElasticBulkProcessorTest {
+    @Test
+    void writeNdjson() throws Exception {
+        // Given
+        var writer = new ElasticBulkWriter(MAPPER);
+
+        // When
+        var actual = writer.writeAsBytes(List.of(
+            index("people", "1", new Person("Benjamin")),
+            update("people", "2", new Person("Jane")),
+            delete("people", "3")
+        ));
+
+        // Then
+        assertThat(new String(actual, StandardCharsets.UTF_8)).isEqualTo("""
+            {"index":{"_index":"people","_id":"1"}}
+            {"name":"Benjamin"}
+            {"update":{"_index":"people","_id":"2"}}
+            {"doc":{"name":"Jane"}}
+            {"delete":{"_index":"people","_id":"3"}}
+            """);
+    }
+
+    @Test
+    void flushByCountAndOnClose() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(request -> new StubElasticServer.Response(200, successResponse(request.body())))) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var processor = ElasticBulkProcessor.builder(client)
+                .withIndex("people")
+                .withMaxActions(2)
+                .build();
+
+            // When
+            for(int i = 0; i < 5; i++) {
+                processor.add(index(null, String.valueOf(i), new Person("person-" + i)));
+            }
+            processor.close();
+
+            // Then
+            assertThat(node.requests()).extracting(StubElasticServer.Request::uri).containsOnly("/people/_bulk");
+            assertThat(node.requests()).extracting(StubElasticServer.Request::contentType).containsOnly("application/x-ndjson");
+            assertThat(node.requests()).extracting(request -> request.body().lines().count()).containsExactly(4L, 4L, 2L);
+        }
+    }
+
+    @Test
+    void retryRejectedItemsAndRouteOtherFailures() throws Exception {
+        // Given
+        var calls = new AtomicInteger();
+        try(var node = StubElasticServer.start(request -> calls.getAndIncrement() == 0
+            ? new StubElasticServer.Response(200, """
+                {"took":3,"errors":true,"items":[
+                  {"index":{"_index":"people","_id":"1","_version":1,"result":"created","status":201,"_seq_no":0,"_primary_term":1}},
+                  {"index":{"_index":"people","_id":"2","status":429,"error":{"type":"es_rejected_execution_exception","reason":"rejected"}}},
+                  {"index":{"_index":"people","_id":"3","status":400,"error":{"type":"mapper_parsing_exception","reason":"failed to parse"}}}
+                ]}""")
+            : new StubElasticServer.Response(200, successResponse(request.body())))) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var failures = new CopyOnWriteArrayList<String>();
+            var processor = ElasticBulkProcessor.builder(client)
+                .withFlushInterval(Duration.ofMillis(10))
+                .withBackoff(Duration.ofMillis(10))
+                .withListener(new ElasticBulkProcessor.Listener() {
+                    @Override
+                    public void onItemFailure(ElasticBulkOperation operation, ElasticBulkEntry entry) {
+                        failures.add(operation.id() + ":" + entry.getStatus() + ":" + entry.getError().type());
+                    }
+                })
+                .build();
+
+            // When
+            processor.add(index("people", "1", new Person("Benjamin")));
+            processor.add(index("people", "2", new Person("Jane")));
+            processor.add(index("people", "3", new Person("John")));
+            processor.close();
+
+            // Then
+            assertThat(failures).containsExactly("3:400:mapper_parsing_exception");
+            assertThat(node.requests()).hasSize(2);
+            assertThat(node.requests().get(1).body()).isEqualTo("""
+                {"index":{"_index":"people","_id":"2"}}
+                {"name":"Jane"}
+                """);
+        }
+    }
+
+    @Test
+    void failBatchesRightAwayOnNonRetryableStatuses() throws Exception {
+        // Given
+        var calls = new AtomicInteger();
+        try(var node = StubElasticServer.start(request -> calls.getAndIncrement() == 0
+            ? new StubElasticServer.Response(503, "{\"error\":\"unavailable\"}")
+            : new StubElasticServer.Response(400, "{\"error\":\"bad request\"}"))) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var failures = new CopyOnWriteArrayList<Throwable>();
+            var processor = ElasticBulkProcessor.builder(client)
+                .withIndex("people")
+                .withBackoff(Duration.ofMillis(10))
+                .withListener(new ElasticBulkProcessor.Listener() {
+                    @Override
+                    public void onRequestFailure(List<ElasticBulkOperation> operations, Throwable error) {
+                        failures.add(error);
+                    }
+                })
+                .build();
+
+            // When
+            processor.add(index(null, "1", new Person("Benjamin")));
+            processor.close();
+
+            // Then
+            assertThat(node.requests()).hasSize(2);
+            assertThat(failures).singleElement().isInstanceOfSatisfying(ElasticClientException.class, error -> {
+                assertThat(error.getStatus()).isEqualTo(400);
+                assertThat(error.getMessage()).contains("bad request");
+            });
+        }
+    }
+
+    @Test
+    void waitForRequestSlotsOutsideOfTheScheduler() throws Exception {
+        // Given
+        var release = new CountDownLatch(1);
+        try(var node = StubElasticServer.start(request -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new StubElasticServer.Response(200, successResponse(request.body()));
+        })) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var processor = ElasticBulkProcessor.builder(client)
+                .withIndex("people")
+                .withFlushInterval(Duration.ofMillis(10))
+                .build();
+
+            // When
+            processor.add(index(null, "1", new Person("Benjamin")));
+            while(node.requests().isEmpty()) {
+                Thread.sleep(5);
+            }
+            processor.add(index(null, "2", new Person("Jane")));
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(!waitsForPermit("elastic-bulk-dispatcher") && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            // Then
+            assertThat(waitsForPermit("elastic-bulk-dispatcher")).isTrue();
+            assertThat(waitsForPermit("elastic-bulk-processor")).isFalse();
+            release.countDown();
+            processor.close();
+            assertThat(node.requests()).hasSize(2);
+        }
+    }
+
+    private static boolean waitsForPermit(String threadName) {
+        return Thread.getAllStackTraces().entrySet().stream()
+            .filter(thread -> thread.getKey().getName().equals(threadName))
+            .anyMatch(thread -> Arrays.stream(thread.getValue())
+                .anyMatch(frame -> frame.getClassName().startsWith(Semaphore.class.getName())));
+    }
+
+    private static String successResponse(String body) {
+        var items = new StringBuilder();
+        var count = body.lines().filter(line -> line.startsWith("{\"index\"")).count();
+        for(int i = 0; i < count; i++) {
+            items.append(i == 0 ? "" : ",").append("""
+                {"index":{"_index":"people","_id":"%d","result":"created","status":201}}""".formatted(i));
+        }
+        return "{\"took\":1,\"errors\":false,\"items\":[" + items + "]}";
+    }
+
+    record Person(String name) {}
+}
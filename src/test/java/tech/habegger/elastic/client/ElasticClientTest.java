@@ -0,0 +1,167 @@
+package tech.habegger.elastic.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator.Action;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator.Rule;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticWildcardClause.wildcard;
+
+public class ElasticClientTest {
+    static final String SEARCH_RESPONSE = """
+        {
+          "took": 3,
+          "timed_out": false,
+          "hits": {
+            "total": { "value": 1, "relation": "eq" },
+            "max_score": 1.0,
+            "hits": [ { "_index": "people", "_id": "1", "_score": 1.0, "_source": { "name": "Benjamin" } } ]
+          }
+        }
+        """;
+
+    private final List<StubElasticServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(StubElasticServer::close);
+    }
+
+    @Test
+    void searchAsyncReturnsTypedResponse() throws Exception {
+        // Given
+        var node = start(StubElasticServer.start(200, SEARCH_RESPONSE));
+        var client = ElasticClient.builder(node.uri())
+            .withExecutor(Executors.newCachedThreadPool())
+            .build();
+
+        // When
+        var response = client.searchAsync("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class).get();
+
+        // Then
+        assertThat(response.getTotalHits()).isEqualTo(1);
+        assertThat(response.getHits().get(0).getSource()).isEqualTo(new Person("Benjamin"));
+        assertThat(node.requests()).containsExactly(new StubElasticServer.Request(
+            "POST", "/people/_search", "application/json", "{\"query\":{\"term\":{\"name\":\"benjamin\"}}}"));
+    }
+
+    @Test
+    void searchWithLazySourceKeepsRawSource() throws Exception {
+        // Given
+        var node = start(StubElasticServer.start(200, SEARCH_RESPONSE));
+        var client = ElasticClient.builder(node.uri())
+            .withLazySource(true)
+            .build();
+
+        // When
+        var response = client.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class);
+
+        // Then
+        var hit = response.getHits().get(0);
+        assertThat(hit.getRawSource().toString()).isEqualTo("{ \"name\": \"Benjamin\" }");
+        assertThat(hit.getSource()).isEqualTo(new Person("Benjamin"));
+    }
+
+    @Test
+    void searchSpreadsRequestsAndFailsOverAcrossNodes() throws Exception {
+        // Given
+        var node1 = start(StubElasticServer.start(200, SEARCH_RESPONSE));
+        var node2 = start(StubElasticServer.start(200, SEARCH_RESPONSE));
+        var client = ElasticClient.builder(node1.uri(), unreachableNode(), node2.uri()).build();
+
+        // When
+        for(int i = 0; i < 3; i++) {
+            client.search(null, ElasticSearchRequest.query(term("name", "benjamin")), Map.class);
+        }
+
+        // Then
+        assertThat(node1.requests()).hasSize(2);
+        assertThat(node2.requests()).hasSize(1);
+    }
+
+    @Test
+    void searchReturnsElasticErrors() throws Exception {
+        // Given
+        var node = start(StubElasticServer.start(404, """
+            { "error": { "type": "index_not_found_exception", "reason": "no such index [people]" }, "status": 404 }
+            """));
+        var client = ElasticClient.builder(node.uri()).build();
+
+        // When
+        var response = client.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class);
+
+        // Then
+        assertThat(response.hasError()).isTrue();
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(response.getError().type()).isEqualTo("index_not_found_exception");
+    }
+
+    @Test
+    void searchFailsOnNonElasticErrors() throws Exception {
+        // Given
+        var node = start(StubElasticServer.start(502, "<html>Bad Gateway</html>"));
+        var client = ElasticClient.builder(node.uri()).build();
+
+        // When / Then
+        assertThatThrownBy(() -> client.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class))
+            .isInstanceOf(ElasticClientException.class)
+            .hasMessageContaining("Bad Gateway");
+    }
+
+    @Test
+    void searchTimesOut() throws Exception {
+        // Given
+        var node = start(StubElasticServer.start(request -> new StubElasticServer.Response(200, SEARCH_RESPONSE, 2_000)));
+        var client = ElasticClient.builder(node.uri())
+            .withRequestTimeout(Duration.ofMillis(200))
+            .build();
+
+        // When / Then
+        assertThatThrownBy(() -> client.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class))
+            .isInstanceOf(HttpTimeoutException.class);
+    }
+
+    @Test
+    void searchRejectedByCostPoliciesIsNeverSent() throws Exception {
+        // Given
+        var node = start(StubElasticServer.start(200, SEARCH_RESPONSE));
+        var client = ElasticClient.builder(node.uri())
+            .withCostEstimator(ElasticQueryCostEstimator.builder().withPolicy(Rule.LEADING_WILDCARD, Action.REJECT).build())
+            .build();
+
+        // When / Then
+        assertThatThrownBy(() -> client.search("people", ElasticSearchRequest.query(wildcard("name", "*jamin")), Person.class))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("LEADING_WILDCARD");
+        assertThat(client.search("people", ElasticSearchRequest.query(wildcard("name", "ben*")), Person.class).getTotalHits()).isEqualTo(1);
+        assertThat(node.requests()).hasSize(1);
+    }
+
+    private StubElasticServer start(StubElasticServer server) {
+        servers.add(server);
+        return server;
+    }
+
+    private static URI unreachableNode() throws IOException {
+        try(var socket = new ServerSocket(0)) {
+            return URI.create("http://localhost:" + socket.getLocalPort() + "/");
+        }
+    }
+
+    record Person(String name) {}
+}
@@ -0,0 +1,137 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticCompositeAggregation.newComposite;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+
+public class ElasticCompositeCursorTest {
+    private static final int PRODUCT_COUNT = 7;
+
+    @Test
+    void streamAllBucketsWithAfterKey() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(ElasticCompositeCursorTest::handle)) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .aggregation("products", newComposite().terms("product", "product").size(3).build())
+                .build();
+
+            // When
+            List<String> products;
+            try(var buckets = ElasticCompositeCursor.stream(client, "sales", request, "products")) {
+                products = buckets.map(bucket -> (String) ((Map<?, ?>) bucket.get("key")).get("product")).toList();
+            }
+
+            // Then
+            assertThat(products).containsExactly("p-0", "p-1", "p-2", "p-3", "p-4", "p-5", "p-6");
+            assertThat(node.requests()).extracting(sent -> sent.method() + " " + sent.uri()).containsExactly(
+                "POST /sales/_search",
+                "POST /sales/_search",
+                "POST /sales/_search",
+                "POST /sales/_search"
+            );
+            var firstSearch = readTree(node.requests().get(0).body());
+            assertThat(firstSearch.get("size").asInt()).isZero();
+            var lastSearch = readTree(node.requests().get(3).body());
+            assertThat(lastSearch.at("/aggregations/products/composite/after").toString()).isEqualTo("{\"product\":\"p-6\"}");
+        }
+    }
+
+    @Test
+    void fetchPagesLazilyWithoutPrefetch() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(ElasticCompositeCursorTest::handle)) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .aggregation("products", newComposite().terms("product", "product").size(4).build())
+                .build();
+
+            // When
+            try(var cursor = ElasticCompositeCursor.open(client, "sales", request, "products", false)) {
+                for(int i = 0; i < 4; i++) {
+                    cursor.next();
+                }
+
+                // Then
+                assertThat(node.requests()).hasSize(1);
+                assertThat(cursor.next().get("doc_count")).isEqualTo(4);
+                assertThat(node.requests()).hasSize(2);
+            }
+        }
+    }
+
+    @Test
+    void keepPagingAfterShortPages() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(request -> handle(request, product -> product % 3 != 0))) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .aggregation("products", newComposite().terms("product", "product").size(3).build())
+                .build();
+
+            // When
+            List<String> products;
+            try(var buckets = ElasticCompositeCursor.stream(client, "sales", request, "products")) {
+                products = buckets.map(bucket -> (String) ((Map<?, ?>) bucket.get("key")).get("product")).toList();
+            }
+
+            // Then
+            assertThat(products).containsExactly("p-1", "p-2", "p-4", "p-5");
+            assertThat(node.requests()).hasSize(3);
+        }
+    }
+
+    @Test
+    void rejectNonCompositeAggregations() {
+        var request = ElasticSearchRequest.requestBuilder()
+            .aggregation("products", termsAgg("product"))
+            .build();
+
+        assertThatThrownBy(() -> ElasticCompositeCursor.open(null, "sales", request, "products"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("products");
+    }
+
+    private static StubElasticServer.Response handle(StubElasticServer.Request request) {
+        return handle(request, product -> true);
+    }
+
+    // Products failing the selector are dropped from their page, as a bucket_selector sub-aggregation would
+    private static StubElasticServer.Response handle(StubElasticServer.Request request, IntPredicate selector) {
+        var composite = readTree(request.body()).at("/aggregations/products/composite");
+        var size = composite.get("size").asInt();
+        var after = composite.has("after") ? Integer.parseInt(composite.get("after").get("product").asText().substring(2)) : -1;
+        var page = IntStream.range(after + 1, PRODUCT_COUNT).limit(size).boxed().toList();
+        var buckets = page.stream()
+            .filter(selector::test)
+            .map(i -> "{\"key\":{\"product\":\"p-%d\"},\"doc_count\":%d}".formatted(i, i))
+            .collect(Collectors.joining(","));
+        var afterKey = page.isEmpty() ? "" : "\"after_key\":{\"product\":\"p-%d\"},".formatted(page.get(page.size() - 1));
+        return new StubElasticServer.Response(200, """
+            {"took":1,"timed_out":false,"hits":{"total":{"value":0,"relation":"eq"},"max_score":null,"hits":[]},
+             "aggregations":{"products":{%s"buckets":[%s]}}}"""
+            .formatted(afterKey, buckets));
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.response.ElasticSearchResponse;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.mapping.ElasticFieldProperty.keywordField;
+import static tech.habegger.elastic.mapping.ElasticMappingsDefinition.mappings;
+import static tech.habegger.elastic.settings.ElasticIndexSettingsDefinition.index;
+import static tech.habegger.elastic.settings.ElasticSettingsDefinition.settings;
+
+public class ElasticContentTypeTest {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final String RESPONSE = """
+        {
+          "took": 7,
+          "timed_out": false,
+          "hits": {
+            "total": { "value": 2, "relation": "eq" },
+            "hits": [
+              { "_index": "people", "_id": "1", "_score": 1.5, "_source": { "name": "Benjamin" } },
+              { "_index": "people", "_id": "2", "_score": 0.25, "_source": { "name": "Zoé" } }
+            ]
+          },
+          "aggregations": {
+            "cities": {
+              "doc_count_error_upper_bound": 0,
+              "sum_other_doc_count": 3,
+              "buckets": [
+                { "key": "biel", "doc_count": 12, "age": { "value": 41.5 } },
+                { "key": "bern", "doc_count": 7, "age": { "value": 33.25 } }
+              ]
+            }
+          }
+        }
+        """;
+
+    record Person(String name) {
+    }
+
+    @Test
+    void parseBinaryResponsesLikeJson() throws Exception {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .withAggregations(Map.of("cities", termsAgg("city").aggregation("age", avg("age"))))
+            .build();
+        var expected = ElasticSearchResponse.reader(JSON_MAPPER, request, Person.class).<ElasticSearchResponse<Person>>readValue(RESPONSE);
+
+        for(var contentType : List.of(ElasticContentType.SMILE, ElasticContentType.CBOR)) {
+            var mapper = contentType.mapper(JSON_MAPPER);
+            var body = mapper.writeValueAsBytes(JSON_MAPPER.readTree(RESPONSE));
+
+            // When
+            ElasticSearchResponse<Person> actual = ElasticSearchResponse.reader(mapper, request, Person.class).readValue(body);
+
+            // Then
+            assertThat(actual.getHits()).extracting(hit -> hit.getSource()).containsExactly(new Person("Benjamin"), new Person("Zoé"));
+            assertThat(actual.getHits()).extracting(hit -> hit.getScore()).containsExactly(1.5, 0.25);
+            var buckets = actual.getTermsBuckets("cities");
+            assertThat(buckets.keys()).containsExactly(expected.getTermsBuckets("cities").keys());
+            assertThat(buckets.docCounts()).containsExactly(expected.getTermsBuckets("cities").docCounts());
+            assertThat(buckets.metrics().get("age")).containsExactly(41.5, 33.25);
+            assertThat(buckets.sumOtherDocCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void writeSmileBulkBodiesWithStreamSeparator() throws Exception {
+        // Given
+        var mapper = ElasticContentType.SMILE.mapper(JSON_MAPPER);
+        var operations = List.of(
+            ElasticBulkOperation.index("people", "1", Map.of("name", "Benjamin")),
+            ElasticBulkOperation.delete("people", "2")
+        );
+
+        // When
+        var body = new ElasticBulkWriter(mapper).writeAsBytes(operations);
+
+        // Then
+        var lines = split(body, (byte) 0xFF);
+        assertThat(lines).hasSize(3);
+        assertThat(lines).extracting(line -> JSON_MAPPER.writeValueAsString(mapper.readTree(line))).containsExactly(
+            "{\"index\":{\"_index\":\"people\",\"_id\":\"1\"}}",
+            "{\"name\":\"Benjamin\"}",
+            "{\"delete\":{\"_index\":\"people\",\"_id\":\"2\"}}"
+        );
+    }
+
+    @Test
+    void rejectCborForSeparatedBodies() {
+        // Given
+        var mapper = ElasticContentType.CBOR.mapper(JSON_MAPPER);
+
+        // Then
+        assertThatThrownBy(() -> new ElasticBulkWriter(mapper)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> new ElasticMultiSearchWriter(mapper)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void writeSettingsInBinaryFormats() throws Exception {
+        // Given
+        var settings = settings()
+            .withIndex(index().withShards(3).withReplicas(1).build())
+            .withMappings(mappings().withProperty("city", keywordField().build()).build())
+            .build();
+
+        for(var contentType : List.of(ElasticContentType.SMILE, ElasticContentType.CBOR)) {
+            var mapper = contentType.mapper(JSON_MAPPER);
+
+            // When
+            var body = mapper.writeValueAsBytes(settings);
+
+            // Then
+            assertThat(JSON_MAPPER.writeValueAsString(mapper.readTree(body))).isEqualTo(JSON_MAPPER.writeValueAsString(settings));
+            assertThat(ElasticContentType.of(mapper.getFactory())).isEqualTo(contentType);
+        }
+    }
+
+    @Test
+    void buildJsonClientsWithoutTheBinaryFormats() throws Exception {
+        // Given
+        var location = ElasticClient.class.getProtectionDomain().getCodeSource().getLocation();
+        try(var loader = new WithoutBinaryFormats(location, getClass().getClassLoader())) {
+            var client = Class.forName(ElasticClient.class.getName(), true, loader);
+            var bulkWriter = Class.forName(ElasticBulkWriter.class.getName(), true, loader);
+            var multiSearchWriter = Class.forName(ElasticMultiSearchWriter.class.getName(), true, loader);
+
+            // When
+            var builder = client.getMethod("builder", URI[].class).invoke(null, (Object) new URI[] { URI.create("http://localhost:9200") });
+            var built = builder.getClass().getMethod("build").invoke(builder);
+
+            // Then
+            assertThat(built.getClass().getClassLoader()).isSameAs(loader);
+            assertThat(bulkWriter.getConstructor(ObjectMapper.class).newInstance(JSON_MAPPER)).isNotNull();
+            assertThat(multiSearchWriter.getConstructor(ObjectMapper.class).newInstance(JSON_MAPPER)).isNotNull();
+            assertThatThrownBy(() -> loader.loadClass("com.fasterxml.jackson.dataformat.smile.SmileFactory"))
+                .isInstanceOf(ClassNotFoundException.class);
+        }
+    }
+
+    // Loads the classes of the library itself, hiding the optional binary format dependencies
+    private static final class WithoutBinaryFormats extends URLClassLoader {
+        WithoutBinaryFormats(URL classes, ClassLoader parent) {
+            super(new URL[] { classes }, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if(name.startsWith("com.fasterxml.jackson.dataformat.")) {
+                throw new ClassNotFoundException(name);
+            } else if(!name.startsWith("tech.habegger.elastic.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized(getClassLoadingLock(name)) {
+                var loaded = findLoadedClass(name);
+                return loaded != null ? loaded : findClass(name);
+            }
+        }
+    }
+
+    private static List<byte[]> split(byte[] body, byte separator) {
+        List<byte[]> parts = new ArrayList<>();
+        var part = new ByteArrayOutputStream();
+        for(var b : body) {
+            if(b == separator) {
+                parts.add(part.toByteArray());
+                part.reset();
+            } else {
+                part.write(b);
+            }
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,147 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.TimeUnit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+public class ElasticIncrementalDateHistogramTest {
+    @Test
+    void queryOnlyTheTailAndSpliceItIntoCachedBuckets() throws Exception {
+        // Given
+        var clock = new ElasticSearchCacheTest.MutableClock();
+        clock.advance(Duration.ofMinutes(30));
+        var calls = new AtomicInteger();
+        try(var node = StubElasticServer.start(request -> hourlyBuckets(request, clock.instant(), calls.incrementAndGet()))) {
+            var histograms = ElasticIncrementalDateHistogram.builder(ElasticClient.builder(node.uri()).build())
+                .withClock(clock)
+                .build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .withQuery(newBool().filter(term("service", "checkout")).filter(range("timestamp", "now-3h", null)).build())
+                .aggregation("per_hour", dateHistogram("timestamp", 1, TimeUnit.hours).aggregation("amount", sum("amount")))
+                .aggregation("total", sum("amount"))
+                .build();
+
+            // When
+            var first = histograms.refresh("orders", request, "per_hour");
+            clock.advance(Duration.ofHours(1));
+            var second = histograms.refresh("orders", request, "per_hour");
+
+            // Then
+            assertThat(first.keysAsString()).containsExactly("2023-12-31T21:00:00Z", "2023-12-31T22:00:00Z", "2023-12-31T23:00:00Z", "2024-01-01T00:00:00Z");
+            assertThat(second.keysAsString()).containsExactly("2023-12-31T22:00:00Z", "2023-12-31T23:00:00Z", "2024-01-01T00:00:00Z", "2024-01-01T01:00:00Z");
+            assertThat(second.docCounts()).containsExactly(1, 1, 2, 2);
+            assertThat(second.metric("amount")).containsExactly(10.0, 10.0, 20.0, 20.0);
+            var tail = readTree(node.requests().get(1).body());
+            assertThat(tail.at("/query/bool/filter/1/range/timestamp/gte").asText()).isEqualTo("2024-01-01T00:00:00Z");
+            assertThat(tail.at("/query/bool/filter/0/term/service").asText()).isEqualTo("checkout");
+            assertThat(tail.at("/size").asInt()).isEqualTo(0);
+            assertThat(tail.at("/aggregations/total").isMissingNode()).isTrue();
+        }
+    }
+
+    @Test
+    void lookBackForLateDocuments() throws Exception {
+        // Given
+        var clock = new ElasticSearchCacheTest.MutableClock();
+        try(var node = StubElasticServer.start(request -> hourlyBuckets(request, clock.instant(), 1))) {
+            var histograms = ElasticIncrementalDateHistogram.builder(ElasticClient.builder(node.uri()).build())
+                .withClock(clock)
+                .withLookback(Duration.ofHours(2))
+                .build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .withQuery(range("timestamp", "now-1d", null))
+                .aggregation("per_hour", dateHistogram("timestamp", 1, TimeUnit.hours))
+                .build();
+
+            // When
+            histograms.refresh("orders", request, "per_hour");
+            clock.advance(Duration.ofSeconds(10));
+            histograms.refresh("orders", request, "per_hour");
+
+            // Then
+            assertThat(readTree(node.requests().get(1).body()).at("/query/range/timestamp/gte").asText()).isEqualTo("2023-12-31T22:00:00Z");
+        }
+    }
+
+    @Test
+    void queryEverythingAgainWhenTheWindowWidens() throws Exception {
+        // Given
+        var clock = new ElasticSearchCacheTest.MutableClock();
+        try(var node = StubElasticServer.start(request -> hourlyBuckets(request, clock.instant(), 1))) {
+            var histograms = ElasticIncrementalDateHistogram.builder(ElasticClient.builder(node.uri()).build())
+                .withClock(clock)
+                .build();
+            var lastHours = ElasticSearchRequest.requestBuilder()
+                .withQuery(range("timestamp", "now-3h", null))
+                .aggregation("per_hour", dateHistogram("timestamp", 1, TimeUnit.hours))
+                .build();
+            var lastDay = lastHours.withQuery(range("timestamp", "now-1d", null));
+
+            // When
+            histograms.refresh("orders", lastHours, "per_hour");
+            clock.advance(Duration.ofMinutes(10));
+            var actual = histograms.refresh("orders", lastDay, "per_hour");
+
+            // Then
+            assertThat(readTree(node.requests().get(1).body()).at("/query/range/timestamp/gte").asText()).isEqualTo("now-1d");
+            assertThat(actual.keysAsString()).hasSize(25).startsWith("2023-12-31T00:00:00Z").endsWith("2024-01-01T00:00:00Z");
+        }
+    }
+
+    @Test
+    void requireARangeOnTheHistogramField() {
+        var histograms = ElasticIncrementalDateHistogram.builder(ElasticClient.builder(URI.create("http://localhost:9200")).build()).build();
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(range("created", "now-1d", null))
+            .aggregation("per_hour", dateHistogram("timestamp", 1, TimeUnit.hours))
+            .build();
+
+        assertThatThrownBy(() -> histograms.refreshAsync("orders", request, "per_hour"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // One bucket per hour from the requested lower bound up to now, counting the calls made so far
+    private static StubElasticServer.Response hourlyBuckets(StubElasticServer.Request request, Instant now, int call) {
+        var body = readTree(request.body());
+        var range = body.findValue("range").get("timestamp").get("gte").asText();
+        var from = switch(range) {
+            case "now-3h" -> now.minus(Duration.ofHours(3));
+            case "now-1d" -> now.minus(Duration.ofDays(1));
+            default -> Instant.parse(range);
+        };
+        var buckets = new ArrayList<String>();
+        for(var key = from.truncatedTo(ChronoUnit.HOURS); !key.isAfter(now); key = key.plus(Duration.ofHours(1))) {
+            buckets.add("{\"key_as_string\":\"%s\",\"key\":%d,\"doc_count\":%d,\"amount\":{\"value\":%d.0}}".formatted(key, key.toEpochMilli(), call, call * 10));
+        }
+        return new StubElasticServer.Response(200, """
+            {"took":1,"timed_out":false,"hits":{"total":{"value":0,"relation":"eq"},"max_score":null,"hits":[]},
+             "aggregations":{"per_hour":{"buckets":[%s]}}}""".formatted(String.join(",", buckets)));
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
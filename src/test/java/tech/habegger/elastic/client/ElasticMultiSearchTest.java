@@ -0,0 +1,150 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.search.ElasticRegexpClause.regexp;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+public class ElasticMultiSearchTest {
+    private static final String MULTI_SEARCH_RESPONSE = """
+        {
+          "took": 4,
+          "responses": [
+            {
+              "took": 1,
+              "timed_out": false,
+              "hits": { "total": { "value": 1, "relation": "eq" }, "hits": [ { "_index": "people", "_id": "1", "_score": 1.0, "_source": { "name": "Benjamin" } } ] },
+              "status": 200
+            },
+            {
+              "error": { "type": "index_not_found_exception", "reason": "no such index [missing]" },
+              "status": 404
+            },
+            {
+              "took": 2,
+              "timed_out": false,
+              "hits": { "total": { "value": 1, "relation": "eq" }, "hits": [ { "_index": "cities", "_id": "2", "_score": 1.0, "_source": { "name": "Lausanne", "population": 140000 } } ] },
+              "status": 200
+            }
+          ]
+        }
+        """;
+
+    record Person(String name) {
+    }
+
+    @Test
+    void writeHeaderAndBodyLines() throws Exception {
+        // Given
+        var writer = new ElasticMultiSearchWriter(MAPPER);
+        var items = List.of(
+            ElasticMultiSearchItem.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Map.class),
+            ElasticMultiSearchItem.search(null, ElasticSearchRequest.query(term("city", "lausanne")), Map.class)
+        );
+
+        // When
+        var body = new String(writer.writeAsBytes(items), StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(body).isEqualTo("""
+            {"index":"people"}
+            {"query":{"term":{"name":"benjamin"}}}
+            {}
+            {"query":{"term":{"city":"lausanne"}}}
+            """);
+    }
+
+    @Test
+    void keepLinesCompactWithAnIndentingMapper() throws Exception {
+        // Given
+        var writer = new ElasticMultiSearchWriter(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT));
+        var items = List.of(
+            ElasticMultiSearchItem.search("people", ElasticSearchRequest.query(regexp("name", "ben.*")), Map.class)
+        );
+
+        // When
+        var body = new String(writer.writeAsBytes(items), StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(body).isEqualTo("""
+            {"index":"people"}
+            {"query":{"regexp":{"name":{"value":"ben.*"}}}}
+            """);
+    }
+
+    @Test
+    void demultiplexResponsesWithTheirOwnTypes() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(200, MULTI_SEARCH_RESPONSE)) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var items = List.of(
+                ElasticMultiSearchItem.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class),
+                ElasticMultiSearchItem.search("missing", ElasticSearchRequest.query(term("name", "benjamin")), Person.class),
+                ElasticMultiSearchItem.search("cities", ElasticSearchRequest.query(term("name", "lausanne")), Map.class)
+            );
+
+            // When
+            var responses = client.multiSearch(null, items);
+
+            // Then
+            assertThat(node.requests()).hasSize(1);
+            assertThat(node.requests().get(0).uri()).isEqualTo("/_msearch");
+            assertThat(node.requests().get(0).contentType()).isEqualTo("application/x-ndjson");
+            assertThat(responses).hasSize(3);
+            assertThat(responses.get(0).getHits().get(0).getSource()).isEqualTo(new Person("Benjamin"));
+            assertThat(responses.get(1).hasError()).isTrue();
+            assertThat(responses.get(1).getStatus()).isEqualTo(404);
+            assertThat(responses.get(2).getHits().get(0).getSource()).isEqualTo(Map.of("name", "Lausanne", "population", 140000));
+        }
+    }
+
+    @Test
+    void batchRequestsSubmittedWithinTheWindow() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(200, MULTI_SEARCH_RESPONSE);
+            var batcher = ElasticMultiSearchBatcher.builder(ElasticClient.builder(node.uri()).build())
+                .withWindow(Duration.ofMillis(200))
+                .build()) {
+
+            // When
+            var first = batcher.submit("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class);
+            var second = batcher.submit("missing", ElasticSearchRequest.query(term("name", "benjamin")), Person.class);
+            var third = batcher.submit("cities", ElasticSearchRequest.query(term("name", "lausanne")), Map.class);
+
+            // Then
+            assertThat(first.get().getHits().get(0).getSource()).isEqualTo(new Person("Benjamin"));
+            assertThat(second.get().hasError()).isTrue();
+            assertThat(third.get().getHits().get(0).getSource()).containsEntry("name", "Lausanne");
+            assertThat(node.requests()).hasSize(1);
+            assertThat(node.requests().get(0).body()).contains("{\"index\":\"missing\"}");
+        }
+    }
+
+    @Test
+    void dispatchFullBatchesImmediately() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(200, ElasticClientTest.SEARCH_RESPONSE);
+            var batcher = ElasticMultiSearchBatcher.builder(ElasticClient.builder(node.uri()).build())
+                .withWindow(Duration.ofMinutes(1))
+                .withMaxBatchSize(1)
+                .build()) {
+
+            // When
+            var response = batcher.search("people", ElasticSearchRequest.query(term("name", "benjamin")), Person.class);
+
+            // Then
+            assertThat(response.getHits().get(0).getSource()).isEqualTo(new Person("Benjamin"));
+            assertThat(node.requests().get(0).uri()).isEqualTo("/people/_search");
+        }
+    }
+}
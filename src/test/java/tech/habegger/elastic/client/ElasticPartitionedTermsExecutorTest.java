@@ -0,0 +1,98 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+
+public class ElasticPartitionedTermsExecutorTest {
+    private static final int ACCOUNT_COUNT = 10;
+
+    @Test
+    void stitchPartitionsIntoOneTypedResult() throws Exception {
+        // Given
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        try(var node = StubElasticServer.start(request -> handle(request, inFlight, maxInFlight))) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .aggregation("accounts", termsAgg("account", 100).aggregation("avg_amount", avg("amount")))
+                .build();
+
+            // When
+            var accounts = ElasticPartitionedTermsExecutor.partitioned(client, 4, 2).execute("payments", request, "accounts");
+
+            // Then
+            assertThat(accounts.keys()).containsExactly("a-9", "a-8", "a-7", "a-6", "a-5", "a-4", "a-3", "a-2", "a-1", "a-0");
+            assertThat(accounts.docCounts()).containsExactly(10, 9, 8, 7, 6, 5, 4, 3, 2, 1);
+            assertThat(accounts.metric("avg_amount")).containsExactly(90.0, 80.0, 70.0, 60.0, 50.0, 40.0, 30.0, 20.0, 10.0, 0.0);
+            assertThat(node.requests()).hasSize(4);
+            assertThat(node.requests())
+                .extracting(sent -> readTree(sent.body()).at("/aggregations/accounts/terms/include/partition").asInt())
+                .containsExactlyInAnyOrder(0, 1, 2, 3);
+            assertThat(node.requests()).allSatisfy(sent -> assertThat(readTree(sent.body()).at("/aggregations/accounts/aggregations/avg_amount").isMissingNode()).isFalse());
+            assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+        }
+    }
+
+    @Test
+    void keepRequestedKeyOrderAcrossPartitions() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(request -> handle(request, new AtomicInteger(), new AtomicInteger()))) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .aggregation("accounts", termsAgg("account", 100).withOrder("_key", OrderDirection.asc))
+                .build();
+
+            // When
+            var accounts = ElasticPartitionedTermsExecutor.partitioned(client, 3, 3).execute("payments", request, "accounts");
+
+            // Then
+            assertThat(accounts.keys()).containsExactly("a-0", "a-1", "a-2", "a-3", "a-4", "a-5", "a-6", "a-7", "a-8", "a-9");
+        }
+    }
+
+    private static StubElasticServer.Response handle(StubElasticServer.Request request, AtomicInteger inFlight, AtomicInteger maxInFlight) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(20);
+            var include = readTree(request.body()).at("/aggregations/accounts/terms/include");
+            var partition = include.get("partition").asInt();
+            var partitions = include.get("num_partitions").asInt();
+            var buckets = IntStream.range(0, ACCOUNT_COUNT)
+                .filter(i -> i % partitions == partition)
+                .boxed()
+                .sorted((a, b) -> b - a)
+                .map(i -> "{\"key\":\"a-%d\",\"doc_count\":%d,\"avg_amount\":{\"value\":%d.0}}".formatted(i, i + 1, i * 10))
+                .collect(Collectors.joining(","));
+            return new StubElasticServer.Response(200, """
+                {"took":1,"timed_out":false,"hits":{"total":{"value":0,"relation":"eq"},"max_score":null,"hits":[]},
+                 "aggregations":{"accounts":{"doc_count_error_upper_bound":0,"sum_other_doc_count":0,"buckets":[%s]}}}"""
+                .formatted(buckets));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package tech.habegger.elastic.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ElasticRequestLimiterTest {
+    @Test
+    void runQueuedCallsCompletingRightAwayWithoutRecursion() {
+        // Given
+        var limiter = new ElasticRequestLimiter(1);
+        var gate = new CompletableFuture<Integer>();
+        var first = limiter.submit(() -> gate);
+        var queued = new ArrayList<CompletableFuture<Integer>>();
+        for(int i = 0; i < 100_000; i++) {
+            var value = i;
+            queued.add(limiter.submit(() -> CompletableFuture.completedFuture(value)));
+        }
+
+        // When
+        gate.complete(-1);
+
+        // Then
+        assertThat(first).isCompletedWithValue(-1);
+        assertThat(queued.stream().filter(result -> !result.isDone() || result.isCompletedExceptionally()).count()).isZero();
+        assertThat(queued.get(queued.size() - 1)).isCompletedWithValue(99_999);
+    }
+}
@@ -0,0 +1,124 @@
+package tech.habegger.elastic.client;
+
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.client.ElasticClientTest.SEARCH_RESPONSE;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+public class ElasticSearchCacheTest {
+    @Test
+    void coalesceConcurrentRequestsAndServeHitsUntilExpiry() throws Exception {
+        // Given
+        var release = new CountDownLatch(1);
+        try(var node = StubElasticServer.start(request -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new StubElasticServer.Response(200, SEARCH_RESPONSE);
+        })) {
+            var clock = new MutableClock();
+            var cache = ElasticSearchCache.builder(ElasticClient.builder(node.uri()).build())
+                .withTtl(Duration.ofSeconds(30))
+                .withClock(clock)
+                .build();
+            var request = ElasticSearchRequest.query(term("name", "benjamin"));
+
+            // When
+            var first = cache.searchAsync("people", request, Map.class);
+            var second = cache.searchAsync("people", ElasticSearchRequest.query(term("name", "benjamin")), Map.class);
+            release.countDown();
+            first.get();
+            var third = cache.search("people", request, Map.class);
+            clock.advance(Duration.ofSeconds(31));
+            cache.search("people", request, Map.class);
+
+            // Then
+            assertThat(second).isSameAs(first);
+            assertThat(third).isSameAs(first.get());
+            assertThat(node.requests()).hasSize(2);
+            assertThat(cache.stats()).isEqualTo(new ElasticSearchCache.Stats(1, 2, 1, 0, 1));
+        }
+    }
+
+    @Test
+    void evictLeastRecentlyUsedAndSkipErrors() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(request -> request.body().contains("missing")
+            ? new StubElasticServer.Response(404, "{\"error\":{\"type\":\"index_not_found_exception\"},\"status\":404}")
+            : new StubElasticServer.Response(200, SEARCH_RESPONSE))) {
+            var cache = ElasticSearchCache.builder(ElasticClient.builder(node.uri()).build())
+                .withMaxEntries(2)
+                .build();
+
+            // When
+            cache.search("people", ElasticSearchRequest.query(term("name", "a")), Map.class);
+            cache.search("people", ElasticSearchRequest.query(term("name", "b")), Map.class);
+            cache.search("people", ElasticSearchRequest.query(term("name", "a")), Map.class);
+            cache.search("people", ElasticSearchRequest.query(term("name", "c")), Map.class);
+            cache.search("people", ElasticSearchRequest.query(term("name", "missing")), Map.class);
+            cache.search("people", ElasticSearchRequest.query(term("name", "missing")), Map.class);
+
+            // Then
+            var stats = cache.stats();
+            assertThat(stats.hits()).isEqualTo(1);
+            assertThat(stats.misses()).isEqualTo(5);
+            assertThat(stats.evictions()).isEqualTo(2);
+            assertThat(stats.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void failAndForgetRequestsWhichCannotBeSent() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(200, SEARCH_RESPONSE)) {
+            var cache = ElasticSearchCache.builder(ElasticClient.builder(node.uri()).build()).build();
+            var request = ElasticSearchRequest.query(term("name", "benjamin"));
+
+            // When
+            var first = cache.searchAsync("not an index", request, Map.class);
+            var second = cache.searchAsync("not an index", request, Map.class);
+
+            // Then
+            assertThat(first).isCompletedExceptionally();
+            assertThat(second).isNotSameAs(first).isCompletedExceptionally();
+            assertThat(node.requests()).isEmpty();
+            assertThat(cache.stats()).isEqualTo(new ElasticSearchCache.Stats(0, 2, 0, 0, 0));
+        }
+    }
+
+    static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package tech.habegger.elastic.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.response.ElasticHit;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.SortSpec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.search.ElasticMatchAllClause.matchAll;
+
+public class ElasticSearchCursorTest {
+    private static final int DOCUMENT_COUNT = 7;
+
+    @Test
+    void streamAllHitsWithSearchAfter() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(ElasticSearchCursorTest::handle)) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .withQuery(matchAll())
+                .withSort(SortSpec.asc("ts"), SortSpec.asc("_id"))
+                .withSize(3)
+                .build();
+
+            // When
+            List<String> ids;
+            try(var hits = ElasticSearchCursor.stream(client, "events", request, Event.class, Duration.ofMinutes(1))) {
+                ids = hits.map(ElasticHit::getId).toList();
+            }
+
+            // Then
+            assertThat(ids).containsExactly("doc-0", "doc-1", "doc-2", "doc-3", "doc-4", "doc-5", "doc-6");
+            assertThat(node.requests()).extracting(sent -> sent.method() + " " + sent.uri()).containsExactly(
+                "POST /events/_pit?keep_alive=60000ms",
+                "POST /_search",
+                "POST /_search",
+                "POST /_search",
+                "DELETE /_pit"
+            );
+            var lastSearch = MAPPER.readTree(node.requests().get(3).body());
+            assertThat(lastSearch.get("pit").toString()).isEqualTo("{\"id\":\"pit-1\",\"keep_alive\":\"60000ms\"}");
+            assertThat(lastSearch.get("search_after").toString()).isEqualTo("[1704067205000,\"doc-5\"]");
+        }
+    }
+
+    @Test
+    void streamSlicesInParallel() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(ElasticSearchCursorTest::handle)) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .withQuery(matchAll())
+                .withSort(SortSpec.asc("ts"), SortSpec.asc("_id"))
+                .withSize(2)
+                .build();
+
+            // When
+            List<String> ids;
+            try(var hits = ElasticSearchCursor.stream(client, "events", request, Event.class, Duration.ofMinutes(1), 2)) {
+                ids = hits.map(ElasticHit::getId).collect(Collectors.toList());
+            }
+
+            // Then
+            assertThat(ids).containsExactlyInAnyOrder("doc-0", "doc-1", "doc-2", "doc-3", "doc-4", "doc-5", "doc-6");
+            assertThat(node.requests()).filteredOn(sent -> sent.uri().equals("/_search"))
+                .extracting(sent -> readTree(sent.body()).get("slice").toString())
+                .containsOnly("{\"id\":0,\"max\":2}", "{\"id\":1,\"max\":2}");
+            assertThat(node.requests()).filteredOn(sent -> sent.method().equals("DELETE")).hasSize(1);
+        }
+    }
+
+    @Test
+    void closeTheLatestPitIdOfSlices() throws Exception {
+        // Given
+        try(var node = StubElasticServer.start(request -> {
+            var response = handle(request);
+            return request.uri().equals("/_search")
+                ? new StubElasticServer.Response(response.status(), response.body().replace("\"pit-1\"", "\"pit-2\""))
+                : response;
+        })) {
+            var client = ElasticClient.builder(node.uri()).build();
+            var request = ElasticSearchRequest.requestBuilder()
+                .withQuery(matchAll())
+                .withSort(SortSpec.asc("ts"), SortSpec.asc("_id"))
+                .withSize(2)
+                .build();
+
+            // When
+            try(var hits = ElasticSearchCursor.stream(client, "events", request, Event.class, Duration.ofMinutes(1), 2)) {
+                assertThat(hits.count()).isEqualTo(DOCUMENT_COUNT);
+            }
+
+            // Then
+            assertThat(node.requests()).filteredOn(sent -> sent.method().equals("DELETE"))
+                .extracting(sent -> readTree(sent.body()).get("id").asText())
+                .containsExactly("pit-2");
+        }
+    }
+
+    private static StubElasticServer.Response handle(StubElasticServer.Request request) {
+        if(request.uri().contains("_pit") && request.method().equals("POST")) {
+            return new StubElasticServer.Response(200, "{\"id\":\"pit-1\",\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0}}");
+        }
+        if(request.method().equals("DELETE")) {
+            return new StubElasticServer.Response(200, "{\"succeeded\":true,\"num_freed\":1}");
+        }
+        var search = readTree(request.body());
+        var size = search.get("size").asInt();
+        var after = search.has("search_after") ? search.get("search_after").get(0).asLong() : Long.MIN_VALUE;
+        var slice = search.get("slice");
+        var hits = IntStream.range(0, DOCUMENT_COUNT)
+            .filter(i -> slice == null || i % slice.get("max").asInt() == slice.get("id").asInt())
+            .filter(i -> timestamp(i) > after)
+            .limit(size)
+            .mapToObj(i -> """
+                {"_index":"events","_id":"doc-%d","_score":null,"_source":{"ts":%d},"sort":[%d,"doc-%d"]}"""
+                .formatted(i, timestamp(i), timestamp(i), i))
+            .collect(Collectors.joining(","));
+        return new StubElasticServer.Response(200, """
+            {"pit_id":"pit-1","took":1,"timed_out":false,"hits":{"total":{"value":%d,"relation":"eq"},"max_score":null,"hits":[%s]}}"""
+            .formatted(DOCUMENT_COUNT, hits));
+    }
+
+    private static long timestamp(int i) {
+        return 1704067200000L + i * 1000L;
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record Event(long ts) {}
+}
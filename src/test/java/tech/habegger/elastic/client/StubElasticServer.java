@@ -0,0 +1,78 @@
+package tech.habegger.elastic.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+class StubElasticServer implements AutoCloseable {
+    private final HttpServer server;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    private StubElasticServer(Function<Request, Response> handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> handle(exchange, handler));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    static StubElasticServer start(Function<Request, Response> handler) throws IOException {
+        return new StubElasticServer(handler);
+    }
+
+    static StubElasticServer start(int status, String body) throws IOException {
+        return start(request -> new Response(status, body));
+    }
+
+    URI uri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange, Function<Request, Response> handler) throws IOException {
+        var request = new Request(
+            exchange.getRequestMethod(),
+            exchange.getRequestURI().toString(),
+            exchange.getRequestHeaders().getFirst("Content-Type"),
+            new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)
+        );
+        requests.add(request);
+        var response = handler.apply(request);
+        if(response.delayMillis() > 0) {
+            try {
+                Thread.sleep(response.delayMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        var bytes = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    record Request(String method, String uri, String contentType, String body) {
+    }
+
+    record Response(int status, String body, long delayMillis) {
+        Response(int status, String body) {
+            this(status, body, 0);
+        }
+    }
+}
@@ -4,9 +4,17 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import org.assertj.core.data.Percentage;
 import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.CalendarUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
+import static tech.habegger.elastic.aggregation.ElasticExtendedStatsAggregation.extendedStats;
+import static tech.habegger.elastic.aggregation.ElasticHistogramAggregation.histogram;
+import static tech.habegger.elastic.aggregation.ElasticStatsAggregation.stats;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
 
 public class ElasticAggregationResponseTest {
     @Test
@@ -103,4 +111,225 @@ public class ElasticAggregationResponseTest {
         var buckets = rangeAgg.buckets();
         assertThat(buckets).hasSize(2);
     }
+
+    @Test
+    void typedTermsBucketsResponse() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .aggregation("genres", termsAgg("genre")
+                .aggregation("avg_price", avg("price"))
+                .aggregation("price_stats", stats("price")))
+            .build();
+        var rawResponse = """
+            {
+              "aggregations": {
+                "genres": {
+                  "doc_count_error_upper_bound": 0,
+                  "sum_other_doc_count": 3,
+                  "buckets": [
+                    {
+                      "key": "electronic",
+                      "doc_count": 6,
+                      "avg_price": { "value": 12.5 },
+                      "price_stats": { "count": 6, "min": 1.0, "max": 20.0, "avg": 12.5, "sum": 75.0 }
+                    },
+                    {
+                      "key": "rock",
+                      "doc_count": 3,
+                      "avg_price": { "value": null },
+                      "price_stats": { "count": 0, "min": null, "max": null, "avg": null, "sum": 0.0 }
+                    }
+                  ]
+                }
+              }
+            }
+        """;
+
+        // When
+        ElasticSearchResponse<Object> actual = ElasticSearchResponse.reader(MAPPER, request, Object.class).readValue(rawResponse);
+
+        // Then
+        var genres = actual.getTermsBuckets("genres");
+        assertThat(genres).isNotNull();
+        assertThat(genres.keys()).containsExactly("electronic", "rock");
+        assertThat(genres.docCounts()).containsExactly(6, 3);
+        assertThat(genres.sumOtherDocCount()).isEqualTo(3);
+        assertThat(genres.metric("avg_price")).containsExactly(12.5, Double.NaN);
+        assertThat(genres.metric("price_stats.max")).containsExactly(20.0, Double.NaN);
+        assertThat(genres.metric("price_stats.count")).containsExactly(6.0, 0.0);
+        assertThat(actual.getAggregationBuckets("genres")).hasSize(2);
+    }
+
+    @Test
+    void typedDateHistogramBucketsResponse() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .aggregation("sales_over_time", dateHistogram("date", CalendarUnit.month)
+                .aggregation("by_type", termsAgg("type")))
+            .build();
+        var rawResponse = """
+            {
+              "aggregations": {
+                "sales_over_time": {
+                  "buckets": [
+                    {
+                      "key_as_string": "2015-01-01",
+                      "key": 1420070400000,
+                      "doc_count": 3,
+                      "by_type": { "buckets": [ { "key": "hat", "doc_count": 3 } ] }
+                    },
+                    {
+                      "key_as_string": "2015-02-01",
+                      "key": 1422748800000,
+                      "doc_count": 2,
+                      "by_type": { "buckets": [ { "key": "bag", "doc_count": 1 }, { "key": "hat", "doc_count": 1 } ] }
+                    }
+                  ]
+                }
+              }
+            }
+        """;
+
+        // When
+        ElasticSearchResponse<Object> actual = ElasticSearchResponse.reader(MAPPER, request, Object.class).readValue(rawResponse);
+
+        // Then
+        var salesOverTime = actual.getDateHistogramBuckets("sales_over_time");
+        assertThat(salesOverTime).isNotNull();
+        assertThat(salesOverTime.keys()).containsExactly(1420070400000L, 1422748800000L);
+        assertThat(salesOverTime.keysAsString()).containsExactly("2015-01-01", "2015-02-01");
+        assertThat(salesOverTime.docCounts()).containsExactly(3, 2);
+        var byType = salesOverTime.subAggregations().get("by_type");
+        assertThat(byType).hasSize(2);
+        assertThat(byType[1]).isInstanceOfSatisfying(ElasticTermsBucketsResponse.class, terms ->
+            assertThat(terms.keys()).containsExactly("bag", "hat")
+        );
+    }
+
+    @Test
+    void lookUpBucketLayoutsByTheirPath() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .aggregation("prices", histogram("price", 10.0)
+                .aggregation("prices", termsAgg("currency")))
+            .aggregation("genres", termsAgg("genre")
+                .aggregation("prices", stats("price")))
+            .build();
+        var rawResponse = """
+            {
+              "aggregations": {
+                "prices": {
+                  "buckets": [
+                    {
+                      "key": 10.0,
+                      "doc_count": 2,
+                      "prices": { "buckets": [ { "key": "EUR", "doc_count": 2 } ] }
+                    }
+                  ]
+                },
+                "genres": {
+                  "buckets": [
+                    {
+                      "key": "rock",
+                      "doc_count": 2,
+                      "prices": { "count": 2, "min": 10.0, "max": 14.0, "avg": 12.0, "sum": 24.0 }
+                    }
+                  ]
+                }
+              }
+            }
+        """;
+
+        // When
+        ElasticSearchResponse<Object> actual = ElasticSearchResponse.reader(MAPPER, request, Object.class).readValue(rawResponse);
+
+        // Then
+        var prices = actual.getHistogramBuckets("prices");
+        assertThat(prices).isNotNull();
+        assertThat(prices.keys()).containsExactly(10.0);
+        assertThat(prices.subAggregations().get("prices")[0]).isInstanceOfSatisfying(ElasticTermsBucketsResponse.class, terms ->
+            assertThat(terms.keys()).containsExactly("EUR")
+        );
+        assertThat(actual.getTermsBuckets("genres").metric("prices.sum")).containsExactly(24.0);
+    }
+
+    @Test
+    void keepExtendedStatsOfBuckets() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .aggregation("genres", termsAgg("genre")
+                .aggregation("price_stats", extendedStats("price")))
+            .build();
+        var rawResponse = """
+            {
+              "aggregations": {
+                "genres": {
+                  "buckets": [
+                    {
+                      "key": "rock",
+                      "doc_count": 2,
+                      "price_stats": {
+                        "count": 2, "min": 10.0, "max": 14.0, "avg": 12.0, "sum": 24.0,
+                        "sum_of_squares": 296.0, "variance": 4.0, "std_deviation": 2.0,
+                        "std_deviation_bounds": { "upper": 16.0, "lower": 8.0 }
+                      }
+                    }
+                  ]
+                }
+              }
+            }
+        """;
+
+        // When
+        ElasticSearchResponse<Object> actual = ElasticSearchResponse.reader(MAPPER, request, Object.class).readValue(rawResponse);
+
+        // Then
+        var genres = actual.getTermsBuckets("genres");
+        assertThat(genres.metrics()).isEmpty();
+        assertThat(genres.subAggregations().get("price_stats")[0]).isInstanceOfSatisfying(ElasticMetricsAggregationResponse.class, stats -> {
+            assertThat(stats.sum()).isEqualTo(24.0);
+            assertThat(stats.sum_of_squares()).isEqualTo(296.0);
+            assertThat(stats.variance()).isEqualTo(4.0);
+            assertThat(stats.std_deviation()).isEqualTo(2.0);
+            assertThat(stats.std_deviation_bounds()).containsEntry("lower", 8.0);
+        });
+    }
+
+    @Test
+    void extendedStatsAndPercentilesResponse() throws JsonProcessingException {
+        // Given
+        var rawResponse = """
+            {
+              "aggregations": {
+                "grades_stats": {
+                  "count": 2, "min": 50.0, "max": 100.0, "avg": 75.0, "sum": 150.0,
+                  "sum_of_squares": 12500.0, "variance": 625.0, "std_deviation": 25.0,
+                  "std_deviation_bounds": { "upper": 125.0, "lower": 25.0 }
+                },
+                "load_time_outlier": {
+                  "values": { "1.0": 5.0, "99.0": 990.0 }
+                },
+                "load_time_ranks": {
+                  "values": [ { "key": 50.0, "value": 445.0 } ]
+                },
+                "max_load": { "value": 990.0 }
+              }
+            }
+        """;
+
+        // When
+        ElasticSearchResponse<Object> actual = MAPPER.readValue(rawResponse, new TypeReference<>() {});
+
+        // Then
+        var stats = actual.getAggregation("grades_stats", ElasticMetricsAggregationResponse.class);
+        assertThat(stats.count()).isEqualTo(2);
+        assertThat(stats.variance()).isEqualTo(625.0);
+        assertThat(stats.std_deviation_bounds()).containsEntry("upper", 125.0);
+        assertThat(actual.getAggregation("load_time_outlier", ElasticMetricsAggregationResponse.class).values())
+            .containsEntry("1.0", 5.0)
+            .containsEntry("99.0", 990.0);
+        assertThat(actual.getAggregation("load_time_ranks", ElasticMetricsAggregationResponse.class).values())
+            .containsEntry("50.0", 445.0);
+        assertThat(actual.getAggregation("max_load", ElasticMetricsAggregationResponse.class).doubleValue()).isEqualTo(990.0);
+    }
 }
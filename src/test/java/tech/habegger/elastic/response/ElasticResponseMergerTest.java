@@ -0,0 +1,230 @@
+package tech.habegger.elastic.response;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+import tech.habegger.elastic.shared.OrderDirection;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticFilterAggregation.filter;
+import static tech.habegger.elastic.aggregation.ElasticMaxAggregation.max;
+import static tech.habegger.elastic.aggregation.ElasticStatsAggregation.stats;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.shared.SortSpec.asc;
+import static tech.habegger.elastic.shared.SortSpec.desc;
+
+class ElasticResponseMergerTest {
+    @Test
+    void mergeHitsByScore() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder().withSize(3).build();
+        var left = read(request, """
+            {
+              "took": 5, "timed_out": false,
+              "_shards": { "total": 2, "successful": 2, "skipped": 0, "failed": 0 },
+              "hits": {
+                "total": { "value": 20, "relation": "eq" }, "max_score": 3,
+                "hits": [ { "_id": "a", "_score": 3.0 }, { "_id": "b", "_score": 1.5 } ]
+              }
+            }
+        """);
+        var right = read(request, """
+            {
+              "took": 9, "timed_out": true,
+              "_shards": { "total": 1, "successful": 1, "skipped": 0, "failed": 0 },
+              "hits": {
+                "total": { "value": 10000, "relation": "gte" }, "max_score": 2,
+                "hits": [ { "_id": "c", "_score": 2.0 }, { "_id": "d", "_score": 1.0 } ]
+              }
+            }
+        """);
+
+        // When
+        var merged = new ElasticResponseMerger(request).merge(List.of(left, right));
+
+        // Then
+        assertThat(merged.getHits()).extracting(ElasticHit::getId).containsExactly("a", "c", "b");
+        assertThat(merged.getTotalHits()).isEqualTo(10020);
+        assertThat(merged.isHitCountExact()).isFalse();
+        assertThat(merged.getTook()).isEqualTo("9");
+        assertThat(merged.isTimedOut()).isTrue();
+        assertThat(merged.getShards()).isEqualTo(new ElasticSearchResponse.ShardStats(3, 3, 0, 0));
+    }
+
+    @Test
+    void mergeHitsWithoutScoreLast() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder().build();
+        var left = read(request, """
+            { "hits": { "total": { "value": 1, "relation": "eq" }, "hits": [ { "_id": "a", "_score": null } ] } }
+        """);
+        var right = read(request, """
+            { "hits": { "total": { "value": 2, "relation": "eq" }, "hits": [ { "_id": "b", "_score": 1.0 }, { "_id": "c", "_score": null } ] } }
+        """);
+
+        // When
+        var merged = new ElasticResponseMerger(request).merge(List.of(left, right));
+
+        // Then
+        assertThat(merged.getHits()).extracting(ElasticHit::getId).containsExactly("b", "a", "c");
+    }
+
+    @Test
+    void mergeHitsBySortValues() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder().withSort(asc("category"), desc("price")).build();
+        var left = read(request, """
+            { "hits": { "total": { "value": 3, "relation": "eq" }, "hits": [
+              { "_id": "a", "sort": ["book", 30] }, { "_id": "b", "sort": ["toy", 12.5] }, { "_id": "c", "sort": [null, 1] }
+            ] } }
+        """);
+        var right = read(request, """
+            { "hits": { "total": { "value": 2, "relation": "eq" }, "hits": [
+              { "_id": "d", "sort": ["book", 40] }, { "_id": "e", "sort": ["toy", 8] }
+            ] } }
+        """);
+
+        // When
+        var merged = new ElasticResponseMerger(request).merge(List.of(left, right));
+
+        // Then
+        assertThat(merged.getHits()).extracting(ElasticHit::getId).containsExactly("d", "a", "b", "e", "c");
+        assertThat(merged.isHitCountExact()).isTrue();
+    }
+
+    @Test
+    void mergeAggregationTrees() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .aggregation("avg_price", avg("price"))
+            .aggregation("max_price", max("price"))
+            .aggregation("shirts", filter(term("type", "shirt"))
+                .aggregation("price_stats", stats("price")))
+            .aggregation("genres", termsAgg("genre", 2)
+                .aggregation("avg_price", avg("price"))
+                .aggregation("price_stats", stats("price")))
+            .build();
+        var left = read(request, """
+            {
+              "hits": { "total": { "value": 4, "relation": "eq" }, "hits": [] },
+              "aggregations": {
+                "avg_price": { "value": 10.0 },
+                "max_price": { "value": 20.0 },
+                "shirts": { "doc_count": 2, "price_stats": { "count": 2, "min": 5.0, "max": 15.0, "avg": 10.0, "sum": 20.0 } },
+                "genres": {
+                  "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0,
+                  "buckets": [
+                    { "key": "rock", "doc_count": 3, "avg_price": { "value": 10.0 },
+                      "price_stats": { "count": 3, "min": 5.0, "max": 15.0, "avg": 10.0, "sum": 30.0 } },
+                    { "key": "jazz", "doc_count": 1, "avg_price": { "value": 10.0 },
+                      "price_stats": { "count": 1, "min": 10.0, "max": 10.0, "avg": 10.0, "sum": 10.0 } }
+                  ]
+                }
+              }
+            }
+        """);
+        var right = read(request, """
+            {
+              "hits": { "total": { "value": 6, "relation": "eq" }, "hits": [] },
+              "aggregations": {
+                "avg_price": { "value": 20.0 },
+                "max_price": { "value": 30.0 },
+                "shirts": { "doc_count": 1, "price_stats": { "count": 1, "min": 25.0, "max": 25.0, "avg": 25.0, "sum": 25.0 } },
+                "genres": {
+                  "doc_count_error_upper_bound": 0, "sum_other_doc_count": 1,
+                  "buckets": [
+                    { "key": "pop", "doc_count": 3, "avg_price": { "value": 20.0 },
+                      "price_stats": { "count": 3, "min": 20.0, "max": 20.0, "avg": 20.0, "sum": 60.0 } },
+                    { "key": "rock", "doc_count": 2, "avg_price": { "value": 30.0 },
+                      "price_stats": { "count": 2, "min": 30.0, "max": 30.0, "avg": 30.0, "sum": 60.0 } }
+                  ]
+                }
+              }
+            }
+        """);
+
+        // When
+        var merged = new ElasticResponseMerger(request).merge(List.of(left, right));
+
+        // Then
+        assertThat(merged.getAggregation("avg_price", ElasticMetricsAggregationResponse.class).doubleValue()).isEqualTo(16.0);
+        assertThat(merged.getAggregation("max_price", ElasticMetricsAggregationResponse.class).doubleValue()).isEqualTo(30.0);
+
+        var shirts = merged.getAggregation("shirts", ElasticFilterAggregationResponse.class);
+        assertThat(shirts.docCount()).isEqualTo(3);
+        var shirtStats = shirts.getAggregation("price_stats", ElasticMetricsAggregationResponse.class);
+        assertThat(shirtStats.count()).isEqualTo(3);
+        assertThat(shirtStats.min()).isEqualTo(5.0);
+        assertThat(shirtStats.max()).isEqualTo(25.0);
+        assertThat(shirtStats.avg()).isEqualTo(15.0);
+
+        var genres = merged.getTermsBuckets("genres");
+        assertThat(genres.keys()).containsExactly("rock", "pop");
+        assertThat(genres.docCounts()).containsExactly(5, 3);
+        assertThat(genres.sumOtherDocCount()).isEqualTo(2);
+        assertThat(genres.metric("avg_price")[0]).isCloseTo(18.0, Offset.offset(1e-9));
+        assertThat(genres.metric("price_stats.count")).containsExactly(5.0, 3.0);
+        assertThat(genres.metric("price_stats.min")).containsExactly(5.0, 20.0);
+        assertThat(genres.metric("price_stats.avg")).containsExactly(18.0, 20.0);
+    }
+
+    @Test
+    void mergeTermsInTheRequestedOrder() throws JsonProcessingException {
+        // Given
+        var left = """
+            {
+              "hits": { "total": { "value": 4, "relation": "eq" }, "hits": [] },
+              "aggregations": {
+                "genres": {
+                  "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0,
+                  "buckets": [
+                    { "key": "rock", "doc_count": 3, "avg_price": { "value": 10.0 } },
+                    { "key": "jazz", "doc_count": 1, "avg_price": { "value": 10.0 } }
+                  ]
+                }
+              }
+            }
+        """;
+        var right = """
+            {
+              "hits": { "total": { "value": 5, "relation": "eq" }, "hits": [] },
+              "aggregations": {
+                "genres": {
+                  "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0,
+                  "buckets": [
+                    { "key": "pop", "doc_count": 3, "avg_price": { "value": 20.0 } },
+                    { "key": "rock", "doc_count": 2, "avg_price": { "value": 30.0 } }
+                  ]
+                }
+              }
+            }
+        """;
+        var byKey = ElasticSearchRequest.requestBuilder()
+            .aggregation("genres", termsAgg("genre", 2).withOrder("_key", OrderDirection.asc).aggregation("avg_price", avg("price")))
+            .build();
+        var byPrice = ElasticSearchRequest.requestBuilder()
+            .aggregation("genres", termsAgg("genre", 2).withOrder("avg_price", OrderDirection.desc).aggregation("avg_price", avg("price")))
+            .build();
+
+        // When
+        var mergedByKey = new ElasticResponseMerger(byKey).merge(List.of(read(byKey, left), read(byKey, right)));
+        var mergedByPrice = new ElasticResponseMerger(byPrice).merge(List.of(read(byPrice, left), read(byPrice, right)));
+
+        // Then
+        assertThat(mergedByKey.getTermsBuckets("genres").keys()).containsExactly("jazz", "pop");
+        assertThat(mergedByKey.getTermsBuckets("genres").sumOtherDocCount()).isEqualTo(5);
+        assertThat(mergedByPrice.getTermsBuckets("genres").keys()).containsExactly("pop", "rock");
+        assertThat(mergedByPrice.getTermsBuckets("genres").metric("avg_price")).containsExactly(20.0, 18.0);
+        assertThat(mergedByPrice.getTermsBuckets("genres").sumOtherDocCount()).isEqualTo(1);
+    }
+
+    private static ElasticSearchResponse<Object> read(ElasticSearchRequest request, String raw) throws JsonProcessingException {
+        return ElasticSearchResponse.reader(MAPPER, request, Object.class).readValue(raw);
+    }
+}
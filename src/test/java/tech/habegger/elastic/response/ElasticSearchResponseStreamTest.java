@@ -0,0 +1,93 @@
+package tech.habegger.elastic.response;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+
+public class ElasticSearchResponseStreamTest {
+    private static final String RAW_RESPONSE = """
+        {
+          "took": 12,
+          "timed_out": false,
+          "_shards": {
+            "total": 2,
+            "successful": 2,
+            "skipped": 0,
+            "failed": 0
+          },
+          "hits": {
+            "total": {
+              "value": 2,
+              "relation": "eq"
+            },
+            "max_score": 1.5,
+            "hits": [
+              {
+                "_index": "person",
+                "_id": "1",
+                "_score": 1.5,
+                "_source": { "firstname": "Benjamin", "birthdate": "1977-08-04", "city": "Biel" }
+              },
+              {
+                "_index": "person",
+                "_id": "2",
+                "_score": 1.0,
+                "_source": { "firstname": "Alice", "birthdate": "1980-01-01", "city": "Bern" }
+              }
+            ]
+          },
+          "aggregations": {
+            "avg_age": { "value": 44.5 }
+          }
+        }
+    """;
+
+    @Test
+    void streamsHitsAndSurfacesHeader() throws IOException {
+        // Given
+        var input = new ByteArrayInputStream(RAW_RESPONSE.getBytes(StandardCharsets.UTF_8));
+
+        // When
+        try(var actual = ElasticSearchResponseStream.open(MAPPER, input, Person.class)) {
+
+            // Then
+            assertThat(actual.getTook()).isEqualTo("12");
+            assertThat(actual.isTimedOut()).isFalse();
+            assertThat(actual.getShards().successful()).isEqualTo(2);
+            assertThat(actual.getTotalHits()).isEqualTo(2);
+            assertThat(actual.isHitCountExact()).isTrue();
+            assertThat(actual.getMaxScore()).isEqualTo(1.5);
+
+            assertThat(actual.hits().map(hit -> hit.getSource().firstname()))
+                .containsExactly("Benjamin", "Alice");
+
+            var avgAge = actual.getAggregation("avg_age", ElasticMetricsAggregationResponse.class);
+            assertThat(avgAge).isNotNull();
+            assertThat(avgAge.doubleValue()).isEqualTo(44.5);
+        }
+    }
+
+    @Test
+    void aggregationsSkipUnconsumedHits() throws IOException {
+        // Given
+        var input = RAW_RESPONSE.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        try(var actual = ElasticSearchResponseStream.open(MAPPER, input, Person.class)) {
+            var first = actual.next();
+
+            // Then
+            assertThat(first.getId()).isEqualTo("1");
+            assertThat(actual.getAggregations()).containsKey("avg_age");
+            assertThat(actual.hasNext()).isFalse();
+        }
+    }
+
+    private record Person(String firstname, String birthdate, String city) {
+    }
+}
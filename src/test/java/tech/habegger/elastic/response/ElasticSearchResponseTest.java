@@ -2,9 +2,15 @@ package tech.habegger.elastic.response;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticSearchRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static tech.habegger.elastic.TestUtils.MAPPER;
 
 public class ElasticSearchResponseTest {
@@ -57,6 +63,71 @@ public class ElasticSearchResponseTest {
         });
     }
 
+    @Test
+    void lazySourceIsBoundOnAccess() throws Exception {
+        // Given
+        var rawResponse = """
+            {"took":3,"hits":{"total":{"value":2,"relation":"eq"},"hits":[
+              {"_index":"person","_id":"1","_score":2.0,"_source":{"firstname":"Benjamin","birthdate":"1977-08-04","city":"Biel"}},
+              {"_index":"person","_id":"2","_score":1.0,"_source":{"firstname":"Zoé","city":"Bern","tags":[{"a":1}]}}
+            ]}}
+            """.getBytes(StandardCharsets.UTF_8);
+        var reader = ElasticSearchResponse.reader(MAPPER, ElasticSearchRequest.requestBuilder().build(), Person.class);
+
+        // When
+        ElasticSearchResponse<Person> actual = ElasticSourceSlice.lazy(reader, rawResponse).readValue(rawResponse);
+
+        // Then
+        var first = actual.getHits().get(0);
+        var second = actual.getHits().get(1);
+        assertThat(first.getRawSource().toString()).isEqualTo("{\"firstname\":\"Benjamin\",\"birthdate\":\"1977-08-04\",\"city\":\"Biel\"}");
+        assertThat(second.getRawSource().asNode().get("tags").get(0).get("a").asInt()).isEqualTo(1);
+        assertThat(second.getRawSource().bind(Map.class)).containsEntry("firstname", "Zoé");
+        assertThat(first.getSource()).isEqualTo(new Person("Benjamin", "1977-08-04", "Biel"));
+        assertThat(first.getSource()).isSameAs(first.getSource());
+        assertThat(second.getId()).isEqualTo("2");
+    }
+
+    @Test
+    void lazySourceOfPartialRangeReads() throws Exception {
+        // Given
+        var prefix = "garbage ";
+        var rawResponse = (prefix + """
+            {"took":3,"hits":{"total":{"value":1,"relation":"eq"},"hits":[
+              {"_index":"person","_id":"1","_score":2.0,"_source":{"firstname":"Benjamin","birthdate":"1977-08-04","city":"Biel"}}
+            ]}}
+            """).getBytes(StandardCharsets.UTF_8);
+        var reader = ElasticSearchResponse.reader(MAPPER, ElasticSearchRequest.requestBuilder().build(), Person.class);
+        var offset = prefix.length();
+        var length = rawResponse.length - offset;
+
+        // When
+        ElasticSearchResponse<Person> actual = ElasticSourceSlice.lazy(reader, rawResponse, offset).readValue(rawResponse, offset, length);
+
+        // Then
+        assertThat(actual.getHits().get(0).getRawSource().toString()).isEqualTo("{\"firstname\":\"Benjamin\",\"birthdate\":\"1977-08-04\",\"city\":\"Biel\"}");
+        assertThat(actual.getHits().get(0).getSource()).isEqualTo(new Person("Benjamin", "1977-08-04", "Biel"));
+        assertThatThrownBy(() -> ElasticSourceSlice.lazy(reader, rawResponse).readValue(rawResponse, offset, length))
+            .isInstanceOf(JsonMappingException.class);
+    }
+
+    @Test
+    void sourceIsBoundEagerlyByDefault() throws Exception {
+        // Given
+        var rawResponse = """
+            {"took":3,"hits":{"total":{"value":1,"relation":"eq"},"hits":[
+              {"_index":"person","_id":"1","_score":2.0,"_source":{"firstname":"Benjamin","birthdate":"1977-08-04","city":"Biel"}}
+            ]}}
+            """.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        ElasticSearchResponse<Person> actual = ElasticSearchResponse.reader(MAPPER, ElasticSearchRequest.requestBuilder().build(), Person.class).readValue(rawResponse);
+
+        // Then
+        assertThat(actual.getHits().get(0).getRawSource()).isNull();
+        assertThat(actual.getHits().get(0).getSource()).isEqualTo(new Person("Benjamin", "1977-08-04", "Biel"));
+    }
+
     private record Person(String firstname, String birthdate, String city) {
     }
 }
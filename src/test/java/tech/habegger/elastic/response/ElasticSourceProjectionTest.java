@@ -0,0 +1,86 @@
+package tech.habegger.elastic.response;
+
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.shared.SourceSpec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+
+public class ElasticSourceProjectionTest {
+    private static final String RESPONSE = """
+        {
+          "took": 5,
+          "hits": {
+            "total": { "value": 1234, "relation": "eq" },
+            "max_score": 2.5,
+            "hits": [
+              { "_index": "products", "_id": "a", "_score": 2.5, "_source": { "price": 12.5, "user": { "id": 7, "name": "Ann" }, "tags": ["red", "big"], "ignored": { "deep": [1, 2, 3] } } },
+              { "_index": "products", "_id": "b", "_score": 1.0, "_source": { "user.id": "8", "tags": "small" } },
+              { "_index": "products", "_id": "c", "_score": null, "_source": { "price": 3, "user": null, "tags": [] } }
+            ]
+          },
+          "aggregations": { "avg_price": { "value": 7.75 } }
+        }
+        """;
+
+    private final ElasticSourceProjection projection = ElasticSourceProjection.builder()
+        .withDouble("price")
+        .withLong("user.id")
+        .withString("user.name")
+        .withString("tags[]")
+        .build();
+
+    @Test
+    void projectSourceFieldsIntoColumns() throws Exception {
+        // When
+        var hits = projection.read(MAPPER, RESPONSE.getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertThat(hits.size()).isEqualTo(3);
+        assertThat(hits.getTotalHits()).isEqualTo(1234);
+        assertThat(hits.ids()).containsExactly("a", "b", "c");
+        assertThat(hits.scores()).containsExactly(2.5, 1.0, Double.NaN);
+        assertThat(hits.doubles("price")).containsExactly(12.5, Double.NaN, 3.0);
+        assertThat(hits.longs("user.id")).containsExactly(7, 8, 0);
+        assertThat(hits.isPresent("user.id", 2)).isFalse();
+        assertThat(hits.strings("user.name")).containsExactly("Ann", null, null);
+        assertThat(hits.strings("tags[]")).containsExactly("red", "big", "small");
+        assertThat(hits.offsets("tags[]")).containsExactly(0, 2, 3, 3);
+        assertThat(hits.isPresent("tags[]", 2)).isFalse();
+    }
+
+    @Test
+    void growColumnsBeyondInitialCapacity() throws Exception {
+        // Given
+        var hitsJson = new StringBuilder();
+        for(int i = 0; i < 100; i++) {
+            hitsJson.append(i == 0 ? "" : ",").append("{\"_id\":\"%d\",\"_source\":{\"user\":{\"id\":%d},\"tags\":[\"t%d\",\"u%d\"]}}".formatted(i, i, i, i));
+        }
+        var response = "{\"hits\":{\"hits\":[" + hitsJson + "]}}";
+
+        // When
+        var hits = projection.read(MAPPER, response.getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertThat(hits.size()).isEqualTo(100);
+        assertThat(hits.longs("user.id")[99]).isEqualTo(99);
+        assertThat(hits.strings("tags[]")).hasSize(200).endsWith("t99", "u99");
+        assertThat(hits.offsets("tags[]")[100]).isEqualTo(200);
+    }
+
+    @Test
+    void rejectUnknownPathsAndTypeMismatches() throws Exception {
+        // Given
+        var hits = projection.read(MAPPER, RESPONSE.getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertThatThrownBy(() -> hits.longs("price")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> hits.strings("missing")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ElasticSourceProjection.builder().withLong("a.b").withString("a.b[]")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(projection.sourceSpec()).isEqualTo(new SourceSpec(List.of("price", "user.id", "user.name", "tags"), null));
+    }
+}
@@ -0,0 +1,107 @@
+package tech.habegger.elastic.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.mapping.ElasticFieldProperty.keywordField;
+import static tech.habegger.elastic.search.ElasticMatchClause.match;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+class ElasticBuilderPoolTest {
+    private static final ElasticRequestWriter WRITER = new ElasticRequestWriter(MAPPER);
+
+    @Test
+    void reuseBuildersAndBufferAcrossLeases() throws IOException {
+        // Given
+        var expected = ElasticSearchRequest.requestBuilder()
+            .withQuery(ElasticBooleanClause.newBool()
+                .must(match("title", "phone"))
+                .filter(ElasticBooleanClause.newBool().should(term("brand", "acme")).should(term("brand", "globex")).build())
+                .build())
+            .withSize(20)
+            .aggregation("brands", termsAgg("brand"))
+            .build();
+        String first;
+        ElasticSearchRequest.Builder firstBuilder;
+        byte[] firstBuffer;
+
+        // When
+        try(var lease = ElasticBuilderPool.acquire()) {
+            firstBuilder = lease.request();
+            var request = build(lease);
+            var output = lease.write(WRITER, request);
+            first = new String(output.buffer(), 0, output.size(), StandardCharsets.UTF_8);
+            firstBuffer = output.buffer();
+        }
+        try(var lease = ElasticBuilderPool.acquire()) {
+            var request = build(lease);
+            var output = lease.write(WRITER, request);
+
+            // Then
+            assertThat(lease.request()).isSameAs(firstBuilder);
+            assertThat(output.buffer()).isSameAs(firstBuffer);
+            assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(first);
+        }
+        assertThat(first).isEqualTo(new String(WRITER.writeAsBytes(expected), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void giveFreshLeasesWhileTheThreadOneIsOpen() {
+        try(var outer = ElasticBuilderPool.acquire()) {
+            outer.request().withQuery(range("price", 10, 20)).withSize(5);
+            try(var inner = ElasticBuilderPool.acquire()) {
+                assertThat(outer.isPooled()).isTrue();
+                assertThat(inner.isPooled()).isFalse();
+                assertThat(inner.request()).isNotSameAs(outer.request());
+                assertThat(inner.request().build().query()).isNull();
+            }
+            assertThat(outer.request().build().size()).isEqualTo(5);
+        }
+        try(var lease = ElasticBuilderPool.acquire()) {
+            assertThat(lease.isPooled()).isTrue();
+            assertThat(lease.request().build().size()).isNull();
+            assertThat(lease.bool().isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void keepRequestsBuiltFromClosedLeases() throws IOException {
+        // Given
+        ElasticSearchRequest request;
+        String serialized;
+        try(var lease = ElasticBuilderPool.acquire()) {
+            request = build(lease.request().withField("title").withRuntimeMapping("day", keywordField().build()), lease);
+            serialized = MAPPER.writeValueAsString(request);
+        }
+
+        // When
+        try(var lease = ElasticBuilderPool.acquire()) {
+            build(lease.request().withField("brand"), lease);
+        }
+
+        // Then
+        assertThat(MAPPER.writeValueAsString(request)).isEqualTo(serialized);
+        assertThat(request.aggregations()).containsOnlyKeys("brands");
+        assertThat(request.fields()).hasSize(1);
+        assertThat(request.runtimeMappings()).containsOnlyKeys("day");
+    }
+
+    private static ElasticSearchRequest build(ElasticBuilderPool.Lease lease) {
+        return build(lease.request(), lease);
+    }
+
+    private static ElasticSearchRequest build(ElasticSearchRequest.Builder builder, ElasticBuilderPool.Lease lease) {
+        var brands = lease.bool().should(term("brand", "acme")).should(term("brand", "globex")).build();
+        return builder
+            .withQuery(lease.bool().must(match("title", "phone")).filter(brands).build())
+            .withSize(20)
+            .aggregation("brands", termsAgg("brand"))
+            .build();
+    }
+}
@@ -0,0 +1,91 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.search.ElasticKnn.knn;
+
+public class ElasticKnnVectorTest {
+    private static final ObjectMapper COMPACT_MAPPER = new ObjectMapper();
+
+    @Test
+    void formatFloatsWithShortestRoundTrip() {
+        // Given
+        var random = new Random(42);
+        var buffer = new char[FloatFormatter.MAX_CHARS];
+        var samples = new float[] { 0.0f, -0.0f, 1.0f, 0.1f, 1.0f / 3, 100.0f, 1.0e7f, 9999999.0f, 0.001f, 0.00099f, -2.5e-8f, Float.MAX_VALUE, 123456.79f };
+
+        // Then
+        for(var value : samples) {
+            var length = FloatFormatter.format(value, buffer, 0);
+            assertThat(new String(buffer, 0, length)).isEqualTo(Float.toString(value));
+        }
+        // Unlike Float.toString, a single digit is enough when it round-trips
+        assertThat(new String(buffer, 0, FloatFormatter.format(Float.MIN_VALUE, buffer, 0))).isEqualTo("1.0E-45");
+        for(int i = 0; i < 5_000; i++) {
+            var value = Float.intBitsToFloat(random.nextInt());
+            var length = FloatFormatter.format(value, buffer, 0);
+            if(Float.isFinite(value)) {
+                assertThat(Float.parseFloat(new String(buffer, 0, length))).isEqualTo(value);
+                assertThat(length).isLessThanOrEqualTo(Float.toString(value).length());
+            } else {
+                assertThat(length).isEqualTo(-1);
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void keepTheFloatArrayComponentApi() throws Exception {
+        // Given
+        var values = new float[] { 0.5f, -1.0f };
+
+        // When
+        var actual = new ElasticKnn("v", values, 1, 10, null);
+
+        // Then
+        assertThat(actual.query_vector()).containsExactly(0.5f, -1.0f);
+        assertThat(COMPACT_MAPPER.writeValueAsString(actual)).isEqualTo("{\"field\":\"v\",\"query_vector\":[0.5,-1.0],\"k\":1,\"num_candidates\":10}");
+        assertThat(knn("v", ElasticKnnVector.hex(new byte[] { 1 }), 1, 10, null).query_vector()).isNull();
+    }
+
+    @Test
+    void writeEncodedVectors() throws Exception {
+        // Given
+        var base64 = ElasticKnnVector.base64(new float[] { 1.0f, -2.0f });
+        var hex = ElasticKnnVector.hex(new byte[] { 0, 127, -128, -1 });
+
+        // When
+        var base64Json = COMPACT_MAPPER.writeValueAsString(knn("v", base64, 1, 10, null));
+        var hexJson = COMPACT_MAPPER.writeValueAsString(knn("v", hex, 1, 10, null));
+
+        // Then
+        assertThat(base64Json).isEqualTo("{\"field\":\"v\",\"query_vector\":\"P4AAAMAAAAA=\",\"k\":1,\"num_candidates\":10}");
+        assertThat(hexJson).isEqualTo("{\"field\":\"v\",\"query_vector\":\"007f80ff\",\"k\":1,\"num_candidates\":10}");
+    }
+
+    @Test
+    void reusePreEncodedVectorAcrossRequests() throws Exception {
+        // Given
+        var vector = ElasticKnnVector.floats(new float[] { 0.25f, 1.0f / 3, 1.0e-5f, Float.NaN }).encode();
+        var shared = ElasticKnnVector.floats(new float[] { 0.25f, 1.0f / 3, 1.0e-5f }).encode();
+        var writer = new ElasticRequestWriter(COMPACT_MAPPER);
+
+        // When
+        var first = new String(writer.writeAsBytes(ElasticSearchRequest.requestBuilder().withKnn(knn("a", shared, 5, 50, null)).build()));
+        var second = new String(writer.writeAsBytes(ElasticSearchRequest.requestBuilder().withKnn(knn("b", shared, 5, 50, null)).build()));
+        var indented = MAPPER.writeValueAsString(knn("a", shared, 5, 50, null));
+        var nonFinite = COMPACT_MAPPER.writeValueAsString(knn("a", vector, 5, 50, null));
+
+        // Then
+        assertThat(first).isEqualTo("{\"knn\":{\"field\":\"a\",\"query_vector\":[0.25,0.33333334,1.0E-5],\"k\":5,\"num_candidates\":50}}");
+        assertThat(second).contains("\"query_vector\":[0.25,0.33333334,1.0E-5]");
+        assertThat(indented).isEqualToIgnoringWhitespace("{\"field\":\"a\",\"query_vector\":[0.25,0.33333334,1.0E-5],\"k\":5,\"num_candidates\":50}");
+        assertThat(nonFinite).contains("\"query_vector\":[0.25,0.33333334,1.0E-5,\"NaN\"]");
+        assertThat(ElasticRequestFingerprint.of(shared)).isEqualTo(ElasticRequestFingerprint.of(ElasticKnnVector.floats(new float[] { 0.25f, 1.0f / 3, 1.0e-5f })));
+    }
+}
@@ -0,0 +1,152 @@
+package tech.habegger.elastic.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticExistsClause.exists;
+import static tech.habegger.elastic.search.ElasticIdsClause.ids;
+import static tech.habegger.elastic.search.ElasticMatchClause.match;
+import static tech.habegger.elastic.search.ElasticPrefixClause.prefix;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticTermsClause.terms;
+import static tech.habegger.elastic.search.ElasticWildcardClause.wildcard;
+
+class ElasticLocalMatcherTest {
+    private static final Map<String, Object> ORDER = Map.of(
+        "_id", "o-1",
+        "status", "shipped",
+        "amount", 120,
+        "price", 9.5,
+        "created", "2024-03-15T10:00:00Z",
+        "tags", List.of("gift", "express"),
+        "customer", Map.of("name", "Benjamin", "country", "CH"),
+        "lines", List.of(Map.of("sku", "A-100", "quantity", 2), Map.of("sku", "B-200", "quantity", 1)),
+        "shipping.carrier", "postal"
+    );
+
+    @Test
+    void matchTermLevelClausesOnMaps() {
+        assertThat(matches(term("status", "shipped"))).isTrue();
+        assertThat(matches(term("status", "pending"))).isFalse();
+        assertThat(matches(term("amount", "120"))).isTrue();
+        assertThat(matches(term("tags", "express"))).isTrue();
+        assertThat(matches(term("customer.country", "CH"))).isTrue();
+        assertThat(matches(term("lines.sku", "B-200"))).isTrue();
+        assertThat(matches(term("shipping.carrier", "postal"))).isTrue();
+        assertThat(matches(terms("status", "pending", "shipped"))).isTrue();
+        assertThat(matches(terms("lines.quantity", "3", "1"))).isTrue();
+        assertThat(matches(terms("amount", "1", "2"))).isFalse();
+        assertThat(matches(range("amount", 100, 200))).isTrue();
+        assertThat(matches(range("price", "9.6", null))).isFalse();
+        assertThat(matches(range("created", LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 15)))).isTrue();
+        assertThat(matches(range("created", Instant.parse("2024-03-16T00:00:00Z"), null))).isFalse();
+        assertThat(matches(range("status", "a", "t"))).isTrue();
+        assertThat(matches(exists("customer.name"))).isTrue();
+        assertThat(matches(exists("customer.email"))).isFalse();
+        assertThat(matches(prefix("lines.sku", "B-"))).isTrue();
+        assertThat(matches(wildcard("customer.name", "ben*m?n"))).isFalse();
+        assertThat(matches(wildcard("customer.name", "ben*m?n").withoutCaseSensitivity())).isTrue();
+        assertThat(matches(wildcard("status", "*pp*"))).isTrue();
+        assertThat(matches(ids("o-2", "o-1"))).isTrue();
+    }
+
+    @Test
+    void matchBooleanClauses() {
+        // Given
+        var query = newBool()
+            .filter(terms("status", "shipped", "delivered"))
+            .mustNot(term("customer.country", "FR"))
+            .should(term("tags", "gift"))
+            .should(range("amount", 1000, null))
+            .minimumShouldMatch(1)
+            .build();
+        var other = Map.<String, Object>of("status", "shipped", "amount", 50, "customer", Map.of("country", "FR"));
+
+        // When
+        var matcher = ElasticLocalMatcher.compile(query);
+
+        // Then
+        assertThat(matcher.test(ORDER)).isTrue();
+        assertThat(matcher.test(other)).isFalse();
+        assertThat(ElasticLocalMatcher.compile(newBool().should(term("status", "pending")).should(term("tags", "gift")).build()).test(ORDER)).isTrue();
+        assertThat(ElasticLocalMatcher.compile(newBool().must(exists("status")).should(term("status", "pending")).build()).test(ORDER)).isTrue();
+        assertThat(ElasticLocalMatcher.compile(newBool().should(term("status", "pending")).should(term("tags", "gift")).minimumShouldMatch(2).build()).test(ORDER)).isFalse();
+    }
+
+    @Test
+    void matchRecordsAndObjects() {
+        // Given
+        var query = newBool()
+            .filter(term("status", "OPEN"))
+            .filter(range("opened", LocalDate.of(2024, 1, 1), null))
+            .filter(term("owner.active", "true"))
+            .filter(ids("t-1"))
+            .build();
+        var owner = new Owner("ben", true);
+
+        // When
+        var matcher = ElasticLocalMatcher.compile(query, Ticket.class, Ticket::id);
+
+        // Then
+        assertThat(matcher.test(new Ticket("t-1", Status.OPEN, Instant.parse("2024-02-01T00:00:00Z"), owner))).isTrue();
+        assertThat(matcher.test(new Ticket("t-1", Status.CLOSED, Instant.parse("2024-02-01T00:00:00Z"), owner))).isFalse();
+        assertThat(matcher.test(new Ticket("t-1", Status.OPEN, Instant.parse("2023-12-31T23:59:59Z"), owner))).isFalse();
+        assertThat(matcher.test(new Ticket("t-1", Status.OPEN, Instant.parse("2024-02-01T00:00:00Z"), null))).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void readIdsOfTypedMapsFromTheirIdKey() {
+        // Given
+        var matcher = ElasticLocalMatcher.compile(newBool().filter(ids("o-1")).filter(term("status", "shipped")).build(), HashMap.class);
+
+        // Then
+        assertThat(matcher.test(new HashMap<>(ORDER))).isTrue();
+        assertThat(matcher.test(new HashMap<>(Map.of("_id", "o-2", "status", "shipped")))).isFalse();
+    }
+
+    @Test
+    void rejectClausesThatCannotBeEvaluatedLocally() {
+        assertThatThrownBy(() -> ElasticLocalMatcher.compile(match("title", "search")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("ElasticMatchClause");
+        assertThatThrownBy(() -> ElasticLocalMatcher.compile(range("created", "now-1d", null)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("now-1d");
+        assertThatThrownBy(() -> ElasticLocalMatcher.compile(term("staus", "OPEN"), Ticket.class))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("staus");
+    }
+
+    private static boolean matches(ElasticSearchClause clause) {
+        return ElasticLocalMatcher.compile(clause).test(ORDER);
+    }
+
+    enum Status { OPEN, CLOSED }
+
+    record Ticket(String id, Status status, Instant opened, Owner owner) {
+    }
+
+    static class Owner {
+        private final String name;
+        private final boolean active;
+
+        Owner(String name, boolean active) {
+            this.name = name;
+            this.active = active;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
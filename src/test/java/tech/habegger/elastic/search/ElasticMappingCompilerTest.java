@@ -0,0 +1,185 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.search.ElasticMappingCompiler.ChangeKind;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticCardinalityAggregation.cardinality;
+import static tech.habegger.elastic.aggregation.ElasticNestedAggregation.nestedAgg;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.mapping.ElasticFieldProperty.doubleField;
+import static tech.habegger.elastic.mapping.ElasticFieldProperty.integerField;
+import static tech.habegger.elastic.mapping.ElasticFieldProperty.keywordField;
+import static tech.habegger.elastic.mapping.ElasticFieldProperty.textField;
+import static tech.habegger.elastic.mapping.ElasticMappingsDefinition.mappings;
+import static tech.habegger.elastic.mapping.ElasticObjectProperty.nestedObjectProperty;
+import static tech.habegger.elastic.mapping.ElasticObjectProperty.objectProperty;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticExistsClause.exists;
+import static tech.habegger.elastic.search.ElasticMatchClause.match;
+import static tech.habegger.elastic.search.ElasticNestedClause.nested;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticTermsClause.terms;
+
+class ElasticMappingCompilerTest {
+    private static final ElasticMappingCompiler COMPILER = new ElasticMappingCompiler(mappings()
+        .withProperty("title", textField().withField("raw", keywordField().build()).build())
+        .withProperty("description", textField().build())
+        .withProperty("brand", keywordField().build())
+        .withProperty("price", doubleField().build())
+        .withProperty("seller", objectProperty()
+            .withProperty("name", keywordField().build())
+            .build())
+        .withProperty("reviews", nestedObjectProperty()
+            .withProperty("author", keywordField().build())
+            .withProperty("stars", integerField().build())
+            .withProperty("replies", nestedObjectProperty()
+                .withProperty("text", textField().build())
+                .build())
+            .build())
+        .build());
+
+    @Test
+    void useKeywordSubFieldsAndTermsOnKeywordFields() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool()
+                .must(match("description", "wireless"))
+                .filter(term("title", "Phone X"))
+                .filter(terms("title", "Phone X", "Phone Y"))
+                .filter(match("brand", "acme"))
+                .filter(term("seller.name", "shop"))
+                .build())
+            .aggregation("brands", termsAgg("brand").aggregation("titles", cardinality("title")))
+            .aggregation("titles", termsAgg("title", 20))
+            .build();
+
+        // When
+        var actual = COMPILER.compile(request);
+
+        // Then
+        assertThat(actual.changes()).extracting(ElasticMappingCompiler.Change::kind).containsExactlyInAnyOrder(
+            ChangeKind.KEYWORD_SUB_FIELD,
+            ChangeKind.KEYWORD_SUB_FIELD,
+            ChangeKind.MATCH_TO_TERM,
+            ChangeKind.KEYWORD_SUB_FIELD,
+            ChangeKind.KEYWORD_SUB_FIELD
+        );
+        var json = MAPPER.readTree(MAPPER.writeValueAsString(actual.value()));
+        assertThat(json.at("/query/bool/must/0/match/description").asText()).isEqualTo("wireless");
+        assertThat(json.at("/query/bool/filter/0/term/title.raw").asText()).isEqualTo("Phone X");
+        assertThat(json.at("/query/bool/filter/1/terms/title.raw/1").asText()).isEqualTo("Phone Y");
+        assertThat(json.at("/query/bool/filter/2/term/brand").asText()).isEqualTo("acme");
+        assertThat(json.at("/query/bool/filter/3/term/seller.name").asText()).isEqualTo("shop");
+        assertThat(json.at("/aggregations/brands/aggregations/titles/cardinality/field").asText()).isEqualTo("title.raw");
+        assertThat(json.at("/aggregations/titles/terms/field").asText()).isEqualTo("title.raw");
+        assertThat(json.at("/aggregations/titles/terms/size").asInt()).isEqualTo(20);
+        assertThat(request.aggregations().get("titles")).isInstanceOfSatisfying(ElasticTermsAggregation.class, terms ->
+            assertThat(terms.field()).isEqualTo("title")
+        );
+    }
+
+    @Test
+    void wrapClausesOnNestedFields() throws JsonProcessingException {
+        // Given
+        var request = ElasticSearchRequest.query(newBool()
+            .filter(term("reviews.stars", "5"))
+            .filter(nested("reviews", newBool()
+                .filter(term("reviews.author", "bob"))
+                .filter(match("reviews.replies.text", "thanks"))
+                .build()))
+            .filter(nested("reviews.replies", match("reviews.replies.text", "agreed")))
+            .build());
+
+        // When
+        var actual = COMPILER.compile(request);
+
+        // Then
+        assertThat(actual.changes()).extracting(ElasticMappingCompiler.Change::kind)
+            .containsOnly(ChangeKind.WRAPPED_IN_NESTED)
+            .hasSize(3);
+        assertThat(MAPPER.writeValueAsString(actual.value())).isEqualToIgnoringWhitespace("""
+            {
+              "query": {
+                "bool": {
+                  "filter": [
+                    { "nested": { "path": "reviews", "query": { "term": { "reviews.stars": "5" } } } },
+                    { "nested": { "path": "reviews", "query": { "bool": { "filter": [
+                      { "term": { "reviews.author": "bob" } },
+                      { "nested": { "path": "reviews.replies", "query": { "match": { "reviews.replies.text": "thanks" } } } }
+                    ] } } } },
+                    { "nested": { "path": "reviews", "query":
+                      { "nested": { "path": "reviews.replies", "query": { "match": { "reviews.replies.text": "agreed" } } } }
+                    } }
+                  ]
+                }
+              }
+            }
+            """);
+    }
+
+    @Test
+    void leaveMatchingRequestsUnchanged() {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool().must(match("title", "phone")).filter(range("price", 10, 20)).build())
+            .aggregation("reviews", nestedAgg("reviews").aggregation("authors", termsAgg("reviews.author")))
+            .build();
+
+        // When
+        var actual = COMPILER.compile(request);
+
+        // Then
+        assertThat(actual.isChanged()).isFalse();
+        assertThat(actual.value()).isSameAs(request);
+    }
+
+    @Test
+    void acceptMetadataFields() {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool()
+                .filter(term("_id", "42"))
+                .filter(exists("_routing"))
+                .filter(match("_index", "products"))
+                .filter(range("_seq_no", 10, 20))
+                .build())
+            .aggregation("indices", termsAgg("_index"))
+            .build();
+
+        // When
+        var actual = COMPILER.compile(request);
+
+        // Then
+        assertThat(actual.isChanged()).isFalse();
+        assertThat(actual.value()).isSameAs(request);
+    }
+
+    @Test
+    void rejectRequestsNotFittingTheMappings() {
+        // Given
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool()
+                .filter(term("colour", "red"))
+                .filter(term("description", "wireless"))
+                .filter(term("price", "cheap"))
+                .filter(nested("seller", term("seller.name", "shop")))
+                .build())
+            .aggregation("authors", termsAgg("reviews.author"))
+            .build();
+
+        // When / Then
+        assertThatThrownBy(() -> COMPILER.compile(request))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown field colour at query.bool.filter[0]")
+            .hasMessageContaining("term on text field description at query.bool.filter[1] has no keyword sub-field")
+            .hasMessageContaining("Value cheap of term at query.bool.filter[2] is not a valid double")
+            .hasMessageContaining("Path seller of the nested clause at query.bool.filter[3] is not a nested object")
+            .hasMessageContaining("within a nested aggregation on reviews");
+    }
+}
@@ -0,0 +1,211 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator.Action;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator.Rule;
+import tech.habegger.elastic.search.ElasticQueryCostEstimator.Violation;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticFilterAggregation.filter;
+import static tech.habegger.elastic.aggregation.ElasticFiltersAggregation.newFilters;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticBoostingClause.boosting;
+import static tech.habegger.elastic.search.ElasticDisMaxClause.disMax;
+import static tech.habegger.elastic.search.ElasticFunctionScoreClause.newFunctionScore;
+import static tech.habegger.elastic.search.ElasticKnn.knn;
+import static tech.habegger.elastic.search.ElasticNestedClause.nested;
+import static tech.habegger.elastic.search.ElasticPinnedClause.newPinned;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticRegexpClause.regexp;
+import static tech.habegger.elastic.search.ElasticScriptScoreClause.scriptScore;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticTermsClause.terms;
+import static tech.habegger.elastic.search.ElasticWildcardClause.wildcard;
+import static tech.habegger.elastic.shared.ScriptExpression.scriptInline;
+
+class ElasticQueryCostEstimatorTest {
+    @Test
+    void estimateCostPerClause() {
+        // Given
+        var estimator = ElasticQueryCostEstimator.builder().build();
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool()
+                .filter(term("tenant", "acme"))
+                .filter(range("price", 10, 20))
+                .must(wildcard("name", "*phone"))
+                .filter(nested("reviews", term("reviews.stars", "5")))
+                .build())
+            .aggregation("brands", termsAgg("brand", 100).aggregation("avg_price", avg("price")))
+            .build();
+
+        // When
+        var actual = estimator.estimate(request);
+
+        // Then
+        assertThat(actual.clauses()).extracting(ElasticQueryCostEstimator.ClauseCost::path, ElasticQueryCostEstimator.ClauseCost::cost)
+            .containsExactly(
+                tuple("query.bool.must[0].wildcard(name)", 100.0),
+                tuple("query.bool.filter[0]", 1.0),
+                tuple("query.bool.filter[1]", 2.0),
+                tuple("query.bool.filter[2].nested(reviews)", 1.0),
+                tuple("query.bool.filter[2].nested(reviews).query", 2.0),
+                tuple("aggregations.brands", 1.0),
+                tuple("aggregations.brands.aggregations.avg_price", 100.0)
+            );
+        assertThat(actual.clauses().get(1).type()).isEqualTo("term");
+        assertThat(actual.score()).isEqualTo(207.0);
+        assertThat(actual.isViolated()).isFalse();
+    }
+
+    @Test
+    void rejectViolatingRequests() {
+        // Given
+        var estimator = ElasticQueryCostEstimator.builder()
+            .withPolicy(Rule.LEADING_WILDCARD, Action.REJECT)
+            .withPolicy(Rule.LARGE_TERMS, Action.REJECT)
+            .withPolicy(Rule.DEEP_NESTING, Action.REJECT)
+            .withMaxTermsValues(1_000)
+            .withMaxNestedDepth(1)
+            .build();
+        var manyIds = IntStream.range(0, 60_000).mapToObj(Integer::toString).toArray(String[]::new);
+
+        // When / Then
+        assertThatThrownBy(() -> estimator.enforce(ElasticSearchRequest.query(wildcard("name", "?hone"))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("LEADING_WILDCARD at query.wildcard(name)");
+        assertThatThrownBy(() -> estimator.enforce(ElasticSearchRequest.query(terms("id", manyIds))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("60000 terms");
+        assertThatThrownBy(() -> estimator.enforce(ElasticSearchRequest.query(nested("a", nested("a.b", term("a.b.c", "x"))))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("DEEP_NESTING at query.nested(a).query.nested(a.b)");
+        var allowed = ElasticSearchRequest.query(nested("a", wildcard("a.name", "phone*")));
+        assertThat(estimator.enforce(allowed)).isSameAs(allowed);
+    }
+
+    @Test
+    void rewriteUnboundedRegexpAndOversizedTermsAggregation() throws JsonProcessingException {
+        // Given
+        var estimator = ElasticQueryCostEstimator.builder()
+            .withPolicy(Rule.UNBOUNDED_REGEXP, Action.REWRITE)
+            .withPolicy(Rule.LARGE_AGGREGATION, Action.REWRITE)
+            .withMaxAggregationSize(500)
+            .withMaxDeterminizedStates(2_000)
+            .build();
+        var request = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool().filter(regexp("sku", ".*-42")).filter(regexp("code", "ab.*")).build())
+            .aggregation("skus", termsAgg("sku", 100_000))
+            .build();
+
+        // When
+        var actual = estimator.enforce(request);
+
+        // Then
+        var json = MAPPER.readTree(MAPPER.writeValueAsString(actual));
+        assertThat(json.at("/query/bool/filter/0/regexp/sku/max_determinized_states").asInt()).isEqualTo(2_000);
+        assertThat(json.at("/query/bool/filter/1/regexp/code/max_determinized_states").isMissingNode()).isTrue();
+        assertThat(json.at("/aggregations/skus/terms/size").asInt()).isEqualTo(500);
+        assertThat(request.aggregations().get("skus")).isInstanceOfSatisfying(ElasticTermsAggregation.class, terms ->
+            assertThat(terms.size()).isEqualTo(100_000)
+        );
+    }
+
+    @Test
+    void rejectNestedAggregationsWhichCannotBeRewrittenAndReportWarnings() {
+        // Given
+        var warnings = new ArrayList<Violation>();
+        var estimator = ElasticQueryCostEstimator.builder()
+            .withPolicy(Rule.LARGE_AGGREGATION, Action.REWRITE)
+            .withPolicy(Rule.LEADING_WILDCARD, Action.WARN)
+            .withMaxAggregationSize(500)
+            .onWarning(warnings::add)
+            .build();
+        var nestedTerms = ElasticSearchRequest.requestBuilder()
+            .aggregation("brands", termsAgg("brand", 10).aggregation("skus", termsAgg("sku", 100_000)))
+            .build();
+
+        // When
+        var actual = estimator.enforce(ElasticSearchRequest.query(wildcard("name", "*phone")));
+
+        // Then
+        assertThat(actual).isNotNull();
+        assertThat(warnings).extracting(Violation::rule).containsExactly(Rule.LEADING_WILDCARD);
+        assertThatThrownBy(() -> estimator.enforce(nestedTerms))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("aggregations.brands.aggregations.skus");
+        assertThatThrownBy(() -> ElasticQueryCostEstimator.builder().withPolicy(Rule.LARGE_TERMS, Action.REWRITE))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void inspectClausesOfFilterAggregations() throws JsonProcessingException {
+        // Given
+        var estimator = ElasticQueryCostEstimator.builder()
+            .withPolicy(Rule.LEADING_WILDCARD, Action.REJECT)
+            .withPolicy(Rule.LARGE_TERMS, Action.REJECT)
+            .withPolicy(Rule.UNBOUNDED_REGEXP, Action.REWRITE)
+            .withMaxTermsValues(100)
+            .withMaxDeterminizedStates(2_000)
+            .build();
+        var rejected = ElasticSearchRequest.requestBuilder()
+            .aggregation("phones", filter(wildcard("name", "*phone")))
+            .aggregation("brands", termsAgg("brand").aggregation("skus", newFilters()
+                .filter("listed", terms("sku", IntStream.range(0, 1_000).mapToObj(String::valueOf).toArray(String[]::new)))
+                .build()))
+            .build();
+        var rewritten = ElasticSearchRequest.requestBuilder()
+            .aggregation("brands", termsAgg("brand").aggregation("skus", filter(regexp("sku", ".*-42")).aggregation("avg_price", avg("price"))))
+            .build();
+
+        // When
+        var actual = estimator.enforce(rewritten);
+
+        // Then
+        var json = MAPPER.readTree(MAPPER.writeValueAsString(actual));
+        assertThat(json.at("/aggregations/brands/aggregations/skus/filter/regexp/sku/max_determinized_states").asInt()).isEqualTo(2_000);
+        assertThat(json.at("/aggregations/brands/aggregations/skus/aggregations/avg_price/avg/field").asText()).isEqualTo("price");
+        assertThat(MAPPER.writeValueAsString(rewritten)).doesNotContain("max_determinized_states");
+        assertThatThrownBy(() -> estimator.enforce(rejected))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("aggregations.phones.filter.wildcard(name)")
+            .hasMessageContaining("aggregations.brands.aggregations.skus.filters.listed.terms(sku)");
+    }
+
+    @Test
+    void inspectClausesWrappedInCompoundQueriesAndKnnFilters() throws JsonProcessingException {
+        // Given
+        var estimator = ElasticQueryCostEstimator.builder()
+            .withPolicy(Rule.LEADING_WILDCARD, Action.REJECT)
+            .withPolicy(Rule.UNBOUNDED_REGEXP, Action.REWRITE)
+            .build();
+        var leading = wildcard("user", "*x");
+        var wrapped = Map.of(
+            "query.dis_max.queries[1]", ElasticSearchRequest.query(disMax(null, term("a", "b"), leading)),
+            "query.boosting.negative", ElasticSearchRequest.query(boosting(term("a", "b"), leading, 0.5f)),
+            "query.function_score.functions[0].filter", ElasticSearchRequest.query(newFunctionScore(term("a", "b")).function(leading, 2).build()),
+            "query.script_score.query", ElasticSearchRequest.query(scriptScore(leading, scriptInline("_score * 2"))),
+            "query.pinned.organic", ElasticSearchRequest.query(newPinned(leading).pin("1").build()),
+            "knn.filter", ElasticSearchRequest.requestBuilder().withKnn(knn("vector", new float[] { 1, 0 }, 10, 100, leading)).build()
+        );
+
+        // When / Then
+        wrapped.forEach((path, request) -> assertThatThrownBy(() -> estimator.enforce(request))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("LEADING_WILDCARD at %s.wildcard(user)".formatted(path))
+        );
+        var rewritten = estimator.enforce(ElasticSearchRequest.query(disMax(null, term("a", "b"), regexp("sku", ".*-42"))));
+        var json = MAPPER.readTree(MAPPER.writeValueAsString(rewritten));
+        assertThat(json.at("/query/dis_max/queries/1/regexp/sku/max_determinized_states").asInt()).isEqualTo(1_000);
+    }
+}
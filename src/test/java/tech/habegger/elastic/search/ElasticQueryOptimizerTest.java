@@ -0,0 +1,138 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import tech.habegger.elastic.search.ElasticQueryOptimizer.ChangeKind;
+import tech.habegger.elastic.shared.SortSpec;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticExistsClause.exists;
+import static tech.habegger.elastic.search.ElasticMatchClause.match;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+class ElasticQueryOptimizerTest {
+    private static final ElasticQueryOptimizer OPTIMIZER = new ElasticQueryOptimizer(MAPPER);
+
+    @Test
+    void flattenNestedBoolsAndDeduplicateFilters() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.query(
+            newBool()
+                .must(newBool().must(match("title", "search")).build())
+                .filter(newBool().filter(term("tenant", "acme")).mustNot(exists("deleted")).build())
+                .filter(term("tenant", "acme"))
+                .build()
+        );
+
+        // When
+        var actual = OPTIMIZER.optimize(query);
+
+        // Then
+        assertThat(actual.changes()).extracting(ElasticQueryOptimizer.Change::kind)
+            .containsExactly(ChangeKind.FLATTENED_BOOL, ChangeKind.FLATTENED_BOOL, ChangeKind.DEDUPLICATED_CLAUSE);
+        assertThat(MAPPER.writeValueAsString(actual.value())).isEqualToIgnoringWhitespace("""
+            {
+              "query": {
+                "bool": {
+                  "must": [ { "match": { "title": "search" } } ],
+                  "filter": [ { "term": { "tenant": "acme" } } ],
+                  "must_not": [ { "exists": { "field": "deleted" } } ]
+                }
+              }
+            }
+            """);
+    }
+
+    @Test
+    void moveNonScoringClausesToFilterAndMergeTerms() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.requestBuilder()
+            .withQuery(newBool()
+                .must(range("ts", "2024-01-01", "2024-12-31"))
+                .must(newBool()
+                    .should(term("status", "open"))
+                    .should(term("status", "pending"))
+                    .should(term("status", "open"))
+                    .build())
+                .mustNot(term("color", "red"))
+                .mustNot(term("color", "blue"))
+                .build())
+            .withSort(SortSpec.desc("ts"))
+            .build();
+
+        // When
+        var actual = OPTIMIZER.optimize(query);
+
+        // Then
+        assertThat(actual.changes()).extracting(ElasticQueryOptimizer.Change::kind)
+            .containsExactly(ChangeKind.MERGED_TERMS, ChangeKind.FLATTENED_BOOL, ChangeKind.MOVED_TO_FILTER, ChangeKind.MERGED_TERMS);
+        assertThat(MAPPER.writeValueAsString(actual.value())).isEqualToIgnoringWhitespace("""
+            {
+              "query": {
+                "bool": {
+                  "filter": [
+                    { "range": { "ts": { "gte": "2024-01-01", "lte": "2024-12-31" } } },
+                    { "terms": { "status": [ "open", "pending" ] } }
+                  ],
+                  "must_not": [ { "terms": { "color": [ "red", "blue" ] } } ]
+                }
+              },
+              "sort": [ { "ts": { "order": "desc" } } ]
+            }
+            """);
+    }
+
+    @Test
+    void keepScoringSemantics() {
+        // Given
+        var query = ElasticSearchRequest.query(
+            newBool()
+                .should(term("status", "open"))
+                .should(term("status", "open"))
+                .filter(term("tenant", "acme"))
+                .build()
+        );
+
+        // When
+        var actual = OPTIMIZER.optimize(query);
+
+        // Then
+        assertThat(actual.isChanged()).isFalse();
+        assertThat(actual.value()).isSameAs(query);
+    }
+
+    @Test
+    void keepShouldClausesOptionalWhenFlatteningTheLastFilter() throws JsonProcessingException {
+        // Given
+        var query = ElasticSearchRequest.query(
+            newBool()
+                .should(term("color", "red"))
+                .filter(newBool().mustNot(exists("deleted")).build())
+                .build()
+        );
+
+        // When
+        var actual = OPTIMIZER.optimize(query);
+
+        // Then
+        assertThat(MAPPER.writeValueAsString(actual.value())).isEqualToIgnoringWhitespace("""
+            {
+              "query": {
+                "bool": {
+                  "should": [ { "term": { "color": "red" } } ],
+                  "must_not": [ { "exists": { "field": "deleted" } } ],
+                  "minimum_should_match": 0
+                }
+              }
+            }
+            """);
+        var matcher = ElasticLocalMatcher.compile(actual.value().query());
+        assertThat(matcher.test(Map.of("color", "blue"))).isTrue();
+        assertThat(matcher.test(Map.of("color", "blue", "deleted", true))).isFalse();
+    }
+}
@@ -0,0 +1,68 @@
+package tech.habegger.elastic.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticMaxAggregation.max;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticKnn.knn;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+class ElasticRequestFingerprintTest {
+    @Test
+    void sameFingerprintRegardlessOfMapOrderingAndNumberFormatting() {
+        // Given
+        var first = ElasticSearchRequest.requestBuilder()
+            .withQuery(term("tenant", "acme"))
+            .withMinScore(1.0)
+            .aggregation("genres", termsAgg("genre", 10)
+                .aggregation("avg_price", avg("price"))
+                .aggregation("max_price", max("price"))
+                .aggregation("revenue", sum("price")))
+            .aggregation("all", termsAgg("all", 1))
+            .build();
+        var second = ElasticSearchRequest.requestBuilder()
+            .aggregation("all", termsAgg("all", 1))
+            .aggregation("genres", termsAgg("genre", 10)
+                .aggregation("revenue", sum("price"))
+                .aggregation("max_price", max("price"))
+                .aggregation("avg_price", avg("price")))
+            .withMinScore(1)
+            .withQuery(term("tenant", "acme"))
+            .build();
+
+        // When
+        var actualFirst = ElasticRequestFingerprint.of(first);
+        var actualSecond = ElasticRequestFingerprint.of(second);
+
+        // Then
+        assertThat(actualFirst).isEqualTo(actualSecond);
+        assertThat(actualFirst.toString()).hasSize(32);
+    }
+
+    @Test
+    void differentFingerprintForDifferentRequests() {
+        // Given
+        var base = ElasticSearchRequest.query(newBool().filter(term("tenant", "acme")).build(), 10);
+        var otherValue = ElasticSearchRequest.query(newBool().filter(term("tenant", "acmf")).build(), 10);
+        var otherOccurrence = ElasticSearchRequest.query(newBool().must(term("tenant", "acme")).build(), 10);
+        var otherSize = ElasticSearchRequest.query(newBool().filter(term("tenant", "acme")).build(), 11);
+        var vector = ElasticSearchRequest.requestBuilder().withKnn(knn("v", new float[] { 0.1f, 0.2f }, 1, 10, null)).build();
+        var otherVector = ElasticSearchRequest.requestBuilder().withKnn(knn("v", new float[] { 0.2f, 0.1f }, 1, 10, null)).build();
+
+        // When
+        var fingerprints = Stream.of(base, otherValue, otherOccurrence, otherSize, vector, otherVector)
+            .map(ElasticRequestFingerprint::of)
+            .toList();
+
+        // Then
+        assertThat(fingerprints).doesNotHaveDuplicates();
+        assertThat(ElasticRequestFingerprint.of(vector)).isEqualTo(ElasticRequestFingerprint.of(
+            ElasticSearchRequest.requestBuilder().withKnn(knn("v", new float[] { 0.1f, 0.2f }, 1, 10, null)).build()));
+    }
+}
@@ -0,0 +1,91 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticPrefixClause.prefix;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticRequestTemplate.param;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+
+public class ElasticRequestTemplateTest {
+    private static final ObjectMapper COMPACT_MAPPER = new ObjectMapper();
+
+    @Test
+    void renderSameBytesAsSerializingTheRequest() throws IOException {
+        // Given
+        var template = ElasticRequestTemplate.compile(COMPACT_MAPPER, ElasticSearchRequest.query(
+            newBool()
+                .filter(term("tenant", param("tenant")))
+                .filter(range("ts", param("from"), param("to")))
+                .build(), 10));
+
+        // When
+        var actual = template.render(Map.of("tenant", "acme \"corp\"", "from", "2024-01-01", "to", "2024-12-31"));
+
+        // Then
+        var expected = COMPACT_MAPPER.writeValueAsString(ElasticSearchRequest.query(
+            newBool()
+                .filter(term("tenant", "acme \"corp\""))
+                .filter(range("ts", "2024-01-01", "2024-12-31"))
+                .build(), 10));
+        assertThat(template.parameterNames()).containsExactly("tenant", "from", "to");
+        assertThat(new String(actual, StandardCharsets.UTF_8)).isEqualTo(expected);
+    }
+
+    @Test
+    void renderParameterEmbeddedInValueToStream() throws IOException {
+        // Given
+        var template = ElasticRequestTemplate.compile(COMPACT_MAPPER, ElasticSearchRequest.query(
+            newBool()
+                .should(prefix("name", param("name") + "-"))
+                .should(term("alias", param("name")))
+                .build()));
+        var output = new ByteArrayOutputStream();
+
+        // When
+        template.render(Map.of("name", "élan\n"), output);
+
+        // Then
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("""
+            {"query":{"bool":{"should":[{"prefix":{"name":"élan\\n-"}},{"term":{"alias":"élan\\n"}}]}}}""");
+    }
+
+    @Test
+    void renderFailsOnMissingParameter() throws IOException {
+        // Given
+        var template = ElasticRequestTemplate.compile(COMPACT_MAPPER, ElasticSearchRequest.query(term("tenant", param("tenant"))));
+
+        // When / Then
+        assertThatThrownBy(() -> template.render(Map.of()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("tenant");
+    }
+
+    @Test
+    void compileRejectsMappersNotWritingPlainJson() {
+        // Given
+        var request = ElasticSearchRequest.query(term("tenant", param("tenant")));
+        var escaping = JsonMapper.builder().enable(JsonWriteFeature.ESCAPE_NON_ASCII).build();
+        var smile = new ObjectMapper(new SmileFactory());
+
+        // When / Then
+        assertThatThrownBy(() -> ElasticRequestTemplate.compile(escaping, request))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("non ASCII");
+        assertThatThrownBy(() -> ElasticRequestTemplate.compile(smile, request))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Smile");
+    }
+}
@@ -0,0 +1,179 @@
+package tech.habegger.elastic.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import tech.habegger.elastic.aggregation.ElasticTermsAggregation;
+import tech.habegger.elastic.shared.CalendarUnit;
+import tech.habegger.elastic.shared.OrderDirection;
+import tech.habegger.elastic.shared.SortSpec;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.habegger.elastic.TestUtils.MAPPER;
+import static tech.habegger.elastic.aggregation.ElasticAvgAggregation.avg;
+import static tech.habegger.elastic.aggregation.ElasticCardinalityAggregation.cardinality;
+import static tech.habegger.elastic.aggregation.ElasticDateHistogramAggregation.dateHistogram;
+import static tech.habegger.elastic.aggregation.ElasticFilterAggregation.filter;
+import static tech.habegger.elastic.aggregation.ElasticHistogramAggregation.histogram;
+import static tech.habegger.elastic.aggregation.ElasticMaxAggregation.max;
+import static tech.habegger.elastic.aggregation.ElasticMinAggregation.min;
+import static tech.habegger.elastic.aggregation.ElasticPercentilesAggregation.percentiles;
+import static tech.habegger.elastic.aggregation.ElasticStatsAggregation.stats;
+import static tech.habegger.elastic.aggregation.ElasticSumAggregation.sum;
+import static tech.habegger.elastic.aggregation.ElasticTermsAggregation.termsAgg;
+import static tech.habegger.elastic.aggregation.ElasticValueCountAggregation.valueCount;
+import static tech.habegger.elastic.search.ElasticBooleanClause.newBool;
+import static tech.habegger.elastic.search.ElasticConstantScoreClause.constantScore;
+import static tech.habegger.elastic.search.ElasticExistsClause.exists;
+import static tech.habegger.elastic.search.ElasticFuzzyClause.fuzzy;
+import static tech.habegger.elastic.search.ElasticIdsClause.ids;
+import static tech.habegger.elastic.search.ElasticKnn.knn;
+import static tech.habegger.elastic.search.ElasticMatchAllClause.matchAll;
+import static tech.habegger.elastic.search.ElasticMatchClause.match;
+import static tech.habegger.elastic.search.ElasticNestedClause.nested;
+import static tech.habegger.elastic.search.ElasticPrefixClause.prefix;
+import static tech.habegger.elastic.search.ElasticRangeClause.range;
+import static tech.habegger.elastic.search.ElasticRegexpClause.regexp;
+import static tech.habegger.elastic.search.ElasticTermClause.term;
+import static tech.habegger.elastic.search.ElasticTermsClause.terms;
+import static tech.habegger.elastic.search.ElasticWildcardClause.wildcard;
+import static tech.habegger.elastic.shared.SourceSpec.include;
+
+public class ElasticRequestWriterTest {
+    private static final ObjectMapper COMPACT_MAPPER = new ObjectMapper();
+
+    static Stream<Arguments> requests() {
+        return Stream.of(
+            Arguments.of("bool", ElasticSearchRequest.query(
+                newBool()
+                    .must(term("firstname", "benjamin"))
+                    .should(range("birthdate", LocalDate.parse("1990-01-01"), LocalDate.parse("2000-01-01")))
+                    .should(range("age", 18, null))
+                    .mustNot(exists("deleted"))
+                    .filter(terms("city", "biel", "bern", "\"quoted\""))
+                    .minimumShouldMatch(1)
+                    .build(), 10)),
+            Arguments.of("nested bools", ElasticSearchRequest.query(
+                newBool()
+                    .filter(newBool().must(newBool().must(match("title", "élan vital")).build()).build())
+                    .filter(nested("comments", prefix("comments.author", "be"), ElasticNestedClause.ScoreMode.max))
+                    .filter(constantScore(ids("1", "2"), 1.2f))
+                    .build())),
+            Arguments.of("wildcard and fallback clauses", ElasticSearchRequest.query(
+                newBool()
+                    .should(wildcard("user.id", "ki*y").withBoost(1.5).withRewrite(RewriteMethod.constant_score))
+                    .should(regexp("user.id", "k.*y").withMaxDeterminizedStates(100))
+                    .should(fuzzy("user.id", "ki"))
+                    .should(matchAll())
+                    .build())),
+            Arguments.of("base64 vector", ElasticSearchRequest.requestBuilder()
+                .withKnn(knn("vector", ElasticKnnVector.base64(new float[] { 0.5f, -1.0f }), 5, 50, null))
+                .build()),
+            Arguments.of("hex vector", ElasticSearchRequest.requestBuilder()
+                .withKnn(knn("vector", ElasticKnnVector.hex(new byte[] { 1, -1, 16 }), 5, 50, null))
+                .build()),
+            Arguments.of("request options", ElasticSearchRequest.requestBuilder()
+                .withQuery(matchAll())
+                .withKnn(knn("vector", new float[] { 0.1f, 1.0f / 3, -2.5e-8f }, 10, 100, term("tenant", "t1")))
+                .withSource(include("title", "price"))
+                .withSort(SortSpec.desc("price"), SortSpec.sort("_score"))
+                .withFrom(20)
+                .withSize(10)
+                .withMinScore(0.25)
+                .withPostFilter(term("color", "red"))
+                .withFields("title", "price")
+                .withTrackTotalHits(true)
+                .build()),
+            Arguments.of("pagination", ElasticSearchRequest.requestBuilder()
+                .withQuery(term("tenant", "acme"))
+                .withSort(SortSpec.asc("@timestamp"), SortSpec.sort("_shard_doc"))
+                .withSize(1000)
+                .withPit("46ToAwMDaWR5BXV1aWQy", "1m")
+                .withSlice(1, 4)
+                .withSearchAfter(1704067200000L, "doc-1", 12, 0.5, BigInteger.TWO.pow(64))
+                .withTrackTotalHits(false)
+                .build()),
+            Arguments.of("aggregations", ElasticSearchRequest.requestBuilder()
+                .withSize(0)
+                .aggregation("sales_over_time", dateHistogram("date", CalendarUnit.month)
+                    .withTimeZone(ZoneId.of("Europe/Zurich"))
+                    .aggregation("revenue", sum("price"))
+                    .aggregation("unique_buyers", cardinality("buyer").withPrecisionThreshold(100)))
+                .aggregation("genres", termsAgg("genre", 50)
+                    .aggregation("price_stats", stats("price"))
+                    .aggregation("cheapest", min("price"))
+                    .aggregation("dearest", max("price", null))
+                    .aggregation("latency", percentiles("latency", 50.0, 99.0)))
+                .aggregation("prices", histogram("price", 50.0)
+                    .withExtendedBounds(0, 500)
+                    .withOrder("_key", OrderDirection.desc)
+                    .withKeyed())
+                .aggregation("t_shirts", filter(term("type", "t-shirt"))
+                    .aggregation("avg_price", avg("price"))
+                    .aggregation("count", valueCount("price")))
+                .build()),
+            Arguments.of("partitioned terms", ElasticSearchRequest.requestBuilder()
+                .withSize(0)
+                .aggregation("accounts", termsAgg("account_id")
+                    .withSize(10000)
+                    .withShardSize(12000)
+                    .withOrder("_key", OrderDirection.asc)
+                    .withPartition(3, 20)
+                    .withExecutionHint(ElasticTermsAggregation.TermsExecutionHint.map)
+                    .aggregation("last_access", max("access_date", null)))
+                .build())
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("requests")
+    void writesSameBytesAsJackson(String name, ElasticSearchRequest request) throws IOException {
+        // Given
+        var writer = new ElasticRequestWriter(COMPACT_MAPPER);
+
+        // When
+        var actual = writer.writeAsBytes(request);
+
+        // Then
+        assertThat(new String(actual, StandardCharsets.UTF_8)).isEqualTo(COMPACT_MAPPER.writeValueAsString(request));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("requests")
+    void writesSameIndentedBytesAsJackson(String name, ElasticSearchRequest request) throws IOException {
+        // Given
+        var writer = new ElasticRequestWriter(MAPPER);
+
+        // When
+        var actual = writer.writeAsBytes(request);
+
+        // Then
+        assertThat(new String(actual, StandardCharsets.UTF_8)).isEqualTo(MAPPER.writeValueAsString(request));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("requests")
+    void writesBinaryFormatsEquivalentToJson(String name, ElasticSearchRequest request) throws IOException {
+        for(var binaryMapper : List.of(COMPACT_MAPPER.copyWith(new SmileFactory()), COMPACT_MAPPER.copyWith(new CBORFactory()))) {
+            // Given
+            var writer = new ElasticRequestWriter(binaryMapper);
+
+            // When
+            var actual = binaryMapper.readTree(writer.writeAsBytes(request));
+
+            // Then
+            assertThat(COMPACT_MAPPER.writeValueAsString(actual)).isEqualTo(COMPACT_MAPPER.writeValueAsString(request));
+        }
+    }
+}